@@ -25,6 +25,17 @@ android {
             )
         }
     }
+    // the test fixtures (e.g. the TagSimulator) are used by the unit tests and the benchmark
+    // module, they are not part of the app
+    sourceSets {
+        getByName("test") {
+            java.srcDir("src/testFixtures/java")
+        }
+    }
+    testOptions {
+        // the classes under test log with android.util.Log, the calls return 0 in the unit tests
+        unitTests.isReturnDefaultValues = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
@@ -0,0 +1,86 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.nfc.tech.NfcA;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * This is the thin adapter between the Android NfcA class and the NfcATransceiver interface
+ * that is used by the NfcACommands class. All calls are forwarded to the NfcA object.
+ */
+public class AndroidNfcATransceiver implements NfcATransceiver {
+
+    private static final String TAG = AndroidNfcATransceiver.class.getSimpleName();
+    private final NfcA nfcA;
+
+    public AndroidNfcATransceiver(NfcA nfcA) {
+        this.nfcA = nfcA;
+    }
+
+    /**
+     * A convenience method that returns NULL when the NfcA object is NULL, so it can be used
+     * directly with the result of NfcA.get(tag).
+     *
+     * @param nfcA
+     * @return the wrapped NfcA object or NULL
+     */
+    public static AndroidNfcATransceiver wrap(NfcA nfcA) {
+        if (nfcA == null) return null;
+        return new AndroidNfcATransceiver(nfcA);
+    }
+
+    public NfcA getNfcA() {
+        return nfcA;
+    }
+
+    @Override
+    public byte[] transceive(byte[] data) throws IOException {
+        return nfcA.transceive(data);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return nfcA.isConnected();
+    }
+
+    @Override
+    public int getMaxTransceiveLength() {
+        return nfcA.getMaxTransceiveLength();
+    }
+
+    @Override
+    public int getTimeout() {
+        return nfcA.getTimeout();
+    }
+
+    @Override
+    public void setTimeout(int timeout) {
+        nfcA.setTimeout(timeout);
+    }
+
+    @Override
+    public void connect() throws IOException {
+        nfcA.connect();
+    }
+
+    @Override
+    public void close() throws IOException {
+        nfcA.close();
+    }
+
+    /**
+     * A failing close() does not stop the reconnect, only a failing connect() means the tag is lost.
+     */
+    @Override
+    public void reconnect() throws IOException {
+        // this is just an advice - if an error occurs - close the connection and reconnect the tag
+        // https://stackoverflow.com/a/37047375/8166854
+        try {
+            nfcA.close();
+        } catch (Exception e) {
+            Log.e(TAG, "Exception on Close NfcA: " + e.getMessage());
+        }
+        nfcA.connect();
+    }
+}
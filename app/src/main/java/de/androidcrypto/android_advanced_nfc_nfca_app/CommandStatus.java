@@ -0,0 +1,91 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * The status of a command sent by a TagSession. The status methods of TagSession (e.g.
+ * readPageInto or writePage with an offset) return one of these constants, so in case of a
+ * failure there is no need to build a message string or a NAK array. The message of the error
+ * is formatted only when TagError.getMessage() is called.
+ * <p>
+ * The response codes are the same as in NfcACommands, resolveCheckResponse() uses the
+ * descriptions of this enum.
+ */
+public enum CommandStatus {
+
+    ACK((byte) 0x0A, "ACK"),
+    NAK_INVALID_ARGUMENT((byte) 0x00, "NAK INVALID ARGUMENT"),
+    NAK_PARITY_CRC_ERROR((byte) 0x01, "NAK PARITY OR CRC ERROR"),
+    NAK_INVALID_AUTHENTICATION_COUNTER_OVERFLOW((byte) 0x04, "NAK INVALID AUTHENTICATION COUNTER OVERFLOW"),
+    NAK_EEPROM_WRITE_ERROR((byte) 0x05, "NAK EEPROM WRITE ERROR"),
+    NAK_UNKNOWN((byte) 0x0F, "NAK UNKNOWN ERROR"), // any other 4 bit NAK, the response code is not kept
+    IO_EXCEPTION((byte) 0xFF, "NAK IOEXCEPTION ERROR"), // the transceive failed, e.g. the tag was lost
+    NOT_CONNECTED((byte) 0xFF, "nfcA is NULL or not connected"),
+    INVALID_ARGUMENT((byte) 0x00, "invalid argument"), // the command was not sent
+    UNEXPECTED_RESPONSE((byte) 0xFF, "unexpected response length");
+
+    private final byte responseCode;
+    private final String description;
+
+    CommandStatus(byte responseCode, String description) {
+        this.responseCode = responseCode;
+        this.description = description;
+    }
+
+    /**
+     * Maps the one byte response of a tag (or the NAK_IOEXCEPTION_ERROR of NfcACommands) to
+     * the status, no object is created.
+     *
+     * @param tagResponse
+     * @return the status, NAK_UNKNOWN for any unknown code
+     */
+    public static CommandStatus fromResponse(byte tagResponse) {
+        switch (tagResponse) {
+            case (byte) 0x0A:
+                return ACK;
+            case (byte) 0x00:
+                return NAK_INVALID_ARGUMENT;
+            case (byte) 0x01:
+                return NAK_PARITY_CRC_ERROR;
+            case (byte) 0x04:
+                return NAK_INVALID_AUTHENTICATION_COUNTER_OVERFLOW;
+            case (byte) 0x05:
+                return NAK_EEPROM_WRITE_ERROR;
+            case (byte) 0xFF:
+                return IO_EXCEPTION;
+            default:
+                return NAK_UNKNOWN;
+        }
+    }
+
+    public boolean isSuccess() {
+        return this == ACK;
+    }
+
+    /**
+     * @return true if the tag answered with a NAK, in this case the tag is in HALT state and
+     * needs a reconnect
+     */
+    public boolean isNak() {
+        return (this == NAK_INVALID_ARGUMENT) || (this == NAK_PARITY_CRC_ERROR)
+                || (this == NAK_INVALID_AUTHENTICATION_COUNTER_OVERFLOW)
+                || (this == NAK_EEPROM_WRITE_ERROR) || (this == NAK_UNKNOWN);
+    }
+
+    /**
+     * @return true if the tag probably is in HALT state or out of the field, a reconnect is
+     * needed before sending the next command
+     */
+    public boolean needsReconnect() {
+        return isNak() || (this == IO_EXCEPTION) || (this == UNEXPECTED_RESPONSE);
+    }
+
+    /**
+     * @return the response byte as used in NfcACommands, e.g. for a WriteCursor
+     */
+    public byte getResponseCode() {
+        return responseCode;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
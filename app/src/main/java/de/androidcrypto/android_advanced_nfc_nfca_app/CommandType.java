@@ -0,0 +1,34 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * The commands of the command layer with their opcode. A command is idempotent when sending it
+ * twice has the same effect as sending it once, the reading commands are. A WRITE or INCR_CNT
+ * that failed with an IOException may have been executed by the tag (only the response got lost),
+ * so the RetryingTagSession checks the tag before it repeats them.
+ */
+public enum CommandType {
+
+    READ((byte) 0x30, true),
+    FAST_READ((byte) 0x3A, true),
+    WRITE((byte) 0xA2, false),
+    GET_VERSION((byte) 0x60, true),
+    READ_CNT((byte) 0x39, true),
+    INCR_CNT((byte) 0xA5, false),
+    READ_SIG((byte) 0x3C, true);
+
+    private final byte opcode;
+    private final boolean idempotent;
+
+    CommandType(byte opcode, boolean idempotent) {
+        this.opcode = opcode;
+        this.idempotent = idempotent;
+    }
+
+    public byte getOpcode() {
+        return opcode;
+    }
+
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
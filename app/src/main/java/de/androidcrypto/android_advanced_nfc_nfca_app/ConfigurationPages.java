@@ -213,6 +213,45 @@ public class ConfigurationPages {
         return isValid;
     }
 
+    /* the ASCII mirror of NTAG21x tags */
+
+    public boolean isUidAsciiMirrored() {
+        return (tagType == TagType.NTAG21x) && checkC0B0Bit6();
+    }
+
+    /**
+     * @return true if the NFC counter is mirrored (as 6 hex characters, MSB first), this needs the
+     * NFC counter to be enabled
+     */
+    public boolean isNfcCounterAsciiMirrored() {
+        return (tagType == TagType.NTAG21x) && checkC0B0Bit7() && isNfcCounterEnabled();
+    }
+
+    /**
+     * @return the page where the mirror starts, the mirror is not active on pages below 4
+     */
+    public int getMirrorPage() {
+        return c0Byte2 & 0xff;
+    }
+
+    /**
+     * @return the byte within the mirror page where the mirror starts (0..3)
+     */
+    public int getMirrorByte() {
+        int mirrorByteInt = 0;
+        if (checkC0B0Bit4()) mirrorByteInt += 1;
+        if (checkC0B0Bit5()) mirrorByteInt += 2;
+        return mirrorByteInt;
+    }
+
+    public boolean isNfcCounterEnabled() {
+        return checkC1B0Bit4();
+    }
+
+    public boolean isNfcCounterPasswordProtected() {
+        return checkC1B0Bit3();
+    }
+
     public String dump() {
         StringBuilder sb = new StringBuilder();
         sb.append("Configuration Pages dump").append("\n");
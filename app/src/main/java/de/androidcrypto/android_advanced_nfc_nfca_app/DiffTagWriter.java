@@ -0,0 +1,188 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.resolveCheckResponse;
+
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * This class writes data to the user memory of a tag, but only the pages that are changing.
+ * Each WRITE command needs about 4 ms for programming the EEPROM and every write is a write
+ * cycle of the page, so when a tag gets re-provisioned with mostly the same content most of
+ * the writes can be skipped.
+ * <p>
+ * The steps are:
+ * 1. the current content of the pages is read in one pass (FAST_READ, READ on Ultralight C)
+ * 2. only the pages that differ from the desired data are written
+ * 3. the written pages are verified with the WriteVerifier
+ * <p>
+ * If the data does not end on a page boundary the remaining bytes of the last page keep their
+ * current content.
+ */
+public class DiffTagWriter {
+
+    private static final String TAG = DiffTagWriter.class.getSimpleName();
+    private static final int BYTES_PER_PAGE = 4;
+
+    /**
+     * The result of a diff write.
+     */
+    public static class Result {
+        private final int pagesWritten;
+        private final int pagesSkipped;
+        private final int failedPage;
+        private final byte lastResponse;
+        private final int[] mismatchingPages;
+
+        Result(int pagesWritten, int pagesSkipped, int failedPage, byte lastResponse, int[] mismatchingPages) {
+            this.pagesWritten = pagesWritten;
+            this.pagesSkipped = pagesSkipped;
+            this.failedPage = failedPage;
+            this.lastResponse = lastResponse;
+            this.mismatchingPages = mismatchingPages;
+        }
+
+        /**
+         * @return true if all pages were written (or skipped) and the verification was successful
+         */
+        public boolean isSuccess() {
+            return (failedPage < 0) && (mismatchingPages.length == 0);
+        }
+
+        public int getPagesWritten() {
+            return pagesWritten;
+        }
+
+        public int getPagesSkipped() {
+            return pagesSkipped;
+        }
+
+        /**
+         * @return the page where the WRITE command failed, or -1 if no WRITE failed
+         */
+        public int getFailedPage() {
+            return failedPage;
+        }
+
+        /**
+         * @return the response of the tag on the last WRITE command, ACK or a NAK
+         */
+        public byte getLastResponse() {
+            return lastResponse;
+        }
+
+        /**
+         * @return the pages that were written but did not contain the desired data in the
+         * verification read
+         */
+        public int[] getMismatchingPages() {
+            return mismatchingPages.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "written: " + pagesWritten + " skipped: " + pagesSkipped
+                    + (failedPage >= 0 ? " failed on page " + failedPage + " (" + resolveCheckResponse(lastResponse) + ")" : "")
+                    + " mismatching pages: " + Arrays.toString(mismatchingPages);
+        }
+    }
+
+    /**
+     * Writes the data to the tag, beginning with <startPageNumber>. The data needs to fit into
+     * the user memory of the tag (ti.userMemoryStartPage up to ti.userMemoryEndPage).
+     *
+     * @param session
+     * @param ti
+     * @param startPageNumber
+     * @param data
+     * @return the result, or NULL if the arguments are invalid
+     */
+    public static Result writeDiff(TagSession session, TagInformation ti, int startPageNumber, byte[] data) {
+        // sanity checks
+        if ((session == null) || (!session.checkConnected("writeDiff"))) {
+            return null;
+        }
+        if (ti == null) {
+            Log.e(TAG, "writeDiff TagInformation is NULL, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "writeDiff", "writeDiff TagInformation is NULL, aborted");
+            return null;
+        }
+        if ((data == null) || (data.length == 0)) {
+            Log.e(TAG, "writeDiff data is NULL or empty, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "writeDiff", "writeDiff data is NULL or empty, aborted");
+            return null;
+        }
+        // this check avoids to write to pages 0, 1, 2 and 3 as that are blocked pages or One Time Programmable areas
+        if (startPageNumber < Math.max(4, ti.userMemoryStartPage)) {
+            Log.e(TAG, "writeDiff startPageNumber is below the user memory, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "writeDiff", "writeDiff startPageNumber " + startPageNumber + " is below the user memory, aborted");
+            return null;
+        }
+        int numberOfPages = (data.length + BYTES_PER_PAGE - 1) / BYTES_PER_PAGE;
+        int endPageNumber = startPageNumber + numberOfPages - 1;
+        if (endPageNumber > ti.userMemoryEndPage) {
+            Log.e(TAG, "writeDiff data exceeds the user memory, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "writeDiff", "writeDiff data ends on page " + endPageNumber + " behind the user memory end page " + ti.userMemoryEndPage + ", aborted");
+            return null;
+        }
+
+        // step 1: read the current content
+        byte[] currentContent = new byte[numberOfPages * BYTES_PER_PAGE];
+        int pagesRead = session.readPagesInto(ti, startPageNumber, endPageNumber, currentContent, 0);
+        if (pagesRead < numberOfPages) {
+            // the pages that were not read are written without comparison
+            Log.d(TAG, "only " + Math.max(0, pagesRead) + " of " + numberOfPages + " pages read, the remaining pages are written");
+            session.reconnect();
+            pagesRead = Math.max(0, pagesRead);
+        }
+        // the desired content, a partial last page keeps its current bytes (or 0x00h if unknown)
+        byte[] desiredContent = new byte[numberOfPages * BYTES_PER_PAGE];
+        if (pagesRead == numberOfPages) {
+            System.arraycopy(currentContent, 0, desiredContent, 0, desiredContent.length);
+        }
+        System.arraycopy(data, 0, desiredContent, 0, data.length);
+
+        // step 2: write the differing pages
+        int pagesWritten = 0;
+        int pagesSkipped = 0;
+        int failedPage = -1;
+        byte lastResponse = NfcACommands.ACK;
+        WriteVerifier writeVerifier = new WriteVerifier();
+        for (int i = 0; i < numberOfPages; i++) {
+            int offset = i * BYTES_PER_PAGE;
+            if ((i < pagesRead) && pageEquals(currentContent, desiredContent, offset)) {
+                pagesSkipped++;
+                continue;
+            }
+            CommandStatus status = session.writePage(startPageNumber + i, desiredContent, offset);
+            if (!status.isSuccess()) {
+                failedPage = startPageNumber + i;
+                lastResponse = status.getResponseCode();
+                Log.e(TAG, "writeDiff failed on page " + failedPage + " with " + status.getDescription());
+                session.reconnect();
+                break;
+            }
+            pagesWritten++;
+            writeVerifier.addWrittenPage(startPageNumber + i, desiredContent, offset);
+        }
+
+        // step 3: verify the written pages with as few reads as possible
+        int[] mismatchingPages = new int[0];
+        if (writeVerifier.hasWrittenPages()) {
+            mismatchingPages = writeVerifier.verify(session, ti);
+            if (mismatchingPages == null) {
+                // the tag was lost, no page is verified
+                mismatchingPages = writeVerifier.getWrittenPages();
+            }
+        }
+        return new Result(pagesWritten, pagesSkipped, failedPage, lastResponse, mismatchingPages);
+    }
+
+    private static boolean pageEquals(byte[] a, byte[] b, int offset) {
+        for (int i = 0; i < BYTES_PER_PAGE; i++) {
+            if (a[offset + i] != b[offset + i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,258 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class plans the number of pages that are read with one FAST_READ command. The fixed
+ * formula (maxTransceiveLength - 16) / 4 used by readFullTag is a safe guess, but on most devices
+ * a larger chunk is working and fewer, bigger FAST_READs reduce the time the tag needs to stay
+ * in the field.
+ * <p>
+ * The planner starts with the largest chunk that fits into maxTransceiveLength and backs off when
+ * a response is truncated or the command fails. The largest working chunk and the smallest failing
+ * chunk are remembered per device model and tag type (see key()), on the next tags the planner
+ * starts with the learned size and probes once in the middle between the working and the failing
+ * size until both are neighbours.
+ * <p>
+ * A chunk size is noted as failing only when all pages of the failed chunk are read afterwards
+ * with smaller chunks, so a read protected page does not shrink the learned chunk size.
+ * The learned sizes can be saved to and loaded from a file. The class is thread safe.
+ */
+public class FastReadChunkPlanner {
+
+    private static final String TAG = FastReadChunkPlanner.class.getSimpleName();
+    private static final int BYTES_PER_PAGE = 4;
+    private static final String KEY_SEPARATOR = "|";
+    private static final String FAILED_SUFFIX = ".failed";
+
+    private final Map<String, ChunkSize> chunkSizes = new ConcurrentHashMap<>();
+
+    private static final class ChunkSize {
+        final int workingPages; // largest chunk that was read successfully, 0 = unknown
+        final int failingPages; // smallest chunk that failed, 0 = unknown
+
+        ChunkSize(int workingPages, int failingPages) {
+            this.workingPages = workingPages;
+            this.failingPages = failingPages;
+        }
+    }
+
+    /**
+     * Builds the key for the learned chunk size, e.g. key(Build.MANUFACTURER + " " + Build.MODEL,
+     * ti.tagMinorName).
+     *
+     * @param deviceModel
+     * @param tagType
+     * @return
+     */
+    public static String key(String deviceModel, String tagType) {
+        return deviceModel + KEY_SEPARATOR + tagType;
+    }
+
+    /**
+     * Returns the number of pages that should be read with the next FAST_READ command.
+     *
+     * @param key
+     * @param maxTransceiveLength
+     * @return the number of pages, at least 1
+     */
+    public int getChunkPages(String key, int maxTransceiveLength) {
+        int maxPages = Math.max(1, maxTransceiveLength / BYTES_PER_PAGE);
+        ChunkSize chunkSize = chunkSizes.get(key);
+        if (chunkSize == null) {
+            return maxPages;
+        }
+        int upperLimit = (chunkSize.failingPages > 0) ? Math.min(maxPages, chunkSize.failingPages - 1) : maxPages;
+        if (chunkSize.workingPages == 0) {
+            return Math.max(1, upperLimit);
+        }
+        if (chunkSize.workingPages >= upperLimit) {
+            return Math.max(1, upperLimit);
+        }
+        // probe in the middle between the working and the failing size
+        return chunkSize.workingPages + (upperLimit - chunkSize.workingPages + 1) / 2;
+    }
+
+    /**
+     * Returns the chunk size for the next try after a chunk of failedPages was not read correctly.
+     *
+     * @param key
+     * @param failedPages
+     * @return the number of pages, 0 if no smaller chunk is left
+     */
+    public int backOff(String key, int failedPages) {
+        if (failedPages <= 1) {
+            return 0;
+        }
+        ChunkSize chunkSize = chunkSizes.get(key);
+        if ((chunkSize != null) && (chunkSize.workingPages > 0) && (chunkSize.workingPages < failedPages)) {
+            return chunkSize.workingPages;
+        }
+        return failedPages / 2;
+    }
+
+    public void onChunkSuccess(String key, int pages) {
+        ChunkSize chunkSize = chunkSizes.get(key);
+        if ((chunkSize != null) && (chunkSize.workingPages >= pages)) {
+            return; // nothing new learned
+        }
+        chunkSizes.compute(key, (k, old) -> {
+            if (old == null) return new ChunkSize(pages, 0);
+            if (old.workingPages >= pages) return old;
+            // a working chunk larger than the failing one means the old failure is outdated
+            int failingPages = (old.failingPages > pages) ? old.failingPages : 0;
+            return new ChunkSize(pages, failingPages);
+        });
+    }
+
+    public void onChunkFailure(String key, int pages) {
+        chunkSizes.compute(key, (k, old) -> {
+            if (old == null) return new ChunkSize(0, pages);
+            if ((old.failingPages > 0) && (old.failingPages <= pages)) return old;
+            // a failing chunk smaller or equal than the working one means the conditions changed
+            int workingPages = (old.workingPages < pages) ? old.workingPages : 0;
+            return new ChunkSize(workingPages, pages);
+        });
+    }
+
+    /**
+     * Returns the largest chunk that was read successfully for the key.
+     *
+     * @param key
+     * @return the number of pages, 0 if nothing was learned so far
+     */
+    public int getLearnedChunkPages(String key) {
+        ChunkSize chunkSize = chunkSizes.get(key);
+        return (chunkSize == null) ? 0 : chunkSize.workingPages;
+    }
+
+    /**
+     * Reads the pages <pageNumberStart> up to <pageNumberEnd> (included) with FAST_READ commands
+     * of the planned size into the buffer. On a failing chunk the tag is reconnected (a NAK brings
+     * the tag in HALT state) and the chunk is read again with a smaller size. When even a single
+     * page can't get read the method stops, e.g. because the page is read protected.
+     *
+     * @param session
+     * @param key                 see key()
+     * @param maxTransceiveLength
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read, in case of an error the pages that were read before the
+     * error occurred. Returns -1 if the arguments are invalid.
+     */
+    public int readPagesInto(TagSession session, String key, int maxTransceiveLength, int pageNumberStart, int pageNumberEnd, byte[] dest, int destOffset) {
+        // sanity checks
+        if ((session == null) || (!session.checkConnected("readPagesInto"))) {
+            return -1;
+        }
+        if ((pageNumberStart < 0) || (pageNumberEnd < pageNumberStart)) {
+            Log.e(TAG, "readPagesInto page range " + pageNumberStart + " to " + pageNumberEnd + " is invalid, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto page range " + pageNumberStart + " to " + pageNumberEnd + " is invalid, aborted");
+            return -1;
+        }
+        int numberOfPages = pageNumberEnd - pageNumberStart + 1;
+        if ((dest == null) || (destOffset < 0) || (dest.length - destOffset < numberOfPages * BYTES_PER_PAGE)) {
+            Log.e(TAG, "readPagesInto dest is NULL or too small for " + numberOfPages + " pages, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto dest is NULL or too small for " + numberOfPages + " pages, aborted");
+            return -1;
+        }
+        int pageNumber = pageNumberStart;
+        int chunkPages = getChunkPages(key, maxTransceiveLength);
+        int failedPages = 0; // the chunk size that failed, noted when all pages of the failed chunk are read
+        int failedRangeEnd = -1;
+        while (pageNumber <= pageNumberEnd) {
+            int readPages = Math.min(chunkPages, pageNumberEnd - pageNumber + 1);
+            byte[] contentRead = session.fastReadPage(pageNumber, pageNumber + readPages - 1);
+            if ((contentRead != null) && (contentRead.length == readPages * BYTES_PER_PAGE)) {
+                System.arraycopy(contentRead, 0, dest, destOffset + (pageNumber - pageNumberStart) * BYTES_PER_PAGE, contentRead.length);
+                if (readPages == chunkPages) {
+                    onChunkSuccess(key, chunkPages);
+                }
+                pageNumber += readPages;
+                if ((failedPages > 0) && (pageNumber > failedRangeEnd)) {
+                    // the pages of the failed chunk are readable, so the size was the reason of the failure
+                    onChunkFailure(key, failedPages);
+                    failedPages = 0;
+                }
+                continue;
+            }
+            Log.d(TAG, "FAST_READ of " + readPages + " pages from page " + pageNumber + " failed, backing off");
+            if ((contentRead == null) || (contentRead.length <= 1)) {
+                // IOException or NAK, the tag needs to get reconnected
+                session.reconnect();
+            }
+            if (failedPages == 0) {
+                failedPages = readPages;
+                failedRangeEnd = pageNumber + readPages - 1;
+            }
+            chunkPages = backOff(key, readPages);
+            if (chunkPages == 0) {
+                Log.e(TAG, "Error while reading page " + pageNumber + ", e.g. the page might be read protected");
+                break;
+            }
+        }
+        return pageNumber - pageNumberStart;
+    }
+
+    /**
+     * Reads the complete memory of the tag (page 00 up to page ti.tagMemoryEndPage) with the planned
+     * chunk sizes, see readPagesInto.
+     *
+     * @param session
+     * @param ti
+     * @param deviceModel
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read
+     */
+    public int readFullTagInto(TagSession session, TagInformation ti, String deviceModel, byte[] dest, int destOffset) {
+        return readPagesInto(session, key(deviceModel, ti.tagMinorName), ti.maxTransceiveLength,
+                0, ti.tagMemoryEndPage, dest, destOffset);
+    }
+
+    /*
+        persistence, the file is a properties file with the key and the working chunk size
+        (and the failing chunk size with the '.failed' suffix)
+     */
+
+    public void save(File file) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, ChunkSize> entry : chunkSizes.entrySet()) {
+            properties.setProperty(entry.getKey(), String.valueOf(entry.getValue().workingPages));
+            properties.setProperty(entry.getKey() + FAILED_SUFFIX, String.valueOf(entry.getValue().failingPages));
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "learned FAST_READ chunk sizes in pages");
+        }
+    }
+
+    public void load(File file) throws IOException {
+        if (!file.exists()) return;
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (name.endsWith(FAILED_SUFFIX)) continue;
+            try {
+                int workingPages = Integer.parseInt(properties.getProperty(name));
+                int failingPages = Integer.parseInt(properties.getProperty(name + FAILED_SUFFIX, "0"));
+                chunkSizes.put(name, new ChunkSize(workingPages, failingPages));
+            } catch (NumberFormatException e) {
+                Log.e(TAG, "invalid chunk size for " + name + " skipped");
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.HEX_DIGITS;
+
+import java.io.IOException;
+
+/**
+ * This class renders the content of a tag as a page addressed dump, one row per page:
+ * <pre>
+ * 004 | 03 00 FE 00 | .... | user memory
+ * </pre>
+ * The page number, the hex bytes, the printable ASCII characters and the memory region of the
+ * page. The rows are written directly into an Appendable (e.g. a StringBuilder or a Writer of an
+ * export file), the conversion uses lookup tables and one reused row buffer, so no intermediate
+ * strings are created. A renderer is not thread safe, use one renderer per thread.
+ * <p>
+ * The regions are taken from the TagInformation of an NTAG21x or MIFARE Ultralight tag, without
+ * a TagInformation the region column is omitted.
+ */
+public class HexDumpRenderer {
+
+    public static final int BYTES_PER_PAGE = 4;
+    private static final String SEPARATOR = " | ";
+    private static final char NOT_PRINTABLE = '.';
+    // page number (3) + separator (3) + hex (11) + separator (3) + ASCII (4)
+    private static final int ROW_LENGTH = 3 + 3 + (BYTES_PER_PAGE * 3 - 1) + 3 + BYTES_PER_PAGE;
+
+    /* the memory regions */
+    public static final String REGION_UID = "UID";
+    public static final String REGION_UID_LOCK_BYTES = "UID, static lock bytes";
+    public static final String REGION_CAPABILITY_CONTAINER = "Capability Container / OTP";
+    public static final String REGION_USER_MEMORY = "user memory";
+    public static final String REGION_LOCK_BYTES = "dynamic lock bytes";
+    public static final String REGION_CONFIGURATION = "configuration";
+
+    private final String[] regions; // by page number, NULL if there is no TagInformation
+    private final char[] row = new char[ROW_LENGTH];
+
+    /**
+     * A renderer without the region column.
+     */
+    public HexDumpRenderer() {
+        this.regions = null;
+    }
+
+    /**
+     * @param ti the memory layout for the region column, can be NULL
+     */
+    public HexDumpRenderer(TagInformation ti) {
+        if ((ti == null) || (ti.tagMemoryEndPage <= 0)) {
+            this.regions = null;
+            return;
+        }
+        regions = new String[ti.tagMemoryEndPage + 1];
+        for (int page = 0; page < regions.length; page++) {
+            if (page < 2) {
+                regions[page] = REGION_UID;
+            } else if (page == 2) {
+                regions[page] = REGION_UID_LOCK_BYTES;
+            } else if (page == 3) {
+                regions[page] = REGION_CAPABILITY_CONTAINER;
+            } else if ((page >= ti.userMemoryStartPage) && (page <= ti.userMemoryEndPage)) {
+                regions[page] = REGION_USER_MEMORY;
+            } else if ((ti.configurationStartPage > 0) && (page >= ti.configurationStartPage)) {
+                regions[page] = REGION_CONFIGURATION;
+            } else {
+                // between the user memory and the configuration pages
+                regions[page] = REGION_LOCK_BYTES;
+            }
+        }
+    }
+
+    /**
+     * Renders the pages, one row for each page, a last page with less than 4 bytes is filled with
+     * blanks.
+     *
+     * @param out
+     * @param data
+     * @param dataOffset
+     * @param dataLength
+     * @param firstPage  the page number of the first byte
+     * @throws IOException of the Appendable
+     */
+    public void renderPages(Appendable out, byte[] data, int dataOffset, int dataLength, int firstPage) throws IOException {
+        int numberOfPages = (dataLength + BYTES_PER_PAGE - 1) / BYTES_PER_PAGE;
+        for (int i = 0; i < numberOfPages; i++) {
+            int offset = i * BYTES_PER_PAGE;
+            int length = formatRow(data, dataOffset + offset, Math.min(BYTES_PER_PAGE, dataLength - offset), firstPage + i);
+            for (int j = 0; j < length; j++) {
+                out.append(row[j]);
+            }
+            appendRegion(out, firstPage + i);
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Same as renderPages(Appendable...) for a StringBuilder, the rows are appended as char
+     * arrays.
+     */
+    public void renderPages(StringBuilder sb, byte[] data, int dataOffset, int dataLength, int firstPage) {
+        int numberOfPages = (dataLength + BYTES_PER_PAGE - 1) / BYTES_PER_PAGE;
+        for (int i = 0; i < numberOfPages; i++) {
+            int offset = i * BYTES_PER_PAGE;
+            int length = formatRow(data, dataOffset + offset, Math.min(BYTES_PER_PAGE, dataLength - offset), firstPage + i);
+            sb.append(row, 0, length);
+            String region = getRegion(firstPage + i);
+            if (region != null) {
+                sb.append(SEPARATOR).append(region);
+            }
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * @param pageNumber
+     * @return the memory region of the page, NULL if unknown
+     */
+    public String getRegion(int pageNumber) {
+        if ((regions == null) || (pageNumber < 0) || (pageNumber >= regions.length)) return null;
+        return regions[pageNumber];
+    }
+
+    /**
+     * Appends the bytes as hex string without separators, e.g. '0A1B'.
+     *
+     * @param out
+     * @param data
+     * @param dataOffset
+     * @param dataLength
+     * @throws IOException of the Appendable
+     */
+    public static void appendHex(Appendable out, byte[] data, int dataOffset, int dataLength) throws IOException {
+        for (int i = dataOffset; i < dataOffset + dataLength; i++) {
+            int value = data[i] & 0xFF;
+            out.append(HEX_DIGITS[value >>> 4]).append(HEX_DIGITS[value & 0x0F]);
+        }
+    }
+
+    /**
+     * Writes the bytes as hex characters into the buffer.
+     *
+     * @param data
+     * @param dataOffset
+     * @param dataLength
+     * @param dest       needs 2 * dataLength characters from the offset on
+     * @param destOffset
+     * @return the number of characters written
+     */
+    public static int hexInto(byte[] data, int dataOffset, int dataLength, char[] dest, int destOffset) {
+        int position = destOffset;
+        for (int i = dataOffset; i < dataOffset + dataLength; i++) {
+            int value = data[i] & 0xFF;
+            dest[position++] = HEX_DIGITS[value >>> 4];
+            dest[position++] = HEX_DIGITS[value & 0x0F];
+        }
+        return position - destOffset;
+    }
+
+    private void appendRegion(Appendable out, int pageNumber) throws IOException {
+        String region = getRegion(pageNumber);
+        if (region != null) {
+            out.append(SEPARATOR).append(region);
+        }
+    }
+
+    /**
+     * Fills the row buffer with page number, hex and ASCII.
+     *
+     * @return the length of the row
+     */
+    private int formatRow(byte[] data, int offset, int length, int pageNumber) {
+        int position = 0;
+        // the page number with 3 digits, there are no tags with more than 1000 pages
+        row[position++] = (char) ('0' + (pageNumber / 100) % 10);
+        row[position++] = (char) ('0' + (pageNumber / 10) % 10);
+        row[position++] = (char) ('0' + pageNumber % 10);
+        position = separator(position);
+        for (int i = 0; i < BYTES_PER_PAGE; i++) {
+            if (i > 0) row[position++] = ' ';
+            if (i < length) {
+                int value = data[offset + i] & 0xFF;
+                row[position++] = HEX_DIGITS[value >>> 4];
+                row[position++] = HEX_DIGITS[value & 0x0F];
+            } else {
+                row[position++] = ' ';
+                row[position++] = ' ';
+            }
+        }
+        position = separator(position);
+        for (int i = 0; i < BYTES_PER_PAGE; i++) {
+            if (i < length) {
+                int value = data[offset + i] & 0xFF;
+                row[position++] = ((value >= 0x20) && (value < 0x7F)) ? (char) value : NOT_PRINTABLE;
+            } else {
+                row[position++] = ' ';
+            }
+        }
+        return position;
+    }
+
+    private int separator(int position) {
+        for (int i = 0; i < SEPARATOR.length(); i++) {
+            row[position++] = SEPARATOR.charAt(i);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,301 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.bytesToHexNpe;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * This class remembers the Get Version data of identified tags, so the Get Version command can
+ * be skipped for known tags. Tags of the same manufacturing batch share the first bytes of the
+ * UID and have the same Get Version data, so the data is kept for the UID and for the UID prefix
+ * together with ATQA and SAK.
+ * <p>
+ * Confidence rules:
+ * - a UID is trusted after one Get Version response
+ * - a UID prefix is trusted after 'minConfirmations' different tags with the same Get Version
+ * data, a tag with other data marks the prefix as mixed and it is never used again. Another tap
+ * of an already recorded tag is not counted.
+ * - every 'revalidationInterval'-th hit is not answered from the cache, the caller sends the Get
+ * Version command and confirm() compares the response with the cached data. A difference
+ * replaces the data of the UID and marks the prefix as mixed.
+ * <p>
+ * Both the UIDs and the prefixes are limited, the least recently used entry is removed first
+ * (a removed mixed prefix starts again without confirmations).
+ * The cache can be saved to and loaded from a file. The class is thread safe.
+ */
+public class IdentificationCache {
+
+    private static final String TAG = IdentificationCache.class.getSimpleName();
+    public static final int DEFAULT_PREFIX_LENGTH = 4; // manufacturer byte and 3 bytes of the serial number
+    public static final int DEFAULT_MIN_CONFIRMATIONS = 3;
+    public static final int DEFAULT_REVALIDATION_INTERVAL = 32;
+    public static final int DEFAULT_MAX_UID_ENTRIES = 256;
+    public static final int DEFAULT_MAX_BATCH_ENTRIES = 64;
+    private static final int MIXED = -1; // the confirmations of a prefix with different tags
+    // the prefixes and suffixes of the properties in the file
+    private static final String UID_PREFIX = "uid.";
+    private static final String BATCH_PREFIX = "batch.";
+    private static final String VERSION_SUFFIX = ".version";
+    private static final String CONFIRMATIONS_SUFFIX = ".confirmations";
+
+    private static class KnownTag {
+        private byte[] versionData; // NULL for a mixed prefix
+        private int confirmations;
+
+        private KnownTag(byte[] versionData, int confirmations) {
+            this.versionData = versionData;
+            this.confirmations = confirmations;
+        }
+    }
+
+    private final int prefixLength;
+    private final int maxUidEntries;
+    private final int maxBatchEntries;
+    private final LinkedHashMap<String, KnownTag> uids;
+    private final LinkedHashMap<String, KnownTag> batches;
+    private int minConfirmations = DEFAULT_MIN_CONFIRMATIONS;
+    private int revalidationInterval = DEFAULT_REVALIDATION_INTERVAL;
+    private int hitsSinceRevalidation = 0;
+    // statistics
+    private int uidHits;
+    private int batchHits;
+    private int misses;
+    private int revalidations;
+    private int conflicts;
+
+    public IdentificationCache() {
+        this(DEFAULT_PREFIX_LENGTH, DEFAULT_MAX_UID_ENTRIES);
+    }
+
+    /**
+     * @param prefixLength  the number of UID bytes that are shared by a batch
+     * @param maxUidEntries the maximum number of UIDs, the least recently used UID is removed first
+     */
+    public IdentificationCache(int prefixLength, int maxUidEntries) {
+        this(prefixLength, maxUidEntries, DEFAULT_MAX_BATCH_ENTRIES);
+    }
+
+    /**
+     * @param prefixLength    the number of UID bytes that are shared by a batch
+     * @param maxUidEntries   the maximum number of UIDs, the least recently used UID is removed first
+     * @param maxBatchEntries the maximum number of UID prefixes, the least recently used prefix is
+     *                        removed first
+     */
+    public IdentificationCache(int prefixLength, int maxUidEntries, int maxBatchEntries) {
+        this.prefixLength = Math.max(1, prefixLength);
+        this.maxUidEntries = Math.max(1, maxUidEntries);
+        this.maxBatchEntries = Math.max(1, maxBatchEntries);
+        this.uids = new LinkedHashMap<String, KnownTag>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KnownTag> eldest) {
+                return size() > IdentificationCache.this.maxUidEntries;
+            }
+        };
+        this.batches = new LinkedHashMap<String, KnownTag>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KnownTag> eldest) {
+                return size() > IdentificationCache.this.maxBatchEntries;
+            }
+        };
+    }
+
+    /**
+     * @param minConfirmations the number of tags with the same data before a prefix is trusted
+     */
+    public synchronized IdentificationCache setMinConfirmations(int minConfirmations) {
+        this.minConfirmations = Math.max(1, minConfirmations);
+        return this;
+    }
+
+    /**
+     * @param revalidationInterval every n-th hit is checked with a Get Version command, 0 = never
+     */
+    public synchronized IdentificationCache setRevalidationInterval(int revalidationInterval) {
+        this.revalidationInterval = Math.max(0, revalidationInterval);
+        return this;
+    }
+
+    /**
+     * Returns the known Get Version data of the tag. NULL means the Get Version command needs to
+     * be sent, either because the tag is unknown or because this tap is a revalidation sample. In
+     * both cases the response should be given to confirm().
+     *
+     * @param uid
+     * @param atqa
+     * @param sak
+     * @return the Get Version data or NULL
+     */
+    public synchronized byte[] lookup(byte[] uid, byte[] atqa, byte sak) {
+        if (uid == null) return null;
+        KnownTag entry = uids.get(bytesToHexNpe(uid));
+        boolean uidHit = (entry != null);
+        if (!uidHit) {
+            entry = batches.get(batchKey(uid, atqa, sak));
+            if ((entry != null) && (entry.confirmations < minConfirmations)) {
+                // a mixed or not yet trusted prefix
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hitsSinceRevalidation++;
+        if ((revalidationInterval > 0) && (hitsSinceRevalidation >= revalidationInterval)) {
+            hitsSinceRevalidation = 0;
+            revalidations++;
+            return null;
+        }
+        if (uidHit) {
+            uidHits++;
+        } else {
+            batchHits++;
+        }
+        return entry.versionData.clone();
+    }
+
+    /**
+     * Records the Get Version response of a successfully identified tag.
+     *
+     * @param uid
+     * @param atqa
+     * @param sak
+     * @param versionData the response of the Get Version command (after GET_MORE_DATA)
+     */
+    public synchronized void confirm(byte[] uid, byte[] atqa, byte sak, byte[] versionData) {
+        if ((uid == null) || (versionData == null)) return;
+        String uidKey = bytesToHexNpe(uid);
+        KnownTag uidEntry = uids.get(uidKey);
+        if ((uidEntry != null) && (Arrays.equals(uidEntry.versionData, versionData))) {
+            // another tap of a recorded tag (e.g. a revalidation) is no new confirmation of the prefix
+            return;
+        }
+        if (uidEntry != null) {
+            conflicts++;
+            Log.e(TAG, "the cached version data of " + uidKey + " is outdated");
+        }
+        uids.put(uidKey, new KnownTag(versionData.clone(), 1));
+        if (uid.length <= prefixLength) return;
+        String batchKey = batchKey(uid, atqa, sak);
+        KnownTag batchEntry = batches.get(batchKey);
+        if (batchEntry == null) {
+            batches.put(batchKey, new KnownTag(versionData.clone(), 1));
+        } else if (batchEntry.confirmations == MIXED) {
+            // a mixed prefix is never trusted again
+        } else if (Arrays.equals(batchEntry.versionData, versionData)) {
+            batchEntry.confirmations++;
+        } else {
+            conflicts++;
+            Log.e(TAG, "the tags with the UID prefix " + batchKey + " have different version data");
+            batchEntry.versionData = null;
+            batchEntry.confirmations = MIXED;
+        }
+    }
+
+    public synchronized void remove(byte[] uid) {
+        if (uid == null) return;
+        uids.remove(bytesToHexNpe(uid));
+    }
+
+    public synchronized void clear() {
+        uids.clear();
+        batches.clear();
+        hitsSinceRevalidation = 0;
+    }
+
+    public synchronized int getUidHits() {
+        return uidHits;
+    }
+
+    public synchronized int getBatchHits() {
+        return batchHits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    public synchronized int getRevalidations() {
+        return revalidations;
+    }
+
+    public synchronized int getConflicts() {
+        return conflicts;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "uids: " + uids.size() + " batches: " + batches.size() + " uidHits: " + uidHits
+                + " batchHits: " + batchHits + " misses: " + misses + " revalidations: " + revalidations
+                + " conflicts: " + conflicts;
+    }
+
+    private String batchKey(byte[] uid, byte[] atqa, byte sak) {
+        // prefix-atqa-sak
+        return bytesToHexNpe(Arrays.copyOf(uid, Math.min(prefixLength, uid.length))) + "-"
+                + bytesToHexNpe(atqa) + "-" + bytesToHexNpe(new byte[]{sak});
+    }
+
+    /*
+        persistence, the file is a properties file with the UID or batch key, the values are hex
+        encoded. The least recently used order of the UIDs is not kept.
+     */
+
+    public synchronized void save(File file) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, KnownTag> mapEntry : uids.entrySet()) {
+            properties.setProperty(UID_PREFIX + mapEntry.getKey() + VERSION_SUFFIX, bytesToHexNpe(mapEntry.getValue().versionData));
+        }
+        for (Map.Entry<String, KnownTag> mapEntry : batches.entrySet()) {
+            KnownTag entry = mapEntry.getValue();
+            String key = BATCH_PREFIX + mapEntry.getKey();
+            if (entry.versionData != null) {
+                properties.setProperty(key + VERSION_SUFFIX, bytesToHexNpe(entry.versionData));
+            }
+            properties.setProperty(key + CONFIRMATIONS_SUFFIX, String.valueOf(entry.confirmations));
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "identified tags by UID and UID prefix");
+        }
+    }
+
+    public synchronized void load(File file) throws IOException {
+        if (!file.exists()) return;
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            try {
+                if ((name.startsWith(UID_PREFIX)) && (name.endsWith(VERSION_SUFFIX))) {
+                    String key = name.substring(UID_PREFIX.length(), name.length() - VERSION_SUFFIX.length());
+                    uids.put(key, new KnownTag(hexStringToByteArray(properties.getProperty(name)), 1));
+                } else if ((name.startsWith(BATCH_PREFIX)) && (name.endsWith(CONFIRMATIONS_SUFFIX))) {
+                    String key = name.substring(BATCH_PREFIX.length(), name.length() - CONFIRMATIONS_SUFFIX.length());
+                    int confirmations = Integer.parseInt(properties.getProperty(name));
+                    String versionData = properties.getProperty(BATCH_PREFIX + key + VERSION_SUFFIX);
+                    if (versionData == null) {
+                        batches.put(key, new KnownTag(null, MIXED));
+                    } else {
+                        batches.put(key, new KnownTag(hexStringToByteArray(versionData), confirmations));
+                    }
+                }
+            } catch (RuntimeException e) {
+                // a missing or invalid value
+                Log.e(TAG, "invalid identification cache entry " + name + " skipped");
+            }
+        }
+    }
+}
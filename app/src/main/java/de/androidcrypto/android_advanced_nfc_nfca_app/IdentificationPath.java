@@ -0,0 +1,35 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * The way a tag was identified by TagInformation. The path shows how many commands were needed
+ * for the identification, e.g. to compare the time of a tap with and without the Capability
+ * Container fast path.
+ */
+public enum IdentificationPath {
+
+    NONE("not identified", 0),
+    CAPABILITY_CONTAINER("Capability Container (READ of page 00)", 1),
+    GET_VERSION("Get Version command", 1),
+    CACHED_VERSION_DATA("cached Get Version data", 0), // TagMemoryCache or IdentificationCache
+    ATQA_SAK("ATQA and SAK", 0);
+
+    private final String description;
+    private final int commands;
+
+    IdentificationPath(String description, int commands) {
+        this.description = description;
+        this.commands = commands;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the number of commands sent for this path, the READ of page 00 is needed anyway in
+     * the app so the Capability Container path saves the Get Version command
+     */
+    public int getCommands() {
+        return commands;
+    }
+}
@@ -1,24 +1,9 @@
 package de.androidcrypto.android_advanced_nfc_nfca_app;
 
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.checkResponse;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.fastReadPage;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.getMoreData;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.getVersion;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.increaseCounterByOne;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.lastExceptionString;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.readCounter;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.readCounterInt;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.readFullTag;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.readPage;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.readSignature;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.resolveCheckResponse;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.writeBulkData;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.writePage;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.byteToHex;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.bytesToHexNpe;
 import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.concatenateByteArrays;
 import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.getTimestamp4Bytes;
 import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.intFrom3ByteArrayLsb;
 import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.printData;
 
 import android.content.Intent;
@@ -27,8 +12,11 @@ import android.media.ToneGenerator;
 import android.nfc.NfcAdapter;
 import android.nfc.Tag;
 import android.nfc.tech.NfcA;
+import android.os.Build;
 import android.os.Bundle;
 import android.provider.Settings;
+import android.util.Log;
+import android.widget.CheckBox;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -38,16 +26,49 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 public class MainActivity extends AppCompatActivity implements NfcAdapter.ReaderCallback {
 
+    private static final String TAG = MainActivity.class.getSimpleName();
     private TextView textView;
     private NfcAdapter myNfcAdapter;
     private TagInformation ti;
     boolean tagIdentificationAtqaSakSuccess = false; // identification on ATQA & SAK if Get Version fails
+    // learns the largest working FAST_READ chunk for this device and the tag types
+    private final FastReadChunkPlanner fastReadChunkPlanner = new FastReadChunkPlanner();
+    private static final String FAST_READ_CHUNKS_FILE_NAME = "fast_read_chunks.properties";
+    // known tags are validated with one command instead of reading them again
+    private final TagMemoryCache tagMemoryCache = new TagMemoryCache();
+    private static final String TAG_MEMORY_CACHE_FILE_NAME = "tag_memory_cache.properties";
+    // the Get Version data of known tags and tag batches, the command is skipped for them
+    private final IdentificationCache identificationCache = new IdentificationCache();
+    private static final String IDENTIFICATION_CACHE_FILE_NAME = "identification_cache.properties";
+    // the pages of interrupted full reads, the next tap of the tag reads the missing pages only
+    private final ResumableTagReader resumableTagReader = new ResumableTagReader()
+            .setFastReadChunkPlanner(fastReadChunkPlanner, Build.MANUFACTURER + " " + Build.MODEL);
+    private static final String PARTIAL_TAG_IMAGES_FILE_NAME = "partial_tag_images.properties";
+    // interrupted write jobs, the next tap of the tag continues the job
+    private final ResumableTagWriter resumableTagWriter = new ResumableTagWriter();
+    private static final String WRITE_JOBS_FILE_NAME = "write_jobs.properties";
+    // the parsing, rendering and storing runs in worker threads, the reader thread talks to the tag only
+    private final ScanPipeline scanPipeline = new ScanPipeline();
+    // for access control style use: only UID, tag type and NFC counter with the fewest frames,
+    // set by the check box on the UI thread and read on the reader thread
+    private volatile boolean quickScanMode = false;
+    private final QuickScan quickScan = new QuickScan(identificationCache, tagMemoryCache);
+    // the tasks of a scan are scheduled by priority, a briefly tapped tag gets the important tasks first
+    private static final String TASK_IDENTIFY = "identify";
+    private static final String TASK_WRITE_PAGE_04 = "writePage04";
+    private static final String TASK_WRITE_BULK_DATA_PAGE_05 = "writeBulkDataPage05";
+    // the reads run before the writes, the identification runs first as all tasks depend on it
+    private static final int PRIORITY_IDENTIFY = 100;
+    private static final int PRIORITY_READ = 80;
+    private static final int PRIORITY_WRITE = 60;
+    private static final long SCAN_TIME_BUDGET_MICROS = 400_000;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -60,7 +81,17 @@ public class MainActivity extends AppCompatActivity implements NfcAdapter.Reader
             return insets;
         });
         textView = findViewById(R.id.textView);
+        CheckBox quickScanCheckBox = findViewById(R.id.quickScanCheckBox);
+        quickScanCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> quickScanMode = isChecked);
         myNfcAdapter = NfcAdapter.getDefaultAdapter(this);
+        // the caches are loaded on the storage stage of the pipeline, not on the UI thread
+        scanPipeline.store(() -> {
+            runCacheFileAction(fastReadChunkPlanner::load, FAST_READ_CHUNKS_FILE_NAME, "load the FAST_READ chunk sizes");
+            runCacheFileAction(tagMemoryCache::load, TAG_MEMORY_CACHE_FILE_NAME, "load the tag memory cache");
+            runCacheFileAction(identificationCache::load, IDENTIFICATION_CACHE_FILE_NAME, "load the identification cache");
+            runCacheFileAction(resumableTagReader::load, PARTIAL_TAG_IMAGES_FILE_NAME, "load the partial tag images");
+            runCacheFileAction(resumableTagWriter::load, WRITE_JOBS_FILE_NAME, "load the write jobs");
+        });
     }
 
     /**
@@ -74,49 +105,60 @@ public class MainActivity extends AppCompatActivity implements NfcAdapter.Reader
      */
     @Override
     public void onTagDiscovered(Tag tag) {
-        String output = "";
-        String chapterDivider = "==============================";
-        String lineDivider = "------------------------------";
-        output += chapterDivider + "\n";
-        output += "Android Advanced NFC NfcA App" + "\n";
-        output += "NFC tag detected" + "\n";
+        long tapStartNanos = System.nanoTime();
+        if (quickScanMode) {
+            runQuickScan(tag, tapStartNanos);
+            return;
+        }
+        // the report is shown and logged section by section while the tasks are running, the
+        // sections are rendered on the render stage of the pipeline
+        ScanReportTextRenderer textRenderer = new ScanReportTextRenderer();
+        ScanReport report = new ScanReport()
+                .addListener(scanPipeline.onRenderStage(new ScanReportLogger(textRenderer)))
+                .addListener(scanPipeline.onRenderStage(createDisplayListener(textRenderer)));
+        report.section("Android Advanced NFC NfcA App");
+        report.text("NFC tag detected");
 
         // examine tag
         byte[] tagUid = tag.getId();
-        output += "Tag UID of the discovered tag\n" + printData("UID", tagUid) + "\n";
+        report.text("Tag UID of the discovered tag");
+        report.bytes("UID", tagUid);
         String[] techlist = tag.getTechList();
-        output += lineDivider + "\n";
-        output += "The TechList contains " + techlist.length + " entry/ies:" + "\n";
+        report.divider();
+        report.text("The TechList contains " + techlist.length + " entry/ies:");
         for (int i = 0; i < techlist.length; i++) {
-            output += "Entry " + i + ": " + techlist[i] + "\n";
+            report.text("Entry " + i + ": " + techlist[i]);
         }
-        output += lineDivider + "\n";
-        output += tag.toString() + "\n";
-        output += lineDivider + "\n";
+        report.divider();
+        report.text(tag.toString());
+        report.divider();
         // if the tag uses the NfcA class I'm connecting the tag now this class
         // I'm trying to use the NfcA class, if it is not supported by the tag an exception is thrown
         NfcA nfcA = null;
         nfcA = NfcA.get(tag);
         if (nfcA == null) {
-            output += "This tag is NOT supporting the NfcA class, aborted" + "\n";
-            output += chapterDivider + "\n";
+            report.text("This tag is NOT supporting the NfcA class, aborted");
         } else {
             // I'm trying to get more information's about the tag and connect to the tag
             byte[] atqa = nfcA.getAtqa();
             byte sak = (byte) nfcA.getSak();
             int maxTransceiveLength = nfcA.getMaxTransceiveLength();
-            output += "-= NfcA Technology data =-" + "\n";
-            output += "ATQA: " + bytesToHexNpe(atqa) + "\n";
-            output += "SAK: " + byteToHex(sak) + "\n";
-            output += "maxTransceiveLength: " + maxTransceiveLength + "\n";
-            output += lineDivider + "\n";
+            report.section("-= NfcA Technology data =-");
+            report.hex("ATQA", atqa);
+            report.hex("SAK", new byte[]{sak});
+            report.row("maxTransceiveLength", maxTransceiveLength);
+            report.divider();
 
             // instantiate a TagInformation object
             ti = new TagInformation(tagUid, atqa, sak, maxTransceiveLength, techlist);
+            // all commands are sent in a session with the tag, the session holds the last error
+            TagSession tagSession = new TagSession(new AndroidNfcATransceiver(nfcA));
+            // the writes are repeated after short RF glitches, see RetryPolicy
+            RetryingTagSession retryingTagSession = new RetryingTagSession(tagSession, new RetryPolicy());
 
             try {
                 nfcA.connect();
-                output += "Connected to the tag using NfcA technology" + "\n";
+                report.text("Connected to the tag using NfcA technology");
                 // in connected state we are doing all our jobs
 
                 boolean runGetVersion = true; // don't skip this as we need the tag data for later working
@@ -130,374 +172,652 @@ public class MainActivity extends AppCompatActivity implements NfcAdapter.Reader
                 boolean runReadSignature = true;
                 boolean runFastReadComplete = true;
 
-                output += chapterDivider + "\n";
-                output += "==== Tasks Overview ====" + "\n";
-                output += "= Get Version           " + runGetVersion + "\n";
-                output += "= Read Pages 0..3       " + runReadPages03 + "\n";
-                output += "= Read Pages 4..7       " + runReadPages47 + "\n";
-                output += "= FastRead Pages 00-12  " + runFastRead0012 + "\n";
-                //output += "= FastRead compl.Tag    " + runFastReadComplete + "\n";
-                output += "= Write Page 04         " + runWritePage04 + "\n";
-                output += "= Wr. Bulk Data Page 05 " + runWriteBulkDataPage05 + "\n";
-                output += "= Read Counter          " + runReadCounter + "\n";
-                output += "= Increase Counter 0    " + runIncreaseCounter0 + "\n";
-                output += "= Read Signature        " + runReadSignature + "\n";
-                output += "= FastRead compl.Tag    " + runFastReadComplete + "\n";
-                output += "==== Tasks Overview End ====" + "\n";
-
-                if (runGetVersion) {
-                    // run a 'get version' command
-                    output += chapterDivider + "\n";
-                    output += "GET VERSION data" + "\n";
-                    output += "Run the GetVersion command and tries to identify the tag" + "\n";
-                    byte[] getVersionData = getVersion(nfcA);
-                    // Get Version data: 0004040201001303
-                    boolean getVersionSuccess = false;
-                    tagIdentificationAtqaSakSuccess = false;
-                    if (getVersionData == null) {
-                        output += "Could not read the version of the tag, maybe it is read protected or does not provide a Get Version command ?" + "\n";
-                        output += "Exception from operation: " + lastExceptionString + "\n";
-                        // try to identify the tag by atqa and sak values
-                        tagIdentificationAtqaSakSuccess = ti.identifyTagOnAtqaSak();
-                        //System.out.println("Tag Identification: " + tagIdentificationAtqaSakSuccess);
+                // the tasks of the scan, all tasks need the tag identification. The scheduler runs the
+                // ready task with the highest priority first: the identification and the reads come
+                // before the writes, so a tag that leaves the field early is at least read completely.
+                // Tasks that need the result of another task (the verification of the written pages)
+                // depend on it.
+                ScanState state = new ScanState();
+                TagMemoryCache.CachedTag cachedTag = tagMemoryCache.get(tagUid);
+                // the written pages are verified after writing with a few read commands
+                WriteVerifier writeVerifier = new WriteVerifier();
+                ScanTaskScheduler scheduler = new ScanTaskScheduler();
+                // don't skip this as we need the tag data for later working
+                scheduler.add(new ScanTask(TASK_IDENTIFY, "Get Version", () -> {
+                    // a known tag is validated with one command, if it is unchanged the version data,
+                    // signature and full content are taken from the cache
+                    if (cachedTag != null) {
+                        state.tagIsCached = tagMemoryCache.validate(tagSession, cachedTag);
+                        report.section("The tag is known from a previous tap, the cached data is " + (state.tagIsCached ? "unchanged" : "outdated"));
+                        if (!state.tagIsCached) {
+                            tagMemoryCache.remove(tagUid);
+                        }
+                    }
+                    // an NDEF formatted tag may be identified by the Capability Container in page 03,
+                    // in this case the Get Version command is skipped
+                    long identificationStartNanos = System.nanoTime();
+                    boolean identifyTagOnCapabilityContainerSuccess = false;
+                    if (ti.canIdentifyOnCapabilityContainer()) {
+                        byte[] pagesData00 = new byte[16];
+                        boolean readPage00Success = false;
+                        if (!state.tagIsCached) {
+                            CommandStatus readStatus = tagSession.readPageInto(0, pagesData00, 0);
+                            readPage00Success = readStatus.isSuccess();
+                            if (readPage00Success) {
+                                state.pagesData00FromTag = pagesData00;
+                            }
+                            if (readStatus.needsReconnect()) {
+                                tagSession.reconnect();
+                            }
+                        } else if (cachedTag.getVersionData() == null) {
+                            // the tag was identified by the Capability Container on the last tap
+                            System.arraycopy(cachedTag.getContent(), 0, pagesData00, 0, 16);
+                            readPage00Success = true;
+                        }
+                        if (readPage00Success) {
+                            identifyTagOnCapabilityContainerSuccess = ti.identifyTagOnCapabilityContainer(pagesData00, 0);
+                        }
+                    }
 
+                    if (identifyTagOnCapabilityContainerSuccess) {
+                        report.section("GET VERSION data");
+                        report.text("The tag is identified by the Capability Container, the GetVersion command is skipped");
+                        report.text("Tag is of type " + ti.tagMinorName + " with " + ti.userMemory + " bytes user memory");
                     } else {
-                        /**
-                         * We got a response but need to check the response data
-                         * in case everything was ok we received the 8 bytes long version data
-                         * but there is a special case: newer NFC tags from NXP will give more
-                         * information on the getVersionCommand that get be included in the 8
-                         * bytes response. This is indicated by a trailing "AF" in the response:
-                         * Example from MIFARE DESFire EV3:
-                         * Get Version data: AF04010133001605
-                         * In this case the card asks the reader to get more data by sending
-                         * an "0xAF" command.
-                         * This is implemented in the following lines
-                         */
-                        //System.out.println(printData("getVersionData", getVersionData));
-                        if (getVersionData[0] == (byte) 0xAF) {
-                            output += "Received an 'AF' request -> asking for more data" + "\n";
-                            // we need to repeat the 'more data' command until no more data is provided
-                            byte[] moreData = getMoreData(nfcA);
-                            // skip the trailing 'AF' and concatenate it with moreData to get the full get version data
-                            byte[] shortedGetVersionData = Arrays.copyOfRange(getVersionData, 1, getVersionData.length);
-                            //System.out.println(printData("shortedGetVersionData", shortedGetVersionData));
-                            getVersionData = concatenateByteArrays(Arrays.copyOfRange(getVersionData, 1, getVersionData.length), moreData);
+                        // run a 'get version' command
+                        report.section("GET VERSION data");
+                        report.text("Run the GetVersion command and tries to identify the tag");
+                        byte[] getVersionData;
+                        boolean versionDataIsKnown = true; // taken from one of the caches
+                        if ((state.tagIsCached) && (cachedTag.getVersionData() != null)) {
+                            report.text("The version data is taken from the cache");
+                            getVersionData = cachedTag.getVersionData();
+                        } else {
+                            getVersionData = identificationCache.lookup(tagUid, atqa, sak);
+                            if (getVersionData != null) {
+                                report.text("The version data is taken from the identification cache (known tag or tag batch)");
+                            } else {
+                                getVersionData = tagSession.getVersion();
+                                versionDataIsKnown = false;
+                            }
                         }
-                        // in all other cases something went wrong, but those responses are tag type specific
-                        if (getVersionData.length > 2) {
-                            output += "Get Version data: " + bytesToHexNpe(getVersionData) + "\n";
-                            //output += "\n" + new String(pagesData, StandardCharsets.UTF_8) + "\n";
-                            getVersionSuccess = true;
-                            ti.tagHasGetVersionCommand = true;
-                        } else if (Arrays.equals(getVersionData, hexStringToByteArray("04"))) {
-                            output += "You probably tried to read a MIFARE Classic tag. This is possible after a successful authentication only." + "\n";
-                            output += "received response: " + bytesToHexNpe(getVersionData) + "\n";
-                            getVersionSuccess = false;
-                            // try to identify the tag by atqa and sak values
-                            tagIdentificationAtqaSakSuccess = ti.identifyTagOnAtqaSak();
-                            //System.out.println("Tag Identification 04: " + tagIdentificationAtqaSakSuccess);
-                        } else if (Arrays.equals(getVersionData, hexStringToByteArray("1C"))) {
-                            output += "You probably tried to read a MIFARE DESFire tag. This is possible using another workflow only." + "\n";
-                            output += "received response: " + bytesToHexNpe(getVersionData) + "\n";
-                            getVersionSuccess = false;
-                            // try to identify the tag by atqa and sak values
-                            tagIdentificationAtqaSakSuccess = ti.identifyTagOnAtqaSak();
-                            //System.out.println("Tag Identification 1C: " + tagIdentificationAtqaSakSuccess);
-                        } else if (Arrays.equals(getVersionData, hexStringToByteArray("6700"))) {
-                            output += "You probably tried to read a Credit Card tag. This is possible using another workflow only." + "\n";
-                            output += "received response: " + bytesToHexNpe(getVersionData) + "\n";
-                            getVersionSuccess = false;
+                        // Get Version data: 0004040201001303
+                        boolean getVersionSuccess = false;
+                        tagIdentificationAtqaSakSuccess = false;
+                        if (getVersionData == null) {
+                            report.text("Could not read the version of the tag, maybe it is read protected or does not provide a Get Version command ?");
+                            report.text("Exception from operation: " + tagSession.getLastErrorString());
                             // try to identify the tag by atqa and sak values
                             tagIdentificationAtqaSakSuccess = ti.identifyTagOnAtqaSak();
-                            //System.out.println("Tag Identification 6700: " + tagIdentificationAtqaSakSuccess);
+                            //System.out.println("Tag Identification: " + tagIdentificationAtqaSakSuccess);
+
                         } else {
-                            getVersionSuccess = false;
-                            output += "The tag responded with an unknown response. You need to read the data sheet of the tag to find out to read that tag, sorry." + "\n";
-                            output += "received response: " + bytesToHexNpe(getVersionData) + "\n";
+                            /**
+                             * We got a response but need to check the response data
+                             * in case everything was ok we received the 8 bytes long version data
+                             * but there is a special case: newer NFC tags from NXP will give more
+                             * information on the getVersionCommand that get be included in the 8
+                             * bytes response. This is indicated by a trailing "AF" in the response:
+                             * Example from MIFARE DESFire EV3:
+                             * Get Version data: AF04010133001605
+                             * In this case the card asks the reader to get more data by sending
+                             * an "0xAF" command.
+                             * This is implemented in the following lines
+                             */
+                            //System.out.println(printData("getVersionData", getVersionData));
+                            if (getVersionData[0] == (byte) 0xAF) {
+                                report.text("Received an 'AF' request -> asking for more data");
+                                // we need to repeat the 'more data' command until no more data is provided
+                                byte[] moreData = tagSession.getMoreData();
+                                // skip the trailing 'AF' and concatenate it with moreData to get the full get version data
+                                byte[] shortedGetVersionData = Arrays.copyOfRange(getVersionData, 1, getVersionData.length);
+                                //System.out.println(printData("shortedGetVersionData", shortedGetVersionData));
+                                getVersionData = concatenateByteArrays(Arrays.copyOfRange(getVersionData, 1, getVersionData.length), moreData);
+                            }
+                            // in all other cases something went wrong, but those responses are tag type specific
+                            if (getVersionData.length > 2) {
+                                report.hex("Get Version data", getVersionData);
+                                //report.text(new String(pagesData, StandardCharsets.UTF_8));
+                                getVersionSuccess = true;
+                                ti.tagHasGetVersionCommand = true;
+                            } else if (Arrays.equals(getVersionData, hexStringToByteArray("04"))) {
+                                report.text("You probably tried to read a MIFARE Classic tag. This is possible after a successful authentication only.");
+                                report.hex("received response", getVersionData);
+                                getVersionSuccess = false;
+                                // try to identify the tag by atqa and sak values
+                                tagIdentificationAtqaSakSuccess = ti.identifyTagOnAtqaSak();
+                                //System.out.println("Tag Identification 04: " + tagIdentificationAtqaSakSuccess);
+                            } else if (Arrays.equals(getVersionData, hexStringToByteArray("1C"))) {
+                                report.text("You probably tried to read a MIFARE DESFire tag. This is possible using another workflow only.");
+                                report.hex("received response", getVersionData);
+                                getVersionSuccess = false;
+                                // try to identify the tag by atqa and sak values
+                                tagIdentificationAtqaSakSuccess = ti.identifyTagOnAtqaSak();
+                                //System.out.println("Tag Identification 1C: " + tagIdentificationAtqaSakSuccess);
+                            } else if (Arrays.equals(getVersionData, hexStringToByteArray("6700"))) {
+                                report.text("You probably tried to read a Credit Card tag. This is possible using another workflow only.");
+                                report.hex("received response", getVersionData);
+                                getVersionSuccess = false;
+                                // try to identify the tag by atqa and sak values
+                                tagIdentificationAtqaSakSuccess = ti.identifyTagOnAtqaSak();
+                                //System.out.println("Tag Identification 6700: " + tagIdentificationAtqaSakSuccess);
+                            } else {
+                                getVersionSuccess = false;
+                                report.text("The tag responded with an unknown response. You need to read the data sheet of the tag to find out to read that tag, sorry.");
+                                report.hex("received response", getVersionData);
+                            }
                         }
-                    }
 
-                    // analyze the get version data
-                    output += lineDivider + "\n";
-                    if (getVersionSuccess) {
-                        output += "Analyze the get version data" + "\n";
-                        boolean identifyTagOnGetVersionSuccess = ti.identifyTagOnGetVersion(getVersionData);
-                        output += "Result of tag identification: " + identifyTagOnGetVersionSuccess + "\n";
-                        if (identifyTagOnGetVersionSuccess) {
-                            //output += "Tag is of type " + ti.tagMinorName + " with " + ti.userMemory + " bytes user memory" + "\n";
-                            if (getVersionData.length == 8) {
-                                output += ti.tagVersionData.dump8Bytes();
+                        // analyze the get version data
+                        report.divider();
+                        if (getVersionSuccess) {
+                            state.versionDataForCache = getVersionData;
+                            report.text("Analyze the get version data");
+                            boolean identifyTagOnGetVersionSuccess;
+                            if (versionDataIsKnown) {
+                                identifyTagOnGetVersionSuccess = ti.identifyTagOnKnownVersionData(getVersionData);
                             } else {
-                                output += ti.tagVersionData.dump();
+                                identifyTagOnGetVersionSuccess = ti.identifyTagOnGetVersion(getVersionData);
+                                if (identifyTagOnGetVersionSuccess) {
+                                    // the next tag of the same batch can skip the Get Version command
+                                    identificationCache.confirm(tagUid, atqa, sak, getVersionData);
+                                }
+                            }
+                            report.text("Result of tag identification: " + identifyTagOnGetVersionSuccess);
+                            if (identifyTagOnGetVersionSuccess) {
+                                //report.text("Tag is of type " + ti.tagMinorName + " with " + ti.userMemory + " bytes user memory");
+                                // parsed by VersionInfo on the render stage
+                                report.versionData("Get Version data", getVersionData);
+                            }
+                            report.text("Tag is of type " + ti.tagMinorName + " with " + ti.userMemory + " bytes user memory");
+                        } else {
+                            report.text("Analyzing of the get version data skipped, using ATQA & SAK for tag identification");
+                            if (tagIdentificationAtqaSakSuccess) {
+                                report.text("Tag is probably of type " + ti.tagMinorName + " with " + ti.userMemory + " bytes user memory");
                             }
-                        }
-                        output += "Tag is of type " + ti.tagMinorName + " with " + ti.userMemory + " bytes user memory" + "\n";
-                    } else {
-                        output += "Analyzing of the get version data skipped, using ATQA & SAK for tag identification" + "\n";
-                        if (tagIdentificationAtqaSakSuccess) {
-                            output += "Tag is probably of type " + ti.tagMinorName + " with " + ti.userMemory + " bytes user memory" + "\n";
                         }
                     }
-                } else {
-                    output += "This tag is not of type NTAG21x, MIFARE Ultralight EV1 or MIFARE Ultralight C. The further processing is stopped.GetVersion command skipped. Without positive tag identification I can't work properly with the tag, aborted." + "\n";
-                    return;
-                }
-
-                if (!ti.isTag_NfcA_Library_Capable) {
-                    // this tag is not of type NTAG21x, MIFARE Ultralight EV1 or MIFARE Ultralight C tag type
-                    output += chapterDivider + "\n";
-                    output += "This tag is not of type NTAG21x, MIFARE Ultralight EV or MIFARE Ultralight C. The further tasks are skipped" + "\n";
-                } else {
 
-                    if (runReadPages03) {
-                        // read a page from the tag
-                        if (ti.userMemory > 16) {
-                            // restricted to NTAG21x and MIFARE Ultralight EV1
-                            //if ((ti.isTag_NTAG21x) || (ti.isTag_MIFARE_ULTRALIGHT_EV1)) {
-                            output += chapterDivider + "\n";
-                            if (ti.userMemory > 0) {
-                                output += "Read pages from page 00" + "\n";
-                                output += "Uses the READ command for accessing the content of the pages 0, 1, 2 and 3" + "\n";
-                                byte[] pagesData = readPage(nfcA, 00); // page 04 is the first page of the user memory
-                                boolean readSuccess = false;
-                                if (pagesData == null) {
-                                    output += "Could not read the content of the tag, maybe it is read protected ?" + "\n";
-                                    output += "Exception from operation: " + lastExceptionString + "\n";
-                                } else {
-                                    // we got a response but need to check the response data
-                                    // in case everything was ok we received the full content of 4 pages = 16 bytes
-                                    // in all other cases something went wrong, but those responses are tag type specific
-                                    if (pagesData.length == 16) {
-                                        output += "data from pages 0, 1, 2 and 3: " + bytesToHexNpe(pagesData) + "\n";
-                                        output += "ASCII: " + new String(pagesData, StandardCharsets.UTF_8) + "\n";
-                                        readSuccess = true;
-                                    } else {
-                                        output += "The tag responded with a response indicating that something went wrong. You need to read the data sheet of the tag to find out to read that tag, sorry." + "\n";
-                                        output += "received response: " + bytesToHexNpe(pagesData) + "\n";
-                                    }
-                                }
+                    report.text("Tag identification by " + ti.getIdentificationPath().getDescription() + " took "
+                            + ((System.nanoTime() - identificationStartNanos) / 1000) + " microseconds");
+                    // the page dumps show the memory regions of the identified tag, the text renderer
+                    // is used on the render stage only
+                    HexDumpRenderer hexDumpRenderer = new HexDumpRenderer(ti);
+                    scanPipeline.render(() -> textRenderer.setHexDumpRenderer(hexDumpRenderer));
+                    // READ_CNT is answered with a NAK (and a reconnect) when the NFC counter is not enabled
+                    // (the factory setting) or password protected, so the counter is read only when the
+                    // configuration pages of the validated cached content show an enabled counter.
+                    // Otherwise the tag is cached without a counter and validated by the fingerprint page
+                    if ((ti.isTag_NTAG21x) && (state.tagIsCached) && (isNfcCounterReadable(ti, cachedTag))) {
+                        // the NFC counter is increased by the first READ or FAST_READ of a tap, so the
+                        // counter for the cache is read right after that READ. A cached tag may be
+                        // validated without a READ, in this case page 00 is read here and reused by the
+                        // 'Read Pages 0..3' task
+                        if (state.pagesData00FromTag == null) {
+                            byte[] pagesData00 = new byte[16];
+                            CommandStatus readStatus = tagSession.readPageInto(0, pagesData00, 0);
+                            if (readStatus.isSuccess()) {
+                                state.pagesData00FromTag = pagesData00;
+                            } else if (readStatus.needsReconnect()) {
+                                tagSession.reconnect();
+                            }
+                        }
+                        if (state.pagesData00FromTag != null) {
+                            state.nfcCounterResponse = tagSession.readCounter(TagMemoryCache.NFC_COUNTER_NUMBER);
+                            if ((state.nfcCounterResponse != null) && (state.nfcCounterResponse.length == 3)) {
+                                state.nfcCounterForCache = intFrom3ByteArrayLsb(state.nfcCounterResponse);
                             } else {
-                                output += "The tag is not readable by the READ command, sorry." + "\n";
+                                // a NAK when the configuration was changed since the last tap, the tag is in HALT state
+                                tagSession.reconnect();
                             }
-                        } else {
-                            output += chapterDivider + "\n";
-                            output += "Read Page is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped" + "\n";
                         }
                     }
+                    if (!ti.isTag_NfcA_Library_Capable) {
+                        // this tag is not of type NTAG21x, MIFARE Ultralight EV1 or MIFARE Ultralight C tag type
+                        report.section("This tag is not of type NTAG21x, MIFARE Ultralight EV1 or MIFARE Ultralight C. The further tasks are skipped");
+                        return false;
+                    }
+                    return true;
+                })
+                        .setEnabled(runGetVersion)
+                        .setPriority(PRIORITY_IDENTIFY)
+                        .setRfCost((tagInfo, timingModel) -> timingModel.dataFrameMicros(2, 16) + timingModel.dataFrameMicros(1, 8)));
 
-                    if (runReadPages47) {
-                        // read a page from the tag
-                        if (ti.userMemory > 16) {
-                            // restricted to NTAG21x and MIFARE Ultralight EV1
-                            //if ((ti.isTag_NTAG21x) || (ti.isTag_MIFARE_ULTRALIGHT_EV1)) {
-                            output += chapterDivider + "\n";
-                            if (ti.userMemory > 0) {
-                                output += "Read pages from page 04" + "\n";
-                                output += "Uses the READ command for accessing the content of the pages 4, 5, 6 and 7" + "\n";
-                                byte[] pagesData = readPage(nfcA, 4); // page 04 is the first page of the user memory
-                                boolean readSuccess = false;
-                                if (pagesData == null) {
-                                    output += "Could not read the content of the tag, maybe it is read protected ?" + "\n";
-                                    output += "Exception from operation: " + lastExceptionString + "\n";
-                                } else {
-                                    // we got a response but need to check the response data
-                                    // in case everything was ok we received the full content of 4 pages = 16 bytes
-                                    // in all other cases something went wrong, but those responses are tag type specific
-                                    if (pagesData.length == 16) {
-                                        output += "data from pages 4, 5, 6 and 7: " + bytesToHexNpe(pagesData) + "\n";
-                                        output += "ASCII: " + new String(pagesData, StandardCharsets.UTF_8) + "\n";
-                                        readSuccess = true;
-                                    } else {
-                                        output += "The tag responded with a response indicating that something went wrong. You need to read the data sheet of the tag to find out to read that tag, sorry." + "\n";
-                                        output += "received response: " + bytesToHexNpe(pagesData) + "\n";
-                                    }
-                                }
+                // read a page from the tag
+                scheduler.add(new ScanTask("readPages03", "Read Pages 0..3", () -> {
+                    // restricted to NTAG21x and MIFARE Ultralight EV1
+                    //if ((ti.isTag_NTAG21x) || (ti.isTag_MIFARE_ULTRALIGHT_EV1)) {
+                    report.section("Read pages from page 00");
+                    if (ti.userMemory > 0) {
+                        report.text("Uses the READ command for accessing the content of the pages 0, 1, 2 and 3");
+                        byte[] pagesData;
+                        if (state.pagesData00FromTag != null) {
+                            // the pages were read for the tag identification
+                            pagesData = state.pagesData00FromTag;
+                        } else {
+                            pagesData = tagSession.readPage(00); // page 04 is the first page of the user memory
+                        }
+                        boolean readSuccess = false;
+                        if (pagesData == null) {
+                            report.text("Could not read the content of the tag, maybe it is read protected ?");
+                            report.text("Exception from operation: " + tagSession.getLastErrorString());
+                        } else {
+                            // we got a response but need to check the response data
+                            // in case everything was ok we received the full content of 4 pages = 16 bytes
+                            // in all other cases something went wrong, but those responses are tag type specific
+                            if (pagesData.length == 16) {
+                                report.hex("data from pages 0, 1, 2 and 3", pagesData);
+                                report.ascii("ASCII", pagesData);
+                                readSuccess = true;
                             } else {
-                                output += "The tag is not readable by the READ command, sorry." + "\n";
+                                report.text("The tag responded with a response indicating that something went wrong. You need to read the data sheet of the tag to find out to read that tag, sorry.");
+                                report.hex("received response", pagesData);
                             }
-                        } else {
-                            output += chapterDivider + "\n";
-                            output += "Read Page is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped" + "\n";
                         }
+                    } else {
+                        report.text("The tag is not readable by the READ command, sorry.");
                     }
+                    return true;
+                })
+                        .setEnabled(runReadPages03)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_READ + 5)
+                        .setPrecondition(tagInfo -> tagInfo.userMemory > 16,
+                                "Read Page is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped")
+                        .setRfCost((tagInfo, timingModel) -> timingModel.dataFrameMicros(2, 16)));
 
-                    if (runFastRead0012) {
-                        // fast read the pages 00-12 tag content
-                        // restricted to NTAG21x and MIFARE Ultralight EV1
-                        if ((ti.isTag_NTAG21x) || (ti.isTag_MIFARE_ULTRALIGHT_EV1)) {
-                            output += chapterDivider + "\n";
-                            if (ti.tagHasFastReadCommand) {
-                                output += "FastRead pages from page 00 to 12" + "\n";
-                                output += "Uses the FastRead command to read the content from pages 0 up to 12, in total 52 bytes." + "\n";
-                                int startPage = 0;
-                                int endPage = 12;
-                                byte[] contentRead = fastReadPage(nfcA, startPage, endPage);
-                                if ((contentRead != null) && (contentRead.length == (endPage - startPage + 1) * 4)) {
-                                    output += printData("content pages 00-12\n", contentRead) + "\n";
-                                    output += lineDivider + "\n";
-                                    output += "ASCII: " + "\n";
-                                    output += new String(contentRead, StandardCharsets.UTF_8) + "\n";
-                                } else {
-                                    output += "Error while reading the content in pages 00-12, e.g. some parts of the tag might be read protected" + "\n";
-
-                                }
+                // read a page from the tag
+                scheduler.add(new ScanTask("readPages47", "Read Pages 4..7", () -> {
+                    // restricted to NTAG21x and MIFARE Ultralight EV1
+                    //if ((ti.isTag_NTAG21x) || (ti.isTag_MIFARE_ULTRALIGHT_EV1)) {
+                    report.section("Read pages from page 04");
+                    if (ti.userMemory > 0) {
+                        report.text("Uses the READ command for accessing the content of the pages 4, 5, 6 and 7");
+                        byte[] pagesData = tagSession.readPage(4); // page 04 is the first page of the user memory
+                        boolean readSuccess = false;
+                        if (pagesData == null) {
+                            report.text("Could not read the content of the tag, maybe it is read protected ?");
+                            report.text("Exception from operation: " + tagSession.getLastErrorString());
+                        } else {
+                            // we got a response but need to check the response data
+                            // in case everything was ok we received the full content of 4 pages = 16 bytes
+                            // in all other cases something went wrong, but those responses are tag type specific
+                            if (pagesData.length == 16) {
+                                report.hex("data from pages 4, 5, 6 and 7", pagesData);
+                                report.ascii("ASCII", pagesData);
+                                readSuccess = true;
                             } else {
-                                output += "FastRead skipped, tag has no FAST READ command" + "\n";
+                                report.text("The tag responded with a response indicating that something went wrong. You need to read the data sheet of the tag to find out to read that tag, sorry.");
+                                report.hex("received response", pagesData);
                             }
-                        } else {
-                            output += chapterDivider + "\n";
-                            output += "FastRead Page is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped" + "\n";
                         }
+                    } else {
+                        report.text("The tag is not readable by the READ command, sorry.");
                     }
+                    return true;
+                })
+                        .setEnabled(runReadPages47)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_READ + 4)
+                        .setPrecondition(tagInfo -> tagInfo.userMemory > 16,
+                                "Read Page is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped")
+                        .setRfCost((tagInfo, timingModel) -> timingModel.dataFrameMicros(2, 16)));
 
-                    if (runWritePage04) {
-                        output += chapterDivider + "\n";
-                        output += "Write on page 04" + "\n";
-                        output += "Uses the WRITE command to write a 4 bytes long array to page 4" + "\n";
-                        byte[] dataToWrite = getTimestamp4Bytes();
-                        output += printData("dataToWrite on page 04", dataToWrite) + "\n";
-                        byte[] writeResponse = writePage(nfcA, 4, dataToWrite);
-                        output += printData("writeToPage 04 response", writeResponse) + "\n";
-                        // I'm using byte 0 only for checking
-                        output += "Check writeResponse: " + checkResponse(writeResponse[0]) + "\n";
-                        output += "Check writeResponse: " + resolveCheckResponse(writeResponse[0]) + "\n";
-                    }
+                // fast read the pages 00-12 tag content
+                // restricted to NTAG21x and MIFARE Ultralight EV1
+                scheduler.add(new ScanTask("fastRead0012", "FastRead Pages 00-12", () -> {
+                    report.section("FastRead pages from page 00 to 12");
+                    if (ti.tagHasFastReadCommand) {
+                        report.text("Uses the FastRead command to read the content from pages 0 up to 12, in total 52 bytes.");
+                        int startPage = 0;
+                        int endPage = 12;
+                        byte[] contentRead = tagSession.fastReadPage(startPage, endPage);
+                        if ((contentRead != null) && (contentRead.length == (endPage - startPage + 1) * 4)) {
+                            // the page dump shows the hex and the ASCII content
+                            report.pages("content pages 00-12 (page | hex | ASCII | region):", contentRead, 0, contentRead.length, startPage);
+                        } else {
+                            report.text("Error while reading the content in pages 00-12, e.g. some parts of the tag might be read protected");
 
-                    if (runWriteBulkDataPage05) {
-                        output += chapterDivider + "\n";
-                        output += "Write bulk data on pages 05 ff" + "\n";
-                        output += "Uses the WRITEBULKDATA method to write 31 bytes to the tag." + "\n";
-                        byte[] bulkDataToWrite = "AndroidCrypto NFC NfcA Tutorial".getBytes(StandardCharsets.UTF_8);
-                        boolean writeBulkDataSuccess = writeBulkData(nfcA, 5, bulkDataToWrite);
-                        output += "writeBulkDataToPage 05 success: " + writeBulkDataSuccess + "\n";
+                        }
+                    } else {
+                        report.text("FastRead skipped, tag has no FAST READ command");
                     }
+                    return true;
+                })
+                        .setEnabled(runFastRead0012)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_READ + 3)
+                        .setPrecondition(tagInfo -> (tagInfo.isTag_NTAG21x) || (tagInfo.isTag_MIFARE_ULTRALIGHT_EV1),
+                                "FastRead Page is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped")
+                        .setRfCost((tagInfo, timingModel) -> ScanTask.estimateReadMicros(tagInfo, timingModel, 13)));
 
-                    if (runReadCounter) {
-                        // read the counter(s) from the tag
-                        // restricted to NTAG21x and MIFARE Ultralight EV1
-                        if ((ti.isTag_NTAG21x) || (ti.isTag_MIFARE_ULTRALIGHT_EV1)) {
-                            output += chapterDivider + "\n";
-                            output += "Read the Counter 2" + "\n";
-                            output += "Uses the ReadCnt command to get value of the counter 2. On an NTAG21x with fabric settings this will fail as the counter is not enabled by default." + "\n";
-                            byte[] readCounterResponse = readCounter(nfcA, 2);
-                            output += printData("readCounter 2 Response", readCounterResponse) + "\n";
-                            int readCounterResponseInt = readCounterInt(nfcA, 2);
-                            output += "readCounter 2 Response: " + readCounterResponseInt + "\n";
-                            if (readCounterResponseInt == -1) {
-                                output += "As value of -1 can indicate that the Read Counter is not enabled" + "\n";
-                            }
-                            // restricted to MIFARE Ultralight EV1
-                            if (ti.isTag_MIFARE_ULTRALIGHT_EV1) {
-                                output += lineDivider + "\n";
-                                output += "Read the Counter 0" + "\n";
-                                readCounterResponse = readCounter(nfcA, 0);
-                                output += printData("readCounter 0 Response", readCounterResponse) + "\n";
-                                readCounterResponseInt = readCounterInt(nfcA, 0);
-                                output += "readCounter 0 Response: " + readCounterResponseInt + "\n";
-                                output += lineDivider + "\n";
-                                output += "Read the Counter 1" + "\n";
-                                readCounterResponse = readCounter(nfcA, 1);
-                                output += printData("readCounter 1 Response", readCounterResponse) + "\n";
-                                readCounterResponseInt = readCounterInt(nfcA, 1);
-                                output += "readCounter 1 Response: " + readCounterResponseInt + "\n";
-                            } else {
-                                output += chapterDivider + "\n";
-                                output += "Read Counter 0 + 1 is restricted to MIFARE Ultralight EV1 tags, skipped" + "\n";
-                            }
-                        } else {
-                            output += chapterDivider + "\n";
-                            output += "Read Counter is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped" + "\n";
+                // the writes come after all reads, the written pages are noted in the content read
+                // before for the cache
+                scheduler.add(new ScanTask(TASK_WRITE_PAGE_04, "Write Page 04", () -> {
+                    report.section("Write on page 04");
+                    report.text("Uses the WRITE command to write a 4 bytes long array to page 4");
+                    byte[] dataToWrite = getTimestamp4Bytes();
+                    report.bytes("dataToWrite on page 04", dataToWrite);
+                    CommandStatus writeStatus = retryingTagSession.writePage(4, dataToWrite, 0);
+                    report.text("Check writeResponse: " + writeStatus.isSuccess());
+                    report.text("Check writeResponse: " + writeStatus.getDescription());
+                    if (writeStatus.isSuccess()) {
+                        writeVerifier.addWrittenPage(4, dataToWrite, 0);
+                        if (state.tagIsCached) {
+                            cachedTag.setPages(4, dataToWrite, 0, dataToWrite.length);
                         }
+                        state.notePagesWritten(4, dataToWrite, dataToWrite.length);
+                        resumableTagReader.notePagesWritten(tagUid, 4, dataToWrite, 0, dataToWrite.length);
+                    } else {
+                        report.text("Exception from operation: " + tagSession.getLastErrorString());
                     }
+                    return true;
+                })
+                        .setEnabled(runWritePage04)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_WRITE + 2)
+                        .setRfCost((tagInfo, timingModel) -> timingModel.ackFrameMicros(6, true)));
 
-                    if (runIncreaseCounter0) {
-                        // increases the counter 0 on the tag by 1
-                        // restricted to MIFARE Ultralight EV1
-                        if (ti.isTag_MIFARE_ULTRALIGHT_EV1) {
-                            output += chapterDivider + "\n";
-                            output += "Increase the Counter 0 by 1" + "\n";
-                            output += "Uses the INC_CNT command, available on MIFARE Ultralight EV1 tags only. It increase the counter 0 by 1" + "\n";
-                            byte[] increaseCounterResponse = increaseCounterByOne(nfcA, 0);
-                            if (checkResponse(increaseCounterResponse[0])) {
-                                output += "IncreaseCounter 0 Tag response is ACK -> Success" + "\n";
+                scheduler.add(new ScanTask(TASK_WRITE_BULK_DATA_PAGE_05, "Wr. Bulk Data Page 05", () -> {
+                    report.section("Write bulk data on pages 05 ff");
+                    report.text("Uses a resumable write job to write 31 bytes to the tag. When the tag is removed during writing the next tap continues the job.");
+                    ResumableTagWriter.WriteResult writeResult;
+                    if (resumableTagWriter.hasPendingJob(tagUid)) {
+                        writeResult = resumableTagWriter.resume(tagSession, ti, null, writeVerifier);
+                        if (writeResult != null) {
+                            if (writeResult.isRestarted()) {
+                                report.text("The tag was changed since the last tap, the write job starts again");
                             } else {
-                                output += "IncreaseCounter 0 Tag response is NAK -> FAILURE" + "\n";
+                                report.text("The write job of the last tap continues, " + writeResult.getResumedDataOffset() + " bytes were already written");
+                            }
+                            if (writeResult.isBoundaryPageWritten()) {
+                                report.text("The boundary page was written on the last tap without an ACK");
                             }
-                        } else {
-                            output += chapterDivider + "\n";
-                            output += "Increase Counter is restricted to MIFARE Ultralight EV1 tags, skipped" + "\n";
                         }
+                    } else {
+                        byte[] bulkDataToWrite = "AndroidCrypto NFC NfcA Tutorial".getBytes(StandardCharsets.UTF_8);
+                        writeResult = resumableTagWriter.write(tagSession, ti, 5, bulkDataToWrite, null, writeVerifier);
                     }
-
-                    if (runReadSignature) {
-                        // Read the Elliptic Curve Signature
-                        // restricted to NTAG21x and MIFARE Ultralight EV1
-                        if ((ti.isTag_NTAG21x) || (ti.isTag_MIFARE_ULTRALIGHT_EV1)) {
-                            // read a page from the tag
-                            output += chapterDivider + "\n";
-                            output += "Read the Signature" + "\n";
-                            output += "Uses the ReadSig command and gets the 32 bytes long digital signature of the tag." + "\n";
-                            byte[] readSignatureResponse = readSignature(nfcA);
-                            output += printData("readSignatureResponse", readSignatureResponse) + "\n";
-                            output += "For verification the signature please read the docs." + "\n";
-                        } else {
-                            output += chapterDivider + "\n";
-                            output += "Read Signature is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped" + "\n";
+                    if (writeResult == null) {
+                        report.text("Exception from operation: " + tagSession.getLastErrorString());
+                        return true;
+                    }
+                    WriteCursor writeCursor = writeResult.getCursor();
+                    report.text("writeBulkDataToPage 05 success: " + writeCursor.isComplete());
+                    // all data up to the cursor is on the tag, including the pages of previous taps
+                    byte[] jobData = writeResult.getData();
+                    int writtenLength = writeCursor.getDataOffset();
+                    if (writtenLength > 0) {
+                        if (state.tagIsCached) {
+                            cachedTag.setPages(writeCursor.getStartPageNumber(), jobData, 0, writtenLength);
                         }
+                        state.notePagesWritten(writeCursor.getStartPageNumber(), jobData, writtenLength);
+                        resumableTagReader.notePagesWritten(tagUid, writeCursor.getStartPageNumber(), jobData, 0, writtenLength);
+                    }
+                    if (writeResult.isTagLost()) {
+                        report.text("The tag was removed, the next tap continues the write job on page " + writeCursor.getNextPageNumber());
+                    } else if (!writeCursor.isComplete()) {
+                        report.text("The write failed on page " + writeCursor.getNextPageNumber() + ": " + tagSession.getLastErrorString());
                     }
+                    // the journal is saved after each job, kept or removed
+                    scanPipeline.store(() -> runCacheFileAction(resumableTagWriter::save, WRITE_JOBS_FILE_NAME, "save the write jobs"));
+                    return true;
+                })
+                        .setEnabled(runWriteBulkDataPage05)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_WRITE + 1)
+                        .setRfCost((tagInfo, timingModel) -> 8 * timingModel.ackFrameMicros(6, true)));
 
-                    if (runFastReadComplete) {
-                        // fast read the complete tag content
-                        // restricted to NTAG21x and MIFARE Ultralight EV1
-                        if ((ti.isTag_NTAG21x) || (ti.isTag_MIFARE_ULTRALIGHT_EV1)) {
-                            output += chapterDivider + "\n";
-                            if (ti.tagHasFastReadCommand) {
-                                output += "FastRead pages from page 00-end" + "\n";
-                                output += "Uses the FastRead command to read the full content of the tag." + "\n";
-                                byte[] completeContentFastRead = readFullTag(nfcA, maxTransceiveLength, ti.tagMemoryEndPage);
-//                            System.out.println(printData("fastReadComplete\n", completeContentFastRead));
-                                if ((completeContentFastRead != null) && (completeContentFastRead.length == ((ti.tagMemoryEndPage + 1) * ti.bytesPerPage))) {
-                                    output += printData("Full tag content", completeContentFastRead) + "\n";
-                                    output += lineDivider + "\n";
-                                    output += "ASCII:" + "\n";
-                                    output += new String(completeContentFastRead, StandardCharsets.UTF_8) + "\n";
-                                } else {
-                                    output += "Error while reading the complete content of the tag, e.g. some parts of the tag might be read protected" + "\n";
-                                }
+                // depends on the writes, a disabled or skipped write skips the verification
+                scheduler.add(new ScanTask("verifyWrittenPages", "Verify Written Pages", () -> {
+                    report.section("Verify the written pages");
+                    int[] mismatchingPages = writeVerifier.verify(tagSession, ti);
+                    report.text("Verified with " + writeVerifier.getFrameCount() + " read command(s)");
+                    if (mismatchingPages == null) {
+                        report.text("Verification failed: " + tagSession.getLastErrorString());
+                    } else if (mismatchingPages.length == 0) {
+                        report.text("All written pages contain the written data");
+                    } else {
+                        report.text("Pages with different content: " + Arrays.toString(mismatchingPages));
+                    }
+                    if ((mismatchingPages == null) || (mismatchingPages.length > 0)) {
+                        // the cached content and the content read before the writes are not reliable any longer
+                        state.tagIsCached = false;
+                        state.contentForCache = null;
+                        tagMemoryCache.remove(tagUid);
+                    }
+                    return true;
+                })
+                        .dependsOn(TASK_IDENTIFY, TASK_WRITE_PAGE_04, TASK_WRITE_BULK_DATA_PAGE_05)
+                        .setPriority(PRIORITY_WRITE)
+                        .setPrecondition(tagInfo -> writeVerifier.hasWrittenPages(), null)
+                        .setRfCost((tagInfo, timingModel) -> 3 * timingModel.dataFrameMicros(2, 16)));
+
+                // read the counter(s) from the tag
+                // restricted to NTAG21x and MIFARE Ultralight EV1
+                scheduler.add(new ScanTask("readCounter", "Read Counter", () -> {
+                    report.section("Read the Counter 2");
+                    report.text("Uses the ReadCnt command to get value of the counter 2. On an NTAG21x with fabric settings this will fail as the counter is not enabled by default.");
+                    byte[] readCounterResponse;
+                    int readCounterResponseInt;
+                    if (state.nfcCounterResponse != null) {
+                        // the NFC counter of an NTAG21x was read in the tag identification
+                        readCounterResponse = state.nfcCounterResponse;
+                        readCounterResponseInt = (readCounterResponse.length == 3) ? intFrom3ByteArrayLsb(readCounterResponse) : -1;
+                    } else {
+                        readCounterResponse = tagSession.readCounter(2);
+                        readCounterResponseInt = tagSession.readCounterInt(2);
+                    }
+                    report.bytes("readCounter 2 Response", readCounterResponse);
+                    report.text("readCounter 2 Response: " + readCounterResponseInt);
+                    if (readCounterResponseInt == -1) {
+                        report.text("As value of -1 can indicate that the Read Counter is not enabled");
+                    }
+                    // restricted to MIFARE Ultralight EV1
+                    if (ti.isTag_MIFARE_ULTRALIGHT_EV1) {
+                        report.divider();
+                        report.text("Read the Counter 0");
+                        readCounterResponse = tagSession.readCounter(0);
+                        report.bytes("readCounter 0 Response", readCounterResponse);
+                        readCounterResponseInt = tagSession.readCounterInt(0);
+                        report.text("readCounter 0 Response: " + readCounterResponseInt);
+                        report.divider();
+                        report.text("Read the Counter 1");
+                        readCounterResponse = tagSession.readCounter(1);
+                        report.bytes("readCounter 1 Response", readCounterResponse);
+                        readCounterResponseInt = tagSession.readCounterInt(1);
+                        report.text("readCounter 1 Response: " + readCounterResponseInt);
+                    } else {
+                        report.section("Read Counter 0 + 1 is restricted to MIFARE Ultralight EV1 tags, skipped");
+                    }
+                    return true;
+                })
+                        .setEnabled(runReadCounter)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_READ + 2)
+                        .setPrecondition(tagInfo -> (tagInfo.isTag_NTAG21x) || (tagInfo.isTag_MIFARE_ULTRALIGHT_EV1),
+                                "Read Counter is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped")
+                        .setRfCost((tagInfo, timingModel) -> 3 * timingModel.dataFrameMicros(2, 3)));
+
+                // increases the counter 0 on the tag by 1
+                // restricted to MIFARE Ultralight EV1
+                scheduler.add(new ScanTask("increaseCounter0", "Increase Counter 0", () -> {
+                    report.section("Increase the Counter 0 by 1");
+                    report.text("Uses the INC_CNT command, available on MIFARE Ultralight EV1 tags only. It increase the counter 0 by 1");
+                    // the counter is read before, so a lost response does not increase it twice
+                    CommandStatus increaseCounterStatus = retryingTagSession.increaseCounter(0);
+                    if (increaseCounterStatus.isSuccess()) {
+                        report.text("IncreaseCounter 0 Tag response is ACK -> Success");
+                    } else {
+                        report.text("IncreaseCounter 0 Tag response is NAK -> FAILURE");
+                    }
+                    return true;
+                })
+                        .setEnabled(runIncreaseCounter0)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_WRITE - 1)
+                        .setPrecondition(tagInfo -> tagInfo.isTag_MIFARE_ULTRALIGHT_EV1,
+                                "Increase Counter is restricted to MIFARE Ultralight EV1 tags, skipped")
+                        .setRfCost((tagInfo, timingModel) -> timingModel.dataFrameMicros(2, 3) + timingModel.ackFrameMicros(6, true)));
+
+                // Read the Elliptic Curve Signature
+                // restricted to NTAG21x and MIFARE Ultralight EV1
+                scheduler.add(new ScanTask("readSignature", "Read Signature", () -> {
+                    // read a page from the tag
+                    report.section("Read the Signature");
+                    report.text("Uses the ReadSig command and gets the 32 bytes long digital signature of the tag.");
+                    byte[] readSignatureResponse;
+                    if (state.tagIsCached) {
+                        report.text("The signature is taken from the cache");
+                        readSignatureResponse = cachedTag.getSignature();
+                    } else {
+                        readSignatureResponse = tagSession.readSignature();
+                    }
+                    if ((readSignatureResponse != null) && (readSignatureResponse.length == 32)) {
+                        state.signatureForCache = readSignatureResponse;
+                    }
+                    report.bytes("readSignatureResponse", readSignatureResponse);
+                    report.text("For verification the signature please read the docs.");
+                    return true;
+                })
+                        .setEnabled(runReadSignature)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_READ + 1)
+                        .setPrecondition(tagInfo -> (tagInfo.isTag_NTAG21x) || (tagInfo.isTag_MIFARE_ULTRALIGHT_EV1),
+                                "Read Signature is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped")
+                        .setRfCost((tagInfo, timingModel) -> timingModel.dataFrameMicros(2, 32)));
+
+                // fast read the complete tag content
+                // restricted to NTAG21x and MIFARE Ultralight EV1
+                scheduler.add(new ScanTask("fastReadComplete", "FastRead compl.Tag", () -> {
+                    report.section("FastRead pages from page 00-end");
+                    if (ti.tagHasFastReadCommand) {
+                        report.text("Uses the FastRead command to read the full content of the tag.");
+                        // the chunk size is adapted to the largest size working on this device
+                        byte[] completeContentFastRead;
+                        int pagesRead;
+                        ResumableTagReader.ReadResult readResult = null; // for an incomplete content only
+                        if (state.tagIsCached) {
+                            report.text("The content is taken from the cache");
+                            completeContentFastRead = cachedTag.getContent();
+                            pagesRead = completeContentFastRead.length / 4;
+                        } else if (resumableTagReader.hasPartialImage(tagUid)) {
+                            // the tag was removed during the last read, the missing pages are read only
+                            readResult = resumableTagReader.read(tagSession, ti);
+                            report.text("The last read of the tag was interrupted, " + readResult.getResumedPageCount()
+                                    + " pages are taken from the last tap");
+                            completeContentFastRead = readResult.getImage().getData();
+                            pagesRead = readResult.getImage().isComplete() ? readResult.getImage().getNumberOfPages() : 0;
+                        } else {
+                            completeContentFastRead = new byte[NfcACommands.fullTagLength(ti)];
+                            pagesRead = fastReadChunkPlanner.readFullTagInto(tagSession, ti, Build.MANUFACTURER + " " + Build.MODEL, completeContentFastRead, 0);
+                        }
+                        if (pagesRead == ti.tagMemoryEndPage + 1) {
+                            state.contentForCache = completeContentFastRead;
+                            report.pages("Full tag content (page | hex | ASCII | region):", completeContentFastRead, 0, completeContentFastRead.length, 0);
+                            if ((ti.configurationStartPage > 0) && (ti.configurationStartPage + 1 <= ti.tagMemoryEndPage)) {
+                                // parsed by ConfigurationPages on the render stage
+                                report.divider();
+                                report.configurationPages("Configuration pages " + ti.configurationStartPage + " and " + (ti.configurationStartPage + 1),
+                                        completeContentFastRead, ti.configurationStartPage * 4,
+                                        ti.isTag_NTAG21x ? ConfigurationPages.TagType.NTAG21x : ConfigurationPages.TagType.Ultralight_EV1);
                             }
                         } else {
-                            output += chapterDivider + "\n";
-                            output += "FastRead of the complete tag content skipped, tag has no FAST READ command" + "\n";
+                            report.text("Error while reading the complete content of the tag, e.g. some parts of the tag might be read protected");
+                            if (readResult == null) {
+                                // keep the pages read so far and read the remaining pages around the protected
+                                // area, if the tag is removed the pages are kept for the next tap
+                                SparseTagImage pagesReadImage = new SparseTagImage(0, ti.tagMemoryEndPage);
+                                if (pagesRead > 0) {
+                                    pagesReadImage.setPages(0, pagesRead - 1, completeContentFastRead, 0);
+                                }
+                                readResult = resumableTagReader.readMissing(tagSession, ti, pagesReadImage);
+                            }
+                            SparseTagImage sparseTagImage = readResult.getImage();
+                            if (readResult.isTagLost()) {
+                                report.text("The tag was removed, the next tap of the tag reads the missing pages only");
+                            }
+                            report.divider();
+                            report.text("Readable pages: " + sparseTagImage.getValidPageCount() + " of " + sparseTagImage.getNumberOfPages());
+                            int invalidPage = sparseTagImage.nextInvalidPage(0);
+                            while (invalidPage >= 0) {
+                                int validPage = sparseTagImage.nextValidPage(invalidPage);
+                                int lastInvalidPage = (validPage < 0) ? ti.tagMemoryEndPage : validPage - 1;
+                                report.text("Pages not readable: " + invalidPage + " to " + lastInvalidPage);
+                                invalidPage = (validPage < 0) ? -1 : sparseTagImage.nextInvalidPage(validPage);
+                            }
+                            report.pages("Partial tag content (pages not readable are 00):", sparseTagImage.getData(), 0, sparseTagImage.getData().length, 0);
+                        }
+                        if (readResult != null) {
+                            // the kept pages are not lost when the app is closed without onPause
+                            scanPipeline.store(() -> runCacheFileAction(resumableTagReader::save, PARTIAL_TAG_IMAGES_FILE_NAME, "save the partial tag images"));
                         }
                     } else {
-                        output += chapterDivider + "\n";
-                        output += "FastRead Page is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped" + "\n";
+                        report.text("FastRead of the complete tag content skipped, tag has no FAST READ command");
                     }
+                    return true;
+                })
+                        .setEnabled(runFastReadComplete)
+                        .dependsOn(TASK_IDENTIFY)
+                        .setPriority(PRIORITY_READ)
+                        .setPrecondition(tagInfo -> (tagInfo.isTag_NTAG21x) || (tagInfo.isTag_MIFARE_ULTRALIGHT_EV1),
+                                "FastRead Page is restricted to NTAG21x and MIFARE Ultralight EV1 tags, skipped")
+                        .setRfCost((tagInfo, timingModel) -> ScanTask.estimateReadMicros(tagInfo, timingModel, tagInfo.tagMemoryEndPage + 1)));
+
+                report.section("==== Tasks Overview ====");
+                for (ScanTask task : scheduler.getTasks()) {
+                    report.text(String.format("= %-22s%-5s priority %d", task.getName(), task.isEnabled(), task.getPriority()));
                 }
-                output += " " + "\n";
-                output += "== Processing Ended ==" + "\n";
-                output += chapterDivider + "\n";
+                report.text("==== Tasks Overview End ====");
 
+                // the tasks are run in the order of their dependencies and priorities, a task that does
+                // not fit into the remaining time is skipped
+                scheduler.run(ti, SCAN_TIME_BUDGET_MICROS, skippedTask -> {
+                    if ((skippedTask.getState() == ScanTask.State.PRECONDITION_NOT_MET) && (skippedTask.getSkipMessage() != null)) {
+                        report.section(skippedTask.getSkipMessage());
+                    } else if (skippedTask.getState() == ScanTask.State.DEADLINE_EXCEEDED) {
+                        report.section(skippedTask.getName() + " skipped, the estimated " + skippedTask.getEstimatedMicros()
+                                + " microseconds do not fit into the time budget of the scan");
+                    } else if ((skippedTask.getState() == ScanTask.State.DISABLED) && (TASK_IDENTIFY.equals(skippedTask.getId()))) {
+                        report.section("This tag is not of type NTAG21x, MIFARE Ultralight EV1 or MIFARE Ultralight C. The further processing is stopped.GetVersion command skipped. Without positive tag identification I can't work properly with the tag, aborted.");
+                    }
+                });
+                report.section("==== Tasks Schedule ====");
+                for (ScanTask task : scheduler.getTasks()) {
+                    if ((task.getState() == ScanTask.State.COMPLETED) || (task.getState() == ScanTask.State.FAILED)) {
+                        report.row(task.getName(), task.getState() + " in " + task.getElapsedMicros() + " microseconds (estimated " + task.getEstimatedMicros() + ")");
+                    } else {
+                        report.row(task.getName(), task.getState().toString());
+                    }
+                }
+                report.text("All tasks took " + scheduler.getElapsedMicros() + " microseconds");
+                // all commands are sent, the tag is released before the caches are updated
                 nfcA.close();
+
+                boolean tagIsIdentifiedForCache = (state.versionDataForCache != null)
+                        || (ti.getIdentificationPath() == IdentificationPath.CAPABILITY_CONTAINER);
+                if ((tagIsIdentifiedForCache) && (state.contentForCache != null)) {
+                    TagMemoryCache.CachedTag tagForCache = new TagMemoryCache.CachedTag(tagUid, state.versionDataForCache, state.signatureForCache,
+                            state.contentForCache, state.nfcCounterForCache, ti.userMemoryStartPage);
+                    scanPipeline.store(() -> storeInTagMemoryCache(tagForCache));
+                }
+                if (retryingTagSession.getMetrics().getRetries() > 0) {
+                    report.section(null);
+                    report.text("Recovered from RF errors: " + retryingTagSession.getMetrics());
+                }
+                report.text(" ");
+                report.text("== Processing Ended ==");
             } catch (IOException e) {
-                output += "NfcA connect to tag IOException: " + e.getMessage() + "\n";
-                output += lineDivider + "\n";
+                report.text("NfcA connect to tag IOException: " + e.getMessage());
+                report.divider();
             }
         }
 
-        // final output
-        String finalOutput = output;
-
-        runOnUiThread(() ->
+        // the last section is shown and logged on the render stage
+        report.complete();
 
-        {
-            textView.setText(finalOutput);
-        });
-        // output of the logfile to console
-        System.out.println(output);
-
-        // a short information about the detection of an NFC tag after all reading is done
+        // a short information about the detection of an NFC tag after all reading is done, the
+        // rendering of the report may still be running
         playBeep();
     }
 
@@ -543,6 +863,14 @@ public class MainActivity extends AppCompatActivity implements NfcAdapter.Reader
         super.onPause();
         if (myNfcAdapter != null)
             myNfcAdapter.disableReaderMode(this);
+        // the caches are saved on the storage stage of the pipeline, not on the UI thread
+        scanPipeline.store(() -> {
+            runCacheFileAction(fastReadChunkPlanner::save, FAST_READ_CHUNKS_FILE_NAME, "save the FAST_READ chunk sizes");
+            runCacheFileAction(tagMemoryCache::save, TAG_MEMORY_CACHE_FILE_NAME, "save the tag memory cache");
+            runCacheFileAction(identificationCache::save, IDENTIFICATION_CACHE_FILE_NAME, "save the identification cache");
+            runCacheFileAction(resumableTagReader::save, PARTIAL_TAG_IMAGES_FILE_NAME, "save the partial tag images");
+            runCacheFileAction(resumableTagWriter::save, WRITE_JOBS_FILE_NAME, "save the write jobs");
+        });
     }
 
     /**
@@ -555,6 +883,163 @@ public class MainActivity extends AppCompatActivity implements NfcAdapter.Reader
         startActivity(intent);
     }
 
+    /**
+     * The quick scan reads the UID, the tag type and the NFC counter only, the result shows the time
+     * from the tap to the result.
+     *
+     * @param tag
+     * @param tapStartNanos
+     */
+    private void runQuickScan(Tag tag, long tapStartNanos) {
+        ScanReportTextRenderer textRenderer = new ScanReportTextRenderer();
+        ScanReport report = new ScanReport()
+                .addListener(scanPipeline.onRenderStage(new ScanReportLogger(textRenderer)))
+                .addListener(scanPipeline.onRenderStage(createDisplayListener(textRenderer)));
+        report.section("Quick Scan");
+        NfcA nfcA = NfcA.get(tag);
+        if (nfcA == null) {
+            report.text("This tag is NOT supporting the NfcA class, aborted");
+        } else {
+            TagInformation quickScanTi = new TagInformation(tag.getId(), nfcA.getAtqa(), (byte) nfcA.getSak(),
+                    nfcA.getMaxTransceiveLength(), tag.getTechList());
+            TagSession tagSession = new TagSession(new AndroidNfcATransceiver(nfcA));
+            try {
+                nfcA.connect();
+                QuickScan.Result result = quickScan.scan(tagSession, quickScanTi, tapStartNanos);
+                nfcA.close();
+                report.bytes("UID", result.getUid());
+                report.row("Tag type", result.getTagType());
+                report.row("Identified by", result.getIdentificationPath().getDescription());
+                if (result.getCounterSource() == QuickScan.CounterSource.NONE) {
+                    report.row("NFC counter", "not available");
+                } else {
+                    report.row("NFC counter", result.getCounterValue() + " (" + result.getCounterSource() + ")");
+                }
+                report.row("Frames", result.getFrames());
+                report.row("Tap to result", result.getLatencyMicros() + " microseconds");
+            } catch (IOException e) {
+                report.text("NfcA connect to tag IOException: " + e.getMessage());
+            }
+        }
+        report.complete();
+        playBeep();
+    }
+
+    /**
+     * Checks the ACCESS byte in the configuration pages of the cached content, READ_CNT of the NFC
+     * counter works without authentication only if NFC_CNT_EN is set and NFC_CNT_PWD_PROT is not.
+     *
+     * @param ti
+     * @param cachedTag
+     * @return false if the counter is not readable or the configuration pages are not cached
+     */
+    private static boolean isNfcCounterReadable(TagInformation ti, TagMemoryCache.CachedTag cachedTag) {
+        if ((cachedTag == null) || (ti.configurationStartPage <= 0)) return false;
+        byte[] content = cachedTag.getContent();
+        int offset = ti.configurationStartPage * 4;
+        if (content.length < offset + 8) return false;
+        ConfigurationPages configurationPages = new ConfigurationPages(ConfigurationPages.TagType.NTAG21x,
+                Arrays.copyOfRange(content, offset, offset + 8));
+        return (configurationPages.isNfcCounterEnabled()) && (!configurationPages.isNfcCounterPasswordProtected());
+    }
+
+    /**
+     * Runs on the storage stage of the pipeline, the cache is saved after each new tag, so it is
+     * not lost when the app is closed without onPause.
+     *
+     * @param cachedTag
+     */
+    private void storeInTagMemoryCache(TagMemoryCache.CachedTag cachedTag) {
+        tagMemoryCache.put(cachedTag);
+        runCacheFileAction(tagMemoryCache::save, TAG_MEMORY_CACHE_FILE_NAME, "save the tag memory cache");
+    }
+
+    /**
+     * The load or save method of a cache, e.g. tagMemoryCache::save
+     */
+    private interface CacheFileAction {
+        void run(File file) throws IOException;
+    }
+
+    /**
+     * Loads or saves a cache file in the files directory of the app, an error is logged. This is
+     * called on the storage stage of the pipeline only, so the file I/O does not block the UI
+     * thread or the reader thread and the files are written in order.
+     *
+     * @param action      the load or save method of the cache
+     * @param fileName
+     * @param description e.g. "save the tag memory cache"
+     */
+    private void runCacheFileAction(CacheFileAction action, String fileName, String description) {
+        try {
+            action.run(new File(getFilesDir(), fileName));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not " + description + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The display listener clears the TextView when a scan starts and appends each completed section,
+     * so the UID and the tag identification are visible while the following tasks are running.
+     *
+     * @param renderer
+     * @return the listener
+     */
+    private ScanReport.Listener createDisplayListener(ScanReportTextRenderer renderer) {
+        return new ScanReport.Listener() {
+            @Override
+            public void onReportStarted(ScanReport report) {
+                runOnUiThread(() -> {
+                    textView.setText("");
+                });
+            }
+
+            @Override
+            public void onSectionCompleted(ScanReport report, ScanReport.Section section) {
+                String sectionText = renderer.renderSection(section);
+                runOnUiThread(() -> {
+                    textView.append(sectionText);
+                });
+            }
+
+            @Override
+            public void onReportCompleted(ScanReport report) {
+                // all sections are shown
+            }
+        };
+    }
+
+    /**
+     * The data collected by the tasks of one scan, shared between the task actions.
+     */
+    private static class ScanState {
+        boolean tagIsCached = false;
+        byte[] pagesData00FromTag = null; // reused by the 'Read Pages 0..3' task
+        byte[] nfcCounterResponse = null; // the READ_CNT response of an NTAG21x, reused by the 'Read Counter' task
+        byte[] versionDataForCache = null;
+        byte[] signatureForCache = null;
+        byte[] contentForCache = null;
+        int nfcCounterForCache = TagMemoryCache.NO_COUNTER;
+
+        /**
+         * The full content is read before the writes, the written pages are copied into it. The
+         * last page is filled up with 0x00h as on the tag.
+         */
+        void notePagesWritten(int startPageNumber, byte[] data, int length) {
+            if (contentForCache == null) return;
+            int offset = startPageNumber * 4;
+            int paddedLength = (length + 3) / 4 * 4;
+            if ((offset < 0) || (offset + paddedLength > contentForCache.length)) return;
+            // the content array is shown in the report and must not be changed, the pages are
+            // written into a copy
+            byte[] content = contentForCache.clone();
+            for (int i = 0; i < paddedLength; i++) {
+                content[offset + i] = (i < length) ? data[i] : (byte) 0x00;
+            }
+            contentForCache = content;
+        }
+    }
+
     public void playBeep() {
         ToneGenerator toneGen = new ToneGenerator(AudioManager.STREAM_MUSIC, 100);
         toneGen.startTone(ToneGenerator.TONE_CDMA_PIP, 150);
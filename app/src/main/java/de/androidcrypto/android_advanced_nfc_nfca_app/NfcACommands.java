@@ -1,14 +1,6 @@
 package de.androidcrypto.android_advanced_nfc_nfca_app;
 
-import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.concatenateByteArrays;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.intFrom3ByteArrayLsb;
-import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.printData;
-
-import android.nfc.tech.NfcA;
-import android.util.Log;
-
-import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 /**
  * This class takes all commands that are useful to communicate with an NFC tag that supports
@@ -16,11 +8,20 @@ import java.util.Arrays;
  * It is completely tested with NFC tags of type NTAG213/215/216, if the commands are running
  * on other tag types depends on their specific command structure. I included the last available
  * data sheet of the NTAG21x series in the  subfolder 'docs'.
+ * All commands are sent using the NfcATransceiver interface, on Android just wrap the NfcA object
+ * with 'new AndroidNfcATransceiver(nfcA)'.
+ * The commands are implemented in TagSession, the static methods of this class run each command
+ * on a session of the calling thread and copy its error to lastExceptionString. The session is
+ * reused as long as the thread calls with the same transceiver, so its command frames are not
+ * allocated again; the error of the former call is cleared before each command and a call never
+ * sees the error of another thread. The session (and the transceiver of the last tag) stays
+ * reachable from the thread until it calls with another transceiver.
+ * When working with several tags in parallel use a TagSession per tag instead, as
+ * lastExceptionString is shared by all callers.
  */
 
 public class NfcACommands {
 
-    private static final String TAG = "NfcALib";
     public static final String version = "1.00";
     // the data is never cleared but overwritten in case of an exception during tag operations.
     // Read out the data in case of a failure only
@@ -34,12 +35,18 @@ public class NfcACommands {
     public static final byte NAK_EEPROM_WRITE_ERROR = 0x05; // this is the response defined by NXP for NTAG21x tags
     public static final byte NAK_IOEXCEPTION_ERROR = (byte) 0xFF; // this is the response defined by me
 
+    // the session of the last transceiver of each thread, see getSession
+    private static final ThreadLocal<TagSession> threadSession = new ThreadLocal<>();
+
     /*
         Available commands
         readPage: reads the content of the <pageNumber> + 3 following pages, returns 4 pages = 16 bytes
         fastReadPage: reads the content of multiple pages, starting with <pageNumberStart> and ending with <pageNumberEnd>
+        readFullTag: reads the complete memory of the tag with FAST_READ commands
+        readFullTagInto / readPagesInto: reads pages with FAST_READ (or READ) commands into a buffer provided by the caller
         writePage: writes the content of one page to the taag
         writeBulkData: writes the content of maximum 40 bytes to subsequent pages, starting with <startPageNumber>
+                       (see StreamingTagWriter for data up to the full user memory)
         getVersion: returns the the version data of the tag
         getMoreData: reads data from the tag as long the tag indicates that more data is waiting
         readCounterInt: read the value of the one counter (NTAG21x) or up to 3 counters (Ultralight EV1) as an integer value
@@ -60,25 +67,9 @@ public class NfcACommands {
      * @return The command returns 16 bytes (4 pages) with one command. In case of an error the
      * method returns the response of the tag, e.g. '0x6700h' or '0x04h.
      */
-    public static byte[] readPage(NfcA nfcA, int pageNumber) {
-        // sanity check
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return null;
-        }
-        byte[] response = null;
-        try {
-            response = nfcA.transceive(new byte[]{
-                    (byte) 0x30, // READ a page command
-                    (byte) (pageNumber & 0xff)  // page address
-            });
-            return response;
-        } catch (IOException e) {
-            Log.e(TAG, "on page " + pageNumber + " readPage failed with IOException: " + e.getMessage());
-            lastExceptionString = "readPage for page " + pageNumber + " failed with IOException: " + e.getMessage();
-        }
-        return null;
+    public static byte[] readPage(NfcATransceiver nfcA, int pageNumber) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readPage(pageNumber));
     }
 
     /**
@@ -91,72 +82,129 @@ public class NfcACommands {
      * @param pageNumberEnd
      * @return
      */
-    public static byte[] fastReadPage(NfcA nfcA, int pageNumberStart, int pageNumberEnd) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return null;
-        }
-        byte[] response = null;
-        try {
-            response = nfcA.transceive(new byte[]{
-                    (byte) 0x3A, // FAST READ pages command
-                    (byte) (pageNumberStart & 0xff),  // first page address to read
-                    (byte) (pageNumberEnd & 0xff)  // last page address to read
-            });
-            return response;
-        } catch (IOException e) {
-            Log.e(TAG, "on pages range " + pageNumberStart + " to " + pageNumberEnd + " fastReadPage failed with IOException: " + e.getMessage());
-            lastExceptionString = "fastReadPage range " + +pageNumberStart + " to " + pageNumberEnd + " fastReadPage failed with IOException: " + e.getMessage();
-            return null;
-        }
+    public static byte[] fastReadPage(NfcATransceiver nfcA, int pageNumberStart, int pageNumberEnd) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.fastReadPage(pageNumberStart, pageNumberEnd));
     }
 
     /**
      * This is an unofficial command or better helper method. It reads the content of the tag,
      * beginning with page 00 up to page <numberOfPages>, so in total <numberOfPages> + 1 pages.
      * It uses the fastRead method of this library, in case of any error the method will return NULL.
+     * The result array is allocated once, see readFullTagInto for a version that is working on a
+     * buffer provided by the caller.
      * @param nfcA
      * @param numberOfPages
      * @return
      */
-    public static byte[] readFullTag(NfcA nfcA, int maxTransceiveLength, int numberOfPages) {
-        // don't extend the maxTransceiveLength as it might returns strange data
-        // simple calculation including some protocol header bytes
-        int maxFastReadPages = ((maxTransceiveLength - 16) / 4);
-        //System.out.println("maxFastReadPages: " + maxFastReadPages);
-        // so run this way to read the complete content of the tag
-        byte[] completeContentFastRead = new byte[0];
-        int pagesReadSoFar = 0;
-        boolean fastReadSuccess = true;
-        while (pagesReadSoFar < numberOfPages) {
-            // if we can't read the remaining data in a 'full' read we are just reading the remaining data
-            if ((numberOfPages - pagesReadSoFar) < maxFastReadPages) {
-                maxFastReadPages = numberOfPages - pagesReadSoFar + 1;
-                //System.out.println("Corrected maxFastReadPages to: " + maxFastReadPages);
-            }
-            //System.out.println("fastReadContent from " + pagesReadSoFar + " to " + (pagesReadSoFar + maxFastReadPages - 1));
-            byte[] contentRead = fastReadPage(nfcA, pagesReadSoFar, (pagesReadSoFar + maxFastReadPages - 1));
-            //System.out.println(printData("contentRead", contentRead));
-            //System.out.println("contentRead length: " + contentRead.length);
-            //System.out.println("(maxFastReadPages * ti.bytesPerPage): " + (maxFastReadPages * ti.bytesPerPage));
-            // did we receive all data ?
-            if ((contentRead != null) && (contentRead.length == (maxFastReadPages * 4))) {
-                // we received the complete content
-                completeContentFastRead = concatenateByteArrays(completeContentFastRead, contentRead);
-                pagesReadSoFar += maxFastReadPages;
-            } else {
-                fastReadSuccess = false;
-                pagesReadSoFar = numberOfPages; // end reading
-            }
-        }
-        if (!fastReadSuccess) {
-            Log.e(TAG, "Error while reading the content of the tag, e.g. some parts of the tag might be read protected");
-            return null;
-        } else {
-            return completeContentFastRead;
-        }
+    public static byte[] readFullTag(NfcATransceiver nfcA, int maxTransceiveLength, int numberOfPages) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readFullTag(maxTransceiveLength, numberOfPages));
+    }
+
+    /**
+     * Reads the complete memory of the tag (page 00 up to page ti.tagMemoryEndPage) into the
+     * buffer provided by the caller. The buffer needs to have at least fullTagLength(ti) bytes
+     * starting at destOffset, so it can be allocated once and reused for all tags of the same type.
+     *
+     * @param nfcA
+     * @param ti         the identified tag
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read, in case of an error the pages that were read before the
+     * error occurred. Returns -1 if the arguments are invalid.
+     */
+    public static int readFullTagInto(NfcATransceiver nfcA, TagInformation ti, byte[] dest, int destOffset) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readFullTagInto(ti, dest, destOffset));
+    }
+
+    /**
+     * Reads the complete memory of the tag (page 00 up to page ti.tagMemoryEndPage) into the
+     * buffer provided by the caller, starting at the current position of the buffer. The position
+     * is advanced by the number of bytes read.
+     *
+     * @param nfcA
+     * @param ti
+     * @param dest
+     * @return the number of pages read, in case of an error the pages that were read before the
+     * error occurred. Returns -1 if the arguments are invalid.
+     */
+    public static int readFullTagInto(NfcATransceiver nfcA, TagInformation ti, ByteBuffer dest) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readFullTagInto(ti, dest));
+    }
+
+    /**
+     * Returns the number of bytes of the complete memory of the tag (page 00 up to page
+     * ti.tagMemoryEndPage), this is the buffer length needed for readFullTagInto.
+     *
+     * @param ti
+     * @return
+     */
+    public static int fullTagLength(TagInformation ti) {
+        return (ti.tagMemoryEndPage + 1) * ti.bytesPerPage;
+    }
+
+    /**
+     * Reads the pages <pageNumberStart> up to <pageNumberEnd> (included) with as few FAST_READ
+     * commands as possible and copies each response directly to its place in the buffer, so no
+     * intermediate arrays are built.
+     *
+     * @param nfcA
+     * @param maxTransceiveLength
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read, in case of an error the pages that were read before the
+     * error occurred. Returns -1 if the arguments are invalid.
+     */
+    public static int readPagesInto(NfcATransceiver nfcA, int maxTransceiveLength, int pageNumberStart, int pageNumberEnd, byte[] dest, int destOffset) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readPagesInto(maxTransceiveLength, pageNumberStart, pageNumberEnd, dest, destOffset));
+    }
+
+    /**
+     * Same as readPagesInto with a byte array, but the data is written to the buffer starting at
+     * its current position. The position is advanced by the number of bytes read.
+     *
+     * @param nfcA
+     * @param maxTransceiveLength
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest
+     * @return the number of pages read, in case of an error the pages that were read before the
+     * error occurred. Returns -1 if the arguments are invalid.
+     */
+    public static int readPagesInto(NfcATransceiver nfcA, int maxTransceiveLength, int pageNumberStart, int pageNumberEnd, ByteBuffer dest) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readPagesInto(maxTransceiveLength, pageNumberStart, pageNumberEnd, dest));
+    }
+
+    /**
+     * Reads the pages <pageNumberStart> up to <pageNumberEnd> (included) into the buffer, using
+     * FAST_READ commands when the tag supports them and READ commands (4 pages each) otherwise,
+     * e.g. on a MIFARE Ultralight C tag.
+     *
+     * @param nfcA
+     * @param ti
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read, in case of an error the pages that were read before the
+     * error occurred. Returns -1 if the arguments are invalid.
+     */
+    public static int readPagesInto(NfcATransceiver nfcA, TagInformation ti, int pageNumberStart, int pageNumberEnd, byte[] dest, int destOffset) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readPagesInto(ti, pageNumberStart, pageNumberEnd, dest, destOffset));
+    }
+
+    // don't extend the maxTransceiveLength as it might returns strange data
+    // simple calculation including some protocol header bytes
+    static int maxFastReadPages(int maxTransceiveLength) {
+        return Math.max(1, (maxTransceiveLength - 16) / 4);
     }
 
     /**
@@ -171,117 +219,24 @@ public class NfcACommands {
      * @param pageData4Byte
      * @return is either the Acknowledge Byte ("ACK") or a Not Acknowledge Byte ("NAK")
      */
-    public static byte[] writePage(NfcA nfcA, int pageNumber, byte[] pageData4Byte) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return null;
-        }
-        if (pageNumber < 0) {
-            Log.e(TAG, "writePage pageNumber is < 0, aborted");
-            lastExceptionString = "writePage pageNumber is < 0, aborted";
-            return new byte[]{NAK_INVALID_ARGUMENT};
-        }
-        // this check avoids to write to pages 0, 1, 2 and 3 as that are blocked pages or One Time Programmable areas
-        if (pageNumber < 4) {
-            Log.e(TAG, "writePage pageNumber is < 4, aborted");
-            lastExceptionString = "writePage pageNumber is < 4 (avoid writing to OTP areas), aborted";
-            return new byte[]{NAK_INVALID_ARGUMENT};
-        }
-        // there is no check on upper limit - this is tag specific
-        // This method also does not prevent against writing in sensitive areas below user memory
-        if (pageData4Byte == null) {
-            Log.e(TAG, "writePage pageData4Byte is NULL, aborted");
-            lastExceptionString = "writePage pageData4Byte is NULL, aborted";
-            return new byte[]{NAK_INVALID_ARGUMENT};
-        }
-        if (pageData4Byte.length != 4) {
-            Log.e(TAG, "writePage pageData4Byte is not of length 4 found " + pageData4Byte.length + ", aborted");
-            lastExceptionString = "writePage pageData4Byte is not of length 4 found " + pageData4Byte.length + ", aborted";
-            return new byte[]{NAK_INVALID_ARGUMENT};
-        }
-        byte[] response = null;
-        try {
-            response = nfcA.transceive(new byte[]{
-                    (byte) 0xA2, // WRITE a page command
-                    (byte) (pageNumber & 0xff),  // page address
-                    pageData4Byte[0], pageData4Byte[1], pageData4Byte[2], pageData4Byte[3]
-            });
-            return response;
-        } catch (IOException e) {
-            Log.e(TAG, "writePage to page " + pageNumber + " writePage failed with IOException: " + e.getMessage());
-            lastExceptionString = "writePage to page " + pageNumber + " failed with IOException: " + e.getMessage();
-            return new byte[]{NAK_IOEXCEPTION_ERROR};
-        }
+    public static byte[] writePage(NfcATransceiver nfcA, int pageNumber, byte[] pageData4Byte) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.writePage(pageNumber, pageData4Byte));
     }
 
     /**
      * This write method accepts data lengths up to 40 bytes that are split into chunks of 4 bytes each.
      * Beginning with the startPageNumber all data is written subsequently to the pages.
+     * For longer data use the StreamingTagWriter.
      *
      * @param nfcA
      * @param startPageNumber
      * @param bulkPageData
      * @return
      */
-    public static boolean writeBulkData(NfcA nfcA, int startPageNumber, byte[] bulkPageData) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return false;
-        }
-        if (startPageNumber < 0) {
-            Log.e(TAG, "writePage startPageNumber is < 0, aborted");
-            lastExceptionString = "writePage startPageNumber is < 0, aborted";
-            return false;
-        }
-        // this check avoids to write to pages 0, 1, 2 and 3 as that are blocked pages or One Time Programmable areas
-        if (startPageNumber < 4) {
-            Log.e(TAG, "writePage startPageNumber is < 4, aborted");
-            lastExceptionString = "writePage startPageNumber is < 4 (avoid writing to OTP areas), aborted";
-            return false;
-        }
-        // This method also does not prevent against writing in sensitive areas below user memory
-        if (bulkPageData == null) {
-            Log.e(TAG, "writePage bulkPageData is NULL, aborted");
-            lastExceptionString = "writePage bulkPageData is NULL, aborted";
-            return false;
-        }
-        if (bulkPageData.length > 40) {
-            Log.e(TAG, "writePage bulkPageData length is >40, aborted");
-            lastExceptionString = "writePage bulkPageData length is >40, aborted";
-            return false;
-        }
-        byte[] pageData;
-        int remainingBytes = bulkPageData.length;
-        int copyIndex = 0; // copy the data from this position
-        int pageIndex = startPageNumber;
-        byte[] writeResponse;
-        System.out.println(printData("bulkData", bulkPageData));
-        while (remainingBytes > 0) {
-            System.out.println("remainingBytes: " + remainingBytes);
-            pageData = new byte[4];
-            if (remainingBytes < 5) {
-                System.out.println("remainingBytes < 5, copyIndex: " + copyIndex);
-                System.arraycopy(bulkPageData, copyIndex, pageData, 0, remainingBytes); // copy the remaining bytes
-            } else {
-                System.out.println("remainingBytes > 4, copyIndex: " + copyIndex);
-                // a new round will follow after this one
-                System.arraycopy(bulkPageData, copyIndex, pageData, 0, 4);
-            }
-            System.out.println("before writePage pageIndex: " + pageIndex);
-            writeResponse = writePage(nfcA, pageIndex, pageData);
-            if ((writeResponse == null) || (writeResponse.length < 1) || (!checkResponse(writeResponse[0]))) {
-                // an error occurred
-                return false; // the lastExceptionString was already filled by writePage
-            }
-            copyIndex = copyIndex + 4;
-            pageIndex++;
-            remainingBytes = remainingBytes - 4;
-        }
-        return true;
+    public static boolean writeBulkData(NfcATransceiver nfcA, int startPageNumber, byte[] bulkPageData) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.writeBulkData(startPageNumber, bulkPageData));
     }
 
     /**
@@ -291,24 +246,9 @@ public class NfcACommands {
      * @param nfcA
      * @return
      */
-    public static byte[] getVersion(NfcA nfcA) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return null;
-        }
-        byte[] response = null;
-        try {
-            response = nfcA.transceive(new byte[]{
-                    (byte) 0x60  // Get Version command
-            });
-            return response;
-        } catch (IOException e) {
-            Log.e(TAG, "Get Version failed with IOException: " + e.getMessage());
-            lastExceptionString = "Get Version failed with IOException: " + e.getMessage();
-        }
-        return null;
+    public static byte[] getVersion(NfcATransceiver nfcA) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.getVersion());
     }
 
     /**
@@ -318,42 +258,9 @@ public class NfcACommands {
      * @param nfcA
      * @return
      */
-    public static byte[] getMoreData(NfcA nfcA) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return null;
-        }
-        // we need to run this command as long we are asked for more data by the NFC tag
-        boolean moreDataRequested = true;
-        byte[] moreDataToReturn = new byte[0];
-        while (moreDataRequested == true) {
-            byte[] response;
-            try {
-                response = nfcA.transceive(new byte[]{
-                        (byte) 0xAF  // Get More Data command
-                });
-                System.out.println(printData("gmd response", response));
-                if (response.length > 0) {
-                    if (response[0] == (byte) 0xAF) {
-                        moreDataRequested = true;
-                        // we need to skip the trailing 'AF'
-                        moreDataToReturn = concatenateByteArrays(moreDataToReturn, Arrays.copyOfRange(response, 1, response.length));
-                    } else {
-                        moreDataRequested = false;
-                        moreDataToReturn = concatenateByteArrays(moreDataToReturn, response);
-                    }
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Get More Data failed with IOException: " + e.getMessage());
-                lastExceptionString = "Get Version failed with IOException: " + e.getMessage();
-                moreDataRequested = false; // stop reading
-                moreDataToReturn = null;
-            }
-        }
-        Log.d(TAG, printData("Get More Data", moreDataToReturn));
-        return moreDataToReturn;
+    public static byte[] getMoreData(NfcATransceiver nfcA) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.getMoreData());
     }
 
     /**
@@ -364,19 +271,9 @@ public class NfcACommands {
      * @param counterNumber
      * @return the counter value 0.., in case of any error it returns -1 as value
      */
-    public static int readCounterInt(NfcA nfcA, int counterNumber) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return -1;
-        }
-        byte[] response = readCounter(nfcA, counterNumber);
-        if (response == null) {
-            return -1;
-        } else {
-            return intFrom3ByteArrayLsb(response);
-        }
+    public static int readCounterInt(NfcATransceiver nfcA, int counterNumber) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readCounterInt(counterNumber));
     }
 
     /**
@@ -390,25 +287,9 @@ public class NfcACommands {
      * @param counterNumber
      * @return the 24-bit (3 byte) counter in LSB encoding
      */
-    public static byte[] readCounter(NfcA nfcA, int counterNumber) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return null;
-        }
-        byte[] response = null;
-        try {
-            response = nfcA.transceive(new byte[]{
-                    (byte) 0x39,  // Read Counter command
-                    (byte) (counterNumber & 0xff) // in case of Ultralight EV1 0..2, NTAG21x 2
-            });
-            return response;
-        } catch (IOException e) {
-            Log.e(TAG, "Read Counter failed with IOException: " + e.getMessage());
-            lastExceptionString = "Read Counter failed with IOException: " + e.getMessage();
-        }
-        return null;
+    public static byte[] readCounter(NfcATransceiver nfcA, int counterNumber) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readCounter(counterNumber));
     }
 
     /**
@@ -417,34 +298,9 @@ public class NfcACommands {
      * @param counterNumber
      * @return ACK or NAK
      */
-    public static byte[] increaseCounterByOne(NfcA nfcA, int counterNumber) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return new byte[]{NAK_INVALID_ARGUMENT};
-        }
-        if ((counterNumber < 0) || (counterNumber > 2)) {
-            Log.e(TAG, "The counterNumber is out of range 0..2, aborted");
-            lastExceptionString = "The counterNumber is out of range 0..2, aborted";
-            return new byte[]{NAK_INVALID_ARGUMENT};
-        }
-        byte[] response = null;
-        try {
-            response = nfcA.transceive(new byte[]{
-                    (byte) 0xA5, // Increase Counter command
-                    (byte) (counterNumber & 0xff),
-                    (byte) 0x01, // LSB order
-                    (byte) 0x00,
-                    (byte) 0x00,
-                    (byte) 0x00, // this byte is ignored
-            });
-            return response; // should the ACK status byte
-        } catch (IOException e) {
-            Log.e(TAG, "IOException when reading a counter: " + e.getMessage());
-            lastExceptionString = "Increase Counter failed with IOException: " + e.getMessage();
-            return new byte[]{NAK_IOEXCEPTION_ERROR};
-        }
+    public static byte[] increaseCounterByOne(NfcATransceiver nfcA, int counterNumber) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.increaseCounterByOne(counterNumber));
     }
 
     /**
@@ -457,29 +313,52 @@ public class NfcACommands {
      * @param nfcA
      * @return
      */
-    public static byte[] readSignature(NfcA nfcA) {
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return null;
-        }
-        byte[] response = null;
-        try {
-            response = nfcA.transceive(new byte[]{
-                    (byte) 0x3C, // Read Signature command
-                    (byte) 0x00 // Address is RFUI, internally fixed to 0x00h
-            });
-            return response;
-        } catch (IOException e) {
-            Log.e(TAG, "Read Signature failed with IOException: " + e.getMessage());
-            lastExceptionString = "Read Signature failed with IOException: " + e.getMessage();
-        }
-        return null;
+    public static byte[] readSignature(NfcATransceiver nfcA) {
+        TagSession session = getSession(nfcA);
+        return keepLastError(session, session.readSignature());
     }
 
     // helper methods
 
+    /**
+     * Returns the session of the calling thread for the transceiver, a new session is created
+     * when the thread calls with another transceiver than before.
+     */
+    private static TagSession getSession(NfcATransceiver nfcA) {
+        TagSession session = threadSession.get();
+        if ((session == null) || (session.getTransceiver() != nfcA)) {
+            session = new TagSession(nfcA);
+            threadSession.set(session);
+        } else {
+            // the error of the former call was copied already
+            session.clearLastError();
+        }
+        return session;
+    }
+
+    /**
+     * Copies the last error of the session to lastExceptionString.
+     */
+    private static <T> T keepLastError(TagSession session, T result) {
+        copyLastError(session);
+        return result;
+    }
+
+    /**
+     * Same as keepLastError for results of type int, the result is not boxed.
+     */
+    private static int keepLastError(TagSession session, int result) {
+        copyLastError(session);
+        return result;
+    }
+
+    private static void copyLastError(TagSession session) {
+        TagError lastError = session.getLastError();
+        if (lastError != null) {
+            lastExceptionString = lastError.getMessage();
+        }
+    }
+
     public static boolean checkResponse(byte tagResponse) {
         if (tagResponse == ACK) {
             return true;
@@ -489,45 +368,13 @@ public class NfcACommands {
     }
 
     public static String resolveCheckResponse(byte tagResponse) {
-        if (tagResponse == ACK) {
-            return "ACK";
-        } else if (tagResponse == NAK_INVALID_ARGUMENT) {
-            return "NAK INVALID ARGUMENT";
-        } else if (tagResponse == NAK_PARITY_CRC_ERROR) {
-            return "NAK PARITY OR CRC ERROR";
-        } else if (tagResponse == NAK_INVALID_AUTHENTICATION_COUNTER_OVERFLOW) {
-            return "NAK INVALID AUTHENTICATION COUNTER OVERFLOW";
-        } else if (tagResponse == NAK_EEPROM_WRITE_ERROR) {
-            return "NAK EEPROM WRITE ERROR";
-        } else if (tagResponse == NAK_IOEXCEPTION_ERROR) {
-            return "NAK IOEXCEPTION ERROR";
-        } else {
-            return "NAK UNKNOWN ERROR";
-        }
+        return CommandStatus.fromResponse(tagResponse).getDescription();
     }
 
-    public static void reconnect(NfcA nfcA) {
-        Log.d(TAG, "Reconnect to NfcA class is best practise after (Tag Lost) exceptions.");
-        // sanity checks
-        if ((nfcA == null) || (!nfcA.isConnected())) {
-            Log.e(TAG, "nfcA is NULL or not connected, aborted");
-            lastExceptionString = "nfcA is NULL or not connected, aborted";
-            return;
-        }
-        // this is just an advice - if an error occurs - close the connection and reconnect the tag
-        // https://stackoverflow.com/a/37047375/8166854
-        try {
-            nfcA.close();
-            Log.d(TAG, "Close NfcA");
-        } catch (Exception e) {
-            Log.e(TAG, "Exception on Close NfcA: " + e.getMessage());
-        }
-        try {
-            Log.d(TAG, "Reconnect NfcA");
-            nfcA.connect();
-        } catch (Exception e) {
-            Log.e(TAG, "Exception on Reconnect NfcA: " + e.getMessage());
-        }
+    public static void reconnect(NfcATransceiver nfcA) {
+        TagSession session = getSession(nfcA);
+        session.reconnect();
+        keepLastError(session, null);
     }
 
 }
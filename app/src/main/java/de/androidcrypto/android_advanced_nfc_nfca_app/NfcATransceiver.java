@@ -0,0 +1,51 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import java.io.IOException;
+
+/**
+ * This interface describes the minimal transport that is needed to send commands to an NFC tag
+ * using the NfcA technology. All methods in NfcACommands are written against this interface, so
+ * the commands can run on the Android NfcA class (see AndroidNfcATransceiver) or on any other
+ * transport, e.g. a simulated tag on a plain Java VM without NFC hardware.
+ * The method names are taken from the android.nfc.tech.NfcA class.
+ */
+public interface NfcATransceiver {
+
+    /**
+     * Sends the raw command to the tag and returns the raw response of the tag. The CRC is
+     * appended and removed by the transport.
+     * The transport must not keep or change the data array, a TagSession reuses its command
+     * frames for the next command.
+     *
+     * @param data
+     * @return the response of the tag
+     * @throws IOException e.g. when the tag was lost or the tag did not respond
+     */
+    byte[] transceive(byte[] data) throws IOException;
+
+    boolean isConnected();
+
+    int getMaxTransceiveLength();
+
+    /**
+     * @return the timeout for a transceive command in milliseconds
+     */
+    int getTimeout();
+
+    /**
+     * @param timeout the timeout for a transceive command in milliseconds
+     */
+    void setTimeout(int timeout);
+
+    void connect() throws IOException;
+
+    void close() throws IOException;
+
+    /**
+     * Closes the connection to the tag and connects again. After an error situation (e.g. a NAK
+     * response or a Tag Lost exception) this brings the tag back in a well known state.
+     *
+     * @throws IOException when the tag could not get connected again
+     */
+    void reconnect() throws IOException;
+}
@@ -0,0 +1,288 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.bytesToHexNpe;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.concatenateByteArrays;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.intFrom3ByteArrayLsb;
+
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * This class runs a quick scan for access control style use: only the UID, the tag type and the
+ * NFC counter are taken from the tag, with the fewest possible frames:
+ * - the UID, ATQA and SAK are known from the anticollision, no frame is needed
+ * - the tag type is taken from the TagMemoryCache or the IdentificationCache (no frame), from the
+ * Capability Container (one READ) or from the Get Version command (one frame, a MIFARE DESFire
+ * needs more frames for the chained response)
+ * - the NFC counter of an NTAG21x is read with one READ_CNT command. If the configuration pages
+ * of the tag are known from the TagMemoryCache and the counter is mirrored into the user memory,
+ * the mirror is read with one FAST_READ instead, this works even when READ_CNT is password
+ * protected. A counter that is known to be disabled is not read at all.
+ * - the counter 0 of a MIFARE Ultralight EV1 is read with one READ_CNT command
+ * Please note: a READ_CNT without a READ or FAST_READ before does not increase the NFC counter
+ * of an NTAG21x, so the value may be one less than the value after a full scan.
+ */
+public class QuickScan {
+
+    private static final String TAG = QuickScan.class.getSimpleName();
+    private static final int BYTES_PER_PAGE = 4;
+    private static final int UID_MIRROR_LENGTH = 15; // 14 hex characters and the 'x' separator
+    private static final int COUNTER_MIRROR_LENGTH = 6; // 6 hex characters, MSB first
+    public static final int ULTRALIGHT_EV1_COUNTER_NUMBER = 0;
+
+    public enum CounterSource {
+        NONE, // the tag has no counter, the counter is disabled or could not get read
+        READ_CNT,
+        ASCII_MIRROR
+    }
+
+    /**
+     * The result of a quick scan.
+     */
+    public static class Result {
+        private final byte[] uid;
+        private final String tagType;
+        private final IdentificationPath identificationPath;
+        private final int counterValue;
+        private final CounterSource counterSource;
+        private final int frames;
+        private final long scanMicros;
+        private final long latencyMicros;
+
+        Result(byte[] uid, String tagType, IdentificationPath identificationPath, int counterValue,
+               CounterSource counterSource, int frames, long scanMicros, long latencyMicros) {
+            this.uid = uid;
+            this.tagType = tagType;
+            this.identificationPath = identificationPath;
+            this.counterValue = counterValue;
+            this.counterSource = counterSource;
+            this.frames = frames;
+            this.scanMicros = scanMicros;
+            this.latencyMicros = latencyMicros;
+        }
+
+        public byte[] getUid() {
+            return uid;
+        }
+
+        public String getTagType() {
+            return tagType;
+        }
+
+        public IdentificationPath getIdentificationPath() {
+            return identificationPath;
+        }
+
+        public boolean isIdentified() {
+            return identificationPath != IdentificationPath.NONE;
+        }
+
+        /**
+         * @return the counter, TagMemoryCache.NO_COUNTER if the counter was not read
+         */
+        public int getCounterValue() {
+            return counterValue;
+        }
+
+        public CounterSource getCounterSource() {
+            return counterSource;
+        }
+
+        /**
+         * @return the number of command frames sent to the tag
+         */
+        public int getFrames() {
+            return frames;
+        }
+
+        /**
+         * @return the time of the quick scan
+         */
+        public long getScanMicros() {
+            return scanMicros;
+        }
+
+        /**
+         * @return the time from the tap (the discovery of the tag) to the result
+         */
+        public long getLatencyMicros() {
+            return latencyMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "UID " + bytesToHexNpe(uid) + ", " + tagType + " (" + identificationPath.getDescription()
+                    + "), counter " + counterValue + " (" + counterSource + "), " + frames + " frame(s), "
+                    + latencyMicros + " us";
+        }
+    }
+
+    private final IdentificationCache identificationCache;
+    private final TagMemoryCache tagMemoryCache;
+    private final byte[] pageBuffer = new byte[16];
+    private int frames;
+
+    /**
+     * @param identificationCache can be NULL
+     * @param tagMemoryCache      can be NULL
+     */
+    public QuickScan(IdentificationCache identificationCache, TagMemoryCache tagMemoryCache) {
+        this.identificationCache = identificationCache;
+        this.tagMemoryCache = tagMemoryCache;
+    }
+
+    /**
+     * Runs the quick scan, the tag needs to be connected.
+     *
+     * @param session
+     * @param ti            a new TagInformation with UID, ATQA and SAK of the tag
+     * @param tapStartNanos System.nanoTime() when the tag was discovered, for the latency
+     * @return the result
+     */
+    public synchronized Result scan(TagSession session, TagInformation ti, long tapStartNanos) {
+        long startNanos = System.nanoTime();
+        frames = 0;
+        TagMemoryCache.CachedTag cachedTag = (tagMemoryCache == null) ? null : tagMemoryCache.get(ti.tagUid);
+        identify(session, ti, cachedTag);
+        int counterValue = TagMemoryCache.NO_COUNTER;
+        CounterSource counterSource = CounterSource.NONE;
+        if (ti.isTag_NTAG21x) {
+            ConfigurationPages configurationPages = getCachedConfigurationPages(ti, cachedTag);
+            if ((configurationPages != null) && (configurationPages.isNfcCounterAsciiMirrored())) {
+                counterValue = readCounterMirror(session, configurationPages);
+                if (counterValue != TagMemoryCache.NO_COUNTER) {
+                    counterSource = CounterSource.ASCII_MIRROR;
+                }
+            }
+            boolean readCounter = (configurationPages == null)
+                    || ((configurationPages.isNfcCounterEnabled()) && (!configurationPages.isNfcCounterPasswordProtected()));
+            if ((counterSource == CounterSource.NONE) && (readCounter)) {
+                counterValue = readCounter(session, TagMemoryCache.NFC_COUNTER_NUMBER);
+                if (counterValue != TagMemoryCache.NO_COUNTER) {
+                    counterSource = CounterSource.READ_CNT;
+                }
+            }
+        } else if (ti.isTag_MIFARE_ULTRALIGHT_EV1) {
+            counterValue = readCounter(session, ULTRALIGHT_EV1_COUNTER_NUMBER);
+            if (counterValue != TagMemoryCache.NO_COUNTER) {
+                counterSource = CounterSource.READ_CNT;
+            }
+        }
+        long endNanos = System.nanoTime();
+        return new Result(ti.tagUid, ti.tagMinorName, ti.getIdentificationPath(), counterValue, counterSource, frames,
+                (endNanos - startNanos) / 1000, (endNanos - tapStartNanos) / 1000);
+    }
+
+    /**
+     * Identifies the tag with the cheapest path available.
+     */
+    private void identify(TagSession session, TagInformation ti, TagMemoryCache.CachedTag cachedTag) {
+        // known tags, no frame is needed
+        if (cachedTag != null) {
+            if (cachedTag.getVersionData() != null) {
+                if (ti.identifyTagOnKnownVersionData(cachedTag.getVersionData())) return;
+            } else if ((ti.canIdentifyOnCapabilityContainer())
+                    && (ti.identifyTagOnCapabilityContainer(cachedTag.getContent(), 0))) {
+                // the tag was identified by the Capability Container on the last tap
+                return;
+            }
+        }
+        byte[] knownVersionData = (identificationCache == null) ? null : identificationCache.lookup(ti.tagUid, ti.atqa, ti.sak);
+        if ((knownVersionData != null) && (ti.identifyTagOnKnownVersionData(knownVersionData))) return;
+        // one READ of page 00 for NDEF formatted tags
+        if ((knownVersionData == null) && (ti.canIdentifyOnCapabilityContainer())) {
+            frames++;
+            CommandStatus readStatus = session.readPageInto(0, pageBuffer, 0);
+            if (readStatus.isSuccess()) {
+                if (ti.identifyTagOnCapabilityContainer(pageBuffer, 0)) return;
+            } else if (readStatus.needsReconnect()) {
+                session.reconnect();
+            }
+        }
+        // one Get Version command
+        frames++;
+        byte[] versionData = session.getVersion(); // kept by the TagInformation
+        if ((versionData != null) && (versionData.length > 0) && (versionData[0] == (byte) 0xAF)) {
+            // a MIFARE DESFire asks for more data, skip the trailing 'AF' and concatenate it with
+            // the more data response as the MainActivity does (counted as one frame, a DESFire
+            // EV1-3 needs two)
+            frames++;
+            byte[] moreData = session.getMoreData();
+            versionData = (moreData == null) ? null : concatenateByteArrays(Arrays.copyOfRange(versionData, 1, versionData.length), moreData);
+        }
+        boolean hasVersionData = (versionData != null) && (versionData.length > 2);
+        if ((hasVersionData) && (ti.identifyTagOnGetVersion(versionData))) {
+            ti.tagHasGetVersionCommand = true;
+            if (identificationCache != null) {
+                identificationCache.confirm(ti.tagUid, ti.atqa, ti.sak, versionData);
+            }
+            return;
+        }
+        if (!hasVersionData) {
+            // an IOException, a NAK or another short response, the tag may be in HALT state
+            session.reconnect();
+        }
+        ti.identifyTagOnAtqaSak();
+    }
+
+    /**
+     * @return the configuration pages from the cached content of the tag, NULL if the tag is not
+     * cached
+     */
+    private ConfigurationPages getCachedConfigurationPages(TagInformation ti, TagMemoryCache.CachedTag cachedTag) {
+        if ((cachedTag == null) || (ti.configurationStartPage <= 0)) return null;
+        byte[] content = cachedTag.getContent();
+        int offset = ti.configurationStartPage * BYTES_PER_PAGE;
+        if ((content == null) || (content.length < offset + 2 * BYTES_PER_PAGE)) return null;
+        return new ConfigurationPages(ConfigurationPages.TagType.NTAG21x, Arrays.copyOfRange(content, offset, offset + 2 * BYTES_PER_PAGE));
+    }
+
+    /**
+     * Reads the NFC counter from the ASCII mirror with one FAST_READ of the pages holding the
+     * counter characters.
+     *
+     * @return the counter, NO_COUNTER if the mirror could not get read (e.g. the configuration
+     * has changed since the tag was cached)
+     */
+    private int readCounterMirror(TagSession session, ConfigurationPages configurationPages) {
+        if (configurationPages.getMirrorPage() < 4) return TagMemoryCache.NO_COUNTER;
+        int counterStart = configurationPages.getMirrorPage() * BYTES_PER_PAGE + configurationPages.getMirrorByte();
+        if (configurationPages.isUidAsciiMirrored()) {
+            counterStart += UID_MIRROR_LENGTH;
+        }
+        int firstPage = counterStart / BYTES_PER_PAGE;
+        int lastPage = (counterStart + COUNTER_MIRROR_LENGTH - 1) / BYTES_PER_PAGE;
+        frames++;
+        CommandStatus status = session.fastReadInto(firstPage, lastPage, pageBuffer, 0);
+        if (!status.isSuccess()) {
+            Log.e(TAG, "Reading the counter mirror failed: " + status.getDescription());
+            if (status.needsReconnect()) {
+                session.reconnect();
+            }
+            return TagMemoryCache.NO_COUNTER;
+        }
+        int value = 0;
+        for (int i = 0; i < COUNTER_MIRROR_LENGTH; i++) {
+            int digit = Character.digit((char) pageBuffer[counterStart - firstPage * BYTES_PER_PAGE + i], 16);
+            if (digit < 0) {
+                Log.e(TAG, "The counter mirror does not contain a hex number");
+                return TagMemoryCache.NO_COUNTER;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private int readCounter(TagSession session, int counterNumber) {
+        frames++;
+        CommandStatus status = session.readCounterInto(counterNumber, pageBuffer, 0);
+        if (status.isSuccess()) {
+            return intFrom3ByteArrayLsb(pageBuffer);
+        }
+        if (status.needsReconnect()) {
+            session.reconnect();
+        }
+        return TagMemoryCache.NO_COUNTER;
+    }
+}
@@ -0,0 +1,112 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * Counts the retries and reconnects of a RetryingTagSession and how long the recovery took. The
+ * recovery time of a command is the time between its first failure and its success, including
+ * the reconnects and back-off times.
+ */
+public class RecoveryMetrics {
+
+    private long commands;
+    private long retries;
+    private long reconnects;
+    private long recoveredCommands;
+    private long failedCommands;
+    private long tagLostCount;
+    private long totalRecoveryNanos;
+    private long maxRecoveryNanos;
+    private long lastRecoveryNanos;
+
+    synchronized void noteCommand() {
+        commands++;
+    }
+
+    synchronized void noteRetry() {
+        retries++;
+    }
+
+    synchronized void noteReconnect() {
+        reconnects++;
+    }
+
+    synchronized void noteTagLost() {
+        tagLostCount++;
+    }
+
+    synchronized void noteFailed() {
+        failedCommands++;
+    }
+
+    synchronized void noteRecovered(long recoveryNanos) {
+        recoveredCommands++;
+        totalRecoveryNanos += recoveryNanos;
+        maxRecoveryNanos = Math.max(maxRecoveryNanos, recoveryNanos);
+        lastRecoveryNanos = recoveryNanos;
+    }
+
+    public synchronized long getCommands() {
+        return commands;
+    }
+
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    public synchronized long getReconnects() {
+        return reconnects;
+    }
+
+    /**
+     * @return the number of commands that failed at first but succeeded on a retry
+     */
+    public synchronized long getRecoveredCommands() {
+        return recoveredCommands;
+    }
+
+    /**
+     * @return the number of commands that failed after all retries (or without a retry)
+     */
+    public synchronized long getFailedCommands() {
+        return failedCommands;
+    }
+
+    /**
+     * @return the number of reconnects that failed, the tag left the field
+     */
+    public synchronized long getTagLostCount() {
+        return tagLostCount;
+    }
+
+    public synchronized double getAverageRecoveryMillis() {
+        if (recoveredCommands == 0) return 0;
+        return totalRecoveryNanos / (recoveredCommands * 1000000.0);
+    }
+
+    public synchronized double getMaxRecoveryMillis() {
+        return maxRecoveryNanos / 1000000.0;
+    }
+
+    public synchronized double getLastRecoveryMillis() {
+        return lastRecoveryNanos / 1000000.0;
+    }
+
+    public synchronized void reset() {
+        commands = 0;
+        retries = 0;
+        reconnects = 0;
+        recoveredCommands = 0;
+        failedCommands = 0;
+        tagLostCount = 0;
+        totalRecoveryNanos = 0;
+        maxRecoveryNanos = 0;
+        lastRecoveryNanos = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "commands: " + commands + " retries: " + retries + " reconnects: " + reconnects
+                + " recovered: " + recoveredCommands + " failed: " + failedCommands + " tag lost: " + tagLostCount
+                + " recovery avg: " + String.format("%.2f", getAverageRecoveryMillis()) + " ms"
+                + " max: " + String.format("%.2f", getMaxRecoveryMillis()) + " ms";
+    }
+}
@@ -0,0 +1,391 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.bytesToHexNpe;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.intFrom3ByteArrayLsb;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * This class reads the full memory of a tag over several taps. When the tag is removed during
+ * reading, the pages read so far are kept as a SparseTagImage (with its validity bitmap) per UID.
+ * The next tap of the same tag reads the missing page ranges only, this helps on large tags
+ * (NTAG216) and on phones with a poor coupling, where a full dump rarely completes in one tap.
+ * <p>
+ * The kept pages are used only if the tag is unchanged since the last tap:
+ * - if the NFC counter of an NTAG21x is enabled it is read after the first READ of the tap. The
+ * tag increases the counter once per tap, so a counter of the last value + 1 means nobody read
+ * (and usually: wrote) the tag in the meantime. A reconnect during the read (e.g. after a failing
+ * FAST_READ) is a new activation that increases the counter again, in that case the fingerprint
+ * is used on the next tap
+ * - otherwise the first 4 pages of the user memory are read and compared (fingerprint)
+ * The READ of the fingerprint pages is done on every tap, the pages are part of the image anyway.
+ * Pages written by this app are noted with notePagesWritten, so they don't invalidate the image.
+ * <p>
+ * An image is kept only while pages are missing because the tag was lost. When the read ends
+ * with the tag in the field (complete, or the missing pages are read protected) the image is
+ * removed. The number of images is limited, the least recently used image is removed first. The
+ * images can be saved to and loaded from a file. The class is thread safe.
+ */
+public class ResumableTagReader {
+
+    private static final String TAG = ResumableTagReader.class.getSimpleName();
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+    private static final int BYTES_PER_PAGE = 4;
+    private static final int READ_PAGES = 4; // the READ command returns 4 pages
+    // the suffixes of the properties in the file, the key is the UID
+    private static final String LAST_PAGE_SUFFIX = ".lastPage";
+    private static final String CONTENT_SUFFIX = ".content";
+    private static final String VALID_PAGES_SUFFIX = ".validPages";
+    private static final String COUNTER_SUFFIX = ".counter";
+    private static final String FINGERPRINT_PAGE_SUFFIX = ".fingerprintPage";
+    private static final String ORDER_SUFFIX = ".order";
+
+    /**
+     * The pages of an interrupted read.
+     */
+    private static class PartialImage {
+        private final SparseTagImage image;
+        private final int counterValue; // the NFC counter after the first READ of the tap, or NO_COUNTER
+        private final int fingerprintPage;
+
+        PartialImage(SparseTagImage image, int counterValue, int fingerprintPage) {
+            this.image = image;
+            this.counterValue = counterValue;
+            this.fingerprintPage = fingerprintPage;
+        }
+    }
+
+    /**
+     * The result of a read.
+     */
+    public static class ReadResult {
+        private final SparseTagImage image;
+        private final int resumedPageCount;
+        private final boolean tagLost;
+
+        ReadResult(SparseTagImage image, int resumedPageCount, boolean tagLost) {
+            this.image = image;
+            this.resumedPageCount = resumedPageCount;
+            this.tagLost = tagLost;
+        }
+
+        public SparseTagImage getImage() {
+            return image;
+        }
+
+        /**
+         * @return the number of pages taken from the last tap, 0 if the read started from scratch
+         */
+        public int getResumedPageCount() {
+            return resumedPageCount;
+        }
+
+        /**
+         * @return true if the tag was lost, the image is kept for the next tap
+         */
+        public boolean isTagLost() {
+            return tagLost;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, PartialImage> entries;
+    private FastReadChunkPlanner fastReadChunkPlanner;
+    private String deviceModel;
+
+    public ResumableTagReader() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of kept images
+     */
+    public ResumableTagReader(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        // the access order gives the least recently used entry first
+        this.entries = new LinkedHashMap<String, PartialImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PartialImage> eldest) {
+                return size() > ResumableTagReader.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * The missing pages are read with the FAST_READ chunk size learned by the planner.
+     *
+     * @param fastReadChunkPlanner can be NULL
+     * @param deviceModel          e.g. Build.MANUFACTURER + " " + Build.MODEL, see FastReadChunkPlanner.key()
+     * @return this
+     */
+    public synchronized ResumableTagReader setFastReadChunkPlanner(FastReadChunkPlanner fastReadChunkPlanner, String deviceModel) {
+        this.fastReadChunkPlanner = fastReadChunkPlanner;
+        this.deviceModel = deviceModel;
+        return this;
+    }
+
+    /**
+     * @param uid
+     * @return true if an interrupted read of the tag is kept
+     */
+    public synchronized boolean hasPartialImage(byte[] uid) {
+        if (uid == null) return false;
+        return entries.containsKey(bytesToHexNpe(uid));
+    }
+
+    public synchronized void remove(byte[] uid) {
+        if (uid == null) return;
+        entries.remove(bytesToHexNpe(uid));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Updates a kept image after a successful write, the last page is filled up with 0x00h (as
+     * writeBulkData and StreamingTagWriter do).
+     *
+     * @param uid
+     * @param startPageNumber
+     * @param data
+     * @param dataOffset
+     * @param length
+     */
+    public synchronized void notePagesWritten(byte[] uid, int startPageNumber, byte[] data, int dataOffset, int length) {
+        if (uid == null) return;
+        PartialImage entry = entries.get(bytesToHexNpe(uid));
+        if (entry == null) return;
+        int numberOfPages = (length + BYTES_PER_PAGE - 1) / BYTES_PER_PAGE;
+        if ((startPageNumber < entry.image.getFirstPage()) || (startPageNumber + numberOfPages - 1 > entry.image.getLastPage())) {
+            Log.e(TAG, "notePagesWritten is outside of the kept image, the image is removed");
+            entries.remove(bytesToHexNpe(uid));
+            return;
+        }
+        byte[] pages = new byte[numberOfPages * BYTES_PER_PAGE];
+        System.arraycopy(data, dataOffset, pages, 0, length);
+        entry.image.setPages(startPageNumber, startPageNumber + numberOfPages - 1, pages, 0);
+    }
+
+    /**
+     * Reads the full memory of the tag (page 00 up to ti.tagMemoryEndPage). If an interrupted
+     * read of the tag is kept and the tag is unchanged, only the missing pages are read.
+     *
+     * @param session
+     * @param ti      the identified tag
+     * @return the result, the image contains the valid pages
+     */
+    public ReadResult read(TagSession session, TagInformation ti) {
+        PartialImage entry;
+        synchronized (this) {
+            entry = entries.get(bytesToHexNpe(ti.tagUid));
+        }
+        int lastPage = ti.tagMemoryEndPage;
+        int fingerprintPage = ti.userMemoryStartPage;
+        // the READ of the fingerprint pages is the first READ of the tap (if the tag was not read
+        // before), so the NFC counter is increased before it is read
+        byte[] fingerprint = new byte[READ_PAGES * BYTES_PER_PAGE];
+        CommandStatus status = session.readPageInto(fingerprintPage, fingerprint, 0);
+        if (!status.isSuccess()) {
+            fingerprint = null;
+            if (status.needsReconnect()) {
+                session.reconnect();
+            }
+        }
+        int counterValue = TagMemoryCache.NO_COUNTER;
+        if (ti.isTag_NTAG21x) {
+            byte[] response = new byte[3];
+            status = session.readCounterInto(TagMemoryCache.NFC_COUNTER_NUMBER, response, 0);
+            if (status.isSuccess()) {
+                counterValue = intFrom3ByteArrayLsb(response);
+            } else if (status.needsReconnect()) {
+                session.reconnect();
+            }
+        }
+        if (!session.isConnected()) {
+            // the tag was lost before it could get validated, a kept image stays for the next tap
+            return new ReadResult(new SparseTagImage(0, lastPage), 0, true);
+        }
+        SparseTagImage image;
+        int resumedPageCount = 0;
+        if ((entry != null) && (isUnchanged(entry, lastPage, counterValue, fingerprint))) {
+            synchronized (this) {
+                image = new SparseTagImage(0, lastPage, entry.image.getData(), entry.image.getValidPages());
+            }
+            resumedPageCount = image.getValidPageCount();
+            Log.d(TAG, "the tag is unchanged, " + resumedPageCount + " pages are taken from the last tap");
+        } else {
+            image = new SparseTagImage(0, lastPage);
+        }
+        if (fingerprint != null) {
+            image.setPages(fingerprintPage, Math.min(lastPage, fingerprintPage + READ_PAGES - 1), fingerprint, 0);
+        }
+        return readMissing(session, ti, image, counterValue, session.getReconnectCount(), fingerprintPage, resumedPageCount);
+    }
+
+    /**
+     * Reads the missing pages of an image of this tap, e.g. after a failing full read. If the tag
+     * is lost the image is kept for the next tap.
+     *
+     * @param session
+     * @param ti
+     * @param image   the pages read so far, page 00 up to ti.tagMemoryEndPage
+     * @return the result
+     */
+    public ReadResult readMissing(TagSession session, TagInformation ti, SparseTagImage image) {
+        return readMissing(session, ti, image, TagMemoryCache.NO_COUNTER, session.getReconnectCount(), ti.userMemoryStartPage, 0);
+    }
+
+    /**
+     * @param counterReconnectCount the reconnects of the session when the counter was read
+     */
+    private ReadResult readMissing(TagSession session, TagInformation ti, SparseTagImage image, int counterValue,
+                                   int counterReconnectCount, int fingerprintPage, int resumedPageCount) {
+        FastReadChunkPlanner planner;
+        String plannerKey;
+        synchronized (this) {
+            planner = fastReadChunkPlanner;
+            plannerKey = FastReadChunkPlanner.key(deviceModel, ti.tagMinorName);
+        }
+        int pageNumber = image.nextInvalidPage(image.getFirstPage());
+        while ((pageNumber >= 0) && (session.isConnected())) {
+            int nextValidPage = image.nextValidPage(pageNumber);
+            int nextInvalidPage = (nextValidPage < 0) ? -1 : image.nextInvalidPage(nextValidPage);
+            // small gaps of valid pages (e.g. the fingerprint pages) are read again, one command
+            // for the whole range is faster than two commands around the gap
+            while ((nextInvalidPage >= 0) && (nextInvalidPage - nextValidPage <= WriteVerifier.MAX_GAP_PAGES)) {
+                nextValidPage = image.nextValidPage(nextInvalidPage);
+                nextInvalidPage = (nextValidPage < 0) ? -1 : image.nextInvalidPage(nextValidPage);
+            }
+            int rangeEnd = (nextValidPage < 0) ? image.getLastPage() : nextValidPage - 1;
+            SparseTagReader.readSparseInto(session, ti, planner, plannerKey, pageNumber, rangeEnd, image);
+            pageNumber = nextInvalidPage;
+        }
+        boolean tagLost = !session.isConnected();
+        if (session.getReconnectCount() != counterReconnectCount) {
+            // each reconnect is a new activation, the following READ increased the NFC counter
+            // again, so the next tap is validated with the fingerprint pages
+            counterValue = TagMemoryCache.NO_COUNTER;
+        }
+        synchronized (this) {
+            if ((tagLost) && (!image.isComplete())) {
+                // the image is copied, the caller may change its image
+                SparseTagImage keptImage = new SparseTagImage(image.getFirstPage(), image.getLastPage(), image.getData(), image.getValidPages());
+                entries.put(bytesToHexNpe(ti.tagUid), new PartialImage(keptImage, counterValue, fingerprintPage));
+            } else {
+                entries.remove(bytesToHexNpe(ti.tagUid));
+            }
+        }
+        Log.d(TAG, "read: " + image.getValidPageCount() + " of " + image.getNumberOfPages() + " pages valid, "
+                + resumedPageCount + " resumed, tag lost: " + tagLost);
+        return new ReadResult(image, resumedPageCount, tagLost);
+    }
+
+    /**
+     * @return true if the kept image can be used: the NFC counter is increased by exactly one
+     * since the last tap, or without a counter the fingerprint pages are unchanged
+     */
+    private synchronized boolean isUnchanged(PartialImage entry, int lastPage, int counterValue, byte[] fingerprint) {
+        if ((entry.image.getFirstPage() != 0) || (entry.image.getLastPage() != lastPage)) return false;
+        if ((entry.counterValue != TagMemoryCache.NO_COUNTER) && (counterValue != TagMemoryCache.NO_COUNTER)) {
+            return counterValue == entry.counterValue + 1;
+        }
+        if (fingerprint == null) return false;
+        int comparedPages = 0;
+        byte[] page = new byte[BYTES_PER_PAGE];
+        for (int i = 0; (i < READ_PAGES) && (entry.fingerprintPage + i <= lastPage); i++) {
+            if (!entry.image.copyPage(entry.fingerprintPage + i, page, 0)) continue;
+            for (int j = 0; j < BYTES_PER_PAGE; j++) {
+                if (page[j] != fingerprint[i * BYTES_PER_PAGE + j]) return false;
+            }
+            comparedPages++;
+        }
+        return comparedPages > 0;
+    }
+
+    /*
+        persistence, the file is a properties file with the UID as key and a suffix for each
+        field, the values are hex encoded. The order keeps the least recently used order.
+     */
+
+    public synchronized void save(File file) throws IOException {
+        Properties properties = new Properties();
+        int order = 0;
+        for (Map.Entry<String, PartialImage> mapEntry : entries.entrySet()) {
+            String key = mapEntry.getKey();
+            PartialImage entry = mapEntry.getValue();
+            properties.setProperty(key + LAST_PAGE_SUFFIX, String.valueOf(entry.image.getLastPage()));
+            properties.setProperty(key + CONTENT_SUFFIX, bytesToHexNpe(entry.image.getData()));
+            properties.setProperty(key + VALID_PAGES_SUFFIX, bytesToHexNpe(entry.image.getValidPages().toByteArray()));
+            properties.setProperty(key + COUNTER_SUFFIX, String.valueOf(entry.counterValue));
+            properties.setProperty(key + FINGERPRINT_PAGE_SUFFIX, String.valueOf(entry.fingerprintPage));
+            properties.setProperty(key + ORDER_SUFFIX, String.valueOf(order++));
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "partial tag images by UID");
+        }
+    }
+
+    public synchronized void load(File file) throws IOException {
+        if (!file.exists()) return;
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        List<String> keys = new ArrayList<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.endsWith(ORDER_SUFFIX)) {
+                keys.add(name.substring(0, name.length() - ORDER_SUFFIX.length()));
+            }
+        }
+        // the least recently used entry is put first
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Integer.compare(parseInt(properties.getProperty(a + ORDER_SUFFIX)), parseInt(properties.getProperty(b + ORDER_SUFFIX)));
+            }
+        });
+        for (String key : keys) {
+            try {
+                SparseTagImage image = new SparseTagImage(0,
+                        Integer.parseInt(properties.getProperty(key + LAST_PAGE_SUFFIX)),
+                        hexStringToByteArray(properties.getProperty(key + CONTENT_SUFFIX)),
+                        BitSet.valueOf(hexStringToByteArray(properties.getProperty(key + VALID_PAGES_SUFFIX))));
+                entries.put(key, new PartialImage(image,
+                        Integer.parseInt(properties.getProperty(key + COUNTER_SUFFIX)),
+                        Integer.parseInt(properties.getProperty(key + FINGERPRINT_PAGE_SUFFIX))));
+            } catch (RuntimeException e) {
+                // a missing or invalid value
+                Log.e(TAG, "invalid partial image for " + key + " skipped");
+            }
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
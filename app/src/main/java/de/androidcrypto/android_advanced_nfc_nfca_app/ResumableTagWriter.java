@@ -0,0 +1,379 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.bytesToHexNpe;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * This class runs write jobs that can be completed over several taps. A write job writes data to
+ * subsequent pages with the StreamingTagWriter, the job is kept per UID and journals the number
+ * of bytes acknowledged by the tag (ACK) after each page. When the tag is removed during writing
+ * the job stays, the next tap of the same tag continues the job with resume().
+ * <p>
+ * A WRITE that was not acknowledged may still have been written by the tag (the tag left the
+ * field before the ACK was received). Before the job is continued one READ checks the boundary:
+ * - the last acknowledged page needs to contain the written data, otherwise the tag was written
+ * by someone else in the meantime and the job starts again with the first page
+ * - if the first not acknowledged page already contains the data it is not written again
+ * <p>
+ * A job is removed when it is complete or when a WRITE fails with the tag in the field (e.g. a
+ * write protected page), as the next tap would fail again. The number of jobs is limited, the
+ * least recently used job is removed first. The jobs can be saved to and loaded from a file. The
+ * class is thread safe.
+ */
+public class ResumableTagWriter {
+
+    private static final String TAG = ResumableTagWriter.class.getSimpleName();
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+    private static final int BYTES_PER_PAGE = 4;
+    private static final int READ_PAGES = 4; // the READ command returns 4 pages
+    // the suffixes of the properties in the file, the key is the UID
+    private static final String START_PAGE_SUFFIX = ".startPage";
+    private static final String DATA_SUFFIX = ".data";
+    private static final String DATA_OFFSET_SUFFIX = ".dataOffset";
+    private static final String ORDER_SUFFIX = ".order";
+
+    /**
+     * A write job, the data offset is the journal of the acknowledged bytes.
+     */
+    private static class WriteJob {
+        private final int startPageNumber;
+        private final byte[] data;
+        private int dataOffset;
+
+        WriteJob(int startPageNumber, byte[] data, int dataOffset) {
+            this.startPageNumber = startPageNumber;
+            this.data = data;
+            this.dataOffset = dataOffset;
+        }
+    }
+
+    /**
+     * The result of a write or resume.
+     */
+    public static class WriteResult {
+        private final WriteCursor cursor;
+        private final byte[] data;
+        private final int resumedDataOffset;
+        private final boolean boundaryPageWritten;
+        private final boolean restarted;
+        private final boolean tagLost;
+
+        WriteResult(WriteCursor cursor, byte[] data, int resumedDataOffset, boolean boundaryPageWritten,
+                    boolean restarted, boolean tagLost) {
+            this.cursor = cursor;
+            this.data = data;
+            this.resumedDataOffset = resumedDataOffset;
+            this.boundaryPageWritten = boundaryPageWritten;
+            this.restarted = restarted;
+            this.tagLost = tagLost;
+        }
+
+        /**
+         * @return the cursor after writing, check isComplete() for success
+         */
+        public WriteCursor getCursor() {
+            return cursor;
+        }
+
+        /**
+         * @return the data of the job
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * @return the number of bytes written on the previous taps, 0 for a new or restarted job
+         */
+        public int getResumedDataOffset() {
+            return resumedDataOffset;
+        }
+
+        /**
+         * @return true if the boundary page was written on the last tap without an ACK
+         */
+        public boolean isBoundaryPageWritten() {
+            return boundaryPageWritten;
+        }
+
+        /**
+         * @return true if the tag was changed since the last tap and the job started again
+         */
+        public boolean isRestarted() {
+            return restarted;
+        }
+
+        /**
+         * @return true if the tag was lost, the job is kept for the next tap
+         */
+        public boolean isTagLost() {
+            return tagLost;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, WriteJob> entries;
+
+    public ResumableTagWriter() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of kept jobs
+     */
+    public ResumableTagWriter(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        // the access order gives the least recently used entry first
+        this.entries = new LinkedHashMap<String, WriteJob>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WriteJob> eldest) {
+                return size() > ResumableTagWriter.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param uid
+     * @return true if an interrupted write job of the tag is kept
+     */
+    public synchronized boolean hasPendingJob(byte[] uid) {
+        if (uid == null) return false;
+        return entries.containsKey(bytesToHexNpe(uid));
+    }
+
+    public synchronized void remove(byte[] uid) {
+        if (uid == null) return;
+        entries.remove(bytesToHexNpe(uid));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Starts a new write job for the tag, a pending job of the tag is replaced.
+     *
+     * @param session
+     * @param ti
+     * @param startPageNumber
+     * @param data
+     * @param listener        can be NULL
+     * @param writeVerifier   can be NULL
+     * @return the result, NULL if the arguments are invalid, see TagSession.getLastError()
+     */
+    public WriteResult write(TagSession session, TagInformation ti, int startPageNumber, byte[] data,
+                             StreamingTagWriter.ProgressListener listener, WriteVerifier writeVerifier) {
+        if ((ti == null) || (data == null)) {
+            Log.e(TAG, "write TagInformation or data is NULL, aborted");
+            if (session != null) {
+                session.setLastError(CommandStatus.INVALID_ARGUMENT, "write", "write TagInformation or data is NULL, aborted");
+            }
+            return null;
+        }
+        // the data is copied, the caller may change its array
+        WriteJob job = new WriteJob(startPageNumber, data.clone(), 0);
+        synchronized (this) {
+            entries.put(bytesToHexNpe(ti.tagUid), job);
+        }
+        return run(session, ti, job, 0, 0, false, false, listener, writeVerifier);
+    }
+
+    /**
+     * Continues the pending write job of the tag after checking the boundary page.
+     *
+     * @param session
+     * @param ti
+     * @param listener      can be NULL
+     * @param writeVerifier can be NULL
+     * @return the result, NULL if no job is pending or the arguments are invalid
+     */
+    public WriteResult resume(TagSession session, TagInformation ti,
+                              StreamingTagWriter.ProgressListener listener, WriteVerifier writeVerifier) {
+        if ((session == null) || (!session.checkConnected("resume"))) {
+            return null;
+        }
+        if (ti == null) {
+            Log.e(TAG, "resume TagInformation is NULL, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "resume", "resume TagInformation is NULL, aborted");
+            return null;
+        }
+        WriteJob job;
+        int resumedDataOffset;
+        synchronized (this) {
+            job = entries.get(bytesToHexNpe(ti.tagUid));
+            if (job == null) {
+                Log.e(TAG, "resume: no pending write job for the tag");
+                return null;
+            }
+            resumedDataOffset = job.dataOffset;
+        }
+        int dataOffset = resumedDataOffset;
+        boolean boundaryPageWritten = false;
+        boolean restarted = false;
+        // one READ gives the last acknowledged page and the boundary page
+        int boundaryPage = job.startPageNumber + dataOffset / BYTES_PER_PAGE;
+        int readPage = (dataOffset == 0) ? boundaryPage : boundaryPage - 1;
+        byte[] pages = new byte[READ_PAGES * BYTES_PER_PAGE];
+        CommandStatus status = session.readPageInto(readPage, pages, 0);
+        if (status.isSuccess()) {
+            if ((dataOffset > 0) && (!pageEquals(pages, 0, job.data, dataOffset - BYTES_PER_PAGE))) {
+                Log.d(TAG, "the last acknowledged page " + readPage + " was changed, the job starts again");
+                dataOffset = 0;
+                resumedDataOffset = 0;
+                restarted = true;
+            } else if (pageEquals(pages, (boundaryPage - readPage) * BYTES_PER_PAGE, job.data, dataOffset)) {
+                Log.d(TAG, "the boundary page " + boundaryPage + " was written without an ACK");
+                if (writeVerifier != null) {
+                    writeVerifier.addWrittenPages(boundaryPage, job.data, dataOffset,
+                            Math.min(BYTES_PER_PAGE, job.data.length - dataOffset));
+                }
+                dataOffset = Math.min(job.data.length, dataOffset + BYTES_PER_PAGE);
+                boundaryPageWritten = true;
+            }
+            Log.d(TAG, "resume at data offset " + dataOffset);
+        } else {
+            // e.g. a read protected page, the boundary page is written again
+            if (status.needsReconnect()) {
+                session.reconnect();
+            }
+            if (!session.isConnected()) {
+                // the tag was lost before the job could get checked, the job stays for the next tap
+                return new WriteResult(new WriteCursor(job.startPageNumber, job.data.length, dataOffset, NfcACommands.ACK),
+                        job.data, resumedDataOffset, false, false, true);
+            }
+        }
+        return run(session, ti, job, dataOffset, resumedDataOffset, boundaryPageWritten, restarted, listener, writeVerifier);
+    }
+
+    private WriteResult run(TagSession session, TagInformation ti, final WriteJob job, int dataOffset, int resumedDataOffset,
+                            boolean boundaryPageWritten, boolean restarted,
+                            final StreamingTagWriter.ProgressListener listener, WriteVerifier writeVerifier) {
+        final String key = bytesToHexNpe(ti.tagUid);
+        synchronized (this) {
+            job.dataOffset = dataOffset;
+        }
+        // the journal is updated after each acknowledged page
+        StreamingTagWriter.ProgressListener journal = new StreamingTagWriter.ProgressListener() {
+            @Override
+            public void onPageWritten(int pageNumber, int bytesWritten, int totalLength) {
+                synchronized (ResumableTagWriter.this) {
+                    job.dataOffset = bytesWritten;
+                }
+                if (listener != null) {
+                    listener.onPageWritten(pageNumber, bytesWritten, totalLength);
+                }
+            }
+        };
+        WriteCursor cursor = StreamingTagWriter.resume(session, ti,
+                new WriteCursor(job.startPageNumber, job.data.length, dataOffset, NfcACommands.ACK), job.data, journal, writeVerifier);
+        if (cursor == null) {
+            // invalid arguments, the job can never complete
+            remove(ti.tagUid);
+            return null;
+        }
+        boolean tagLost = !session.isConnected();
+        synchronized (this) {
+            if ((tagLost) && (!cursor.isComplete())) {
+                job.dataOffset = cursor.getDataOffset();
+            } else if (entries.get(key) == job) {
+                entries.remove(key);
+            }
+        }
+        Log.d(TAG, "write: " + cursor + ", tag lost: " + tagLost);
+        return new WriteResult(cursor, job.data, resumedDataOffset, boundaryPageWritten, restarted, tagLost);
+    }
+
+    /**
+     * Compares a page on the tag with the data of the page, the last page is filled up with 0x00h.
+     */
+    private static boolean pageEquals(byte[] page, int pageOffset, byte[] data, int dataOffset) {
+        for (int i = 0; i < BYTES_PER_PAGE; i++) {
+            byte expected = (dataOffset + i < data.length) ? data[dataOffset + i] : (byte) 0x00;
+            if (page[pageOffset + i] != expected) return false;
+        }
+        return true;
+    }
+
+    /*
+        persistence, the file is a properties file with the UID as key and a suffix for each
+        field, the data is hex encoded. The order keeps the least recently used order.
+     */
+
+    public synchronized void save(File file) throws IOException {
+        Properties properties = new Properties();
+        int order = 0;
+        for (Map.Entry<String, WriteJob> mapEntry : entries.entrySet()) {
+            String key = mapEntry.getKey();
+            WriteJob job = mapEntry.getValue();
+            properties.setProperty(key + START_PAGE_SUFFIX, String.valueOf(job.startPageNumber));
+            properties.setProperty(key + DATA_SUFFIX, bytesToHexNpe(job.data));
+            properties.setProperty(key + DATA_OFFSET_SUFFIX, String.valueOf(job.dataOffset));
+            properties.setProperty(key + ORDER_SUFFIX, String.valueOf(order++));
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "write jobs by UID");
+        }
+    }
+
+    public synchronized void load(File file) throws IOException {
+        if (!file.exists()) return;
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        List<String> keys = new ArrayList<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.endsWith(ORDER_SUFFIX)) {
+                keys.add(name.substring(0, name.length() - ORDER_SUFFIX.length()));
+            }
+        }
+        // the least recently used entry is put first
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Integer.compare(parseInt(properties.getProperty(a + ORDER_SUFFIX)), parseInt(properties.getProperty(b + ORDER_SUFFIX)));
+            }
+        });
+        for (String key : keys) {
+            try {
+                byte[] data = hexStringToByteArray(properties.getProperty(key + DATA_SUFFIX));
+                int dataOffset = Integer.parseInt(properties.getProperty(key + DATA_OFFSET_SUFFIX));
+                if ((data == null) || (dataOffset < 0) || (dataOffset > data.length) || (dataOffset % BYTES_PER_PAGE != 0)) {
+                    throw new IllegalArgumentException("invalid data offset");
+                }
+                entries.put(key, new WriteJob(Integer.parseInt(properties.getProperty(key + START_PAGE_SUFFIX)), data, dataOffset));
+            } catch (RuntimeException e) {
+                // a missing or invalid value
+                Log.e(TAG, "invalid write job for " + key + " skipped");
+            }
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * This class describes how often a failed command is repeated by a RetryingTagSession. Each
+ * command type has its own retry budget, between the attempts the session waits for a back-off
+ * time that doubles with each retry (up to a maximum).
+ * <p>
+ * Only transient failures are repeated (see isTransient): an IOException (e.g. an RF glitch), a
+ * NAK PARITY OR CRC ERROR and a response of unexpected length. Any other NAK (e.g. a protected
+ * page) fails immediately. After a NAK the tag is in HALT state and gets reconnected, after an
+ * IOException only if reconnectOnIOException is set.
+ * <p>
+ * The setters return the policy, so a policy can get set up in one statement:
+ * new RetryPolicy().setMaxRetries(CommandType.WRITE, 1).setBackoff(5, 20)
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 5;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 20;
+
+    private final int[] maxRetries = new int[CommandType.values().length];
+    private long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    private boolean reconnectOnIOException = true;
+
+    /**
+     * Creates a policy with DEFAULT_MAX_RETRIES for each command, an INCR_CNT is repeated once.
+     */
+    public RetryPolicy() {
+        setMaxRetries(DEFAULT_MAX_RETRIES);
+        setMaxRetries(CommandType.INCR_CNT, 1);
+    }
+
+    /**
+     * @return a policy that does not repeat any command, but reconnects the tag after a failure
+     */
+    public static RetryPolicy noRetries() {
+        return new RetryPolicy().setMaxRetries(0);
+    }
+
+    /**
+     * @param retries the number of retries for all commands
+     * @return this policy
+     */
+    public RetryPolicy setMaxRetries(int retries) {
+        for (int i = 0; i < maxRetries.length; i++) {
+            maxRetries[i] = Math.max(0, retries);
+        }
+        return this;
+    }
+
+    /**
+     * @param commandType
+     * @param retries     the number of retries after the first attempt
+     * @return this policy
+     */
+    public RetryPolicy setMaxRetries(CommandType commandType, int retries) {
+        maxRetries[commandType.ordinal()] = Math.max(0, retries);
+        return this;
+    }
+
+    public int getMaxRetries(CommandType commandType) {
+        return maxRetries[commandType.ordinal()];
+    }
+
+    /**
+     * @param initialBackoffMillis the waiting time before the first retry, 0 = no waiting
+     * @param maxBackoffMillis     the maximum waiting time
+     * @return this policy
+     */
+    public RetryPolicy setBackoff(long initialBackoffMillis, long maxBackoffMillis) {
+        this.initialBackoffMillis = Math.max(0, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+        return this;
+    }
+
+    /**
+     * @param retry the number of the retry, beginning with 1
+     * @return the waiting time before the retry
+     */
+    public long getBackoffMillis(int retry) {
+        long backoff = initialBackoffMillis;
+        for (int i = 1; (i < retry) && (backoff < maxBackoffMillis); i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, maxBackoffMillis);
+    }
+
+    public RetryPolicy setReconnectOnIOException(boolean reconnectOnIOException) {
+        this.reconnectOnIOException = reconnectOnIOException;
+        return this;
+    }
+
+    public boolean isReconnectOnIOException() {
+        return reconnectOnIOException;
+    }
+
+    /**
+     * @param status
+     * @return true if the command may succeed when it is repeated
+     */
+    public boolean isTransient(CommandStatus status) {
+        return (status == CommandStatus.IO_EXCEPTION) || (status == CommandStatus.NAK_PARITY_CRC_ERROR)
+                || (status == CommandStatus.UNEXPECTED_RESPONSE);
+    }
+}
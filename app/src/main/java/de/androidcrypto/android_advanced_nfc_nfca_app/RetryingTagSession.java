@@ -0,0 +1,247 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.maxFastReadPages;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.intFrom3ByteArrayLsb;
+
+/**
+ * This class wraps the status methods of a TagSession and repeats failed commands according to
+ * a RetryPolicy, so a short RF glitch does not end in a failed tap. After a failure the tag gets
+ * reconnected (a NAK brings the tag in HALT state), when the reconnect fails the tag was lost and
+ * the command fails without further retries.
+ * <p>
+ * WRITE and INCR_CNT are not repeated blindly, as the tag may have executed the command and only
+ * the response got lost:
+ * - before a WRITE is repeated the page is read, if it contains the data the write is done
+ * - before an INCR_CNT is sent the counter is read, before it is repeated the counter is read
+ * again and compared, if the counter can't be read the INCR_CNT is not repeated
+ * <p>
+ * The retries, reconnects and recovery times are counted in the RecoveryMetrics.
+ */
+public class RetryingTagSession {
+
+    private static final int BYTES_PER_PAGE = 4;
+
+    private final TagSession session;
+    private final RetryPolicy policy;
+    private final RecoveryMetrics metrics = new RecoveryMetrics();
+    private final byte[] checkBuffer = new byte[16]; // READ response for checks and partial reads
+    private int counterValueBefore = -1; // the counter value before an INCR_CNT, -1 = unknown
+
+    /**
+     * @param session
+     * @param policy  e.g. 'new RetryPolicy()' for the default values
+     */
+    public RetryingTagSession(TagSession session, RetryPolicy policy) {
+        this.session = session;
+        this.policy = policy;
+    }
+
+    public TagSession getSession() {
+        return session;
+    }
+
+    public RetryPolicy getPolicy() {
+        return policy;
+    }
+
+    public RecoveryMetrics getMetrics() {
+        return metrics;
+    }
+
+    public synchronized CommandStatus readPageInto(int pageNumber, byte[] dest, int destOffset) {
+        return execute(CommandType.READ, pageNumber, -1, dest, destOffset);
+    }
+
+    public synchronized CommandStatus fastReadInto(int pageNumberStart, int pageNumberEnd, byte[] dest, int destOffset) {
+        return execute(CommandType.FAST_READ, pageNumberStart, pageNumberEnd, dest, destOffset);
+    }
+
+    public synchronized CommandStatus writePage(int pageNumber, byte[] src, int srcOffset) {
+        return execute(CommandType.WRITE, pageNumber, -1, src, srcOffset);
+    }
+
+    public synchronized CommandStatus getVersionInto(byte[] dest, int destOffset) {
+        return execute(CommandType.GET_VERSION, -1, -1, dest, destOffset);
+    }
+
+    public synchronized CommandStatus readCounterInto(int counterNumber, byte[] dest, int destOffset) {
+        return execute(CommandType.READ_CNT, counterNumber, -1, dest, destOffset);
+    }
+
+    public synchronized CommandStatus readSignatureInto(byte[] dest, int destOffset) {
+        return execute(CommandType.READ_SIG, -1, -1, dest, destOffset);
+    }
+
+    /**
+     * Increases one of the counters on a MIFARE Ultralight EV1 tag by 1. If the policy allows a
+     * retry the counter is read before, so a lost response can be detected.
+     *
+     * @param counterNumber
+     * @return ACK on success
+     */
+    public synchronized CommandStatus increaseCounter(int counterNumber) {
+        counterValueBefore = -1;
+        if (policy.getMaxRetries(CommandType.INCR_CNT) > 0) {
+            CommandStatus status = execute(CommandType.READ_CNT, counterNumber, -1, checkBuffer, 0);
+            if (status.isSuccess()) {
+                counterValueBefore = intFrom3ByteArrayLsb(checkBuffer);
+            }
+        }
+        return execute(CommandType.INCR_CNT, counterNumber, -1, null, 0);
+    }
+
+    /**
+     * Reads the pages into the buffer, using FAST_READ commands when the tag supports them and
+     * READ commands otherwise. Each command is repeated according to the policy.
+     *
+     * @param ti
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read, -1 if the arguments are invalid
+     */
+    public synchronized int readPagesInto(TagInformation ti, int pageNumberStart, int pageNumberEnd, byte[] dest, int destOffset) {
+        if ((ti == null) || (pageNumberStart < 0) || (pageNumberEnd < pageNumberStart) || (dest == null) || (destOffset < 0)
+                || (dest.length - destOffset < (pageNumberEnd - pageNumberStart + 1) * BYTES_PER_PAGE)) {
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto TagInformation, page range or dest is invalid, aborted");
+            return -1;
+        }
+        int chunkSize = ti.tagHasFastReadCommand ? maxFastReadPages(ti.maxTransceiveLength) : 4;
+        int pageNumber = pageNumberStart;
+        while (pageNumber <= pageNumberEnd) {
+            int chunkPages = Math.min(chunkSize, pageNumberEnd - pageNumber + 1);
+            int offset = destOffset + (pageNumber - pageNumberStart) * BYTES_PER_PAGE;
+            CommandStatus status;
+            if (ti.tagHasFastReadCommand) {
+                status = execute(CommandType.FAST_READ, pageNumber, pageNumber + chunkPages - 1, dest, offset);
+            } else {
+                // the READ command returns 4 pages, only the needed pages are copied
+                status = execute(CommandType.READ, pageNumber, -1, checkBuffer, 0);
+                if (status.isSuccess()) {
+                    System.arraycopy(checkBuffer, 0, dest, offset, chunkPages * BYTES_PER_PAGE);
+                }
+            }
+            if (!status.isSuccess()) break;
+            pageNumber += chunkPages;
+        }
+        return pageNumber - pageNumberStart;
+    }
+
+    /**
+     * Sends the command and repeats it according to the policy.
+     */
+    private CommandStatus execute(CommandType commandType, int operand1, int operand2, byte[] buffer, int offset) {
+        metrics.noteCommand();
+        CommandStatus status = send(commandType, operand1, operand2, buffer, offset);
+        if (status.isSuccess()) return status;
+        long failureNanos = System.nanoTime();
+        int maxRetries = policy.getMaxRetries(commandType);
+        int retry = 0;
+        while (true) {
+            if ((status.isNak()) || ((status.needsReconnect()) && (policy.isReconnectOnIOException()))) {
+                // a NAK brings the tag in HALT state
+                metrics.noteReconnect();
+                if (!session.reconnect()) {
+                    metrics.noteTagLost();
+                    metrics.noteFailed();
+                    return status;
+                }
+            }
+            if ((!policy.isTransient(status)) || (retry >= maxRetries) || (!canRetry(commandType))) {
+                metrics.noteFailed();
+                return status;
+            }
+            retry++;
+            if (!backoff(policy.getBackoffMillis(retry))) {
+                metrics.noteFailed();
+                return status;
+            }
+            metrics.noteRetry();
+            if (!commandType.isIdempotent()) {
+                // check whether the tag executed the failed command
+                CommandStatus checkStatus = checkExecuted(commandType, operand1, buffer, offset);
+                if (checkStatus == CommandStatus.ACK) {
+                    metrics.noteRecovered(System.nanoTime() - failureNanos);
+                    return checkStatus;
+                } else if (checkStatus != null) {
+                    // the check failed, this counts as an attempt
+                    status = checkStatus;
+                    continue;
+                }
+            }
+            status = send(commandType, operand1, operand2, buffer, offset);
+            if (status.isSuccess()) {
+                metrics.noteRecovered(System.nanoTime() - failureNanos);
+                return status;
+            }
+        }
+    }
+
+    private CommandStatus send(CommandType commandType, int operand1, int operand2, byte[] buffer, int offset) {
+        switch (commandType) {
+            case READ:
+                return session.readPageInto(operand1, buffer, offset);
+            case FAST_READ:
+                return session.fastReadInto(operand1, operand2, buffer, offset);
+            case WRITE:
+                return session.writePage(operand1, buffer, offset);
+            case GET_VERSION:
+                return session.getVersionInto(buffer, offset);
+            case READ_CNT:
+                return session.readCounterInto(operand1, buffer, offset);
+            case INCR_CNT:
+                return session.increaseCounter(operand1);
+            case READ_SIG:
+                return session.readSignatureInto(buffer, offset);
+            default:
+                return CommandStatus.INVALID_ARGUMENT;
+        }
+    }
+
+    private boolean canRetry(CommandType commandType) {
+        // an INCR_CNT can be checked only if the counter value before is known
+        return (commandType != CommandType.INCR_CNT) || (counterValueBefore >= 0);
+    }
+
+    /**
+     * Checks if a WRITE or INCR_CNT was executed by the tag.
+     *
+     * @return ACK if the command was executed, NULL if it was not executed and can be repeated,
+     * any other status if the check failed
+     */
+    private CommandStatus checkExecuted(CommandType commandType, int operand1, byte[] buffer, int offset) {
+        if (commandType == CommandType.WRITE) {
+            CommandStatus status = session.readPageInto(operand1, checkBuffer, 0);
+            if (!status.isSuccess()) return status;
+            for (int i = 0; i < BYTES_PER_PAGE; i++) {
+                if (checkBuffer[i] != buffer[offset + i]) return null;
+            }
+            return CommandStatus.ACK;
+        } else if (commandType == CommandType.INCR_CNT) {
+            CommandStatus status = session.readCounterInto(operand1, checkBuffer, 0);
+            if (!status.isSuccess()) return status;
+            int counterValue = intFrom3ByteArrayLsb(checkBuffer);
+            if (counterValue == counterValueBefore + 1) return CommandStatus.ACK;
+            if (counterValue == counterValueBefore) return null;
+            // someone else changed the counter, do not increase it again
+            counterValueBefore = -1;
+            return CommandStatus.UNEXPECTED_RESPONSE;
+        }
+        return null;
+    }
+
+    /**
+     * @return false if the thread was interrupted
+     */
+    private boolean backoff(long millis) {
+        if (millis <= 0) return true;
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
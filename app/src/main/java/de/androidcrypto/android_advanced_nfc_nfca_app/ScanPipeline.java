@@ -0,0 +1,217 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class splits a scan into stages, so the thread talking to the tag does nothing else:
+ * - the RF stage is the reader callback thread, it sends the commands and adds the raw responses
+ * to the ScanReport
+ * - the render stage parses the responses (VersionInfo, ConfigurationPages) and renders the
+ * completed report sections for the display and the log
+ * - the storage stage updates and saves the caches
+ * The tag can be released as soon as the last command is sent, the rendering and storing is done
+ * while the tag is already removed from the field.
+ * <p>
+ * Each worker stage runs in one thread and has a bounded queue, the jobs of a stage are run in the
+ * order they were submitted. When a queue is full the RF stage waits until there is space again,
+ * so a slow display can not fill the memory.
+ */
+public class ScanPipeline {
+
+    private static final String TAG = ScanPipeline.class.getSimpleName();
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final Stage renderStage;
+    private final Stage storageStage;
+
+    public ScanPipeline() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity the maximum number of waiting jobs in each stage
+     */
+    public ScanPipeline(int queueCapacity) {
+        renderStage = new Stage("ScanPipeline-render", queueCapacity);
+        storageStage = new Stage("ScanPipeline-storage", queueCapacity);
+    }
+
+    /**
+     * Runs the job on the render stage.
+     *
+     * @param job
+     */
+    public void render(Runnable job) {
+        renderStage.submit(job);
+    }
+
+    /**
+     * Runs the job on the storage stage.
+     *
+     * @param job
+     */
+    public void store(Runnable job) {
+        storageStage.submit(job);
+    }
+
+    /**
+     * Wraps a report listener, all calls are run on the render stage. The completed sections are
+     * not changed any longer, so they can be rendered while the next section is built.
+     *
+     * @param listener
+     * @return the listener for ScanReport.addListener
+     */
+    public ScanReport.Listener onRenderStage(final ScanReport.Listener listener) {
+        return new ScanReport.Listener() {
+            @Override
+            public void onReportStarted(final ScanReport report) {
+                render(() -> listener.onReportStarted(report));
+            }
+
+            @Override
+            public void onSectionCompleted(final ScanReport report, final ScanReport.Section section) {
+                render(() -> listener.onSectionCompleted(report, section));
+            }
+
+            @Override
+            public void onReportCompleted(final ScanReport report) {
+                render(() -> listener.onReportCompleted(report));
+            }
+        };
+    }
+
+    /**
+     * Waits until all jobs submitted so far are done.
+     *
+     * @param timeoutMillis
+     * @return false on timeout or interrupt
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        final CountDownLatch latch = new CountDownLatch(2);
+        render(latch::countDown);
+        store(latch::countDown);
+        try {
+            return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Stops the worker threads, waiting jobs are dropped. A later job starts the threads again,
+     * after the stopped threads have finished their running job.
+     */
+    public void shutdown() {
+        renderStage.shutdown();
+        storageStage.shutdown();
+    }
+
+    /**
+     * @return the number of submits that had to wait for space in a full queue
+     */
+    public int getBlockedSubmits() {
+        return renderStage.blockedSubmits.get() + storageStage.blockedSubmits.get();
+    }
+
+    /**
+     * @return the maximum number of waiting jobs seen in a stage
+     */
+    public int getMaxQueueDepth() {
+        return Math.max(renderStage.maxQueueDepth.get(), storageStage.maxQueueDepth.get());
+    }
+
+    @Override
+    public String toString() {
+        return "render jobs: " + renderStage.jobs.get() + " storage jobs: " + storageStage.jobs.get()
+                + " blocked submits: " + getBlockedSubmits() + " max queue depth: " + getMaxQueueDepth();
+    }
+
+    private static class Stage implements Runnable {
+        private final String name;
+        private final BlockingQueue<Runnable> queue;
+        private volatile Thread thread; // the consumer, NULL when the stage is stopped
+        private Thread stoppedThread; // the consumer stopped by shutdown, it may still run a job
+        // statistics, written by all submitting threads
+        private final AtomicInteger jobs = new AtomicInteger();
+        private final AtomicInteger blockedSubmits = new AtomicInteger();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        private Stage(String name, int queueCapacity) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        }
+
+        private void submit(Runnable job) {
+            startThread();
+            jobs.incrementAndGet();
+            if (!queue.offer(job)) {
+                blockedSubmits.incrementAndGet();
+                try {
+                    queue.put(job);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    Log.e(TAG, name + " job dropped on interrupt");
+                    return;
+                }
+            }
+            int depth = queue.size();
+            int max = maxQueueDepth.get();
+            while ((depth > max) && (!maxQueueDepth.compareAndSet(max, depth))) {
+                max = maxQueueDepth.get();
+            }
+        }
+
+        private synchronized void startThread() {
+            if (thread != null) return;
+            if ((stoppedThread != null) && (stoppedThread != Thread.currentThread())) {
+                // the stopped consumer finishes its running job first, so the jobs are never run
+                // by two threads at a time
+                try {
+                    stoppedThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    Log.e(TAG, name + " interrupted while waiting for the stopped thread");
+                }
+                stoppedThread = null;
+            }
+            thread = new Thread(this, name);
+            // the stage does not keep the app alive
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private synchronized void shutdown() {
+            if (thread == null) return;
+            thread.interrupt();
+            stoppedThread = thread;
+            thread = null;
+            queue.clear();
+        }
+
+        @Override
+        public void run() {
+            // a stopped consumer does not take another job, even if a job cleared the interrupt
+            while (thread == Thread.currentThread()) {
+                Runnable job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    job.run();
+                } catch (RuntimeException e) {
+                    // one failing job does not stop the stage
+                    Log.e(TAG, name + " job failed with " + e);
+                }
+            }
+        }
+    }
+}
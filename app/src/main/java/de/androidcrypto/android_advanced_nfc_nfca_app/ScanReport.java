@@ -0,0 +1,281 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds the result of a tag scan as typed data: the report is divided into sections
+ * (one for each task), a section contains text lines, key/value rows and byte regions like the
+ * UID or the pages read from the tag.
+ * <p>
+ * The report is built while the tasks are running. A section is completed when the next section
+ * is started (or the report is completed), then the listeners get the section, e.g. to show it on
+ * the display while the next task is still talking to the tag. Completed sections are not changed
+ * any longer.
+ * <p>
+ * The byte regions are not copied, the arrays must not be changed after they were added. The
+ * Get Version and configuration data are kept as raw responses, they are parsed when the section
+ * is rendered, and the hex and ASCII rows are kept as bytes and formatted when the section is
+ * rendered, so the thread talking to the tag does not spend time on the formatting. The report is
+ * built by one thread, the listeners are called on this thread (see ScanPipeline for listeners
+ * running on a worker thread).
+ */
+public class ScanReport {
+
+    /**
+     * The listeners are called on the thread that builds the report.
+     */
+    public interface Listener {
+        void onReportStarted(ScanReport report);
+
+        void onSectionCompleted(ScanReport report, Section section);
+
+        void onReportCompleted(ScanReport report);
+    }
+
+    public enum EntryType {
+        TEXT, // a line of text
+        ROW, // a key/value row, e.g. 'maxTransceiveLength: 253'
+        HEX, // a key/value row with bytes as value, rendered as hex string, e.g. 'ATQA: 4400'
+        ASCII, // a key/value row with bytes as value, rendered as UTF-8 string
+        BYTES, // a named byte array, e.g. the UID
+        PAGES, // the content of tag pages, rendered as page dump
+        VERSION_DATA, // the response of the Get Version command, parsed by VersionInfo
+        CONFIGURATION_PAGES, // the 2 configuration pages, parsed by ConfigurationPages
+        DIVIDER // a line between the parts of a section
+    }
+
+    public static class Entry {
+        private final EntryType type;
+        private final String key; // the text, the key or the name of the bytes
+        private final String value;
+        private final byte[] data;
+        private final int dataOffset;
+        private final int dataLength;
+        private final int firstPage;
+
+        private Entry(EntryType type, String key, String value, byte[] data, int dataOffset, int dataLength, int firstPage) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.data = data;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.firstPage = firstPage;
+        }
+
+        public EntryType getType() {
+            return type;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return the data of a BYTES, HEX, ASCII, PAGES, VERSION_DATA or CONFIGURATION_PAGES
+         * entry, not a copy, can be NULL
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getDataOffset() {
+            return dataOffset;
+        }
+
+        public int getDataLength() {
+            return dataLength;
+        }
+
+        public int getFirstPage() {
+            return firstPage;
+        }
+    }
+
+    public static class Section {
+        private final int index;
+        private final String title; // NULL for a section without title
+        private final List<Entry> entries = new ArrayList<>();
+
+        private Section(int index, String title) {
+            this.index = index;
+            this.title = title;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public List<Entry> getEntries() {
+            return Collections.unmodifiableList(entries);
+        }
+    }
+
+    private final List<Section> sections = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private Section currentSection;
+    private boolean started = false;
+    private boolean completed = false;
+    private final long startNanos = System.nanoTime();
+
+    public ScanReport addListener(Listener listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+        return this;
+    }
+
+    /**
+     * Completes the current section and starts a new one.
+     *
+     * @param title can be NULL
+     * @return this report
+     */
+    public ScanReport section(String title) {
+        if (completed) return this;
+        if (!started) {
+            started = true;
+            for (Listener listener : listeners) {
+                listener.onReportStarted(this);
+            }
+        }
+        completeSection();
+        currentSection = new Section(sections.size(), title);
+        return this;
+    }
+
+    public ScanReport text(String text) {
+        return add(new Entry(EntryType.TEXT, text, null, null, 0, 0, 0));
+    }
+
+    public ScanReport row(String key, String value) {
+        return add(new Entry(EntryType.ROW, key, value, null, 0, 0, 0));
+    }
+
+    public ScanReport row(String key, int value) {
+        return row(key, String.valueOf(value));
+    }
+
+    /**
+     * Adds a row with the data as hex string, e.g. 'Get Version data: 0004040201001303'.
+     *
+     * @param key
+     * @param data is not copied, can be NULL
+     */
+    public ScanReport hex(String key, byte[] data) {
+        return add(new Entry(EntryType.HEX, key, null, data, 0, (data == null) ? 0 : data.length, 0));
+    }
+
+    /**
+     * Adds a row with the data decoded as UTF-8 string, e.g. the ASCII view of pages.
+     *
+     * @param key
+     * @param data is not copied, can be NULL
+     */
+    public ScanReport ascii(String key, byte[] data) {
+        return add(new Entry(EntryType.ASCII, key, null, data, 0, (data == null) ? 0 : data.length, 0));
+    }
+
+    /**
+     * @param name
+     * @param data is not copied, can be NULL
+     */
+    public ScanReport bytes(String name, byte[] data) {
+        return add(new Entry(EntryType.BYTES, name, null, data, 0, (data == null) ? 0 : data.length, 0));
+    }
+
+    /**
+     * @param name
+     * @param data       is not copied
+     * @param dataOffset
+     * @param dataLength
+     * @param firstPage  the page number of the first byte
+     */
+    public ScanReport pages(String name, byte[] data, int dataOffset, int dataLength, int firstPage) {
+        return add(new Entry(EntryType.PAGES, name, null, data, dataOffset, dataLength, firstPage));
+    }
+
+    /**
+     * @param name
+     * @param versionData the response of the Get Version command, is not copied
+     */
+    public ScanReport versionData(String name, byte[] versionData) {
+        return add(new Entry(EntryType.VERSION_DATA, name, null, versionData, 0, (versionData == null) ? 0 : versionData.length, 0));
+    }
+
+    /**
+     * @param name
+     * @param data       is not copied
+     * @param dataOffset the 8 bytes of the configuration pages start here
+     * @param tagType    the ConfigurationPages.TagType, the name is kept as value of the entry
+     */
+    public ScanReport configurationPages(String name, byte[] data, int dataOffset, ConfigurationPages.TagType tagType) {
+        return add(new Entry(EntryType.CONFIGURATION_PAGES, name, tagType.name(), data, dataOffset, 8, 0));
+    }
+
+    public ScanReport divider() {
+        return add(new Entry(EntryType.DIVIDER, null, null, null, 0, 0, 0));
+    }
+
+    /**
+     * Completes the last section and the report, later entries are ignored.
+     */
+    public void complete() {
+        if (completed) return;
+        if (!started) {
+            section(null);
+        }
+        completeSection();
+        completed = true;
+        for (Listener listener : listeners) {
+            listener.onReportCompleted(this);
+        }
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return the completed sections
+     */
+    public List<Section> getSections() {
+        return Collections.unmodifiableList(sections);
+    }
+
+    /**
+     * @return the time since the report was created
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    private ScanReport add(Entry entry) {
+        if (completed) return this;
+        if (currentSection == null) {
+            section(null);
+        }
+        currentSection.entries.add(entry);
+        return this;
+    }
+
+    private void completeSection() {
+        if (currentSection == null) return;
+        Section section = currentSection;
+        currentSection = null;
+        sections.add(section);
+        for (Listener listener : listeners) {
+            listener.onSectionCompleted(this, section);
+        }
+    }
+}
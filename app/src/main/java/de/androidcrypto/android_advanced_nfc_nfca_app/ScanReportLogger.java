@@ -0,0 +1,38 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.util.Log;
+
+/**
+ * This listener writes each completed section of a ScanReport to the log, so the log shows
+ * the progress of a scan and no single huge string is printed at the end.
+ */
+public class ScanReportLogger implements ScanReport.Listener {
+
+    private static final String TAG = ScanReportLogger.class.getSimpleName();
+    private final ScanReportTextRenderer renderer;
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * @param renderer the text renderer, shared with other listeners on the same thread
+     */
+    public ScanReportLogger(ScanReportTextRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    @Override
+    public void onReportStarted(ScanReport report) {
+        // nothing to log
+    }
+
+    @Override
+    public void onSectionCompleted(ScanReport report, ScanReport.Section section) {
+        sb.setLength(0);
+        renderer.renderSection(section, sb);
+        Log.d(TAG, sb.toString());
+    }
+
+    @Override
+    public void onReportCompleted(ScanReport report) {
+        Log.d(TAG, "Scan report with " + report.getSections().size() + " sections completed after " + report.getElapsedMillis() + " ms");
+    }
+}
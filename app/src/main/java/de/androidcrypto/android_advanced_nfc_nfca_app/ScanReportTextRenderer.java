@@ -0,0 +1,181 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class renders the sections of a ScanReport as plain text, the layout is the one of the
+ * former output string of the app:
+ * <pre>
+ * ==============================
+ * GET VERSION data
+ * Get Version data: 0004040201001303
+ * ------------------------------
+ * </pre>
+ * The PAGES entries are rendered by a HexDumpRenderer, set the renderer of the identified tag to
+ * get the region column. The Get Version and configuration data are parsed here by VersionInfo
+ * and ConfigurationPages, the HEX and ASCII rows are formatted here as well. A renderer is not
+ * thread safe, use one renderer per thread.
+ */
+public class ScanReportTextRenderer {
+
+    public static final String CHAPTER_DIVIDER = "==============================";
+    public static final String LINE_DIVIDER = "------------------------------";
+
+    private HexDumpRenderer hexDumpRenderer = new HexDumpRenderer();
+
+    /**
+     * @param hexDumpRenderer for the PAGES entries, e.g. with the regions of the identified tag
+     */
+    public void setHexDumpRenderer(HexDumpRenderer hexDumpRenderer) {
+        this.hexDumpRenderer = (hexDumpRenderer == null) ? new HexDumpRenderer() : hexDumpRenderer;
+    }
+
+    /**
+     * Renders all completed sections of the report.
+     *
+     * @param report
+     * @return the text
+     */
+    public String render(ScanReport report) {
+        StringBuilder sb = new StringBuilder();
+        for (ScanReport.Section section : report.getSections()) {
+            renderSection(section, sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param section
+     * @return the text of the section
+     */
+    public String renderSection(ScanReport.Section section) {
+        StringBuilder sb = new StringBuilder();
+        renderSection(section, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Renders the section into a StringBuilder.
+     *
+     * @param section
+     * @param sb
+     */
+    public void renderSection(ScanReport.Section section, StringBuilder sb) {
+        try {
+            renderSection(section, (Appendable) sb);
+        } catch (IOException e) {
+            // a StringBuilder does not throw an IOException
+        }
+    }
+
+    /**
+     * Renders the section into an Appendable, e.g. the Writer of an export file.
+     *
+     * @param section
+     * @param out
+     * @throws IOException of the Appendable
+     */
+    public void renderSection(ScanReport.Section section, Appendable out) throws IOException {
+        out.append(CHAPTER_DIVIDER).append('\n');
+        if (section.getTitle() != null) {
+            out.append(section.getTitle()).append('\n');
+        }
+        for (ScanReport.Entry entry : section.getEntries()) {
+            switch (entry.getType()) {
+                case TEXT:
+                    appendLine(out, entry.getKey());
+                    break;
+                case ROW:
+                    out.append(entry.getKey()).append(": ");
+                    appendLine(out, entry.getValue());
+                    break;
+                case HEX:
+                    // same as Utils.bytesToHexNpe, NULL is rendered as empty string
+                    out.append(entry.getKey()).append(": ");
+                    if (entry.getData() != null) {
+                        HexDumpRenderer.appendHex(out, entry.getData(), entry.getDataOffset(), entry.getDataLength());
+                    }
+                    out.append('\n');
+                    break;
+                case ASCII:
+                    out.append(entry.getKey()).append(": ");
+                    appendLine(out, (entry.getData() == null) ? null
+                            : new String(entry.getData(), entry.getDataOffset(), entry.getDataLength(), StandardCharsets.UTF_8));
+                    break;
+                case BYTES:
+                    // same as Utils.printData
+                    out.append(entry.getKey()).append(" length: ").append(String.valueOf(entry.getDataLength())).append(" data: ");
+                    if (entry.getData() == null) {
+                        out.append("IS NULL");
+                    } else {
+                        HexDumpRenderer.appendHex(out, entry.getData(), entry.getDataOffset(), entry.getDataLength());
+                    }
+                    out.append('\n');
+                    break;
+                case PAGES:
+                    if (entry.getKey() != null) {
+                        out.append(entry.getKey()).append('\n');
+                    }
+                    hexDumpRenderer.renderPages(out, entry.getData(), entry.getDataOffset(), entry.getDataLength(), entry.getFirstPage());
+                    break;
+                case VERSION_DATA:
+                    appendVersionData(out, entry);
+                    break;
+                case CONFIGURATION_PAGES:
+                    appendConfigurationPages(out, entry);
+                    break;
+                case DIVIDER:
+                    out.append(LINE_DIVIDER).append('\n');
+                    break;
+            }
+        }
+    }
+
+    private static void appendVersionData(Appendable out, ScanReport.Entry entry) throws IOException {
+        byte[] versionData = entry.getData();
+        if ((versionData == null) || (versionData.length < VersionDataView.LENGTH_HARDWARE)) {
+            out.append(entry.getKey()).append(": not available").append('\n');
+            return;
+        }
+        VersionInfo versionInfo;
+        try {
+            versionInfo = new VersionInfo(versionData);
+        } catch (IOException e) {
+            // the response is too short for the software data
+            out.append(entry.getKey()).append(": could not be parsed").append('\n');
+            return;
+        }
+        if (versionData.length == VersionDataView.LENGTH_NTAG) {
+            appendLine(out, versionInfo.dump8Bytes());
+        } else {
+            appendLine(out, versionInfo.dump());
+        }
+    }
+
+    private static void appendConfigurationPages(Appendable out, ScanReport.Entry entry) throws IOException {
+        byte[] data = entry.getData();
+        if ((data == null) || (entry.getDataOffset() + entry.getDataLength() > data.length)) {
+            out.append(entry.getKey()).append(": not available").append('\n');
+            return;
+        }
+        if (entry.getKey() != null) {
+            out.append(entry.getKey()).append('\n');
+        }
+        byte[] configurationPages01 = Arrays.copyOfRange(data, entry.getDataOffset(), entry.getDataOffset() + entry.getDataLength());
+        appendLine(out, new ConfigurationPages(ConfigurationPages.TagType.valueOf(entry.getValue()), configurationPages01).dump());
+    }
+
+    private static void appendLine(Appendable out, String text) throws IOException {
+        if (text == null) {
+            out.append('\n');
+            return;
+        }
+        out.append(text);
+        // some texts are multi line dumps that end with a line feed
+        if ((text.length() == 0) || (text.charAt(text.length() - 1) != '\n')) {
+            out.append('\n');
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class describes one task of a tag scan, e.g. 'Read Signature', for the ScanTaskScheduler:
+ * - the action that talks to the tag
+ * - the ids of the tasks that need to be completed before, e.g. the tag identification
+ * - a precondition on the capabilities of the identified tag, e.g. 'has a FAST_READ command'
+ * - a priority, the ready task with the highest priority runs first
+ * - the estimated time on air, taken from the TagTimingModel
+ * A task is used for one scan only, the scheduler keeps its state in the task.
+ */
+public class ScanTask {
+
+    /**
+     * @return true if the task is completed, false if it failed. The tasks depending on a failed
+     * task are skipped.
+     */
+    public interface Action {
+        boolean run();
+    }
+
+    public interface Precondition {
+        boolean isMet(TagInformation ti);
+    }
+
+    public interface RfCost {
+        /**
+         * @param ti          the identified tag
+         * @param timingModel
+         * @return the estimated time on air in microseconds
+         */
+        long estimateMicros(TagInformation ti, TagTimingModel timingModel);
+    }
+
+    public enum State {
+        PENDING,
+        COMPLETED,
+        FAILED,
+        DISABLED, // switched off by the user
+        PRECONDITION_NOT_MET, // not supported by the tag
+        DEPENDENCY_FAILED, // a task this task depends on was not completed
+        DEADLINE_EXCEEDED // the estimated time does not fit into the remaining time budget
+    }
+
+    public static final int DEFAULT_PRIORITY = 50;
+
+    private final String id;
+    private final String name;
+    private final Action action;
+    private final List<String> dependencies = new ArrayList<>();
+    private int priority = DEFAULT_PRIORITY;
+    private boolean enabled = true;
+    private Precondition precondition;
+    private String skipMessage; // shown when the precondition is not met, NULL = skip silently
+    private RfCost rfCost;
+    // the state of the scan
+    private State state = State.PENDING;
+    private long estimatedMicros;
+    private long elapsedMicros;
+
+    /**
+     * @param id     unique within the scheduler, used for the dependencies
+     * @param name   for the tasks overview
+     * @param action
+     */
+    public ScanTask(String id, String name, Action action) {
+        this.id = id;
+        this.name = name;
+        this.action = action;
+    }
+
+    /**
+     * @param priority the ready task with the highest priority runs first
+     */
+    public ScanTask setPriority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public ScanTask setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * @param ids the tasks that need to be completed before this task runs
+     */
+    public ScanTask dependsOn(String... ids) {
+        dependencies.addAll(Arrays.asList(ids));
+        return this;
+    }
+
+    /**
+     * @param precondition checked after the dependencies are completed, so it can use the
+     *                     identified tag type
+     * @param skipMessage  is shown when the precondition is not met, can be NULL
+     */
+    public ScanTask setPrecondition(Precondition precondition, String skipMessage) {
+        this.precondition = precondition;
+        this.skipMessage = skipMessage;
+        return this;
+    }
+
+    public ScanTask setRfCost(RfCost rfCost) {
+        this.rfCost = rfCost;
+        return this;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<String> getDependencies() {
+        return Collections.unmodifiableList(dependencies);
+    }
+
+    public String getSkipMessage() {
+        return skipMessage;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the estimated time on air, set by the scheduler before the task runs
+     */
+    public long getEstimatedMicros() {
+        return estimatedMicros;
+    }
+
+    /**
+     * @return the measured time of the action, 0 if the task did not run
+     */
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    /**
+     * @param ti
+     * @param timingModel
+     * @return the estimated time on air in microseconds, 0 without RfCost
+     */
+    public long estimateMicros(TagInformation ti, TagTimingModel timingModel) {
+        if (rfCost == null) return 0;
+        return rfCost.estimateMicros(ti, timingModel);
+    }
+
+    /**
+     * Estimates the time of reading pages with FAST_READ commands, with READ commands (4 pages
+     * per command) if the tag has no FAST_READ command.
+     *
+     * @param ti
+     * @param timingModel
+     * @param numberOfPages
+     * @return the estimated time on air in microseconds
+     */
+    public static long estimateReadMicros(TagInformation ti, TagTimingModel timingModel, int numberOfPages) {
+        if (numberOfPages <= 0) return 0;
+        int pagesPerCommand = ti.tagHasFastReadCommand ? NfcACommands.maxFastReadPages(ti.maxTransceiveLength) : 4;
+        int commandLength = ti.tagHasFastReadCommand ? 3 : 2;
+        int fullCommands = numberOfPages / pagesPerCommand;
+        int lastPages = numberOfPages % pagesPerCommand;
+        long micros = fullCommands * timingModel.dataFrameMicros(commandLength, pagesPerCommand * 4);
+        if (lastPages > 0) {
+            // a READ returns 4 pages in any case
+            micros += timingModel.dataFrameMicros(commandLength, (ti.tagHasFastReadCommand ? lastPages : 4) * 4);
+        }
+        return micros;
+    }
+
+    @Override
+    public String toString() {
+        return id + " (" + state + ", priority " + priority + ", estimated " + estimatedMicros + " us, elapsed "
+                + elapsedMicros + " us)";
+    }
+
+    /* used by the ScanTaskScheduler */
+
+    void reset() {
+        state = enabled ? State.PENDING : State.DISABLED;
+        estimatedMicros = 0;
+        elapsedMicros = 0;
+    }
+
+    boolean isPreconditionMet(TagInformation ti) {
+        return (precondition == null) || (precondition.isMet(ti));
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setEstimatedMicros(long estimatedMicros) {
+        this.estimatedMicros = estimatedMicros;
+    }
+
+    boolean runAction() {
+        long startNanos = System.nanoTime();
+        boolean success = action.run();
+        elapsedMicros = (System.nanoTime() - startNanos) / 1000;
+        state = success ? State.COMPLETED : State.FAILED;
+        return success;
+    }
+}
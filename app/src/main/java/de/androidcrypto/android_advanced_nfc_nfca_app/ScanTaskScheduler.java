@@ -0,0 +1,184 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class runs the tasks of a tag scan in the order of their dependencies and priorities:
+ * - a task is ready when all tasks it depends on are completed, of the ready tasks the one with
+ * the highest priority runs first (on equal priorities the task added first)
+ * - a task depending on a task that was not completed (failed, disabled or skipped) is skipped
+ * - the precondition is checked when the task is ready, so it can use the tag type identified by
+ * an earlier task
+ * - with a time budget a task is skipped when its estimated time on air does not fit into the
+ * remaining time, a cheaper task may still run. When a tag is only briefly in the field the
+ * tasks with a high priority are done first.
+ * The scheduler is not thread safe, all tasks run on the thread calling run().
+ */
+public class ScanTaskScheduler {
+
+    private static final String TAG = ScanTaskScheduler.class.getSimpleName();
+
+    /**
+     * Is called for each task that is not run, the reason is the state of the task.
+     */
+    public interface Listener {
+        void onTaskSkipped(ScanTask task);
+    }
+
+    private final List<ScanTask> tasks = new ArrayList<>();
+    private final Map<String, ScanTask> tasksById = new HashMap<>();
+    private final TagTimingModel timingModel;
+    private long elapsedMicros;
+
+    public ScanTaskScheduler() {
+        this(TagTimingModel.defaultModel());
+    }
+
+    /**
+     * @param timingModel for the estimated time on air of the tasks
+     */
+    public ScanTaskScheduler(TagTimingModel timingModel) {
+        this.timingModel = timingModel;
+    }
+
+    /**
+     * @param task the id needs to be unique
+     * @return this scheduler
+     */
+    public ScanTaskScheduler add(ScanTask task) {
+        if (tasksById.containsKey(task.getId())) {
+            throw new IllegalArgumentException("the task id " + task.getId() + " is used twice");
+        }
+        tasks.add(task);
+        tasksById.put(task.getId(), task);
+        return this;
+    }
+
+    /**
+     * @return the tasks in the order they were added
+     */
+    public List<ScanTask> getTasks() {
+        return Collections.unmodifiableList(tasks);
+    }
+
+    public ScanTask getTask(String id) {
+        return tasksById.get(id);
+    }
+
+    /**
+     * Runs the tasks.
+     *
+     * @param ti           the tag information, updated by the identification task
+     * @param budgetMicros the time budget for all tasks, 0 = no limit
+     * @param listener     gets the skipped tasks, can be NULL
+     * @return the number of completed tasks
+     */
+    public int run(TagInformation ti, long budgetMicros, Listener listener) {
+        for (ScanTask task : tasks) {
+            for (String dependency : task.getDependencies()) {
+                if (!tasksById.containsKey(dependency)) {
+                    throw new IllegalArgumentException("the task " + task.getId() + " depends on the unknown task " + dependency);
+                }
+            }
+            task.reset();
+        }
+        for (ScanTask task : tasks) {
+            if ((task.getState() == ScanTask.State.DISABLED) && (listener != null)) {
+                listener.onTaskSkipped(task);
+            }
+        }
+        long startNanos = System.nanoTime();
+        int completedTasks = 0;
+        ScanTask next;
+        while ((next = nextReadyTask(listener)) != null) {
+            if (!next.isPreconditionMet(ti)) {
+                skip(next, ScanTask.State.PRECONDITION_NOT_MET, listener);
+                continue;
+            }
+            next.setEstimatedMicros(next.estimateMicros(ti, timingModel));
+            long elapsed = (System.nanoTime() - startNanos) / 1000;
+            if ((budgetMicros > 0) && (elapsed + next.getEstimatedMicros() > budgetMicros)) {
+                skip(next, ScanTask.State.DEADLINE_EXCEEDED, listener);
+                continue;
+            }
+            if (next.runAction()) {
+                completedTasks++;
+            }
+        }
+        for (ScanTask task : tasks) {
+            if (task.getState() == ScanTask.State.PENDING) {
+                // the dependencies form a cycle
+                Log.e(TAG, "the task " + task.getId() + " has cyclic dependencies, skipped");
+                skip(task, ScanTask.State.DEPENDENCY_FAILED, listener);
+            }
+        }
+        elapsedMicros = (System.nanoTime() - startNanos) / 1000;
+        return completedTasks;
+    }
+
+    /**
+     * @return the time of the last run
+     */
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (ScanTask task : tasks) {
+            sb.append(task).append("\n");
+        }
+        sb.append("elapsed ").append(elapsedMicros).append(" us");
+        return sb.toString();
+    }
+
+    /**
+     * Skips the pending tasks with a dependency that was not completed and returns the ready task
+     * with the highest priority.
+     *
+     * @return the next task, NULL if no task is ready
+     */
+    private ScanTask nextReadyTask(Listener listener) {
+        ScanTask next = null;
+        boolean skipped = true;
+        while (skipped) {
+            skipped = false;
+            next = null;
+            for (ScanTask task : tasks) {
+                if (task.getState() != ScanTask.State.PENDING) continue;
+                boolean ready = true;
+                boolean dependencyFailed = false;
+                for (String dependency : task.getDependencies()) {
+                    ScanTask.State dependencyState = tasksById.get(dependency).getState();
+                    if (dependencyState == ScanTask.State.PENDING) {
+                        ready = false;
+                    } else if (dependencyState != ScanTask.State.COMPLETED) {
+                        dependencyFailed = true;
+                    }
+                }
+                if (dependencyFailed) {
+                    skip(task, ScanTask.State.DEPENDENCY_FAILED, listener);
+                    // tasks depending on this task are skipped as well
+                    skipped = true;
+                } else if ((ready) && ((next == null) || (task.getPriority() > next.getPriority()))) {
+                    next = task;
+                }
+            }
+        }
+        return next;
+    }
+
+    private void skip(ScanTask task, ScanTask.State state, Listener listener) {
+        task.setState(state);
+        if (listener != null) {
+            listener.onTaskSkipped(task);
+        }
+    }
+}
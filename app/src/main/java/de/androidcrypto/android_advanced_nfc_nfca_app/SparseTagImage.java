@@ -0,0 +1,162 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class holds the memory image of a tag that might be read only partially, e.g. because some
+ * pages are read protected (AUTH0) or the tag was removed during reading. Beside the data of the
+ * pages it holds a validity bitmap with one bit per page, a page that was not read is filled
+ * with 0x00h and marked as invalid.
+ */
+public class SparseTagImage {
+
+    private static final int BYTES_PER_PAGE = 4;
+
+    private final int firstPage;
+    private final int lastPage;
+    private final byte[] data;
+    private final BitSet validPages;
+
+    /**
+     * @param firstPage the first page of the image, usually 0
+     * @param lastPage  the last page of the image (included), e.g. TagInformation.tagMemoryEndPage
+     */
+    public SparseTagImage(int firstPage, int lastPage) {
+        if ((firstPage < 0) || (lastPage < firstPage)) {
+            throw new IllegalArgumentException("invalid page range " + firstPage + " to " + lastPage);
+        }
+        this.firstPage = firstPage;
+        this.lastPage = lastPage;
+        this.data = new byte[(lastPage - firstPage + 1) * BYTES_PER_PAGE];
+        this.validPages = new BitSet(lastPage - firstPage + 1);
+    }
+
+    public SparseTagImage(int firstPage, int lastPage, byte[] data, BitSet validPages) {
+        this(firstPage, lastPage);
+        if ((data == null) || (data.length != this.data.length)) {
+            throw new IllegalArgumentException("data needs to be " + this.data.length + " bytes long");
+        }
+        System.arraycopy(data, 0, this.data, 0, data.length);
+        this.validPages.or(validPages);
+        this.validPages.clear(getNumberOfPages(), Math.max(getNumberOfPages(), validPages.length()));
+    }
+
+    /**
+     * Copies the data of the pages <pageNumberStart> up to <pageNumberEnd> from src to the
+     * image and marks them as valid.
+     *
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param src
+     * @param srcOffset
+     */
+    public void setPages(int pageNumberStart, int pageNumberEnd, byte[] src, int srcOffset) {
+        checkPage(pageNumberStart);
+        checkPage(pageNumberEnd);
+        int length = (pageNumberEnd - pageNumberStart + 1) * BYTES_PER_PAGE;
+        System.arraycopy(src, srcOffset, data, (pageNumberStart - firstPage) * BYTES_PER_PAGE, length);
+        validPages.set(pageNumberStart - firstPage, pageNumberEnd - firstPage + 1);
+    }
+
+    public void invalidatePages(int pageNumberStart, int pageNumberEnd) {
+        checkPage(pageNumberStart);
+        checkPage(pageNumberEnd);
+        Arrays.fill(data, (pageNumberStart - firstPage) * BYTES_PER_PAGE, (pageNumberEnd - firstPage + 1) * BYTES_PER_PAGE, (byte) 0x00);
+        validPages.clear(pageNumberStart - firstPage, pageNumberEnd - firstPage + 1);
+    }
+
+    public void invalidateAll() {
+        Arrays.fill(data, (byte) 0x00);
+        validPages.clear();
+    }
+
+    public boolean isPageValid(int pageNumber) {
+        if ((pageNumber < firstPage) || (pageNumber > lastPage)) return false;
+        return validPages.get(pageNumber - firstPage);
+    }
+
+    /**
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @return true if all pages in the range are valid
+     */
+    public boolean arePagesValid(int pageNumberStart, int pageNumberEnd) {
+        if ((pageNumberStart < firstPage) || (pageNumberEnd > lastPage)) return false;
+        int nextClear = validPages.nextClearBit(pageNumberStart - firstPage);
+        return nextClear > pageNumberEnd - firstPage;
+    }
+
+    /**
+     * @param fromPage
+     * @return the next invalid page starting with fromPage, or -1 if all following pages are valid
+     */
+    public int nextInvalidPage(int fromPage) {
+        int index = validPages.nextClearBit(Math.max(0, fromPage - firstPage));
+        return (index >= getNumberOfPages()) ? -1 : index + firstPage;
+    }
+
+    /**
+     * @param fromPage
+     * @return the next valid page starting with fromPage, or -1 if all following pages are invalid
+     */
+    public int nextValidPage(int fromPage) {
+        int index = validPages.nextSetBit(Math.max(0, fromPage - firstPage));
+        return (index < 0) ? -1 : index + firstPage;
+    }
+
+    public int getValidPageCount() {
+        return validPages.cardinality();
+    }
+
+    public boolean isComplete() {
+        return getValidPageCount() == getNumberOfPages();
+    }
+
+    /**
+     * Copies the 4 bytes of the page to dest.
+     *
+     * @param pageNumber
+     * @param dest
+     * @param destOffset
+     * @return false if the page is not valid, the dest is filled with 0x00h in this case
+     */
+    public boolean copyPage(int pageNumber, byte[] dest, int destOffset) {
+        checkPage(pageNumber);
+        System.arraycopy(data, (pageNumber - firstPage) * BYTES_PER_PAGE, dest, destOffset, BYTES_PER_PAGE);
+        return isPageValid(pageNumber);
+    }
+
+    public int getFirstPage() {
+        return firstPage;
+    }
+
+    public int getLastPage() {
+        return lastPage;
+    }
+
+    public int getNumberOfPages() {
+        return lastPage - firstPage + 1;
+    }
+
+    /**
+     * @return the data of all pages, invalid pages are filled with 0x00h. This is the internal
+     * array, not a copy.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return a copy of the validity bitmap, bit 0 is the first page of the image
+     */
+    public BitSet getValidPages() {
+        return (BitSet) validPages.clone();
+    }
+
+    private void checkPage(int pageNumber) {
+        if ((pageNumber < firstPage) || (pageNumber > lastPage)) {
+            throw new IndexOutOfBoundsException("page " + pageNumber + " is outside of " + firstPage + " to " + lastPage);
+        }
+    }
+}
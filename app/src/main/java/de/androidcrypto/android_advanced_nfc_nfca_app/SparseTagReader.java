@@ -0,0 +1,311 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.util.Log;
+
+/**
+ * This class reads the memory of a tag that is partially read protected (e.g. by the AUTH0 page).
+ * readFullTag returns NULL as soon as one FAST_READ command fails, the readSparse method keeps all
+ * readable pages and returns a SparseTagImage with a validity bitmap instead.
+ * <p>
+ * The strategy on tags with FAST_READ support:
+ * 1. the memory is read in chunks of the size learned by the FastReadChunkPlanner (or the size
+ * that fits into maxTransceiveLength when no planner is given)
+ * 2. when a chunk fails the first failing page is searched with a binary search, the readable part
+ * of the chunk is kept
+ * 3. the first failing page is read alone: if it is readable the chunk failed only because it was
+ * too large, the chunk size is reduced and reading continues after the page
+ * 4. otherwise from the first failing page the end of the failing region is searched by probing
+ * single pages with growing distance (1, 2, 4, 8...) and a binary search between the last failing
+ * and the first readable probe. Pages in the region that were not probed are marked as invalid.
+ * 5. reading continues with chunks after the failing region
+ * <p>
+ * Tags without FAST_READ (Ultralight C) are read with READ commands (4 pages each). When a READ
+ * fails, each of the 4 pages is checked with a READ that ends on this page, so the readable pages
+ * before a protected area are kept.
+ * <p>
+ * Every failing command brings the tag in HALT state, so the tag is reconnected after each failure.
+ * If the reconnect fails (e.g. the tag was removed) reading stops and the image contains the pages
+ * read so far.
+ */
+public class SparseTagReader {
+
+    private static final String TAG = SparseTagReader.class.getSimpleName();
+    private static final int BYTES_PER_PAGE = 4;
+    private static final int READ_PAGES = 4; // the READ command returns 4 pages
+
+    private final TagSession session;
+    private final boolean useFastRead;
+    private final FastReadChunkPlanner planner;
+    private final String plannerKey;
+    private int chunkPages;
+    private final SparseTagImage image;
+    private boolean tagLost = false;
+    private int commandCount = 0;
+    private int reconnectCount = 0;
+
+    private SparseTagReader(TagSession session, boolean useFastRead, int maxTransceiveLength, SparseTagImage image,
+                            FastReadChunkPlanner planner, String plannerKey) {
+        this.session = session;
+        this.useFastRead = useFastRead;
+        this.planner = planner;
+        this.plannerKey = plannerKey;
+        this.chunkPages = (planner != null) ? planner.getChunkPages(plannerKey, maxTransceiveLength)
+                : NfcACommands.maxFastReadPages(maxTransceiveLength);
+        this.image = image;
+    }
+
+    /**
+     * Reads the complete memory of the tag (page 00 up to page ti.tagMemoryEndPage). Protected
+     * pages are marked as invalid in the returned image.
+     *
+     * @param session
+     * @param ti
+     * @return the image, or NULL if session is NULL or not connected
+     */
+    public static SparseTagImage readSparse(TagSession session, TagInformation ti) {
+        return readSparse(session, ti, null, null);
+    }
+
+    /**
+     * Same as readSparse, but the FAST_READ chunk size is taken from the planner and the planner
+     * learns from the chunks read.
+     *
+     * @param session
+     * @param ti
+     * @param planner can be NULL
+     * @param key     the key of the planner, see FastReadChunkPlanner.key()
+     * @return the image, or NULL if session is NULL or not connected
+     */
+    public static SparseTagImage readSparse(TagSession session, TagInformation ti, FastReadChunkPlanner planner, String key) {
+        SparseTagImage image = new SparseTagImage(0, ti.tagMemoryEndPage);
+        if (!readSparseInto(session, ti, planner, key, 0, ti.tagMemoryEndPage, image)) {
+            return null;
+        }
+        return image;
+    }
+
+    /**
+     * Reads the pages <pageNumberStart> up to <pageNumberEnd> (included) into an existing image,
+     * the pages are marked as valid or invalid in the image. Pages outside of the range are
+     * not changed, so this method can fill up the missing pages of an image.
+     *
+     * @param session
+     * @param ti
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param image
+     * @return false if the arguments are invalid or session is not connected
+     */
+    public static boolean readSparseInto(TagSession session, TagInformation ti, int pageNumberStart, int pageNumberEnd, SparseTagImage image) {
+        return readSparseInto(session, ti, null, null, pageNumberStart, pageNumberEnd, image);
+    }
+
+    /**
+     * Same as readSparseInto, but the FAST_READ chunk size is taken from the planner and the
+     * planner learns from the chunks read.
+     *
+     * @param session
+     * @param ti
+     * @param planner         can be NULL
+     * @param key             the key of the planner, see FastReadChunkPlanner.key()
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param image
+     * @return false if the arguments are invalid or session is not connected
+     */
+    public static boolean readSparseInto(TagSession session, TagInformation ti, FastReadChunkPlanner planner, String key,
+                                         int pageNumberStart, int pageNumberEnd, SparseTagImage image) {
+        // sanity checks
+        if ((session == null) || (!session.checkConnected("readSparseInto"))) {
+            return false;
+        }
+        if ((image == null) || (pageNumberStart < image.getFirstPage()) || (pageNumberEnd > image.getLastPage()) || (pageNumberEnd < pageNumberStart)) {
+            Log.e(TAG, "readSparseInto page range " + pageNumberStart + " to " + pageNumberEnd + " is invalid, aborted");
+            return false;
+        }
+        SparseTagReader reader = new SparseTagReader(session, ti.tagHasFastReadCommand, ti.maxTransceiveLength, image, planner, key);
+        if (reader.useFastRead) {
+            reader.readWithFastRead(pageNumberStart, pageNumberEnd);
+        } else {
+            reader.readWithRead(pageNumberStart, pageNumberEnd);
+        }
+        Log.d(TAG, "readSparse: " + image.getValidPageCount() + " of " + image.getNumberOfPages() + " pages valid, "
+                + reader.commandCount + " commands, " + reader.reconnectCount + " reconnects");
+        return true;
+    }
+
+    private void readWithFastRead(int pageNumberStart, int pageNumberEnd) {
+        int pageNumber = pageNumberStart;
+        int failedPages = 0; // the chunk size that failed, noted when all pages of the failed chunk are read
+        int failedRangeEnd = -1;
+        while ((pageNumber <= pageNumberEnd) && (!tagLost)) {
+            int readPages = Math.min(chunkPages, pageNumberEnd - pageNumber + 1);
+            int chunkEnd = pageNumber + readPages - 1;
+            if (fastRead(pageNumber, chunkEnd)) {
+                if ((planner != null) && (readPages == chunkPages)) {
+                    planner.onChunkSuccess(plannerKey, chunkPages);
+                }
+                pageNumber = chunkEnd + 1;
+                if ((failedPages > 0) && (pageNumber > failedRangeEnd)) {
+                    // the pages of the failed chunk are readable, so the size was the reason of the failure
+                    if (planner != null) {
+                        planner.onChunkFailure(plannerKey, failedPages);
+                    }
+                    failedPages = 0;
+                }
+                continue;
+            }
+            if (tagLost) break;
+            int firstFailingPage = findFirstFailingPage(pageNumber, chunkEnd);
+            if (firstFailingPage < 0) break; // tag lost
+            // the binary search never reads the last candidate alone, the chunk may have failed
+            // only because it was too large for the reader device
+            if (fastRead(firstFailingPage, firstFailingPage)) {
+                if (failedPages == 0) {
+                    failedPages = readPages;
+                    failedRangeEnd = chunkEnd;
+                }
+                chunkPages = backOff(readPages);
+                Log.d(TAG, "FAST_READ of " + readPages + " pages failed on a readable page, the chunk size is reduced to " + chunkPages);
+                pageNumber = firstFailingPage + 1;
+                continue;
+            }
+            if (tagLost) break;
+            // a protected page, not the size was the reason of the failure
+            failedPages = 0;
+            int firstReadablePage = findEndOfFailingRegion(firstFailingPage, pageNumberEnd);
+            if (tagLost) break;
+            int lastFailingPage = (firstReadablePage < 0) ? pageNumberEnd : firstReadablePage - 1;
+            image.invalidatePages(firstFailingPage, lastFailingPage);
+            Log.d(TAG, "pages " + firstFailingPage + " to " + lastFailingPage + " are not readable");
+            if (firstReadablePage < 0) break;
+            pageNumber = firstReadablePage;
+        }
+        if (tagLost) {
+            Log.e(TAG, "the tag was lost during reading, the image is incomplete");
+        }
+    }
+
+    /**
+     * The range <lowPage> to <highPage> failed as a whole, the readable pages before the first failing
+     * page are stored in the image.
+     *
+     * @return the first failing page or -1 if the tag was lost
+     */
+    private int findFirstFailingPage(int lowPage, int highPage) {
+        // invariant: the range lowPage to highPage contains a failing page
+        while (lowPage < highPage) {
+            int middlePage = (lowPage + highPage) / 2;
+            if (fastRead(lowPage, middlePage)) {
+                lowPage = middlePage + 1;
+            } else {
+                if (tagLost) return -1;
+                highPage = middlePage;
+            }
+        }
+        return lowPage;
+    }
+
+    /**
+     * @return the chunk size for the next chunk after a chunk of failedPages failed, at least 1
+     */
+    private int backOff(int failedPages) {
+        int pages = (planner != null) ? planner.backOff(plannerKey, failedPages) : failedPages / 2;
+        return Math.max(1, pages);
+    }
+
+    /**
+     * Probes single pages after the failing page with growing distance to find the end of the
+     * failing region.
+     *
+     * @return the first readable page after the region (already stored in the image), or -1 if
+     * no readable page was found up to lastPage
+     */
+    private int findEndOfFailingRegion(int failingPage, int lastPage) {
+        int lastFailingPage = failingPage;
+        int distance = 1;
+        while (lastFailingPage < lastPage) {
+            int probePage = Math.min(lastPage, failingPage + distance);
+            if (fastRead(probePage, probePage)) {
+                // the region ends between the last failing and the probed page
+                int lowPage = lastFailingPage + 1;
+                int highPage = probePage; // readable
+                while (lowPage < highPage) {
+                    int middlePage = (lowPage + highPage) / 2;
+                    if (fastRead(middlePage, middlePage)) {
+                        highPage = middlePage;
+                    } else {
+                        if (tagLost) return -1;
+                        lowPage = middlePage + 1;
+                    }
+                }
+                return highPage;
+            }
+            if (tagLost) return -1;
+            lastFailingPage = probePage;
+            distance *= 2;
+        }
+        return -1;
+    }
+
+    private void readWithRead(int pageNumberStart, int pageNumberEnd) {
+        for (int pageNumber = pageNumberStart; (pageNumber <= pageNumberEnd) && (!tagLost); pageNumber += READ_PAGES) {
+            int groupEnd = Math.min(pageNumberEnd, pageNumber + READ_PAGES - 1);
+            if (read(pageNumber, pageNumber, groupEnd)) {
+                continue;
+            }
+            // check each page with a READ that ends on this page, a READ beginning with a
+            // failing page would fail even if the page itself is readable
+            for (int page = pageNumber; (page <= groupEnd) && (!tagLost); page++) {
+                if (!read(Math.max(0, page - READ_PAGES + 1), page, page)) {
+                    image.invalidatePages(page, page);
+                }
+            }
+        }
+        if (tagLost) {
+            Log.e(TAG, "the tag was lost during reading, the image is incomplete");
+        }
+    }
+
+    /**
+     * Reads the pages with one FAST_READ command and stores them in the image.
+     *
+     * @return true on success, on failure the tag is reconnected
+     */
+    private boolean fastRead(int pageNumberStart, int pageNumberEnd) {
+        commandCount++;
+        byte[] response = session.fastReadPage(pageNumberStart, pageNumberEnd);
+        int expectedLength = (pageNumberEnd - pageNumberStart + 1) * BYTES_PER_PAGE;
+        if ((response != null) && (response.length == expectedLength)) {
+            image.setPages(pageNumberStart, pageNumberEnd, response, 0);
+            return true;
+        }
+        reconnectAfterFailure();
+        return false;
+    }
+
+    /**
+     * Reads 4 pages with one READ command beginning with <readPage> and stores the pages
+     * <pageNumberStart> to <pageNumberEnd> in the image, the range needs to be inside of the 4 pages.
+     *
+     * @return true on success, on failure the tag is reconnected
+     */
+    private boolean read(int readPage, int pageNumberStart, int pageNumberEnd) {
+        commandCount++;
+        byte[] response = session.readPage(readPage);
+        if ((response != null) && (response.length == READ_PAGES * BYTES_PER_PAGE)) {
+            image.setPages(pageNumberStart, pageNumberEnd, response, (pageNumberStart - readPage) * BYTES_PER_PAGE);
+            return true;
+        }
+        reconnectAfterFailure();
+        return false;
+    }
+
+    private void reconnectAfterFailure() {
+        reconnectCount++;
+        session.reconnect();
+        if (!session.isConnected()) {
+            tagLost = true;
+        }
+    }
+}
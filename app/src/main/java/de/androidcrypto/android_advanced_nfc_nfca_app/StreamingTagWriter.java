@@ -0,0 +1,168 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.util.Log;
+
+/**
+ * This class writes data of any length (up to the user memory of the tag) to subsequent pages,
+ * page by page with the WRITE command. Other than NfcACommands.writeBulkData there is no limit
+ * of 40 bytes, the data is checked against the user memory of the identified tag once.
+ * <p>
+ * After each written page the (optional) ProgressListener is informed. When a WRITE fails the
+ * writer reconnects the tag and returns a WriteCursor that points to the failed page, the
+ * writing can be continued with resume() (e.g. on the next tap of the same tag).
+ * <p>
+ * If the data does not end on a page boundary the last page is filled up with 0x00h.
+ * The written pages can be noted in a WriteVerifier to verify them after writing.
+ */
+public class StreamingTagWriter {
+
+    private static final String TAG = StreamingTagWriter.class.getSimpleName();
+    private static final int BYTES_PER_PAGE = 4;
+
+    public interface ProgressListener {
+        /**
+         * Called after a page was written successfully.
+         *
+         * @param pageNumber   the page that was written
+         * @param bytesWritten the number of bytes of the data written so far
+         * @param totalLength  the length of the complete data
+         */
+        void onPageWritten(int pageNumber, int bytesWritten, int totalLength);
+    }
+
+    /**
+     * Writes the data to the tag, beginning with <startPageNumber>.
+     *
+     * @param session
+     * @param ti
+     * @param startPageNumber
+     * @param data
+     * @param listener        can be NULL
+     * @return the cursor after writing, check isComplete() for success. Returns NULL if the
+     * arguments are invalid, see TagSession.getLastError().
+     */
+    public static WriteCursor write(TagSession session, TagInformation ti, int startPageNumber, byte[] data, ProgressListener listener) {
+        return write(session, ti, startPageNumber, data, listener, null);
+    }
+
+    /**
+     * Same as write, but each written page is noted in the verifier. Call writeVerifier.verify()
+     * after writing to check all written pages with a few read commands.
+     *
+     * @param session
+     * @param ti
+     * @param startPageNumber
+     * @param data
+     * @param listener        can be NULL
+     * @param writeVerifier   can be NULL
+     * @return the cursor after writing, check isComplete() for success. Returns NULL if the
+     * arguments are invalid, see TagSession.getLastError().
+     */
+    public static WriteCursor write(TagSession session, TagInformation ti, int startPageNumber, byte[] data, ProgressListener listener, WriteVerifier writeVerifier) {
+        if (data == null) {
+            Log.e(TAG, "write data is NULL, aborted");
+            if (session != null) {
+                session.setLastError(CommandStatus.INVALID_ARGUMENT, "write", "write data is NULL, aborted");
+            }
+            return null;
+        }
+        return resume(session, ti, new WriteCursor(startPageNumber, data.length, 0, NfcACommands.ACK), data, listener, writeVerifier);
+    }
+
+    /**
+     * Continues writing the data at the position of the cursor. The data needs to be the same as
+     * on the call that returned the cursor.
+     *
+     * @param session
+     * @param ti
+     * @param cursor
+     * @param data
+     * @param listener can be NULL
+     * @return the cursor after writing, check isComplete() for success. Returns NULL if the
+     * arguments are invalid, see TagSession.getLastError().
+     */
+    public static WriteCursor resume(TagSession session, TagInformation ti, WriteCursor cursor, byte[] data, ProgressListener listener) {
+        return resume(session, ti, cursor, data, listener, null);
+    }
+
+    /**
+     * Same as resume, but each written page is noted in the verifier.
+     *
+     * @param session
+     * @param ti
+     * @param cursor
+     * @param data
+     * @param listener      can be NULL
+     * @param writeVerifier can be NULL
+     * @return the cursor after writing, check isComplete() for success. Returns NULL if the
+     * arguments are invalid, see TagSession.getLastError().
+     */
+    public static WriteCursor resume(TagSession session, TagInformation ti, WriteCursor cursor, byte[] data, ProgressListener listener, WriteVerifier writeVerifier) {
+        // sanity checks
+        if ((session == null) || (!session.checkConnected("write"))) {
+            return null;
+        }
+        if ((ti == null) || (cursor == null) || (data == null)) {
+            Log.e(TAG, "write TagInformation, cursor or data is NULL, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "write", "write TagInformation, cursor or data is NULL, aborted");
+            return null;
+        }
+        if (cursor.getTotalLength() != data.length) {
+            Log.e(TAG, "write data length does not match the cursor, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "write", "write data length " + data.length + " does not match the cursor length " + cursor.getTotalLength() + ", aborted");
+            return null;
+        }
+        if (data.length > ti.userMemory) {
+            Log.e(TAG, "write data length exceeds the user memory, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "write", "write data length " + data.length + " exceeds the user memory of " + ti.userMemory + " bytes, aborted");
+            return null;
+        }
+        int cursorDataOffset = cursor.getDataOffset();
+        // the cursor points to the start of a page inside the data
+        if ((cursorDataOffset < 0) || (cursorDataOffset % BYTES_PER_PAGE != 0) || (cursorDataOffset > data.length)) {
+            Log.e(TAG, "write cursor data offset is invalid, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "write", "write cursor data offset " + cursorDataOffset + " is invalid for data length " + data.length + ", aborted");
+            return null;
+        }
+        int startPageNumber = cursor.getStartPageNumber();
+        // this check avoids to write to pages 0, 1, 2 and 3 as that are blocked pages or One Time Programmable areas
+        if (startPageNumber < Math.max(4, ti.userMemoryStartPage)) {
+            Log.e(TAG, "write startPageNumber is below the user memory, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "write", "write startPageNumber " + startPageNumber + " is below the user memory, aborted");
+            return null;
+        }
+        if (cursor.getEndPageNumber() > ti.userMemoryEndPage) {
+            Log.e(TAG, "write data exceeds the user memory, aborted");
+            session.setLastError(CommandStatus.INVALID_ARGUMENT, "write", "write data ends on page " + cursor.getEndPageNumber() + " behind the user memory end page " + ti.userMemoryEndPage + ", aborted");
+            return null;
+        }
+
+        byte[] pageData = new byte[BYTES_PER_PAGE]; // reused for each page, writePage does not keep it
+        int dataOffset = cursorDataOffset;
+        while (dataOffset < data.length) {
+            int pageNumber = startPageNumber + dataOffset / BYTES_PER_PAGE;
+            int length = Math.min(BYTES_PER_PAGE, data.length - dataOffset);
+            System.arraycopy(data, dataOffset, pageData, 0, length);
+            if (length < BYTES_PER_PAGE) {
+                // the last page is filled up with 0x00h
+                for (int i = length; i < BYTES_PER_PAGE; i++) {
+                    pageData[i] = (byte) 0x00;
+                }
+            }
+            CommandStatus status = session.writePage(pageNumber, pageData, 0);
+            if (!status.isSuccess()) {
+                // the error is kept in the session, a NAK brings the tag in HALT state
+                session.reconnect();
+                return new WriteCursor(startPageNumber, data.length, dataOffset, status.getResponseCode());
+            }
+            if (writeVerifier != null) {
+                writeVerifier.addWrittenPage(pageNumber, pageData, 0);
+            }
+            dataOffset += length;
+            if (listener != null) {
+                listener.onPageWritten(pageNumber, dataOffset, data.length);
+            }
+        }
+        return new WriteCursor(startPageNumber, data.length, dataOffset, NfcACommands.ACK);
+    }
+}
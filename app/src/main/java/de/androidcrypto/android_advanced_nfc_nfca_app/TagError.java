@@ -0,0 +1,91 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * This class holds the last error of a TagSession. Other than the static
+ * NfcACommands.lastExceptionString each session has its own error record, so sessions running in
+ * parallel do not overwrite each other's errors. The class is immutable (the message is
+ * formatted once on the first call of getMessage()).
+ * <p>
+ * An error of the status methods of TagSession keeps the operands (page or counter numbers) and
+ * the exception only, the message is formatted lazily when someone asks for it.
+ */
+public final class TagError {
+
+    private final CommandStatus status;
+    private final String command;
+    private final int operand1; // -1 if not used
+    private final int operand2; // -1 if not used
+    private final Exception cause;
+    private String message; // NULL until formatted
+
+    public TagError(CommandStatus status, String command, String message) {
+        this(status, command, -1, -1, null, message);
+    }
+
+    /**
+     * @param status
+     * @param command  the name of the command, should be a constant string
+     * @param operand1 e.g. the page number, -1 if not used
+     * @param operand2 e.g. the end page number, -1 if not used
+     * @param cause    can be NULL
+     */
+    public TagError(CommandStatus status, String command, int operand1, int operand2, Exception cause) {
+        this(status, command, operand1, operand2, cause, null);
+    }
+
+    private TagError(CommandStatus status, String command, int operand1, int operand2, Exception cause, String message) {
+        this.status = status;
+        this.command = command;
+        this.operand1 = operand1;
+        this.operand2 = operand2;
+        this.cause = cause;
+        this.message = message;
+    }
+
+    public CommandStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the name of the command or method that failed, e.g. 'readPage'
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return the exception of the transceive, or NULL
+     */
+    public Exception getCause() {
+        return cause;
+    }
+
+    public String getMessage() {
+        if (message == null) {
+            message = formatMessage();
+        }
+        return message;
+    }
+
+    private String formatMessage() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(command);
+        if (operand2 >= 0) {
+            sb.append(" for range ").append(operand1).append(" to ").append(operand2);
+        } else if (operand1 >= 0) {
+            sb.append(" for ").append(operand1);
+        }
+        sb.append(" failed with ");
+        if (cause != null) {
+            sb.append(cause.getClass().getSimpleName()).append(": ").append(cause.getMessage());
+        } else {
+            sb.append(status.getDescription());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return status + " on " + command + ": " + getMessage();
+    }
+}
@@ -1,16 +1,16 @@
 package de.androidcrypto.android_advanced_nfc_nfca_app;
 
-import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
 import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.printData;
 
 import android.util.Log;
 
 import java.io.IOException;
-import java.util.Arrays;
 
 /**
  * This class takes all technical information's about a tag, taken from the Get Version command
  * and other sources. The data is used define ranges e.g. for the free user memory on the tag.
+ * The product data is taken from a TagProfile of the TagProfileRegistry (see the resource
+ * 'tag_profiles.properties'), the public fields are filled from the profile.
  */
 public class TagInformation {
     private final String TAG = TagInformation.class.getSimpleName();
@@ -44,7 +44,10 @@ public class TagInformation {
     public boolean isTag_MIFARE_ULTRALIGHT_EV1 = false;
     public boolean isTag_NTAG21x = false;
     public boolean isTag_NfcA_Library_Capable = false; // set on true if tag type is NTAG21x, Ultralight EV1 or Ultralight C
-    VersionInfo tagVersionData;
+    private final VersionDataView versionDataView = new VersionDataView(); // reads the Get Version data in place
+    private VersionInfo tagVersionData; // created on the first call of getTagVersionData()
+    private TagProfile tagProfile; // the shared profile of the product, NULL until identified
+    private IdentificationPath identificationPath = IdentificationPath.NONE;
 
     public TagInformation(byte[] tagUid, byte[] atqa, byte sak, int maxTransceiveLength, String[] technologies) {
         this.tagUid = tagUid;
@@ -56,201 +59,68 @@ public class TagInformation {
 
     // this method is called when a tag responds to a GetVersion command
     public boolean identifyTagOnGetVersion(byte[] getVersionData) {
-        Log.d(TAG, "identifyTagOnGetVersion started");
-        try {
-            tagVersionData = new VersionInfo(getVersionData);
-        } catch (IOException e) {
-            Log.e(TAG, "identifyTagOnGetVersion failed with IOException " + e.getMessage());
+        // the view reads the fields directly from the response, the full VersionInfo is created
+        // only when someone asks for it
+        tagVersionData = null;
+        if (!versionDataView.wrap(getVersionData)) {
+            Log.e(TAG, "identifyTagOnGetVersion failed, the version data is NULL or of invalid length");
             return false;
         }
-        // take some information from Get Version
-        tagMajorName = tagVersionData.tagTypeLookup(tagVersionData.getHardwareType());
-        // data for NTAG21x
-        if (tagMajorName.equals(VersionInfo.MajorTagType.NTAG_21x.toString())) {
-            // get more data for NTAG21x family
-            if (tagVersionData.getHardStorageSizeRaw() == 15) {
-                // Get Version data: 0004040201000F03
-                // it is an NTAG213
-                tagMinorName = "NTAG213";
-                userMemory = 144;
-                userMemoryStartPage = 4;
-                userMemoryEndPage = 39; // included
-                tagMemoryEndPage = 44;
-                configurationStartPage = 41;
-                isTag_NTAG21x = true;
-            } else if (tagVersionData.getHardStorageSizeRaw() == 17) {
-                // Get Version data: 0004040201001103
-                // it is an NTAG215
-                tagMinorName = "NTAG215";
-                userMemory = 504;
-                userMemoryStartPage = 4;
-                userMemoryEndPage = 129; // included
-                tagMemoryEndPage = 134;
-                configurationStartPage = 131;
-                isTag_NTAG21x = true;
-            } else if (tagVersionData.getHardStorageSizeRaw() == 19) {
-                // Get Version data: 0004040201001303
-                // it is an NTAG216
-                tagMinorName = "NTAG216";
-                userMemory = 888;
-                userMemoryStartPage = 4;
-                userMemoryEndPage = 225; // included
-                tagMemoryEndPage = 230;
-                configurationStartPage = 227;
-                isTag_NTAG21x = true;
-            } else {
-                tagMinorName = "NTAG21x Unknown";
-                userMemory = 0;
-                userMemoryStartPage = 0;
-                userMemoryEndPage = 0;
-            }
-            // general information for NTAG21x family
-            tagHasFastReadCommand = true;
-            tagHasAuthentication = true;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = true;
-            tagHasPageLockBytes = true;
-            tagHasOtpArea = true;
-            numberOfCounter = 1;
-            isTag_NfcA_Library_Capable = true;
-            Log.d(TAG, "Tag is of type " + tagMinorName + " with " + userMemory + " bytes user memory");
-            return true;
-        } else if (tagMajorName.equals(VersionInfo.MajorTagType.MIFARE_Ultralight.toString())) {
-            if (tagVersionData.getHardStorageSizeRaw() == 11) {
-                // Get Version data: 0004030101000B03
-                // it is an Ultralight EV1 with 48 bytes user memory MF0UL11
-                tagMinorName = "MF0UL11";
-                userMemory = 48;
-                userMemoryStartPage = 4;
-                userMemoryEndPage = 15; // included
-                tagMemoryEndPage = 19;
-                configurationStartPage = 16;
-                isTag_MIFARE_ULTRALIGHT_EV1 = true;
-            } else if (tagVersionData.getHardStorageSizeRaw() == 14) {
-                // Get Version data: 0004030101000E03
-                // it is an Ultralight EV1 with 128 bytes user memory MF0UL21
-                tagMinorName = "MF0UL21";
-                userMemory = 128;
-                userMemoryStartPage = 4;
-                userMemoryEndPage = 35; // included
-                tagMemoryEndPage = 40;
-                configurationStartPage = 37;
-                isTag_MIFARE_ULTRALIGHT_EV1 = true;
-            } else {
-                tagMinorName = "MF0ULx Unknown";
-                userMemory = 0;
-                userMemoryStartPage = 0;
-                userMemoryEndPage = 0;
-            }
-            // general information for Ultralight EV1 family
-            tagHasFastReadCommand = true;
-            tagHasAuthentication = true;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = true;
-            tagHasPageLockBytes = true;
-            tagHasOtpArea = true;
-            numberOfCounter = 3;
-            isTag_NfcA_Library_Capable = true;
-            Log.d(TAG, "Tag is of type " + tagMinorName + " with " + userMemory + " bytes user memory");
-            return true;
-        } else if (tagMajorName.equals(VersionInfo.MajorTagType.MIFARE_DESFire.toString())) {
-            // this is a MIFARE DESFire tag that requires other commands to work with
-            // just analyzing some response data to identify the tag
-            // get the sub type EV1 / EV2 / EV3
-            String desfireSubType;
-            if (tagVersionData.getHardwareVersionMajor() == 1) {
-                // Get Version data: 040101010016050401010104160500046D759AA47780B90C224D703722 (EV1 2K)
-                desfireSubType = "EV1";
-            } else if (tagVersionData.getHardwareVersionMajor() == 18) {
-                desfireSubType = "EV2";
-            } else if (tagVersionData.getHardwareVersionMajor() == 51) {
-                desfireSubType = "EV3";
-            } else {
-                desfireSubType = "EVx (unknown)";
-            }
-            // get the storage size
-            if (tagVersionData.getHardStorageSizeRaw() == 22) {
-                // Get Version data: 040101010016050401010104160500046D759AA47780B90C224D703722
-                // it is an DESFire EVx 2K with 2048 bytes user memory
-                tagMinorName = "DESFire " + desfireSubType + " 2K";
-                userMemory = 2048;
-                userMemoryStartPage = 0;
-                userMemoryEndPage = 0; // included
-            } else if (tagVersionData.getHardStorageSizeRaw() == 24) {
-                // Get Version data: 04010112001605040101020116050004464BDAD37580CF5B9665003521
-                // it is an DESFire EVx 4K with 4096 bytes user memory
-                tagMinorName = "DESFire " + desfireSubType + " 4K";
-                userMemory = 4096;
-                userMemoryStartPage = 0;
-                userMemoryEndPage = 0; // included
-            } else if (tagVersionData.getHardStorageSizeRaw() == 26) {
-                // it is an DESFire EVx 8K with 8192 bytes user memory
-                tagMinorName = "DESFire " + desfireSubType + " 8K";
-                userMemory = 8196;
-                userMemoryStartPage = 0;
-                userMemoryEndPage = 0; // included
-            } else if (tagVersionData.getHardStorageSizeRaw() == 28) {
-                // it is an DESFire EVx 16K with 4096 bytes user memory
-                tagMinorName = "DESFire " + desfireSubType + " 16K";
-                userMemory = 16384;
-                userMemoryStartPage = 0;
-                userMemoryEndPage = 0; // included
-            } else if (tagVersionData.getHardStorageSizeRaw() == 30) {
-                // it is an DESFire EVx 32K with 4096 bytes user memory
-                tagMinorName = "DESFire " + desfireSubType + " 32K";
-                userMemory = 32768;
-                userMemoryStartPage = 0;
-                userMemoryEndPage = 0; // included
-            } else {
-                tagMinorName = "DESFire " + desfireSubType + " unknown memory";
-                userMemory = 0;
-                userMemoryStartPage = 0;
-                userMemoryEndPage = 0;
-            }
-            // general information for DESFire EVx family
-            tagHasFastReadCommand = false;
-            tagHasAuthentication = false;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = false;
-            tagHasPageLockBytes = false;
-            tagHasOtpArea = false;
-            numberOfCounter = 0;
-            Log.d(TAG, "Tag is of type " + tagMinorName + " with " + userMemory + " bytes user memory");
-            return true;
-        } else if (tagMajorName.equals(VersionInfo.MajorTagType.MIFARE_DESFire_Light.toString())) {
-            // unfortunately the DESFire light tag does not respond on Get Version command
-            // when using the NfcA technology (just when using IsoDep class), so this is
-            // just a stub and usually this is never called
-            tagMajorName = "DESFire light";
-            tagMinorName = "DESFire light 640 bytes";
-            userMemory = 640;
-            userMemoryStartPage = 0;
-            userMemoryEndPage = 0; // included
-            tagHasFastReadCommand = false;
-            tagHasAuthentication = false;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = false;
-            tagHasPageLockBytes = false;
-            tagHasOtpArea = false;
-            numberOfCounter = 0;
-            Log.d(TAG, "Tag is of type " + tagMinorName + " with " + userMemory + " bytes user memory");
-            return true;
-        } else {
-            tagMajorName = "Unknown1";
-            tagMinorName = "Unknown2";
-            userMemory = 0;
-            userMemoryStartPage = 0;
-            userMemoryEndPage = 0; // included
-            tagHasFastReadCommand = false;
-            tagHasAuthentication = false;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = false;
-            tagHasPageLockBytes = false;
-            tagHasOtpArea = false;
-            numberOfCounter = 0;
-            Log.d(TAG, "Tag is of type " + tagMinorName + " with " + userMemory + " bytes user memory");
-            return false;
+        // take all information from the profile of the tag product
+        TagProfileRegistry registry = TagProfileRegistry.getDefault();
+        TagProfile profile = registry.lookup(versionDataView);
+        String variant = null;
+        if (profile.hasVariant()) {
+            // e.g. the sub type EV1 / EV2 / EV3 of a DESFire tag
+            variant = registry.lookupVariant(versionDataView.getHardwareType(), versionDataView.getHardwareVersionMajor());
+        }
+        applyProfile(profile, variant);
+        identificationPath = profile.isIdentified ? IdentificationPath.GET_VERSION : IdentificationPath.NONE;
+        Log.d(TAG, "Tag is of type " + tagMinorName + " with " + userMemory + " bytes user memory");
+        return profile.isIdentified;
+    }
+
+    /**
+     * This method is called with the Get Version data of a known tag that was taken from a cache
+     * instead of sending the Get Version command.
+     *
+     * @param knownVersionData
+     * @return true if the tag was identified
+     */
+    public boolean identifyTagOnKnownVersionData(byte[] knownVersionData) {
+        boolean success = identifyTagOnGetVersion(knownVersionData);
+        if (success) {
+            identificationPath = IdentificationPath.CACHED_VERSION_DATA;
         }
+        return success;
+    }
+
+    /**
+     * Returns true if the tag may be identified by identifyTagOnCapabilityContainer, in this case
+     * the READ of page 00 should be sent before the Get Version command.
+     */
+    public boolean canIdentifyOnCapabilityContainer() {
+        return TagProfileRegistry.getDefault().isCapabilityContainerCandidate(atqa, sak);
+    }
+
+    /**
+     * This method is called with the data of a READ of page 00 before the Get Version command is
+     * sent. An NDEF formatted tag has a Capability Container in page 03 with the size of the
+     * memory, if the size together with ATQA and SAK is unique for a product the tag is
+     * identified and the Get Version command can be skipped. An NTAG213 has the same size as an
+     * Ultralight C, so this tag needs the Get Version command.
+     *
+     * @param pagesData  the response of the READ of page 00 (16 bytes)
+     * @param dataOffset
+     * @return true if the tag was identified, false if the Get Version command is needed
+     */
+    public boolean identifyTagOnCapabilityContainer(byte[] pagesData, int dataOffset) {
+        TagProfile profile = TagProfileRegistry.getDefault().lookupCapabilityContainer(atqa, sak, pagesData, dataOffset);
+        if ((profile == null) || (!profile.isIdentified)) return false;
+        applyProfile(profile, null);
+        identificationPath = IdentificationPath.CAPABILITY_CONTAINER;
+        Log.d(TAG, "Tag is of type " + tagMinorName + " by the Capability Container");
+        return true;
     }
 
 
@@ -266,110 +136,76 @@ public class TagInformation {
     public boolean identifyTagOnAtqaSak() {
         Log.d(TAG, "identifyTagOnAtqaSak() started");
         Log.d(TAG, printData("atqa", atqa));
-        if ((Arrays.equals(atqa, hexStringToByteArray("4400")) && (sak == (byte) 0x00))) {
-            Log.d(TAG, "MIFARE Ultralight Family identified");
-            // Ultralight Family
-            // assume it is an Ultralight C as the first Ultralight tag is no longer used
-            tagMajorName = VersionInfo.MajorTagType.MIFARE_Ultralight.toString();
-            tagMinorName = "Ultralight C";
-            userMemory = 144;
-            userMemoryStartPage = 4;
-            userMemoryEndPage = 39; // included
-            tagMemoryEndPage = 47;
-            configurationStartPage = 42;
-            tagHasFastReadCommand = false;
-            tagHasAuthentication = true;
-            tagHasDesAuthenticationSecurity = true;
-            tagHasPasswordSecurity = false;
-            tagHasPageLockBytes = true;
-            tagHasOtpArea = true;
-            numberOfCounter = 1;
-            isTag_NfcA_Library_Capable = true;
-            return true;
-        } else if ((Arrays.equals(atqa, hexStringToByteArray("4403")) && (sak == (byte) 0x20))) {
-            Log.d(TAG, "*** Found DESFire light ***");
-            // MIFARE DESFire light or NTAG424DNA
-            tagMajorName = "Assumed NTAG424 or DESFire light";
-            tagMinorName = "Assumed NTAG424 or DESFire light";
-            userMemory = 0;
-            userMemoryStartPage = 0;
-            userMemoryEndPage = 0; // included
-            tagMemoryEndPage = 0;
-            tagHasFastReadCommand = false;
-            tagHasAuthentication = false;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = false;
-            tagHasPageLockBytes = false;
-            tagHasOtpArea = false;
-            numberOfCounter = 0;
-            return true;
-        } else if ((Arrays.equals(atqa, hexStringToByteArray("0400")) && (sak == (byte) 0x08))) {
-            // MIFARE DESFire light or NTAG424DNA
-            tagMajorName = "Assumed MIFARE Classic";
-            tagMinorName = "Assumed MIFARE Classic EV1 2K";
-            userMemory = 0;
-            userMemoryStartPage = 0;
-            userMemoryEndPage = 0; // included
-            tagMemoryEndPage = 0;
-            tagHasFastReadCommand = false;
-            tagHasAuthentication = false;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = false;
-            tagHasPageLockBytes = false;
-            tagHasOtpArea = false;
-            numberOfCounter = 0;
-            return true;
-        } else if ((Arrays.equals(atqa, hexStringToByteArray("0400")) && (sak == (byte) 0x20))) {
-            // MIFARE DESFire light or NTAG424DNA
-            tagMajorName = "Assumed Credit Card";
-            tagMinorName = "Assumed Credit Card";
-            userMemory = 0;
-            userMemoryStartPage = 0;
-            userMemoryEndPage = 0; // included
-            tagMemoryEndPage = 0;
-            tagHasFastReadCommand = false;
-            tagHasAuthentication = false;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = false;
-            tagHasPageLockBytes = false;
-            tagHasOtpArea = false;
-            numberOfCounter = 0;
-            return true;
-        } else if ((Arrays.equals(atqa, hexStringToByteArray("0800")) && (sak == (byte) 0x20))) {
-            // MIFARE DESFire light or NTAG424DNA
-            tagMajorName = "Assumed German Girocard";
-            tagMinorName = "Assumed German Girocard";
-            userMemory = 0;
-            userMemoryStartPage = 0;
-            userMemoryEndPage = 0; // included
-            tagMemoryEndPage = 0;
-            tagHasFastReadCommand = false;
-            tagHasAuthentication = false;
-            tagHasDesAuthenticationSecurity = false;
-            tagHasPasswordSecurity = false;
-            tagHasPageLockBytes = false;
-            tagHasOtpArea = false;
-            numberOfCounter = 0;
-            return true;
-        }
-        tagMajorName = "UNKNOWN TAG";
-        tagMinorName = "UNKNOWN TAG";
-        userMemory = 0;
-        userMemoryStartPage = 0;
-        userMemoryEndPage = 0; // included
-        tagMemoryEndPage = 0;
-        tagHasFastReadCommand = false;
-        tagHasAuthentication = false;
-        tagHasDesAuthenticationSecurity = false;
-        tagHasPasswordSecurity = false;
-        tagHasPageLockBytes = false;
-        tagHasOtpArea = false;
-        numberOfCounter = 0;
-        return false;
+        TagProfile profile = TagProfileRegistry.getDefault().lookupAtqaSak(atqa, sak);
+        Log.d(TAG, "Tag is assumed of type " + profile.minorName);
+        applyProfile(profile, null);
+        identificationPath = profile.isIdentified ? IdentificationPath.ATQA_SAK : IdentificationPath.NONE;
+        return profile.isIdentified;
     }
 
+    /**
+     * Takes the product data from the profile, the profile is shared with all other scans of the
+     * same product and kept as reference.
+     *
+     * @param profile
+     * @param variant the product variant for the {variant} placeholder of the minor name, can be NULL
+     */
+    public void applyProfile(TagProfile profile, String variant) {
+        tagProfile = profile;
+        tagMajorName = profile.majorName;
+        tagMinorName = profile.getMinorName(variant);
+        userMemory = profile.userMemory;
+        userMemoryStartPage = profile.userMemoryStartPage;
+        userMemoryEndPage = profile.userMemoryEndPage;
+        tagMemoryEndPage = profile.tagMemoryEndPage;
+        configurationStartPage = profile.configurationStartPage;
+        tagHasFastReadCommand = profile.hasFastReadCommand;
+        tagHasAuthentication = profile.hasAuthentication;
+        tagHasDesAuthenticationSecurity = profile.hasDesAuthenticationSecurity;
+        tagHasPasswordSecurity = profile.hasPasswordSecurity;
+        tagHasPageLockBytes = profile.hasPageLockBytes;
+        tagHasOtpArea = profile.hasOtpArea;
+        numberOfCounter = profile.numberOfCounter;
+        isTag_NTAG21x = profile.isNtag21x;
+        isTag_MIFARE_ULTRALIGHT_EV1 = profile.isUltralightEv1;
+        isTag_NfcA_Library_Capable = profile.isNfcALibraryCapable;
+    }
+
+    /**
+     * @return the way the tag was identified, NONE if it was not identified
+     */
+    public IdentificationPath getIdentificationPath() {
+        return identificationPath;
+    }
+
+    /**
+     * @return the profile of the identified tag product, or NULL if the tag was not identified yet
+     */
+    public TagProfile getProfile() {
+        return tagProfile;
+    }
+
+    /**
+     * @return the parsed Get Version data, e.g. for a dump, or NULL if the tag was not identified
+     * by the Get Version data
+     */
     public VersionInfo getTagVersionData() {
+        if ((tagVersionData == null) && (versionDataView.isValid())) {
+            try {
+                tagVersionData = new VersionInfo(versionDataView.getResponse());
+            } catch (IOException e) {
+                Log.e(TAG, "getTagVersionData failed with IOException " + e.getMessage());
+            }
+        }
         return tagVersionData;
     }
+
+    /**
+     * @return the view on the Get Version data, invalid if the tag was not identified by the Get
+     * Version data
+     */
+    public VersionDataView getVersionDataView() {
+        return versionDataView;
+    }
 }
 
@@ -0,0 +1,296 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.bytesToHexNpe;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.intFrom3ByteArrayLsb;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * This class caches the version data, the signature and the full memory content of tags, the key
+ * is the UID of the tag. When a known tag is tapped again the cache entry is validated with one
+ * command instead of running GET_VERSION, READ_SIG and a full FAST_READ dump:
+ * - if the NFC counter of an NTAG21x is enabled the counter is read with READ_CNT. The counter is
+ * increased by the tag on the first READ or FAST_READ after each tap, so an unchanged counter
+ * means nobody read (and usually: wrote) the tag in the meantime
+ * - otherwise the first 4 pages of the user memory are read with READ and compared (fingerprint)
+ * Note: a WRITE without any READ in the same tap does not increase the NFC counter. If tags are
+ * written by other devices that way disable the counter validation with setUseCounter(false).
+ * <p>
+ * The number of entries is limited, the least recently used entry is removed first. The cache
+ * can be saved to and loaded from a file. The class is thread safe.
+ */
+public class TagMemoryCache {
+
+    private static final String TAG = TagMemoryCache.class.getSimpleName();
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    public static final int NO_COUNTER = -1; // the NFC counter is not enabled or unknown
+    public static final int NFC_COUNTER_NUMBER = 2; // the NFC counter of NTAG21x tags
+    private static final int BYTES_PER_PAGE = 4;
+    // the suffixes of the properties in the file, the key is the UID
+    private static final String VERSION_SUFFIX = ".version";
+    private static final String SIGNATURE_SUFFIX = ".signature";
+    private static final String CONTENT_SUFFIX = ".content";
+    private static final String COUNTER_SUFFIX = ".counter";
+    private static final String FINGERPRINT_PAGE_SUFFIX = ".fingerprintPage";
+    private static final String ORDER_SUFFIX = ".order";
+
+    /**
+     * A cached tag. The content is the full memory of the tag beginning with page 00.
+     */
+    public static class CachedTag {
+        private final byte[] uid;
+        private final byte[] versionData; // can be NULL if the tag was identified by the Capability Container
+        private final byte[] signature; // can be NULL
+        private final byte[] content;
+        private final int counterValue;
+        private final int fingerprintPage;
+
+        /**
+         * @param uid
+         * @param versionData     the response of GET_VERSION (after GET_MORE_DATA), can be NULL
+         * @param signature       can be NULL
+         * @param content         the content of all pages, beginning with page 00
+         * @param counterValue    the NFC counter after the last READ, or NO_COUNTER
+         * @param fingerprintPage the first page that is read for validation if there is no counter
+         */
+        public CachedTag(byte[] uid, byte[] versionData, byte[] signature, byte[] content, int counterValue, int fingerprintPage) {
+            this.uid = uid.clone();
+            this.versionData = (versionData == null) ? null : versionData.clone();
+            this.signature = (signature == null) ? null : signature.clone();
+            this.content = content.clone();
+            this.counterValue = counterValue;
+            this.fingerprintPage = fingerprintPage;
+        }
+
+        public byte[] getUid() {
+            return uid.clone();
+        }
+
+        public byte[] getVersionData() {
+            return (versionData == null) ? null : versionData.clone();
+        }
+
+        public byte[] getSignature() {
+            return (signature == null) ? null : signature.clone();
+        }
+
+        public byte[] getContent() {
+            return content.clone();
+        }
+
+        public int getCounterValue() {
+            return counterValue;
+        }
+
+        public int getFingerprintPage() {
+            return fingerprintPage;
+        }
+
+        /**
+         * Updates the cached content after a successful write, the last page is filled up with
+         * 0x00h (as writeBulkData and StreamingTagWriter do).
+         *
+         * @param startPageNumber
+         * @param data
+         * @param dataOffset
+         * @param length
+         */
+        public synchronized void setPages(int startPageNumber, byte[] data, int dataOffset, int length) {
+            int numberOfPages = (length + BYTES_PER_PAGE - 1) / BYTES_PER_PAGE;
+            int offset = startPageNumber * BYTES_PER_PAGE;
+            if ((startPageNumber < 0) || (offset + numberOfPages * BYTES_PER_PAGE > content.length)) {
+                Log.e(TAG, "setPages is outside of the cached content, skipped");
+                return;
+            }
+            for (int i = 0; i < numberOfPages * BYTES_PER_PAGE; i++) {
+                content[offset + i] = (i < length) ? data[dataOffset + i] : (byte) 0x00;
+            }
+        }
+
+        private synchronized boolean contentEquals(int pageNumber, byte[] pagesData) {
+            int offset = pageNumber * BYTES_PER_PAGE;
+            // the READ command rolls over at the end of the memory, compare the available pages
+            int length = Math.min(pagesData.length, content.length - offset);
+            if ((offset < 0) || (length <= 0)) return false;
+            for (int i = 0; i < length; i++) {
+                if (content[offset + i] != pagesData[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, CachedTag> entries;
+    private boolean useCounter = true;
+
+    public TagMemoryCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of cached tags
+     */
+    public TagMemoryCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        // the access order gives the least recently used entry first
+        this.entries = new LinkedHashMap<String, CachedTag>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTag> eldest) {
+                return size() > TagMemoryCache.this.maxEntries;
+            }
+        };
+    }
+
+    public synchronized void setUseCounter(boolean useCounter) {
+        this.useCounter = useCounter;
+    }
+
+    /**
+     * @param uid
+     * @return the cached entry or NULL if the tag is unknown
+     */
+    public synchronized CachedTag get(byte[] uid) {
+        if (uid == null) return null;
+        return entries.get(bytesToHexNpe(uid));
+    }
+
+    public synchronized void put(CachedTag entry) {
+        entries.put(bytesToHexNpe(entry.uid), entry);
+    }
+
+    public synchronized void remove(byte[] uid) {
+        if (uid == null) return;
+        entries.remove(bytesToHexNpe(uid));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Checks if the tag still has the cached content, this needs one command. If the check fails
+     * because of a NAK or IOException the tag is reconnected.
+     *
+     * @param session
+     * @param entry
+     * @return true if the cached entry can be used
+     */
+    public boolean validate(TagSession session, CachedTag entry) {
+        if ((session == null) || (entry == null)) return false;
+        boolean useCounter;
+        synchronized (this) {
+            useCounter = this.useCounter;
+        }
+        byte[] response = new byte[16];
+        CommandStatus status;
+        if ((useCounter) && (entry.counterValue != NO_COUNTER)) {
+            status = session.readCounterInto(NFC_COUNTER_NUMBER, response, 0);
+            if (status.isSuccess()) {
+                return intFrom3ByteArrayLsb(response) == entry.counterValue;
+            }
+        } else {
+            status = session.readPageInto(entry.fingerprintPage, response, 0);
+            if (status.isSuccess()) {
+                return entry.contentEquals(entry.fingerprintPage, response);
+            }
+        }
+        if (status.needsReconnect()) {
+            session.reconnect();
+        }
+        return false;
+    }
+
+    /*
+        persistence, the file is a properties file with the UID as key and a suffix for each
+        field, the values are hex encoded. The order keeps the least recently used order.
+     */
+
+    public synchronized void save(File file) throws IOException {
+        Properties properties = new Properties();
+        int order = 0;
+        for (Map.Entry<String, CachedTag> mapEntry : entries.entrySet()) {
+            String key = mapEntry.getKey();
+            CachedTag entry = mapEntry.getValue();
+            if (entry.versionData != null) {
+                properties.setProperty(key + VERSION_SUFFIX, bytesToHexNpe(entry.versionData));
+            }
+            if (entry.signature != null) {
+                properties.setProperty(key + SIGNATURE_SUFFIX, bytesToHexNpe(entry.signature));
+            }
+            synchronized (entry) {
+                properties.setProperty(key + CONTENT_SUFFIX, bytesToHexNpe(entry.content));
+            }
+            properties.setProperty(key + COUNTER_SUFFIX, String.valueOf(entry.counterValue));
+            properties.setProperty(key + FINGERPRINT_PAGE_SUFFIX, String.valueOf(entry.fingerprintPage));
+            properties.setProperty(key + ORDER_SUFFIX, String.valueOf(order++));
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "cached tag memory by UID");
+        }
+    }
+
+    public synchronized void load(File file) throws IOException {
+        if (!file.exists()) return;
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        List<String> keys = new ArrayList<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.endsWith(ORDER_SUFFIX)) {
+                keys.add(name.substring(0, name.length() - ORDER_SUFFIX.length()));
+            }
+        }
+        // the least recently used entry is put first
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Integer.compare(parseInt(properties.getProperty(a + ORDER_SUFFIX)), parseInt(properties.getProperty(b + ORDER_SUFFIX)));
+            }
+        });
+        for (String key : keys) {
+            try {
+                String versionData = properties.getProperty(key + VERSION_SUFFIX);
+                String signature = properties.getProperty(key + SIGNATURE_SUFFIX);
+                CachedTag entry = new CachedTag(
+                        hexStringToByteArray(key),
+                        (versionData == null) ? null : hexStringToByteArray(versionData),
+                        (signature == null) ? null : hexStringToByteArray(signature),
+                        hexStringToByteArray(properties.getProperty(key + CONTENT_SUFFIX)),
+                        Integer.parseInt(properties.getProperty(key + COUNTER_SUFFIX)),
+                        Integer.parseInt(properties.getProperty(key + FINGERPRINT_PAGE_SUFFIX)));
+                entries.put(key, entry);
+            } catch (RuntimeException e) {
+                // a missing or invalid value
+                Log.e(TAG, "invalid cache entry for " + key + " skipped");
+            }
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * This class holds the fixed technical data of a tag product, e.g. the memory layout and the
+ * supported commands of an NTAG216. The profiles are loaded once by the TagProfileRegistry and
+ * shared by all scans, so the class is immutable.
+ * <p>
+ * The minor name can contain the placeholder {variant}, it is replaced by the product variant
+ * (e.g. 'EV2' for a DESFire EV2) when the profile is applied to a TagInformation.
+ */
+public final class TagProfile {
+
+    public static final String VARIANT_PLACEHOLDER = "{variant}";
+
+    /* the feature names as used in the profile resource */
+    public static final String FEATURE_FAST_READ = "FAST_READ";
+    public static final String FEATURE_AUTHENTICATION = "AUTHENTICATION";
+    public static final String FEATURE_DES_AUTHENTICATION = "DES_AUTHENTICATION";
+    public static final String FEATURE_PASSWORD = "PASSWORD";
+    public static final String FEATURE_PAGE_LOCK_BYTES = "PAGE_LOCK_BYTES";
+    public static final String FEATURE_OTP_AREA = "OTP_AREA";
+    public static final String FEATURE_NTAG21X = "NTAG21X";
+    public static final String FEATURE_ULTRALIGHT_EV1 = "ULTRALIGHT_EV1";
+    public static final String FEATURE_LIBRARY_CAPABLE = "LIBRARY_CAPABLE";
+
+    public final String id; // the key in the profile resource, e.g. 'NTAG216'
+    public final String majorName;
+    public final String minorName;
+    public final int userMemory;
+    public final int userMemoryStartPage;
+    public final int userMemoryEndPage; // included
+    public final int tagMemoryEndPage;
+    public final int configurationStartPage;
+    public final boolean hasFastReadCommand;
+    public final boolean hasAuthentication;
+    public final boolean hasDesAuthenticationSecurity;
+    public final boolean hasPasswordSecurity;
+    public final boolean hasPageLockBytes;
+    public final boolean hasOtpArea;
+    public final int numberOfCounter;
+    public final boolean isNtag21x;
+    public final boolean isUltralightEv1;
+    public final boolean isNfcALibraryCapable;
+    public final boolean isIdentified; // false for the profiles of unknown tags
+
+    TagProfile(String id, String majorName, String minorName, int userMemory, int userMemoryStartPage,
+               int userMemoryEndPage, int tagMemoryEndPage, int configurationStartPage,
+               boolean hasFastReadCommand, boolean hasAuthentication, boolean hasDesAuthenticationSecurity,
+               boolean hasPasswordSecurity, boolean hasPageLockBytes, boolean hasOtpArea, int numberOfCounter,
+               boolean isNtag21x, boolean isUltralightEv1, boolean isNfcALibraryCapable, boolean isIdentified) {
+        this.id = id;
+        this.majorName = majorName;
+        this.minorName = minorName;
+        this.userMemory = userMemory;
+        this.userMemoryStartPage = userMemoryStartPage;
+        this.userMemoryEndPage = userMemoryEndPage;
+        this.tagMemoryEndPage = tagMemoryEndPage;
+        this.configurationStartPage = configurationStartPage;
+        this.hasFastReadCommand = hasFastReadCommand;
+        this.hasAuthentication = hasAuthentication;
+        this.hasDesAuthenticationSecurity = hasDesAuthenticationSecurity;
+        this.hasPasswordSecurity = hasPasswordSecurity;
+        this.hasPageLockBytes = hasPageLockBytes;
+        this.hasOtpArea = hasOtpArea;
+        this.numberOfCounter = numberOfCounter;
+        this.isNtag21x = isNtag21x;
+        this.isUltralightEv1 = isUltralightEv1;
+        this.isNfcALibraryCapable = isNfcALibraryCapable;
+        this.isIdentified = isIdentified;
+    }
+
+    /**
+     * @return true if the minor name contains the {variant} placeholder
+     */
+    public boolean hasVariant() {
+        return minorName.contains(VARIANT_PLACEHOLDER);
+    }
+
+    /**
+     * @param variant e.g. 'EV2', can be NULL
+     * @return the minor name with the placeholder replaced by the variant
+     */
+    public String getMinorName(String variant) {
+        if ((variant == null) || (!hasVariant())) return minorName;
+        return minorName.replace(VARIANT_PLACEHOLDER, variant);
+    }
+
+    @Override
+    public String toString() {
+        return id + " (" + minorName + ", " + userMemory + " bytes user memory)";
+    }
+}
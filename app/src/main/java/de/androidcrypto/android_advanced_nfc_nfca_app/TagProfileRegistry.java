@@ -0,0 +1,343 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * This class holds the table of all known tag products. The table is loaded once from the
+ * bundled resource 'tag_profiles.properties', a new chip variant is added by adding a profile to
+ * the resource, no code changes are needed.
+ * <p>
+ * A tag that responds to the Get Version command is looked up in this order:
+ * - the exact version data (vendor, type, subtype and storage size)
+ * - the tag family (the lower nibble of the hardware type, see VersionInfo) and storage size
+ * - the tag family only, e.g. 'NTAG21x Unknown'
+ * - the 'unknown version' profile
+ * A tag without Get Version command is looked up by ATQA and SAK. An NDEF formatted tag can be
+ * identified by the memory size in its Capability Container (page 03) without any Get Version
+ * command, as long as the size is unique for the ATQA and SAK of the tag. All lookups are done in
+ * hash maps with an int key, the returned profiles are shared and must not be changed.
+ */
+public final class TagProfileRegistry {
+
+    private static final String TAG = TagProfileRegistry.class.getSimpleName();
+    public static final String RESOURCE_NAME = "tag_profiles.properties";
+    private static final String FALLBACK_VERSION = "version";
+    private static final String FALLBACK_ATQA_SAK = "atqaSak";
+    private static final String VARIANT_PREFIX = "variant.";
+    private static final String VARIANT_DEFAULT = "default";
+    private static final String CAPABILITY_CONTAINER_ATQA_SAK = "capabilityContainer.atqaSak";
+    private static final String CAPABILITY_CONTAINER_AMBIGUOUS = "capabilityContainer.ambiguous";
+    private static final byte CAPABILITY_CONTAINER_MAGIC_NUMBER = (byte) 0xE1; // NDEF data is present
+    private static final int CAPABILITY_CONTAINER_OFFSET = 12; // page 03 in the data of a READ of page 00
+
+    private static TagProfileRegistry defaultRegistry;
+
+    private final Map<Integer, TagProfile> byVersion = new HashMap<>();
+    private final Map<Integer, TagProfile> byFamilyAndStorageSize = new HashMap<>();
+    private final Map<Integer, TagProfile> byFamily = new HashMap<>();
+    private final Map<Integer, TagProfile> byAtqaSak = new HashMap<>();
+    private final Map<Integer, String> variants = new HashMap<>();
+    private final Map<Integer, TagProfile> byCapabilityContainerSize = new HashMap<>();
+    // the sizes that are used by more than one product, these tags need the Get Version command
+    private final Set<Integer> ambiguousCapabilityContainerSizes = new HashSet<>();
+    private int capabilityContainerAtqaSak = -1; // -1 = no identification by the Capability Container
+    private final Map<String, TagProfile> byId = new HashMap<>();
+    private TagProfile unknownVersionProfile;
+    private TagProfile unknownAtqaSakProfile;
+
+    private TagProfileRegistry() {
+    }
+
+    /**
+     * Returns the registry with the bundled profiles, the resource is loaded on the first call.
+     * If the resource is missing or invalid every tag is reported as unknown.
+     */
+    public static synchronized TagProfileRegistry getDefault() {
+        if (defaultRegistry == null) {
+            try (InputStream in = TagProfileRegistry.class.getResourceAsStream(RESOURCE_NAME)) {
+                if (in == null) {
+                    Log.e(TAG, "the resource " + RESOURCE_NAME + " was not found, all tags are unknown");
+                    defaultRegistry = fromProperties(new Properties());
+                } else {
+                    defaultRegistry = load(in);
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "loading the resource " + RESOURCE_NAME + " failed: " + e.getMessage());
+                defaultRegistry = fromProperties(new Properties());
+            }
+        }
+        return defaultRegistry;
+    }
+
+    /**
+     * Loads a registry from a profile file in the format of the bundled resource.
+     *
+     * @param in
+     * @return the registry
+     * @throws IOException
+     */
+    public static TagProfileRegistry load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        return fromProperties(properties);
+    }
+
+    private static TagProfileRegistry fromProperties(Properties properties) {
+        TagProfileRegistry registry = new TagProfileRegistry();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(VARIANT_PREFIX)) {
+                registry.addVariant(name.substring(VARIANT_PREFIX.length()), properties.getProperty(name).trim());
+            } else if (name.equals(CAPABILITY_CONTAINER_ATQA_SAK)) {
+                registry.capabilityContainerAtqaSak = parseAtqaSak(properties.getProperty(name).trim().toUpperCase(Locale.ROOT), name);
+            } else if (name.equals(CAPABILITY_CONTAINER_AMBIGUOUS)) {
+                for (String size : split(properties.getProperty(name))) {
+                    registry.ambiguousCapabilityContainerSizes.add(hex(size));
+                }
+            } else if (name.endsWith(".majorName")) {
+                registry.addProfile(name.substring(0, name.length() - ".majorName".length()), properties);
+            }
+        }
+        // the lookups never return NULL
+        if (registry.unknownVersionProfile == null) {
+            registry.unknownVersionProfile = unknownProfile("UNKNOWN_VERSION", "Unknown1", "Unknown2");
+        }
+        if (registry.unknownAtqaSakProfile == null) {
+            registry.unknownAtqaSakProfile = unknownProfile("UNKNOWN_ATQA_SAK", "UNKNOWN TAG", "UNKNOWN TAG");
+        }
+        Log.d(TAG, "loaded " + registry.byId.size() + " tag profiles");
+        return registry;
+    }
+
+    private static TagProfile unknownProfile(String id, String majorName, String minorName) {
+        return new TagProfile(id, majorName, minorName, 0, 0, 0, 0, 0,
+                false, false, false, false, false, false, 0, false, false, false, false);
+    }
+
+    private void addProfile(String id, Properties properties) {
+        List<String> features = split(properties.getProperty(id + ".features", ""));
+        TagProfile profile = new TagProfile(id,
+                properties.getProperty(id + ".majorName").trim(),
+                properties.getProperty(id + ".minorName", id).trim(),
+                intProperty(properties, id + ".userMemory"),
+                intProperty(properties, id + ".userMemoryStartPage"),
+                intProperty(properties, id + ".userMemoryEndPage"),
+                intProperty(properties, id + ".tagMemoryEndPage"),
+                intProperty(properties, id + ".configurationStartPage"),
+                features.contains(TagProfile.FEATURE_FAST_READ),
+                features.contains(TagProfile.FEATURE_AUTHENTICATION),
+                features.contains(TagProfile.FEATURE_DES_AUTHENTICATION),
+                features.contains(TagProfile.FEATURE_PASSWORD),
+                features.contains(TagProfile.FEATURE_PAGE_LOCK_BYTES),
+                features.contains(TagProfile.FEATURE_OTP_AREA),
+                intProperty(properties, id + ".numberOfCounter"),
+                features.contains(TagProfile.FEATURE_NTAG21X),
+                features.contains(TagProfile.FEATURE_ULTRALIGHT_EV1),
+                features.contains(TagProfile.FEATURE_LIBRARY_CAPABLE),
+                Boolean.parseBoolean(properties.getProperty(id + ".identified", "true").trim()));
+        byId.put(id, profile);
+        for (String version : split(properties.getProperty(id + ".version", ""))) {
+            // vendor:type:subtype:storageSize
+            String[] parts = version.split(":");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("invalid version " + version + " in profile " + id);
+            }
+            byVersion.put(versionKey(hex(parts[0]), hex(parts[1]), hex(parts[2]), hex(parts[3])), profile);
+        }
+        String family = properties.getProperty(id + ".family");
+        if (family != null) {
+            String storageSize = properties.getProperty(id + ".storageSize");
+            if (storageSize == null) {
+                byFamily.put(hex(family), profile);
+            } else {
+                for (String size : split(storageSize)) {
+                    byFamilyAndStorageSize.put(familyKey(hex(family), hex(size)), profile);
+                }
+            }
+        }
+        for (String atqaSak : split(properties.getProperty(id + ".atqaSak", ""))) {
+            byAtqaSak.put(parseAtqaSak(atqaSak, id), profile);
+        }
+        String capabilityContainerSize = properties.getProperty(id + ".capabilityContainerSize");
+        if (capabilityContainerSize != null) {
+            int size = hex(capabilityContainerSize);
+            if (byCapabilityContainerSize.put(size, profile) != null) {
+                // a second product with the same size
+                ambiguousCapabilityContainerSizes.add(size);
+            }
+        }
+        String fallback = properties.getProperty(id + ".fallback", "").trim();
+        if (fallback.equals(FALLBACK_VERSION)) {
+            unknownVersionProfile = profile;
+        } else if (fallback.equals(FALLBACK_ATQA_SAK)) {
+            unknownAtqaSakProfile = profile;
+        }
+    }
+
+    private void addVariant(String name, String variant) {
+        // family.hardwareVersionMajor or family.default
+        String[] parts = name.split("\\.");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("invalid variant " + name);
+        }
+        int family = hex(parts[0]);
+        int versionMajor = parts[1].equals(VARIANT_DEFAULT) ? -1 : Integer.parseInt(parts[1]);
+        variants.put(variantKey(family, versionMajor), variant);
+    }
+
+    /**
+     * Finds the profile for the data of a Get Version command.
+     *
+     * @param hardwareVendorId
+     * @param hardwareType
+     * @param hardwareSubtype
+     * @param hardwareStorageSizeRaw
+     * @return the profile, the 'unknown version' profile if the tag is not known
+     */
+    public TagProfile lookup(int hardwareVendorId, int hardwareType, int hardwareSubtype, int hardwareStorageSizeRaw) {
+        TagProfile profile = byVersion.get(versionKey(hardwareVendorId, hardwareType, hardwareSubtype, hardwareStorageSizeRaw));
+        if (profile != null) return profile;
+        int family = hardwareType & 0x0F;
+        profile = byFamilyAndStorageSize.get(familyKey(family, hardwareStorageSizeRaw));
+        if (profile != null) return profile;
+        profile = byFamily.get(family);
+        if (profile != null) return profile;
+        return unknownVersionProfile;
+    }
+
+    public TagProfile lookup(VersionDataView versionData) {
+        if (!versionData.isValid()) return unknownVersionProfile;
+        return lookup(versionData.getHardwareVendorId(), versionData.getHardwareType(),
+                versionData.getHardwareSubtype(), versionData.getHardwareStorageSizeRaw());
+    }
+
+    /**
+     * Finds the profile for the ATQA and SAK of a tag without Get Version command.
+     *
+     * @param atqa
+     * @param sak
+     * @return the profile, the 'unknown ATQA and SAK' profile if the values are not known
+     */
+    public TagProfile lookupAtqaSak(byte[] atqa, byte sak) {
+        if ((atqa == null) || (atqa.length != 2)) return unknownAtqaSakProfile;
+        TagProfile profile = byAtqaSak.get(atqaSakKey(atqa[0] & 0xFF, atqa[1] & 0xFF, sak & 0xFF));
+        if (profile != null) return profile;
+        return unknownAtqaSakProfile;
+    }
+
+    /**
+     * @param atqa
+     * @param sak
+     * @return true if a tag with these values can be identified by its Capability Container, the
+     * READ of page 00 is not sent to other tags (e.g. a DESFire would answer with a NAK)
+     */
+    public boolean isCapabilityContainerCandidate(byte[] atqa, byte sak) {
+        if ((capabilityContainerAtqaSak < 0) || (atqa == null) || (atqa.length != 2)) return false;
+        return atqaSakKey(atqa[0] & 0xFF, atqa[1] & 0xFF, sak & 0xFF) == capabilityContainerAtqaSak;
+    }
+
+    /**
+     * Finds the profile by the memory size in the Capability Container of an NDEF formatted tag.
+     *
+     * @param atqa
+     * @param sak
+     * @param pagesData  the response of a READ of page 00 (16 bytes)
+     * @param dataOffset
+     * @return the profile, or NULL if the tag is not NDEF formatted or the size is not unique
+     */
+    public TagProfile lookupCapabilityContainer(byte[] atqa, byte sak, byte[] pagesData, int dataOffset) {
+        if (!isCapabilityContainerCandidate(atqa, sak)) return null;
+        if ((pagesData == null) || (dataOffset < 0) || (pagesData.length - dataOffset < 16)) return null;
+        int offset = dataOffset + CAPABILITY_CONTAINER_OFFSET;
+        if (pagesData[offset] != CAPABILITY_CONTAINER_MAGIC_NUMBER) return null;
+        // the major version of the mapping needs to be 1
+        if ((pagesData[offset + 1] & 0xF0) != 0x10) return null;
+        int size = pagesData[offset + 2] & 0xFF;
+        if (ambiguousCapabilityContainerSizes.contains(size)) return null;
+        return byCapabilityContainerSize.get(size);
+    }
+
+    /**
+     * @param hardwareType
+     * @param hardwareVersionMajor
+     * @return the variant of the product, e.g. 'EV1' for a DESFire with version 1, or NULL
+     */
+    public String lookupVariant(int hardwareType, int hardwareVersionMajor) {
+        int family = hardwareType & 0x0F;
+        String variant = variants.get(variantKey(family, hardwareVersionMajor));
+        if (variant != null) return variant;
+        return variants.get(variantKey(family, -1));
+    }
+
+    /**
+     * @param id
+     * @return the profile with the id, e.g. 'NTAG216', or NULL
+     */
+    public TagProfile getProfile(String id) {
+        return byId.get(id);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /* keys */
+
+    private static int versionKey(int vendorId, int type, int subtype, int storageSize) {
+        return ((vendorId & 0xFF) << 24) | ((type & 0xFF) << 16) | ((subtype & 0xFF) << 8) | (storageSize & 0xFF);
+    }
+
+    private static int familyKey(int family, int storageSize) {
+        return ((family & 0x0F) << 8) | (storageSize & 0xFF);
+    }
+
+    private static int atqaSakKey(int atqa0, int atqa1, int sak) {
+        return ((atqa0 & 0xFF) << 16) | ((atqa1 & 0xFF) << 8) | (sak & 0xFF);
+    }
+
+    private static int variantKey(int family, int versionMajor) {
+        // the default variant has versionMajor -1
+        return ((family & 0x0F) << 16) | ((versionMajor + 1) & 0xFFFF);
+    }
+
+    /* parsing */
+
+    private static int parseAtqaSak(String atqaSak, String name) {
+        // atqa:sak
+        String[] parts = atqaSak.split(":");
+        if ((parts.length != 2) || (parts[0].length() != 4)) {
+            throw new IllegalArgumentException("invalid atqaSak " + atqaSak + " in " + name);
+        }
+        return atqaSakKey(hex(parts[0].substring(0, 2)), hex(parts[0].substring(2, 4)), hex(parts[1]));
+    }
+
+    private static int hex(String value) {
+        return Integer.parseInt(value.trim(), 16);
+    }
+
+    private static int intProperty(Properties properties, String name) {
+        String value = properties.getProperty(name);
+        if (value == null) return 0;
+        return Integer.parseInt(value.trim());
+    }
+
+    private static List<String> split(String value) {
+        if (value.trim().isEmpty()) return Collections.emptyList();
+        List<String> list = new ArrayList<>();
+        for (String part : value.split(",")) {
+            list.add(part.trim().toUpperCase(Locale.ROOT));
+        }
+        return list;
+    }
+}
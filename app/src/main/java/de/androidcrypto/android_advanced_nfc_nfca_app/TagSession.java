@@ -0,0 +1,891 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.NAK_INVALID_ARGUMENT;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.NAK_IOEXCEPTION_ERROR;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.checkResponse;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.NfcACommands.maxFastReadPages;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.concatenateByteArrays;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.intFrom3ByteArrayLsb;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.printData;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class is a session with one tag. It owns the transceiver of the tag and holds its own
+ * last error (see getLastError()), so several sessions can run in parallel, e.g. with many
+ * simulated tags in a benchmark or a reader service beside the UI.
+ * All commands of a session are synchronized, so a session can be shared between threads but
+ * the commands are sent one after the other.
+ * <p>
+ * The commands are the same as in NfcACommands, the static methods in NfcACommands are still
+ * available and run each command on a session of the calling thread.
+ * <p>
+ * For hot paths (e.g. many tags at a gate) there are status methods that return a CommandStatus
+ * and read into or write from a buffer of the caller, see readPageInto, fastReadInto,
+ * writePage(int, byte[], int), readCounterInto, increaseCounter, getVersionInto and
+ * readSignatureInto. RetryingTagSession repeats them according to a RetryPolicy.
+ */
+public class TagSession {
+
+    private static final String TAG = "NfcALib";
+    private static final int BYTES_PER_PAGE = 4;
+
+    // the NAK responses of the sanity checks and IOExceptions, a copy is returned so a caller
+    // that changes the response does not change the later responses (error path only)
+    private static final byte[] NAK_INVALID_ARGUMENT_RESPONSE = new byte[]{NAK_INVALID_ARGUMENT};
+    private static final byte[] NAK_IOEXCEPTION_RESPONSE = new byte[]{NAK_IOEXCEPTION_ERROR};
+
+    private final NfcATransceiver nfcA;
+
+    // The command frames are owned by the session and reused by each command, only the variable
+    // bytes (page addresses, data) are filled in before the transceive. The transceiver does not
+    // keep the frame and the commands are synchronized, so a frame is never used twice at a time.
+    private final byte[] readFrame = new byte[]{
+            (byte) 0x30, // READ a page command
+            (byte) 0x00  // page address
+    };
+    private final byte[] fastReadFrame = new byte[]{
+            (byte) 0x3A, // FAST READ pages command
+            (byte) 0x00, // first page address to read
+            (byte) 0x00  // last page address to read
+    };
+    private final byte[] writeFrame = new byte[]{
+            (byte) 0xA2, // WRITE a page command
+            (byte) 0x00, // page address
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00 // 4 bytes page data
+    };
+    private final byte[] getVersionFrame = new byte[]{
+            (byte) 0x60  // Get Version command
+    };
+    private final byte[] getMoreDataFrame = new byte[]{
+            (byte) 0xAF  // Get More Data command
+    };
+    private final byte[] readCounterFrame = new byte[]{
+            (byte) 0x39, // Read Counter command
+            (byte) 0x00  // counter number
+    };
+    private final byte[] increaseCounterFrame = new byte[]{
+            (byte) 0xA5, // Increase Counter command
+            (byte) 0x00, // counter number
+            (byte) 0x01, // LSB order
+            (byte) 0x00,
+            (byte) 0x00,
+            (byte) 0x00, // this byte is ignored
+    };
+    private final byte[] readSignatureFrame = new byte[]{
+            (byte) 0x3C, // Read Signature command
+            (byte) 0x00  // Address is RFUI, internally fixed to 0x00h
+    };
+    // staging buffer for the pages written by writeBulkData
+    private final byte[] pageStagingBuffer = new byte[BYTES_PER_PAGE];
+
+    // the last error is kept in these fields, the TagError is created when someone asks for it
+    private CommandStatus lastErrorStatus = null; // NULL if no error occurred
+    private String lastErrorCommand;
+    private int lastErrorOperand1;
+    private int lastErrorOperand2;
+    private Exception lastErrorCause;
+    private String lastErrorMessage;
+    private TagError lastError = null;
+    private int reconnectCount = 0;
+
+    /**
+     * @param nfcA the transceiver of the tag, e.g. 'new AndroidNfcATransceiver(nfcA)'
+     */
+    public TagSession(NfcATransceiver nfcA) {
+        this.nfcA = nfcA;
+    }
+
+    public NfcATransceiver getTransceiver() {
+        return nfcA;
+    }
+
+    /**
+     * A reconnect is a new activation of the tag, e.g. an NTAG21x increases its NFC counter again
+     * on the next READ or FAST_READ.
+     *
+     * @return the number of successful reconnects of this session
+     */
+    public synchronized int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    public synchronized boolean isConnected() {
+        return (nfcA != null) && (nfcA.isConnected());
+    }
+
+    /**
+     * @return the last error of this session or NULL if no error occurred. The error is not
+     * cleared by a successful command, read it out in case of a failure only.
+     */
+    public synchronized TagError getLastError() {
+        if ((lastError == null) && (lastErrorStatus != null)) {
+            if (lastErrorMessage != null) {
+                lastError = new TagError(lastErrorStatus, lastErrorCommand, lastErrorMessage);
+            } else {
+                lastError = new TagError(lastErrorStatus, lastErrorCommand, lastErrorOperand1, lastErrorOperand2, lastErrorCause);
+            }
+        }
+        return lastError;
+    }
+
+    /**
+     * @return the status of the last error or NULL if no error occurred, nothing is created
+     */
+    public synchronized CommandStatus getLastErrorStatus() {
+        return lastErrorStatus;
+    }
+
+    /**
+     * @return the message of the last error, or an empty string if no error occurred
+     */
+    public synchronized String getLastErrorString() {
+        TagError error = getLastError();
+        return (error == null) ? "" : error.getMessage();
+    }
+
+    public synchronized void clearLastError() {
+        lastErrorStatus = null;
+        lastErrorCommand = null;
+        lastErrorCause = null;
+        lastErrorMessage = null;
+        lastError = null;
+    }
+
+    /**
+     * Notes an error of a helper class that is working on this session.
+     *
+     * @param status
+     * @param command
+     * @param message
+     */
+    synchronized void setLastError(CommandStatus status, String command, String message) {
+        noteError(status, command, -1, -1, null);
+        lastErrorMessage = message;
+    }
+
+    /**
+     * Notes an error without building a message, the message is formatted by TagError.
+     *
+     * @param status
+     * @param command  a constant string
+     * @param operand1 -1 if not used
+     * @param operand2 -1 if not used
+     * @param cause    can be NULL
+     * @return the status
+     */
+    private CommandStatus noteError(CommandStatus status, String command, int operand1, int operand2, Exception cause) {
+        lastErrorStatus = status;
+        lastErrorCommand = command;
+        lastErrorOperand1 = operand1;
+        lastErrorOperand2 = operand2;
+        lastErrorCause = cause;
+        lastErrorMessage = null;
+        lastError = null;
+        return status;
+    }
+
+    boolean checkConnected(String command) {
+        if ((nfcA == null) || (!nfcA.isConnected())) {
+            Log.e(TAG, "nfcA is NULL or not connected, aborted");
+            setLastError(CommandStatus.NOT_CONNECTED, command, "nfcA is NULL or not connected, aborted");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads 4 pages beginning with <pageNumber>, see NfcACommands.readPage.
+     *
+     * @param pageNumber
+     * @return 16 bytes, the response of the tag or NULL in case of an IOException
+     */
+    public synchronized byte[] readPage(int pageNumber) {
+        // sanity check
+        if (!checkConnected("readPage")) return null;
+        try {
+            readFrame[1] = (byte) (pageNumber & 0xff); // page address
+            return nfcA.transceive(readFrame);
+        } catch (IOException e) {
+            Log.e(TAG, "on page " + pageNumber + " readPage failed with IOException: " + e.getMessage());
+            setLastError(CommandStatus.IO_EXCEPTION, "readPage", "readPage for page " + pageNumber + " failed with IOException: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Reads the pages <pageNumberStart> up to <pageNumberEnd>, see NfcACommands.fastReadPage.
+     *
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @return the response of the tag or NULL in case of an IOException
+     */
+    public synchronized byte[] fastReadPage(int pageNumberStart, int pageNumberEnd) {
+        // sanity checks
+        if (!checkConnected("fastReadPage")) return null;
+        try {
+            fastReadFrame[1] = (byte) (pageNumberStart & 0xff); // first page address to read
+            fastReadFrame[2] = (byte) (pageNumberEnd & 0xff); // last page address to read
+            return nfcA.transceive(fastReadFrame);
+        } catch (IOException e) {
+            Log.e(TAG, "on pages range " + pageNumberStart + " to " + pageNumberEnd + " fastReadPage failed with IOException: " + e.getMessage());
+            setLastError(CommandStatus.IO_EXCEPTION, "fastReadPage", "fastReadPage range " + pageNumberStart + " to " + pageNumberEnd + " fastReadPage failed with IOException: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the content of the tag beginning with page 00 up to page <numberOfPages>, see
+     * NfcACommands.readFullTag.
+     *
+     * @param maxTransceiveLength
+     * @param numberOfPages
+     * @return the content or NULL in case of any error
+     */
+    public synchronized byte[] readFullTag(int maxTransceiveLength, int numberOfPages) {
+        byte[] completeContentFastRead = new byte[(numberOfPages + 1) * BYTES_PER_PAGE];
+        int pagesRead = readPagesInto(maxTransceiveLength, 0, numberOfPages, completeContentFastRead, 0);
+        if (pagesRead != numberOfPages + 1) {
+            Log.e(TAG, "Error while reading the content of the tag, e.g. some parts of the tag might be read protected");
+            return null;
+        } else {
+            return completeContentFastRead;
+        }
+    }
+
+    /**
+     * Reads the complete memory of the tag into the buffer, see NfcACommands.readFullTagInto.
+     *
+     * @param ti
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read, -1 if the arguments are invalid
+     */
+    public synchronized int readFullTagInto(TagInformation ti, byte[] dest, int destOffset) {
+        if (ti == null) {
+            Log.e(TAG, "readFullTagInto TagInformation is NULL, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "readFullTagInto", "readFullTagInto TagInformation is NULL, aborted");
+            return -1;
+        }
+        return readPagesInto(ti.maxTransceiveLength, 0, ti.tagMemoryEndPage, dest, destOffset);
+    }
+
+    /**
+     * Reads the complete memory of the tag into the buffer, see NfcACommands.readFullTagInto.
+     *
+     * @param ti
+     * @param dest
+     * @return the number of pages read, -1 if the arguments are invalid
+     */
+    public synchronized int readFullTagInto(TagInformation ti, ByteBuffer dest) {
+        if (ti == null) {
+            Log.e(TAG, "readFullTagInto TagInformation is NULL, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "readFullTagInto", "readFullTagInto TagInformation is NULL, aborted");
+            return -1;
+        }
+        return readPagesInto(ti.maxTransceiveLength, 0, ti.tagMemoryEndPage, dest);
+    }
+
+    /**
+     * Reads the pages with FAST_READ commands into the buffer, see NfcACommands.readPagesInto.
+     *
+     * @param maxTransceiveLength
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read, -1 if the arguments are invalid
+     */
+    public synchronized int readPagesInto(int maxTransceiveLength, int pageNumberStart, int pageNumberEnd, byte[] dest, int destOffset) {
+        // sanity checks
+        if (!checkConnected("readPagesInto")) return -1;
+        if (!checkPageRange(pageNumberStart, pageNumberEnd)) return -1;
+        int numberOfPages = pageNumberEnd - pageNumberStart + 1;
+        if ((dest == null) || (destOffset < 0) || (dest.length - destOffset < numberOfPages * BYTES_PER_PAGE)) {
+            Log.e(TAG, "readPagesInto dest is NULL or too small, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto dest is NULL or too small for " + numberOfPages + " pages, aborted");
+            return -1;
+        }
+        int maxFastReadPages = maxFastReadPages(maxTransceiveLength);
+        int pageNumber = pageNumberStart;
+        int offset = destOffset;
+        while (pageNumber <= pageNumberEnd) {
+            // if we can't read the remaining data in a 'full' read we are just reading the remaining data
+            int chunkPages = Math.min(maxFastReadPages, pageNumberEnd - pageNumber + 1);
+            byte[] contentRead = fastReadPage(pageNumber, pageNumber + chunkPages - 1);
+            // did we receive all data ?
+            if ((contentRead == null) || (contentRead.length != chunkPages * BYTES_PER_PAGE)) {
+                Log.e(TAG, "Error while reading the pages " + pageNumber + " to " + (pageNumber + chunkPages - 1) + ", e.g. some parts of the tag might be read protected");
+                break;
+            }
+            System.arraycopy(contentRead, 0, dest, offset, contentRead.length);
+            offset += contentRead.length;
+            pageNumber += chunkPages;
+        }
+        return pageNumber - pageNumberStart;
+    }
+
+    /**
+     * Reads the pages with FAST_READ commands into the buffer starting at its current position,
+     * see NfcACommands.readPagesInto.
+     *
+     * @param maxTransceiveLength
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest
+     * @return the number of pages read, -1 if the arguments are invalid
+     */
+    public synchronized int readPagesInto(int maxTransceiveLength, int pageNumberStart, int pageNumberEnd, ByteBuffer dest) {
+        if (dest == null) {
+            Log.e(TAG, "readPagesInto dest is NULL, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto dest is NULL, aborted");
+            return -1;
+        }
+        // sanity checks, the remaining bytes (up to the limit) bound both ways of writing
+        if (!checkConnected("readPagesInto")) return -1;
+        if (!checkPageRange(pageNumberStart, pageNumberEnd)) return -1;
+        int numberOfPages = pageNumberEnd - pageNumberStart + 1;
+        if (dest.remaining() < numberOfPages * BYTES_PER_PAGE) {
+            Log.e(TAG, "readPagesInto dest is too small, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto dest is too small for " + numberOfPages + " pages, aborted");
+            return -1;
+        }
+        if (dest.hasArray()) {
+            // write directly to the backing array
+            int pagesRead = readPagesInto(maxTransceiveLength, pageNumberStart, pageNumberEnd,
+                    dest.array(), dest.arrayOffset() + dest.position());
+            if (pagesRead > 0) {
+                dest.position(dest.position() + pagesRead * BYTES_PER_PAGE);
+            }
+            return pagesRead;
+        }
+        int maxFastReadPages = maxFastReadPages(maxTransceiveLength);
+        int pageNumber = pageNumberStart;
+        while (pageNumber <= pageNumberEnd) {
+            int chunkPages = Math.min(maxFastReadPages, pageNumberEnd - pageNumber + 1);
+            byte[] contentRead = fastReadPage(pageNumber, pageNumber + chunkPages - 1);
+            if ((contentRead == null) || (contentRead.length != chunkPages * BYTES_PER_PAGE)) {
+                Log.e(TAG, "Error while reading the pages " + pageNumber + " to " + (pageNumber + chunkPages - 1) + ", e.g. some parts of the tag might be read protected");
+                break;
+            }
+            dest.put(contentRead);
+            pageNumber += chunkPages;
+        }
+        return pageNumber - pageNumberStart;
+    }
+
+    /**
+     * Reads the pages into the buffer, using FAST_READ commands when the tag supports them and
+     * READ commands otherwise, see NfcACommands.readPagesInto.
+     *
+     * @param ti
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest
+     * @param destOffset
+     * @return the number of pages read, -1 if the arguments are invalid
+     */
+    public synchronized int readPagesInto(TagInformation ti, int pageNumberStart, int pageNumberEnd, byte[] dest, int destOffset) {
+        if (ti == null) {
+            Log.e(TAG, "readPagesInto TagInformation is NULL, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto TagInformation is NULL, aborted");
+            return -1;
+        }
+        if (ti.tagHasFastReadCommand) {
+            return readPagesInto(ti.maxTransceiveLength, pageNumberStart, pageNumberEnd, dest, destOffset);
+        }
+        // sanity checks
+        if (!checkConnected("readPagesInto")) return -1;
+        if (!checkPageRange(pageNumberStart, pageNumberEnd)) return -1;
+        int numberOfPages = pageNumberEnd - pageNumberStart + 1;
+        if ((dest == null) || (destOffset < 0) || (dest.length - destOffset < numberOfPages * BYTES_PER_PAGE)) {
+            Log.e(TAG, "readPagesInto dest is NULL or too small, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto dest is NULL or too small for " + numberOfPages + " pages, aborted");
+            return -1;
+        }
+        int pageNumber = pageNumberStart;
+        while (pageNumber <= pageNumberEnd) {
+            // the READ command returns 4 pages, at the end of the range only the needed pages are copied
+            int chunkPages = Math.min(4, pageNumberEnd - pageNumber + 1);
+            byte[] contentRead = readPage(pageNumber);
+            if ((contentRead == null) || (contentRead.length != 16)) {
+                Log.e(TAG, "Error while reading the pages " + pageNumber + " to " + (pageNumber + chunkPages - 1) + ", e.g. some parts of the tag might be read protected");
+                break;
+            }
+            System.arraycopy(contentRead, 0, dest, destOffset + (pageNumber - pageNumberStart) * BYTES_PER_PAGE, chunkPages * BYTES_PER_PAGE);
+            pageNumber += chunkPages;
+        }
+        return pageNumber - pageNumberStart;
+    }
+
+    private boolean checkPageRange(int pageNumberStart, int pageNumberEnd) {
+        if ((pageNumberStart < 0) || (pageNumberEnd < pageNumberStart)) {
+            Log.e(TAG, "readPagesInto page range is invalid, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "readPagesInto", "readPagesInto page range " + pageNumberStart + " to " + pageNumberEnd + " is invalid, aborted");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes 4 bytes to one page, see NfcACommands.writePage.
+     *
+     * @param pageNumber
+     * @param pageData4Byte
+     * @return is either the Acknowledge Byte ("ACK") or a Not Acknowledge Byte ("NAK"), NULL if
+     * the transceiver is not connected
+     */
+    public synchronized byte[] writePage(int pageNumber, byte[] pageData4Byte) {
+        // sanity checks
+        if (!checkConnected("writePage")) return null;
+        if (pageNumber < 0) {
+            Log.e(TAG, "writePage pageNumber is < 0, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "writePage", "writePage pageNumber is < 0, aborted");
+            return NAK_INVALID_ARGUMENT_RESPONSE.clone();
+        }
+        // this check avoids to write to pages 0, 1, 2 and 3 as that are blocked pages or One Time Programmable areas
+        if (pageNumber < 4) {
+            Log.e(TAG, "writePage pageNumber is < 4, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "writePage", "writePage pageNumber is < 4 (avoid writing to OTP areas), aborted");
+            return NAK_INVALID_ARGUMENT_RESPONSE.clone();
+        }
+        // there is no check on upper limit - this is tag specific
+        // This method also does not prevent against writing in sensitive areas below user memory
+        if (pageData4Byte == null) {
+            Log.e(TAG, "writePage pageData4Byte is NULL, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "writePage", "writePage pageData4Byte is NULL, aborted");
+            return NAK_INVALID_ARGUMENT_RESPONSE.clone();
+        }
+        if (pageData4Byte.length != 4) {
+            Log.e(TAG, "writePage pageData4Byte is not of length 4 found " + pageData4Byte.length + ", aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "writePage", "writePage pageData4Byte is not of length 4 found " + pageData4Byte.length + ", aborted");
+            return NAK_INVALID_ARGUMENT_RESPONSE.clone();
+        }
+        try {
+            writeFrame[1] = (byte) (pageNumber & 0xff); // page address
+            System.arraycopy(pageData4Byte, 0, writeFrame, 2, 4);
+            return nfcA.transceive(writeFrame);
+        } catch (IOException e) {
+            Log.e(TAG, "writePage to page " + pageNumber + " writePage failed with IOException: " + e.getMessage());
+            setLastError(CommandStatus.IO_EXCEPTION, "writePage", "writePage to page " + pageNumber + " failed with IOException: " + e.getMessage());
+            return NAK_IOEXCEPTION_RESPONSE.clone();
+        }
+    }
+
+    /**
+     * Writes up to 40 bytes to subsequent pages, see NfcACommands.writeBulkData.
+     *
+     * @param startPageNumber
+     * @param bulkPageData
+     * @return true on success
+     */
+    public synchronized boolean writeBulkData(int startPageNumber, byte[] bulkPageData) {
+        // sanity checks
+        if (!checkConnected("writeBulkData")) return false;
+        if (startPageNumber < 0) {
+            Log.e(TAG, "writePage startPageNumber is < 0, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "writeBulkData", "writePage startPageNumber is < 0, aborted");
+            return false;
+        }
+        // this check avoids to write to pages 0, 1, 2 and 3 as that are blocked pages or One Time Programmable areas
+        if (startPageNumber < 4) {
+            Log.e(TAG, "writePage startPageNumber is < 4, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "writeBulkData", "writePage startPageNumber is < 4 (avoid writing to OTP areas), aborted");
+            return false;
+        }
+        // This method also does not prevent against writing in sensitive areas below user memory
+        if (bulkPageData == null) {
+            Log.e(TAG, "writePage bulkPageData is NULL, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "writeBulkData", "writePage bulkPageData is NULL, aborted");
+            return false;
+        }
+        if (bulkPageData.length > 40) {
+            Log.e(TAG, "writePage bulkPageData length is >40, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "writeBulkData", "writePage bulkPageData length is >40, aborted");
+            return false;
+        }
+        byte[] pageData;
+        int remainingBytes = bulkPageData.length;
+        int copyIndex = 0; // copy the data from this position
+        int pageIndex = startPageNumber;
+        byte[] writeResponse;
+        while (remainingBytes > 0) {
+            pageData = pageStagingBuffer;
+            if (remainingBytes < 5) {
+                Arrays.fill(pageData, (byte) 0x00); // the last page is filled up with 0x00h
+                System.arraycopy(bulkPageData, copyIndex, pageData, 0, remainingBytes); // copy the remaining bytes
+            } else {
+                // a new round will follow after this one
+                System.arraycopy(bulkPageData, copyIndex, pageData, 0, 4);
+            }
+            writeResponse = writePage(pageIndex, pageData);
+            if ((writeResponse == null) || (writeResponse.length < 1) || (!checkResponse(writeResponse[0]))) {
+                // an error occurred
+                return false; // the last error was already filled by writePage
+            }
+            copyIndex = copyIndex + 4;
+            pageIndex++;
+            remainingBytes = remainingBytes - 4;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the version data of the tag, see NfcACommands.getVersion.
+     *
+     * @return the version data or NULL in case of an IOException
+     */
+    public synchronized byte[] getVersion() {
+        // sanity checks
+        if (!checkConnected("getVersion")) return null;
+        try {
+            return nfcA.transceive(getVersionFrame);
+        } catch (IOException e) {
+            Log.e(TAG, "Get Version failed with IOException: " + e.getMessage());
+            setLastError(CommandStatus.IO_EXCEPTION, "getVersion", "Get Version failed with IOException: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Reads data from the tag as long the tag indicates that more data is waiting, see
+     * NfcACommands.getMoreData.
+     *
+     * @return the data or NULL in case of an IOException
+     */
+    public synchronized byte[] getMoreData() {
+        // sanity checks
+        if (!checkConnected("getMoreData")) return null;
+        // we need to run this command as long we are asked for more data by the NFC tag
+        boolean moreDataRequested = true;
+        byte[] moreDataToReturn = new byte[0];
+        while (moreDataRequested == true) {
+            byte[] response;
+            try {
+                response = nfcA.transceive(getMoreDataFrame);
+                if (response.length > 0) {
+                    if (response[0] == (byte) 0xAF) {
+                        moreDataRequested = true;
+                        // we need to skip the trailing 'AF'
+                        moreDataToReturn = concatenateByteArrays(moreDataToReturn, Arrays.copyOfRange(response, 1, response.length));
+                    } else {
+                        moreDataRequested = false;
+                        moreDataToReturn = concatenateByteArrays(moreDataToReturn, response);
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Get More Data failed with IOException: " + e.getMessage());
+                setLastError(CommandStatus.IO_EXCEPTION, "getMoreData", "Get More Data failed with IOException: " + e.getMessage());
+                moreDataRequested = false; // stop reading
+                moreDataToReturn = null;
+            }
+        }
+        Log.d(TAG, printData("Get More Data", moreDataToReturn));
+        return moreDataToReturn;
+    }
+
+    /**
+     * Reads the counter and returns an integer value, see NfcACommands.readCounterInt.
+     *
+     * @param counterNumber
+     * @return the counter value 0.., in case of any error it returns -1 as value
+     */
+    public synchronized int readCounterInt(int counterNumber) {
+        // sanity checks
+        if (!checkConnected("readCounterInt")) return -1;
+        byte[] response = readCounter(counterNumber);
+        if (response == null) {
+            return -1;
+        } else {
+            return intFrom3ByteArrayLsb(response);
+        }
+    }
+
+    /**
+     * Reads the counter, see NfcACommands.readCounter.
+     *
+     * @param counterNumber
+     * @return the 24-bit (3 byte) counter in LSB encoding
+     */
+    public synchronized byte[] readCounter(int counterNumber) {
+        // sanity checks
+        if (!checkConnected("readCounter")) return null;
+        try {
+            readCounterFrame[1] = (byte) (counterNumber & 0xff); // in case of Ultralight EV1 0..2, NTAG21x 2
+            return nfcA.transceive(readCounterFrame);
+        } catch (IOException e) {
+            Log.e(TAG, "Read Counter failed with IOException: " + e.getMessage());
+            setLastError(CommandStatus.IO_EXCEPTION, "readCounter", "Read Counter failed with IOException: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Increases one of the counters on a MIFARE Ultralight EV1 tag by 1, see
+     * NfcACommands.increaseCounterByOne.
+     *
+     * @param counterNumber
+     * @return ACK or NAK
+     */
+    public synchronized byte[] increaseCounterByOne(int counterNumber) {
+        // sanity checks
+        if (!checkConnected("increaseCounterByOne")) return NAK_INVALID_ARGUMENT_RESPONSE.clone();
+        if ((counterNumber < 0) || (counterNumber > 2)) {
+            Log.e(TAG, "The counterNumber is out of range 0..2, aborted");
+            setLastError(CommandStatus.INVALID_ARGUMENT, "increaseCounterByOne", "The counterNumber is out of range 0..2, aborted");
+            return NAK_INVALID_ARGUMENT_RESPONSE.clone();
+        }
+        try {
+            increaseCounterFrame[1] = (byte) (counterNumber & 0xff);
+            return nfcA.transceive(increaseCounterFrame); // should the ACK status byte
+        } catch (IOException e) {
+            Log.e(TAG, "IOException when reading a counter: " + e.getMessage());
+            setLastError(CommandStatus.IO_EXCEPTION, "increaseCounterByOne", "Increase Counter failed with IOException: " + e.getMessage());
+            return NAK_IOEXCEPTION_RESPONSE.clone();
+        }
+    }
+
+    /**
+     * Reads the 32 bytes long Electronic Signature of the tag, see NfcACommands.readSignature.
+     *
+     * @return the signature or NULL in case of an IOException
+     */
+    public synchronized byte[] readSignature() {
+        // sanity checks
+        if (!checkConnected("readSignature")) return null;
+        try {
+            return nfcA.transceive(readSignatureFrame);
+        } catch (IOException e) {
+            Log.e(TAG, "Read Signature failed with IOException: " + e.getMessage());
+            setLastError(CommandStatus.IO_EXCEPTION, "readSignature", "Read Signature failed with IOException: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /*
+        status methods
+        These methods return a CommandStatus and fill a buffer of the caller, in case of a failure
+        neither a message nor a NAK array is built (and nothing is logged). The message of the
+        error is formatted when getLastError().getMessage() is called.
+     */
+
+    /**
+     * Reads 4 pages beginning with <pageNumber> with the READ command.
+     *
+     * @param pageNumber
+     * @param dest       receives 16 bytes
+     * @param destOffset
+     * @return ACK on success
+     */
+    public synchronized CommandStatus readPageInto(int pageNumber, byte[] dest, int destOffset) {
+        if ((nfcA == null) || (!nfcA.isConnected())) {
+            return noteError(CommandStatus.NOT_CONNECTED, "readPageInto", pageNumber, -1, null);
+        }
+        if ((pageNumber < 0) || (dest == null) || (destOffset < 0) || (dest.length - destOffset < 16)) {
+            return noteError(CommandStatus.INVALID_ARGUMENT, "readPageInto", pageNumber, -1, null);
+        }
+        try {
+            readFrame[1] = (byte) (pageNumber & 0xff); // page address
+            byte[] response = nfcA.transceive(readFrame);
+            return copyResponse("readPageInto", pageNumber, -1, response, dest, destOffset, 16);
+        } catch (IOException e) {
+            return noteError(CommandStatus.IO_EXCEPTION, "readPageInto", pageNumber, -1, e);
+        }
+    }
+
+    /**
+     * Reads the pages <pageNumberStart> up to <pageNumberEnd> with one FAST_READ command, the
+     * range needs to fit into the maximum transceive length.
+     *
+     * @param pageNumberStart
+     * @param pageNumberEnd
+     * @param dest            receives (pageNumberEnd - pageNumberStart + 1) * 4 bytes
+     * @param destOffset
+     * @return ACK on success
+     */
+    public synchronized CommandStatus fastReadInto(int pageNumberStart, int pageNumberEnd, byte[] dest, int destOffset) {
+        if ((nfcA == null) || (!nfcA.isConnected())) {
+            return noteError(CommandStatus.NOT_CONNECTED, "fastReadInto", pageNumberStart, pageNumberEnd, null);
+        }
+        int length = (pageNumberEnd - pageNumberStart + 1) * BYTES_PER_PAGE;
+        if ((pageNumberStart < 0) || (pageNumberEnd < pageNumberStart) || (dest == null) || (destOffset < 0) || (dest.length - destOffset < length)) {
+            return noteError(CommandStatus.INVALID_ARGUMENT, "fastReadInto", pageNumberStart, pageNumberEnd, null);
+        }
+        try {
+            fastReadFrame[1] = (byte) (pageNumberStart & 0xff); // first page address to read
+            fastReadFrame[2] = (byte) (pageNumberEnd & 0xff); // last page address to read
+            byte[] response = nfcA.transceive(fastReadFrame);
+            return copyResponse("fastReadInto", pageNumberStart, pageNumberEnd, response, dest, destOffset, length);
+        } catch (IOException e) {
+            return noteError(CommandStatus.IO_EXCEPTION, "fastReadInto", pageNumberStart, pageNumberEnd, e);
+        }
+    }
+
+    /**
+     * Writes 4 bytes of <src> beginning at <srcOffset> to one page. As writePage(int, byte[])
+     * the pages 0, 1, 2 and 3 are not written.
+     *
+     * @param pageNumber
+     * @param src
+     * @param srcOffset
+     * @return ACK on success, the NAK of the tag or an error status
+     */
+    public synchronized CommandStatus writePage(int pageNumber, byte[] src, int srcOffset) {
+        if ((nfcA == null) || (!nfcA.isConnected())) {
+            return noteError(CommandStatus.NOT_CONNECTED, "writePage", pageNumber, -1, null);
+        }
+        // this check avoids to write to pages 0, 1, 2 and 3 as that are blocked pages or One Time Programmable areas
+        if ((pageNumber < 4) || (src == null) || (srcOffset < 0) || (src.length - srcOffset < BYTES_PER_PAGE)) {
+            return noteError(CommandStatus.INVALID_ARGUMENT, "writePage", pageNumber, -1, null);
+        }
+        try {
+            writeFrame[1] = (byte) (pageNumber & 0xff); // page address
+            System.arraycopy(src, srcOffset, writeFrame, 2, 4);
+            byte[] response = nfcA.transceive(writeFrame);
+            return checkAck("writePage", pageNumber, response);
+        } catch (IOException e) {
+            return noteError(CommandStatus.IO_EXCEPTION, "writePage", pageNumber, -1, e);
+        }
+    }
+
+    /**
+     * Reads the 24-bit counter in LSB encoding.
+     *
+     * @param counterNumber
+     * @param dest          receives 3 bytes
+     * @param destOffset
+     * @return ACK on success
+     */
+    public synchronized CommandStatus readCounterInto(int counterNumber, byte[] dest, int destOffset) {
+        if ((nfcA == null) || (!nfcA.isConnected())) {
+            return noteError(CommandStatus.NOT_CONNECTED, "readCounterInto", counterNumber, -1, null);
+        }
+        if ((counterNumber < 0) || (counterNumber > 2) || (dest == null) || (destOffset < 0) || (dest.length - destOffset < 3)) {
+            return noteError(CommandStatus.INVALID_ARGUMENT, "readCounterInto", counterNumber, -1, null);
+        }
+        try {
+            readCounterFrame[1] = (byte) (counterNumber & 0xff); // in case of Ultralight EV1 0..2, NTAG21x 2
+            byte[] response = nfcA.transceive(readCounterFrame);
+            return copyResponse("readCounterInto", counterNumber, -1, response, dest, destOffset, 3);
+        } catch (IOException e) {
+            return noteError(CommandStatus.IO_EXCEPTION, "readCounterInto", counterNumber, -1, e);
+        }
+    }
+
+    /**
+     * Increases one of the counters on a MIFARE Ultralight EV1 tag by 1.
+     *
+     * @param counterNumber
+     * @return ACK on success, the NAK of the tag or an error status
+     */
+    public synchronized CommandStatus increaseCounter(int counterNumber) {
+        if ((nfcA == null) || (!nfcA.isConnected())) {
+            return noteError(CommandStatus.NOT_CONNECTED, "increaseCounter", counterNumber, -1, null);
+        }
+        if ((counterNumber < 0) || (counterNumber > 2)) {
+            return noteError(CommandStatus.INVALID_ARGUMENT, "increaseCounter", counterNumber, -1, null);
+        }
+        try {
+            increaseCounterFrame[1] = (byte) (counterNumber & 0xff);
+            byte[] response = nfcA.transceive(increaseCounterFrame);
+            return checkAck("increaseCounter", counterNumber, response);
+        } catch (IOException e) {
+            return noteError(CommandStatus.IO_EXCEPTION, "increaseCounter", counterNumber, -1, e);
+        }
+    }
+
+    /**
+     * Reads the 8 bytes long version data of the tag. The chained response of a MIFARE DESFire
+     * (starting with 'AF') is not supported and returns UNEXPECTED_RESPONSE, use getVersion and
+     * getMoreData for those tags.
+     *
+     * @param dest       receives 8 bytes
+     * @param destOffset
+     * @return ACK on success
+     */
+    public synchronized CommandStatus getVersionInto(byte[] dest, int destOffset) {
+        if ((nfcA == null) || (!nfcA.isConnected())) {
+            return noteError(CommandStatus.NOT_CONNECTED, "getVersionInto", -1, -1, null);
+        }
+        if ((dest == null) || (destOffset < 0) || (dest.length - destOffset < 8)) {
+            return noteError(CommandStatus.INVALID_ARGUMENT, "getVersionInto", -1, -1, null);
+        }
+        try {
+            byte[] response = nfcA.transceive(getVersionFrame);
+            return copyResponse("getVersionInto", -1, -1, response, dest, destOffset, 8);
+        } catch (IOException e) {
+            return noteError(CommandStatus.IO_EXCEPTION, "getVersionInto", -1, -1, e);
+        }
+    }
+
+    /**
+     * Reads the 32 bytes long Electronic Signature of the tag.
+     *
+     * @param dest       receives 32 bytes
+     * @param destOffset
+     * @return ACK on success
+     */
+    public synchronized CommandStatus readSignatureInto(byte[] dest, int destOffset) {
+        if ((nfcA == null) || (!nfcA.isConnected())) {
+            return noteError(CommandStatus.NOT_CONNECTED, "readSignatureInto", -1, -1, null);
+        }
+        if ((dest == null) || (destOffset < 0) || (dest.length - destOffset < 32)) {
+            return noteError(CommandStatus.INVALID_ARGUMENT, "readSignatureInto", -1, -1, null);
+        }
+        try {
+            byte[] response = nfcA.transceive(readSignatureFrame);
+            return copyResponse("readSignatureInto", -1, -1, response, dest, destOffset, 32);
+        } catch (IOException e) {
+            return noteError(CommandStatus.IO_EXCEPTION, "readSignatureInto", -1, -1, e);
+        }
+    }
+
+    private CommandStatus copyResponse(String command, int operand1, int operand2, byte[] response, byte[] dest, int destOffset, int expectedLength) {
+        if ((response != null) && (response.length == expectedLength)) {
+            System.arraycopy(response, 0, dest, destOffset, expectedLength);
+            return CommandStatus.ACK;
+        }
+        if ((response != null) && (response.length == 1) && (CommandStatus.fromResponse(response[0]).isNak())) {
+            return noteError(CommandStatus.fromResponse(response[0]), command, operand1, operand2, null);
+        }
+        return noteError(CommandStatus.UNEXPECTED_RESPONSE, command, operand1, operand2, null);
+    }
+
+    private CommandStatus checkAck(String command, int operand1, byte[] response) {
+        if ((response == null) || (response.length != 1)) {
+            return noteError(CommandStatus.UNEXPECTED_RESPONSE, command, operand1, -1, null);
+        }
+        if (checkResponse(response[0])) {
+            return CommandStatus.ACK;
+        }
+        return noteError(CommandStatus.fromResponse(response[0]), command, operand1, -1, null);
+    }
+
+    /**
+     * Closes and connects the tag again, this is needed after a NAK (the tag is in HALT state)
+     * or an IOException.
+     *
+     * @return true if the tag is connected again, false if the tag was lost
+     */
+    public synchronized boolean reconnect() {
+        Log.d(TAG, "Reconnect to NfcA class is best practise after (Tag Lost) exceptions.");
+        // sanity checks
+        if (!checkConnected("reconnect")) return false;
+        // this is just an advice - if an error occurs - close the connection and reconnect the tag
+        // https://stackoverflow.com/a/37047375/8166854
+        try {
+            Log.d(TAG, "Reconnect NfcA");
+            nfcA.reconnect();
+            reconnectCount++;
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Exception on Reconnect NfcA: " + e.getMessage());
+            setLastError(CommandStatus.IO_EXCEPTION, "reconnect", "Reconnect failed with Exception: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * This class holds a simple timing model for one command/response frame exchange with an
+ * ISO/IEC 14443-3 tag (NTAG21x, MIFARE Ultralight EV1 or Ultralight C). It is used by the
+ * ScanTaskScheduler to estimate the time of a scan task and by the TagSimulator (a test fixture)
+ * to predict the time a read or write strategy would need on a real device.
+ * <p>
+ * The model is:
+ * frame time = frame overhead + command transmission + frame delay time + response transmission
+ * (+ EEPROM programming time for write commands)
+ * <p>
+ * Each byte on air is transmitted with 9 bits (8 data bits + 1 parity bit), the CRC_A adds 2 bytes
+ * in each direction and start and end of frame add 2 bits. A 4-bit ACK or NAK response is sent
+ * without CRC. The default values are taken from the NTAG21x data sheet (106 kbit/s, EEPROM
+ * programming time 4.1 ms), the frame overhead is a typical value for the Android NFC stack.
+ */
+public class TagTimingModel {
+
+    public static final int DEFAULT_BIT_RATE = 106_000; // bits per second, ISO/IEC 14443 default
+    public static final long DEFAULT_FRAME_OVERHEAD_MICROS = 1_500; // host, binder and NFC controller
+    public static final long DEFAULT_FRAME_DELAY_MICROS = 86; // minimum frame delay time (FDT) at 106 kbit/s
+    public static final long DEFAULT_EEPROM_WRITE_MICROS = 4_100; // EEPROM programming time per page
+    public static final long DEFAULT_NO_RESPONSE_MICROS = 5_000; // waiting time when the tag does not answer
+    public static final long DEFAULT_REACTIVATION_MICROS = 3_000; // REQA, anticollision and SELECT after a reconnect
+
+    private static final int BITS_PER_BYTE = 9; // 8 data bits + odd parity bit
+    private static final int CRC_LENGTH = 2;
+    private static final int FRAME_DELIMITER_BITS = 2; // start and end of frame
+    private static final int ACK_NAK_BITS = 4;
+
+    private final int bitRate;
+    private final long frameOverheadMicros;
+    private final long frameDelayMicros;
+    private final long eepromWriteMicros;
+    private final long noResponseMicros;
+    private final long reactivationMicros;
+
+    public TagTimingModel(int bitRate, long frameOverheadMicros, long frameDelayMicros, long eepromWriteMicros,
+                          long noResponseMicros, long reactivationMicros) {
+        if (bitRate <= 0) {
+            throw new IllegalArgumentException("bitRate needs to be > 0");
+        }
+        this.bitRate = bitRate;
+        this.frameOverheadMicros = frameOverheadMicros;
+        this.frameDelayMicros = frameDelayMicros;
+        this.eepromWriteMicros = eepromWriteMicros;
+        this.noResponseMicros = noResponseMicros;
+        this.reactivationMicros = reactivationMicros;
+    }
+
+    public static TagTimingModel defaultModel() {
+        return new TagTimingModel(DEFAULT_BIT_RATE, DEFAULT_FRAME_OVERHEAD_MICROS,
+                DEFAULT_FRAME_DELAY_MICROS, DEFAULT_EEPROM_WRITE_MICROS, DEFAULT_NO_RESPONSE_MICROS,
+                DEFAULT_REACTIVATION_MICROS);
+    }
+
+    /**
+     * Returns the time needed to transmit a frame with data bytes, including CRC and the frame
+     * delimiters.
+     *
+     * @param dataLength
+     * @return the transmission time in microseconds
+     */
+    public long transmissionMicros(int dataLength) {
+        long bits = (long) (dataLength + CRC_LENGTH) * BITS_PER_BYTE + FRAME_DELIMITER_BITS;
+        return bitsToMicros(bits);
+    }
+
+    /**
+     * Returns the time for a command that is answered with a data response, e.g. READ or FAST_READ.
+     *
+     * @param commandLength
+     * @param responseLength
+     * @return the frame time in microseconds
+     */
+    public long dataFrameMicros(int commandLength, int responseLength) {
+        return frameOverheadMicros + transmissionMicros(commandLength) + frameDelayMicros
+                + transmissionMicros(responseLength);
+    }
+
+    /**
+     * Returns the time for a command that is answered with a 4-bit ACK or NAK, e.g. WRITE.
+     *
+     * @param commandLength
+     * @param eepromWrite   true when the tag programs the EEPROM before sending the ACK
+     * @return the frame time in microseconds
+     */
+    public long ackFrameMicros(int commandLength, boolean eepromWrite) {
+        long micros = frameOverheadMicros + transmissionMicros(commandLength) + frameDelayMicros
+                + bitsToMicros(ACK_NAK_BITS + FRAME_DELIMITER_BITS);
+        if (eepromWrite) {
+            micros += eepromWriteMicros;
+        }
+        return micros;
+    }
+
+    /**
+     * Returns the time for a command that is not answered by the tag, e.g. when the tag is in
+     * HALT state after a NAK or was removed from the reader field.
+     *
+     * @param commandLength
+     * @return the frame time in microseconds
+     */
+    public long noResponseFrameMicros(int commandLength) {
+        return frameOverheadMicros + transmissionMicros(commandLength) + noResponseMicros;
+    }
+
+    private long bitsToMicros(long bits) {
+        // round up to full microseconds
+        return (bits * 1_000_000L + bitRate - 1) / bitRate;
+    }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    public long getFrameOverheadMicros() {
+        return frameOverheadMicros;
+    }
+
+    public long getFrameDelayMicros() {
+        return frameDelayMicros;
+    }
+
+    public long getEepromWriteMicros() {
+        return eepromWriteMicros;
+    }
+
+    public long getNoResponseMicros() {
+        return noResponseMicros;
+    }
+
+    /**
+     * @return the time to activate the tag again after a close and connect (reconnect)
+     */
+    public long getReactivationMicros() {
+        return reactivationMicros;
+    }
+}
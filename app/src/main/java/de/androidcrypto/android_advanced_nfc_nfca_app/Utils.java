@@ -4,6 +4,7 @@ import android.annotation.SuppressLint;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 
 /**
  * This class holds all helper methods for the app
@@ -13,29 +14,68 @@ public class Utils {
     private static final String TAG = "Utils";
     public static final String version = "1.00";
 
+    // the tables for the hex conversion, see HexDumpRenderer as well
+    static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128]; // -1 = no hex digit
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toLowerCase(HEX_DIGITS[i])] = (byte) i;
+        }
+    }
+
     public static String byteToHex(Byte input) {
-        return String.format("%02X", input);
+        int value = input & 0xFF;
+        return new String(new char[]{HEX_DIGITS[value >>> 4], HEX_DIGITS[value & 0x0F]});
         //return String.format("0x%02X", input);
     }
 
     public static String bytesToHexNpe(byte[] bytes) {
         if (bytes == null) return "";
-        StringBuffer result = new StringBuffer();
-        for (byte b : bytes)
-            result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
-        return result.toString().toUpperCase();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xFF;
+            hex[2 * i] = HEX_DIGITS[value >>> 4];
+            hex[2 * i + 1] = HEX_DIGITS[value & 0x0F];
+        }
+        return new String(hex);
     }
 
+    /**
+     * Converts a hex string in upper or lower case to a byte array.
+     *
+     * @param s
+     * @return the bytes
+     * @throws IllegalArgumentException if the length is odd or the string contains a character
+     *                                  that is not a hex digit
+     */
     public static byte[] hexStringToByteArray(String s) {
         int len = s.length();
+        if ((len & 1) != 0) {
+            throw new IllegalArgumentException("the hex string has an odd length: " + len);
+        }
         byte[] data = new byte[len / 2];
         for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4)
-                    + Character.digit(s.charAt(i + 1), 16));
+            int high = hexDigitValue(s.charAt(i));
+            int low = hexDigitValue(s.charAt(i + 1));
+            if ((high < 0) || (low < 0)) {
+                throw new IllegalArgumentException("the hex string has an invalid character at position " + ((high < 0) ? i : i + 1));
+            }
+            data[i / 2] = (byte) ((high << 4) | low);
         }
         return data;
     }
 
+    /**
+     * @param c
+     * @return the value 0..15 of the hex digit, -1 if the character is not a hex digit
+     */
+    static int hexDigitValue(char c) {
+        return (c < 128) ? HEX_VALUES[c] : -1;
+    }
+
     public static String printData(String dataName, byte[] data) {
         int dataLength;
         String dataString = "";
@@ -44,7 +84,7 @@ public class Utils {
             dataString = "IS NULL";
         } else {
             dataLength = data.length;
-            dataString = Utils.bytesToHexNpe(data).toUpperCase();
+            dataString = Utils.bytesToHexNpe(data);
         }
         StringBuilder sb = new StringBuilder();
         sb
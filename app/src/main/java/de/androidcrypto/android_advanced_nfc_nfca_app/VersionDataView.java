@@ -0,0 +1,203 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * A flyweight view on the response of the Get Version command, the fields are read by their
+ * offset directly from the response array. Other than VersionInfo nothing is copied, logged or
+ * allocated, so the view can be used on every tap. One view can be reused for any number of
+ * responses by calling wrap() again.
+ * <p>
+ * These forms of the response are accepted, any other length is rejected:
+ * - 7 bytes: the 7 hardware bytes without the fixed header
+ * - 8 bytes: NTAG21x and Ultralight EV1, a fixed header 0x00h followed by the 7 hardware bytes
+ * - 28 bytes: DESFire, 7 hardware bytes, 7 software bytes, 7 bytes UID, 5 bytes batch number,
+ * production week and year
+ * - 29 bytes: DESFire as concatenated by the app, the third frame starts with the status byte
+ * 0x00h before the UID
+ * The view does not copy the response, the array must not be changed while the view is used.
+ */
+public final class VersionDataView {
+
+    public static final int LENGTH_HARDWARE = 7;
+    public static final int LENGTH_NTAG = 8;
+    public static final int LENGTH_DESFIRE = 28;
+    public static final int LENGTH_DESFIRE_WITH_STATUS = 29;
+    public static final int UID_LENGTH = 7;
+    public static final int BATCH_NUMBER_LENGTH = 5;
+
+    /* offsets within the 7 bytes of the hardware or software data */
+    private static final int VENDOR_ID = 0;
+    private static final int TYPE = 1;
+    private static final int SUBTYPE = 2;
+    private static final int VERSION_MAJOR = 3;
+    private static final int VERSION_MINOR = 4;
+    private static final int STORAGE_SIZE = 5;
+    private static final int PROTOCOL = 6;
+
+    private byte[] data;
+    private int hardwareOffset = -1; // -1 = no valid response wrapped
+    private int softwareOffset = -1; // -1 = no software data (7 and 8 bytes form)
+    private int uidOffset = -1;
+
+    /**
+     * Wraps the response, any former response is released.
+     *
+     * @param response the Get Version data, it is not copied
+     * @return false if the response is NULL or not 7, 8, 28 or 29 bytes long
+     */
+    public boolean wrap(byte[] response) {
+        data = null;
+        hardwareOffset = -1;
+        softwareOffset = -1;
+        uidOffset = -1;
+        if (response == null) return false;
+        switch (response.length) {
+            case LENGTH_HARDWARE:
+                hardwareOffset = 0;
+                break;
+            case LENGTH_NTAG:
+                hardwareOffset = 1;
+                break;
+            case LENGTH_DESFIRE:
+                hardwareOffset = 0;
+                softwareOffset = LENGTH_HARDWARE;
+                uidOffset = 2 * LENGTH_HARDWARE;
+                break;
+            case LENGTH_DESFIRE_WITH_STATUS:
+                hardwareOffset = 0;
+                softwareOffset = LENGTH_HARDWARE;
+                uidOffset = 2 * LENGTH_HARDWARE + 1;
+                break;
+            default:
+                return false;
+        }
+        data = response;
+        return true;
+    }
+
+    public boolean isValid() {
+        return hardwareOffset >= 0;
+    }
+
+    /**
+     * @return true if the response has software data (DESFire)
+     */
+    public boolean hasSoftwareData() {
+        return softwareOffset >= 0;
+    }
+
+    /**
+     * @return the wrapped response, not a copy
+     */
+    byte[] getResponse() {
+        return data;
+    }
+
+    public int getHardwareVendorId() {
+        return hardware(VENDOR_ID);
+    }
+
+    public int getHardwareType() {
+        return hardware(TYPE);
+    }
+
+    public int getHardwareSubtype() {
+        return hardware(SUBTYPE);
+    }
+
+    public int getHardwareVersionMajor() {
+        return hardware(VERSION_MAJOR);
+    }
+
+    public int getHardwareVersionMinor() {
+        return hardware(VERSION_MINOR);
+    }
+
+    // return the raw data, same as VersionInfo.getHardStorageSizeRaw()
+    public int getHardwareStorageSizeRaw() {
+        return hardware(STORAGE_SIZE);
+    }
+
+    public int getHardwareProtocol() {
+        return hardware(PROTOCOL);
+    }
+
+    public int getSoftwareVendorId() {
+        return software(VENDOR_ID);
+    }
+
+    public int getSoftwareType() {
+        return software(TYPE);
+    }
+
+    public int getSoftwareSubtype() {
+        return software(SUBTYPE);
+    }
+
+    public int getSoftwareVersionMajor() {
+        return software(VERSION_MAJOR);
+    }
+
+    public int getSoftwareVersionMinor() {
+        return software(VERSION_MINOR);
+    }
+
+    public int getSoftwareStorageSizeRaw() {
+        return software(STORAGE_SIZE);
+    }
+
+    public int getSoftwareProtocol() {
+        return software(PROTOCOL);
+    }
+
+    /**
+     * Copies the UID of a DESFire response into the buffer.
+     *
+     * @param dest       needs 7 bytes from the offset on
+     * @param destOffset
+     * @return false if the response has no UID
+     */
+    public boolean copyUidInto(byte[] dest, int destOffset) {
+        if (uidOffset < 0) return false;
+        System.arraycopy(data, uidOffset, dest, destOffset, UID_LENGTH);
+        return true;
+    }
+
+    /**
+     * Copies the batch number of a DESFire response into the buffer.
+     *
+     * @param dest       needs 5 bytes from the offset on
+     * @param destOffset
+     * @return false if the response has no batch number
+     */
+    public boolean copyBatchNumberInto(byte[] dest, int destOffset) {
+        if (uidOffset < 0) return false;
+        System.arraycopy(data, uidOffset + UID_LENGTH, dest, destOffset, BATCH_NUMBER_LENGTH);
+        return true;
+    }
+
+    /**
+     * @return the production week (BCD coded), -1 if the response has no production date
+     */
+    public int getProductionWeek() {
+        if (uidOffset < 0) return -1;
+        return data[uidOffset + UID_LENGTH + BATCH_NUMBER_LENGTH] & 0xFF;
+    }
+
+    /**
+     * @return the production year (BCD coded), -1 if the response has no production date
+     */
+    public int getProductionYear() {
+        if (uidOffset < 0) return -1;
+        return data[uidOffset + UID_LENGTH + BATCH_NUMBER_LENGTH + 1] & 0xFF;
+    }
+
+    private int hardware(int field) {
+        if (hardwareOffset < 0) return -1;
+        return data[hardwareOffset + field] & 0xFF;
+    }
+
+    private int software(int field) {
+        if (softwareOffset < 0) return -1;
+        return data[softwareOffset + field] & 0xFF;
+    }
+}
@@ -0,0 +1,82 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+/**
+ * This class holds the position of a write operation of the StreamingTagWriter. When the writing
+ * stops (e.g. the tag was removed from the reader) the cursor points to the first page that was
+ * not written, so the operation can be resumed with StreamingTagWriter.resume on the next tap.
+ * The class is immutable.
+ */
+public class WriteCursor {
+
+    private static final int BYTES_PER_PAGE = 4;
+
+    private final int startPageNumber;
+    private final int totalLength;
+    private final int dataOffset;
+    private final byte lastResponse;
+
+    /**
+     * @param startPageNumber the page where the data begins
+     * @param totalLength     the length of the complete data
+     * @param dataOffset      the number of bytes written so far, always a multiple of 4 or the total length
+     * @param lastResponse    the response of the tag on the last WRITE command
+     */
+    public WriteCursor(int startPageNumber, int totalLength, int dataOffset, byte lastResponse) {
+        this.startPageNumber = startPageNumber;
+        this.totalLength = totalLength;
+        this.dataOffset = dataOffset;
+        this.lastResponse = lastResponse;
+    }
+
+    public int getStartPageNumber() {
+        return startPageNumber;
+    }
+
+    public int getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * @return the number of bytes of the data that were written to the tag
+     */
+    public int getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * @return the next page to write
+     */
+    public int getNextPageNumber() {
+        return startPageNumber + dataOffset / BYTES_PER_PAGE;
+    }
+
+    /**
+     * @return the last page of the data
+     */
+    public int getEndPageNumber() {
+        return startPageNumber + (totalLength + BYTES_PER_PAGE - 1) / BYTES_PER_PAGE - 1;
+    }
+
+    /**
+     * @return the response of the tag on the last WRITE command, ACK or a NAK
+     */
+    public byte getLastResponse() {
+        return lastResponse;
+    }
+
+    public boolean isComplete() {
+        return dataOffset >= totalLength;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteCursor{" +
+                "startPageNumber=" + startPageNumber +
+                ", totalLength=" + totalLength +
+                ", dataOffset=" + dataOffset +
+                ", nextPageNumber=" + getNextPageNumber() +
+                ", complete=" + isComplete() +
+                ", lastResponse=" + NfcACommands.resolveCheckResponse(lastResponse) +
+                '}';
+    }
+}
@@ -0,0 +1,209 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class verifies written pages with as few read commands as possible. Instead of reading
+ * each written page back with a READ command, the written pages are collected (addWrittenPage or
+ * addWrittenPages) and verify() reads them in one go:
+ * - neighbouring pages are read with one FAST_READ command, up to the maximum chunk size
+ * - small gaps between written pages (up to MAX_GAP_PAGES) are read as well, as transmitting a
+ * few more pages is faster than an additional command frame
+ * - on tags without FAST_READ (Ultralight C) each READ command verifies up to 4 written pages
+ * The response is compared with the intended data directly, the mismatching pages are returned.
+ * <p>
+ * If a read command fails (e.g. a page of a gap is read protected) the tag is reconnected and
+ * the pages are read again without gaps. Written pages that can't get read are reported as
+ * mismatching.
+ */
+public class WriteVerifier {
+
+    private static final String TAG = WriteVerifier.class.getSimpleName();
+    private static final int BYTES_PER_PAGE = 4;
+    private static final int NUMBER_OF_PAGES = 256; // the page address is one byte long
+    private static final int READ_PAGES = 4; // the READ command returns 4 pages
+    public static final int MAX_GAP_PAGES = 4;
+
+    private final byte[] expectedContent = new byte[NUMBER_OF_PAGES * BYTES_PER_PAGE];
+    private final BitSet writtenPages = new BitSet(NUMBER_OF_PAGES);
+    private int frameCount = 0;
+
+    /**
+     * Notes the data of a written page.
+     *
+     * @param pageNumber
+     * @param data
+     * @param dataOffset the 4 bytes of the page start at this offset
+     */
+    public void addWrittenPage(int pageNumber, byte[] data, int dataOffset) {
+        if ((pageNumber < 0) || (pageNumber >= NUMBER_OF_PAGES)) {
+            throw new IndexOutOfBoundsException("page " + pageNumber + " is outside of the page address range");
+        }
+        System.arraycopy(data, dataOffset, expectedContent, pageNumber * BYTES_PER_PAGE, BYTES_PER_PAGE);
+        writtenPages.set(pageNumber);
+    }
+
+    /**
+     * Notes the data of subsequent written pages, e.g. after writeBulkData. If the length is not a
+     * multiple of 4 the last page is expected to be filled up with 0x00h.
+     *
+     * @param startPageNumber
+     * @param data
+     * @param dataOffset
+     * @param length
+     */
+    public void addWrittenPages(int startPageNumber, byte[] data, int dataOffset, int length) {
+        int pageNumber = startPageNumber;
+        for (int offset = 0; offset < length; offset += BYTES_PER_PAGE) {
+            if (length - offset >= BYTES_PER_PAGE) {
+                addWrittenPage(pageNumber, data, dataOffset + offset);
+            } else {
+                byte[] lastPage = new byte[BYTES_PER_PAGE];
+                System.arraycopy(data, dataOffset + offset, lastPage, 0, length - offset);
+                addWrittenPage(pageNumber, lastPage, 0);
+            }
+            pageNumber++;
+        }
+    }
+
+    public boolean hasWrittenPages() {
+        return !writtenPages.isEmpty();
+    }
+
+    /**
+     * @return the pages noted as written
+     */
+    public int[] getWrittenPages() {
+        return toArray(writtenPages);
+    }
+
+    public void clear() {
+        writtenPages.clear();
+        frameCount = 0;
+    }
+
+    /**
+     * @return the number of read commands sent by the last verify()
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Reads all written pages and compares them with the intended data.
+     *
+     * @param session
+     * @param ti
+     * @return the mismatching (or not readable) pages, an empty array if all pages are verified.
+     * Returns NULL if session is NULL or not connected.
+     */
+    public int[] verify(TagSession session, TagInformation ti) {
+        // sanity checks
+        if ((session == null) || (!session.checkConnected("verify"))) {
+            return null;
+        }
+        frameCount = 0;
+        BitSet mismatchingPages = new BitSet(NUMBER_OF_PAGES);
+        for (int[] range : planReads(writtenPages, 0, ti, true)) {
+            if (!verifyRange(session, ti, range[0], range[1], mismatchingPages)) {
+                if (range[2] == 0) {
+                    markWrittenPages(range[0], range[1], mismatchingPages);
+                    continue;
+                }
+                // the range contains gap pages that might be not readable, read the written pages only
+                BitSet rangePages = writtenPages.get(range[0], range[1] + 1);
+                for (int[] subRange : planReads(rangePages, range[0], ti, false)) {
+                    if (!verifyRange(session, ti, subRange[0], subRange[1], mismatchingPages)) {
+                        markWrittenPages(subRange[0], subRange[1], mismatchingPages);
+                    }
+                }
+            }
+        }
+        int[] result = toArray(mismatchingPages);
+        Log.d(TAG, "verified " + writtenPages.cardinality() + " pages with " + frameCount + " commands, " + result.length + " mismatching");
+        return result;
+    }
+
+    /**
+     * Plans the read commands for the pages.
+     *
+     * @param pages      the pages to read, bit 0 is page <pageOffset>
+     * @param pageOffset
+     * @param ti
+     * @param allowGaps
+     * @return a list of {first page, last page, 1 if the range contains not written pages else 0}
+     */
+    private static List<int[]> planReads(BitSet pages, int pageOffset, TagInformation ti, boolean allowGaps) {
+        List<int[]> ranges = new ArrayList<>();
+        int maxPages = ti.tagHasFastReadCommand ? NfcACommands.maxFastReadPages(ti.maxTransceiveLength) : READ_PAGES;
+        int maxGap = allowGaps ? MAX_GAP_PAGES : 0;
+        int page = pages.nextSetBit(0);
+        while (page >= 0) {
+            int first = page;
+            int last = page;
+            boolean hasGap = false;
+            int next = pages.nextSetBit(last + 1);
+            while (next >= 0) {
+                if (next - last - 1 > maxGap) break;
+                if (next - first + 1 > maxPages) break;
+                // a READ returns 4 pages anyway, so gaps are noted for FAST_READ only
+                if ((ti.tagHasFastReadCommand) && (next != last + 1)) {
+                    hasGap = true;
+                }
+                last = next;
+                next = pages.nextSetBit(last + 1);
+            }
+            ranges.add(new int[]{first + pageOffset, last + pageOffset, hasGap ? 1 : 0});
+            page = next;
+        }
+        return ranges;
+    }
+
+    private boolean verifyRange(TagSession session, TagInformation ti, int firstPage, int lastPage, BitSet mismatchingPages) {
+        frameCount++;
+        byte[] response;
+        int responsePages;
+        if (ti.tagHasFastReadCommand) {
+            response = session.fastReadPage(firstPage, lastPage);
+            responsePages = lastPage - firstPage + 1;
+        } else {
+            response = session.readPage(firstPage);
+            responsePages = READ_PAGES;
+        }
+        if ((response == null) || (response.length != responsePages * BYTES_PER_PAGE)) {
+            Log.e(TAG, "verify read of pages " + firstPage + " to " + lastPage + " failed");
+            session.reconnect();
+            return false;
+        }
+        for (int page = writtenPages.nextSetBit(firstPage); (page >= 0) && (page <= lastPage); page = writtenPages.nextSetBit(page + 1)) {
+            int responseOffset = (page - firstPage) * BYTES_PER_PAGE;
+            int expectedOffset = page * BYTES_PER_PAGE;
+            for (int i = 0; i < BYTES_PER_PAGE; i++) {
+                if (response[responseOffset + i] != expectedContent[expectedOffset + i]) {
+                    mismatchingPages.set(page);
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void markWrittenPages(int firstPage, int lastPage, BitSet mismatchingPages) {
+        for (int page = writtenPages.nextSetBit(firstPage); (page >= 0) && (page <= lastPage); page = writtenPages.nextSetBit(page + 1)) {
+            mismatchingPages.set(page);
+        }
+    }
+
+    private static int[] toArray(BitSet pages) {
+        int[] result = new int[pages.cardinality()];
+        int index = 0;
+        for (int page = pages.nextSetBit(0); page >= 0; page = pages.nextSetBit(page + 1)) {
+            result[index++] = page;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes to a simulated tag that already holds most of the data, only the changed pages are
+ * written. The remaining bytes of a last partial page keep their content.
+ */
+public class DiffTagWriterTest {
+
+    private static final int START_PAGE = 4;
+
+    @Test
+    public void writeDiff_writesOnlyTheChangedPages() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        byte[] data = data(40, 1);
+        writePages(tag, data);
+        // two pages differ from the data on the tag
+        data[5] = (byte) 0x55;
+        data[33] = (byte) 0x66;
+        tag.resetStatistics();
+
+        DiffTagWriter.Result result = DiffTagWriter.writeDiff(session, ti, START_PAGE, data);
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getPagesWritten());
+        assertEquals(8, result.getPagesSkipped());
+        assertEquals(2, tag.getEepromWriteCount());
+        assertArrayEquals(data, Arrays.copyOfRange(tag.getMemory(), START_PAGE * 4, START_PAGE * 4 + data.length));
+    }
+
+    @Test
+    public void writeDiff_sameData_writesNothing() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        byte[] data = data(16, 0x20);
+        writePages(tag, data);
+        tag.resetStatistics();
+
+        DiffTagWriter.Result result = DiffTagWriter.writeDiff(session, ti, START_PAGE, data);
+        assertTrue(result.isSuccess());
+        assertEquals(0, result.getPagesWritten());
+        assertEquals(4, result.getPagesSkipped());
+        assertEquals(0, tag.getEepromWriteCount());
+    }
+
+    @Test
+    public void writeDiff_partialLastPage_keepsTheRemainingBytes() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        tag.setPage(START_PAGE + 1, new byte[]{9, 9, 9, 9});
+        byte[] data = new byte[]{1, 2, 3, 4, 5, 6};
+
+        DiffTagWriter.Result result = DiffTagWriter.writeDiff(session, ti, START_PAGE, data);
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getPagesWritten());
+        assertArrayEquals(new byte[]{5, 6, 9, 9}, tag.getPage(START_PAGE + 1));
+    }
+
+    @Test
+    public void writeDiff_belowTheUserMemory_isRejected() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        assertNull(DiffTagWriter.writeDiff(session, ti, 3, new byte[4]));
+        assertEquals(CommandStatus.INVALID_ARGUMENT, session.getLastErrorStatus());
+        assertEquals(0, tag.getFrameCount());
+    }
+
+    private static byte[] data(int length, int firstValue) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (firstValue + i);
+        }
+        return data;
+    }
+
+    private static void writePages(TagSimulator tag, byte[] data) {
+        for (int i = 0; i < data.length / 4; i++) {
+            tag.setPage(START_PAGE + i, Arrays.copyOfRange(data, i * 4, i * 4 + 4));
+        }
+    }
+
+    private static TagInformation connect(TagSimulator tag, TagSession session) throws IOException {
+        tag.connect();
+        TagInformation ti = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(),
+                tag.getMaxTransceiveLength(), new String[]{"NfcA"});
+        assertTrue(ti.identifyTagOnGetVersion(session.getVersion()));
+        tag.resetStatistics();
+        return ti;
+    }
+}
@@ -0,0 +1,100 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Plans the FAST_READ chunk sizes: the planner backs off on failing chunks, probes between the
+ * working and the failing size and converges to the largest chunk the reader device can receive.
+ */
+public class FastReadChunkPlannerTest {
+
+    private static final String KEY = FastReadChunkPlanner.key("test device", "NTAG216");
+    private static final int MAX_TRANSCEIVE_LENGTH = 253;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void getChunkPages_probesBetweenWorkingAndFailingSize() {
+        FastReadChunkPlanner planner = new FastReadChunkPlanner();
+        assertEquals(MAX_TRANSCEIVE_LENGTH / 4, planner.getChunkPages(KEY, MAX_TRANSCEIVE_LENGTH));
+        planner.onChunkFailure(KEY, 40);
+        assertEquals(39, planner.getChunkPages(KEY, MAX_TRANSCEIVE_LENGTH));
+        planner.onChunkSuccess(KEY, 20);
+        assertEquals(30, planner.getChunkPages(KEY, MAX_TRANSCEIVE_LENGTH));
+        planner.onChunkSuccess(KEY, 39);
+        assertEquals(39, planner.getChunkPages(KEY, MAX_TRANSCEIVE_LENGTH));
+        assertEquals(39, planner.getLearnedChunkPages(KEY));
+    }
+
+    @Test
+    public void backOff_returnsTheWorkingSizeOrHalf() {
+        FastReadChunkPlanner planner = new FastReadChunkPlanner();
+        assertEquals(31, planner.backOff(KEY, 63));
+        assertEquals(0, planner.backOff(KEY, 1));
+        planner.onChunkSuccess(KEY, 16);
+        assertEquals(16, planner.backOff(KEY, 40));
+        assertEquals(8, planner.backOff(KEY, 16));
+    }
+
+    @Test
+    public void readPagesInto_convergesToTheLargestWorkingChunk() throws IOException {
+        // the reader device truncates responses longer than 100 bytes (25 pages)
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        tag.setMaxResponseLength(100, true);
+        tag.connect();
+        TagSession session = new TagSession(tag);
+        FastReadChunkPlanner planner = new FastReadChunkPlanner();
+        int lastPage = TagSimulator.TagType.NTAG216.getConfigurationStartPage() + 1;
+        byte[] dest = new byte[(lastPage + 1) * 4];
+        for (int i = 0; i < 8; i++) {
+            assertEquals(lastPage + 1, planner.readPagesInto(session, KEY, MAX_TRANSCEIVE_LENGTH, 0, lastPage, dest, 0));
+            assertArrayEquals(Arrays.copyOf(tag.getMemory(), dest.length), dest);
+        }
+        assertEquals(25, planner.getLearnedChunkPages(KEY));
+        assertEquals(25, planner.getChunkPages(KEY, MAX_TRANSCEIVE_LENGTH));
+        tag.resetStatistics();
+        planner.readPagesInto(session, KEY, MAX_TRANSCEIVE_LENGTH, 0, lastPage, dest, 0);
+        assertEquals((lastPage + 25) / 25, tag.getFrameCount());
+    }
+
+    @Test
+    public void readPagesInto_protectedPage_doesNotShrinkTheChunkSize() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        tag.setAuth0(100);
+        tag.setReadAndWriteProtection(true);
+        tag.connect();
+        TagSession session = new TagSession(tag);
+        FastReadChunkPlanner planner = new FastReadChunkPlanner();
+        planner.onChunkSuccess(KEY, 50);
+        byte[] dest = new byte[200 * 4];
+        assertEquals(100, planner.readPagesInto(session, KEY, MAX_TRANSCEIVE_LENGTH, 0, 199, dest, 0));
+        // the probe of 57 pages worked, the failures at the protected page are not noted
+        assertEquals(57, planner.getLearnedChunkPages(KEY));
+        assertEquals(60, planner.getChunkPages(KEY, MAX_TRANSCEIVE_LENGTH));
+    }
+
+    @Test
+    public void saveAndLoad_keepsTheLearnedSizes() throws IOException {
+        File file = folder.newFile("chunks.properties");
+        FastReadChunkPlanner planner = new FastReadChunkPlanner();
+        planner.onChunkSuccess(KEY, 20);
+        planner.onChunkFailure(KEY, 40);
+        planner.save(file);
+
+        FastReadChunkPlanner loaded = new FastReadChunkPlanner();
+        loaded.load(file);
+        assertEquals(20, loaded.getLearnedChunkPages(KEY));
+        assertEquals(30, loaded.getChunkPages(KEY, MAX_TRANSCEIVE_LENGTH));
+    }
+}
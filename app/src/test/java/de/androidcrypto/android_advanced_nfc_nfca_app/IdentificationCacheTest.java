@@ -0,0 +1,83 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Counts the confirmations of a UID prefix: only different tags with the same Get Version data
+ * make the prefix trusted, another tap of the same tag is not counted and a tag with other data
+ * marks the prefix as mixed.
+ */
+public class IdentificationCacheTest {
+
+    private static final byte[] ATQA = hexStringToByteArray("4400");
+    private static final byte SAK = (byte) 0x00;
+    private static final byte[] NTAG213 = hexStringToByteArray("0004040201000F03");
+    private static final byte[] NTAG216 = hexStringToByteArray("0004040201001303");
+
+    @Test
+    public void lookup_prefixTrustedAfterMinConfirmations() {
+        IdentificationCache cache = cache();
+        cache.confirm(uid(1), ATQA, SAK, NTAG213);
+        cache.confirm(uid(2), ATQA, SAK, NTAG213);
+        assertNull(cache.lookup(uid(9), ATQA, SAK));
+        cache.confirm(uid(3), ATQA, SAK, NTAG213);
+        assertArrayEquals(NTAG213, cache.lookup(uid(9), ATQA, SAK));
+        assertEquals(1, cache.getBatchHits());
+    }
+
+    @Test
+    public void confirm_sameTagAgain_isNotCounted() {
+        IdentificationCache cache = cache();
+        for (int i = 0; i < 5; i++) {
+            cache.confirm(uid(1), ATQA, SAK, NTAG213);
+        }
+        assertNull(cache.lookup(uid(9), ATQA, SAK));
+        // the tag itself is known by its UID
+        assertArrayEquals(NTAG213, cache.lookup(uid(1), ATQA, SAK));
+    }
+
+    @Test
+    public void confirm_otherVersionData_marksThePrefixAsMixed() {
+        IdentificationCache cache = cache();
+        cache.confirm(uid(1), ATQA, SAK, NTAG213);
+        cache.confirm(uid(2), ATQA, SAK, NTAG216);
+        cache.confirm(uid(3), ATQA, SAK, NTAG213);
+        cache.confirm(uid(4), ATQA, SAK, NTAG213);
+        cache.confirm(uid(5), ATQA, SAK, NTAG213);
+        assertNull(cache.lookup(uid(9), ATQA, SAK));
+        assertEquals(1, cache.getConflicts());
+    }
+
+    @Test
+    public void confirm_batchesAreLimited() {
+        IdentificationCache cache = new IdentificationCache(IdentificationCache.DEFAULT_PREFIX_LENGTH, 16, 2)
+                .setMinConfirmations(1)
+                .setRevalidationInterval(0);
+        cache.confirm(uid(0x11, 1), ATQA, SAK, NTAG213);
+        cache.confirm(uid(0x22, 1), ATQA, SAK, NTAG213);
+        cache.confirm(uid(0x33, 1), ATQA, SAK, NTAG213);
+        // the prefix of the first tag was removed
+        assertNull(cache.lookup(uid(0x11, 9), ATQA, SAK));
+        assertArrayEquals(NTAG213, cache.lookup(uid(0x33, 9), ATQA, SAK));
+        assertTrue(cache.toString().startsWith("uids: 3 batches: 2 "));
+    }
+
+    private static IdentificationCache cache() {
+        return new IdentificationCache().setMinConfirmations(3).setRevalidationInterval(0);
+    }
+
+    private static byte[] uid(int serialNumber) {
+        return uid(0x01, serialNumber);
+    }
+
+    private static byte[] uid(int batch, int serialNumber) {
+        // manufacturer byte and 3 bytes of the batch prefix, the last 3 bytes differ per tag
+        return new byte[]{(byte) 0x04, (byte) batch, (byte) 0x02, (byte) 0x03, (byte) 0x00, (byte) 0x00, (byte) serialNumber};
+    }
+}
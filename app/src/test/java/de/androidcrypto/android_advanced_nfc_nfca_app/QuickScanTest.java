@@ -0,0 +1,92 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Runs quick scans on simulated tags and counts the frames: the tag type is taken from the
+ * Capability Container, the Get Version command or the caches, the NFC counter with READ_CNT or
+ * from the ASCII mirror.
+ */
+public class QuickScanTest {
+
+    @Test
+    public void scan_uniqueCapabilityContainer_skipsGetVersion() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG215);
+        tag.setNfcCounterEnabled(true);
+        tag.setCounter(TagMemoryCache.NFC_COUNTER_NUMBER, 7);
+        QuickScan.Result result = scan(new QuickScan(null, null), tag);
+
+        assertEquals("NTAG215", result.getTagType());
+        assertEquals(IdentificationPath.CAPABILITY_CONTAINER, result.getIdentificationPath());
+        // the READ of page 00 increases the NFC counter
+        assertEquals(8, result.getCounterValue());
+        assertEquals(QuickScan.CounterSource.READ_CNT, result.getCounterSource());
+        assertEquals(2, result.getFrames());
+        assertEquals(2, tag.getFrameCount());
+    }
+
+    @Test
+    public void scan_ambiguousCapabilityContainer_usesGetVersion() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        QuickScan.Result result = scan(new QuickScan(null, null), tag);
+
+        assertEquals("NTAG213", result.getTagType());
+        assertEquals(IdentificationPath.GET_VERSION, result.getIdentificationPath());
+        // the NFC counter is disabled, READ_CNT is answered with a NAK
+        assertEquals(TagMemoryCache.NO_COUNTER, result.getCounterValue());
+        assertEquals(QuickScan.CounterSource.NONE, result.getCounterSource());
+        assertEquals(3, result.getFrames());
+    }
+
+    @Test
+    public void scan_knownBatch_needsNoIdentificationFrame() throws IOException {
+        IdentificationCache identificationCache = new IdentificationCache().setMinConfirmations(1).setRevalidationInterval(0);
+        QuickScan quickScan = new QuickScan(identificationCache, null);
+        scan(quickScan, new TagSimulator(TagSimulator.TagType.MF0UL21, uid(1)));
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.MF0UL21, uid(2));
+        tag.setCounter(QuickScan.ULTRALIGHT_EV1_COUNTER_NUMBER, 3);
+        QuickScan.Result result = scan(quickScan, tag);
+
+        assertEquals(IdentificationPath.CACHED_VERSION_DATA, result.getIdentificationPath());
+        assertEquals(3, result.getCounterValue());
+        assertEquals(1, result.getFrames());
+    }
+
+    @Test
+    public void scan_cachedTagWithCounterMirror_readsTheMirror() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG215);
+        tag.setNfcCounterEnabled(true);
+        tag.setNfcCounterPasswordProtected(true);
+        tag.setAsciiMirror(false, true, 10, 0);
+        tag.setCounter(TagMemoryCache.NFC_COUNTER_NUMBER, 0x1A);
+        TagMemoryCache tagMemoryCache = new TagMemoryCache();
+        tagMemoryCache.put(new TagMemoryCache.CachedTag(tag.getUid(), null, null, tag.getMemory(), 0x1A, 4));
+        QuickScan.Result result = scan(new QuickScan(null, tagMemoryCache), tag);
+
+        assertEquals("NTAG215", result.getTagType());
+        // the FAST_READ of the mirror increases the NFC counter before the mirror is built
+        assertEquals(0x1B, result.getCounterValue());
+        assertEquals(QuickScan.CounterSource.ASCII_MIRROR, result.getCounterSource());
+        assertEquals(1, result.getFrames());
+        assertEquals(1, tag.getFrameCount());
+    }
+
+    private static QuickScan.Result scan(QuickScan quickScan, TagSimulator tag) throws IOException {
+        tag.connect();
+        tag.resetStatistics();
+        TagInformation ti = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(),
+                tag.getMaxTransceiveLength(), new String[]{"NfcA"});
+        QuickScan.Result result = quickScan.scan(new TagSession(tag), ti, System.nanoTime());
+        assertTrue(result.isIdentified());
+        return result;
+    }
+
+    private static byte[] uid(int serialNumber) {
+        return new byte[]{(byte) 0x04, (byte) 0x01, (byte) 0x02, (byte) 0x03, (byte) 0x00, (byte) 0x00, (byte) serialNumber};
+    }
+}
@@ -0,0 +1,138 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Reads a simulated NTAG216 that is removed during the read: the pages read so far are kept and
+ * the next tap reads the missing pages only, if the tag is unchanged since the last tap.
+ */
+public class ResumableTagReaderTest {
+
+    @Test
+    public void read_tagLost_nextTapReadsTheMissingPages() throws IOException {
+        TagSimulator tag = tag();
+        ResumableTagReader reader = new ResumableTagReader();
+        TagInformation ti = connect(tag);
+        int fullReadFrames = readComplete(new ResumableTagReader(), tag, ti);
+
+        ResumableTagReader.ReadResult result = readUntilLost(reader, tag, ti, 12);
+        assertTrue(result.isTagLost());
+        assertTrue(reader.hasPartialImage(ti.tagUid));
+        int keptPages = result.getImage().getValidPageCount();
+
+        result = nextTap(reader, tag, ti);
+        assertFalse(result.isTagLost());
+        assertTrue(result.getImage().isComplete());
+        assertEquals(keptPages, result.getResumedPageCount());
+        assertPagesEqual(tag, result.getImage(), ti.configurationStartPage + 1);
+        assertTrue(tag.getFrameCount() < fullReadFrames);
+        assertFalse(reader.hasPartialImage(ti.tagUid));
+    }
+
+    @Test
+    public void read_changedFingerprint_readsFromScratch() throws IOException {
+        TagSimulator tag = tag();
+        ResumableTagReader reader = new ResumableTagReader();
+        TagInformation ti = connect(tag);
+        readUntilLost(reader, tag, ti, 12);
+        // another device has written the tag in the meantime
+        tag.setPage(ti.userMemoryStartPage, new byte[]{9, 9, 9, 9});
+
+        ResumableTagReader.ReadResult result = nextTap(reader, tag, ti);
+        assertTrue(result.getImage().isComplete());
+        assertEquals(0, result.getResumedPageCount());
+        assertPagesEqual(tag, result.getImage(), ti.configurationStartPage + 1);
+    }
+
+    @Test
+    public void read_nfcCounter_validatesTheKeptImage() throws IOException {
+        // the reader device receives the full FAST_READ chunks, the tag is not reconnected
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        tag.setNfcCounterEnabled(true);
+        ResumableTagReader reader = new ResumableTagReader();
+        TagInformation ti = connect(tag);
+        readUntilLost(reader, tag, ti, 3);
+
+        // the counter is increased by one on the next tap, the image is used
+        ResumableTagReader.ReadResult result = nextTap(reader, tag, ti);
+        assertTrue(result.getResumedPageCount() > 0);
+        assertTrue(result.getImage().isComplete());
+
+        readUntilLost(reader, tag, ti, 3);
+        // the tag was read by another device, the counter is increased by two on the next tap
+        tag.setCounter(TagMemoryCache.NFC_COUNTER_NUMBER, tag.getCounter(TagMemoryCache.NFC_COUNTER_NUMBER) + 1);
+        result = nextTap(reader, tag, ti);
+        assertEquals(0, result.getResumedPageCount());
+        assertTrue(result.getImage().isComplete());
+    }
+
+    @Test
+    public void read_nfcCounterAndReconnects_validatesTheFingerprint() throws IOException {
+        // the failing FAST_READs are followed by reconnects that increase the NFC counter again
+        TagSimulator tag = tag();
+        tag.setNfcCounterEnabled(true);
+        ResumableTagReader reader = new ResumableTagReader();
+        TagInformation ti = connect(tag);
+        int keptPages = readUntilLost(reader, tag, ti, 12).getImage().getValidPageCount();
+
+        ResumableTagReader.ReadResult result = nextTap(reader, tag, ti);
+        assertEquals(keptPages, result.getResumedPageCount());
+        assertTrue(result.getImage().isComplete());
+    }
+
+    private static TagSimulator tag() {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        // small chunks, the read needs several frames
+        tag.setMaxResponseLength(64, false);
+        for (int pageNumber = 4; pageNumber <= TagSimulator.TagType.NTAG216.getUserMemoryEndPage(); pageNumber++) {
+            tag.setPage(pageNumber, new byte[]{(byte) pageNumber, 1, 2, 3});
+        }
+        return tag;
+    }
+
+    private static int readComplete(ResumableTagReader reader, TagSimulator tag, TagInformation ti) {
+        tag.resetStatistics();
+        ResumableTagReader.ReadResult result = reader.read(new TagSession(tag), ti);
+        assertTrue(result.getImage().isComplete());
+        return tag.getFrameCount();
+    }
+
+    private static ResumableTagReader.ReadResult readUntilLost(ResumableTagReader reader, TagSimulator tag, TagInformation ti, int frames) throws IOException {
+        tag.placeInField();
+        tag.connect();
+        tag.setTagLostAfterFrames(frames);
+        return reader.read(new TagSession(tag), ti);
+    }
+
+    private static ResumableTagReader.ReadResult nextTap(ResumableTagReader reader, TagSimulator tag, TagInformation ti) throws IOException {
+        tag.placeInField();
+        tag.connect();
+        tag.resetStatistics();
+        return reader.read(new TagSession(tag), ti);
+    }
+
+    private static TagInformation connect(TagSimulator tag) throws IOException {
+        tag.connect();
+        TagInformation ti = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(),
+                tag.getMaxTransceiveLength(), new String[]{"NfcA"});
+        assertTrue(ti.identifyTagOnGetVersion(new TagSession(tag).getVersion()));
+        return ti;
+    }
+
+    private static void assertPagesEqual(TagSimulator tag, SparseTagImage image, int lastPage) {
+        byte[] memory = tag.getMemory();
+        byte[] page = new byte[4];
+        for (int pageNumber = 0; pageNumber <= lastPage; pageNumber++) {
+            assertTrue("page " + pageNumber, image.copyPage(pageNumber, page, 0));
+            for (int i = 0; i < 4; i++) {
+                assertEquals("page " + pageNumber, memory[pageNumber * 4 + i], page[i]);
+            }
+        }
+    }
+}
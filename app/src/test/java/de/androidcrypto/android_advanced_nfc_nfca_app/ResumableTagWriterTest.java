@@ -0,0 +1,147 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes to a simulated tag that is removed from the field during the write, the job is continued
+ * on the next tap. The boundary check before the resume is checked with pages that were changed
+ * between the taps.
+ */
+public class ResumableTagWriterTest {
+
+    private static final int START_PAGE = 5;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void resume_afterTagLost_completesTheJob() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        ResumableTagWriter writer = new ResumableTagWriter();
+        byte[] data = data(101, 1);
+        tag.setTagLostAfterFrames(5);
+        ResumableTagWriter.WriteResult result = writer.write(session, ti, START_PAGE, data, null, null);
+        assertTrue(result.isTagLost());
+        assertFalse(result.getCursor().isComplete());
+        assertEquals(5 * 4, result.getCursor().getDataOffset());
+        assertTrue(writer.hasPendingJob(ti.tagUid));
+
+        nextTap(tag);
+        result = writer.resume(session, ti, null, null);
+        assertTrue(result.getCursor().isComplete());
+        assertEquals(5 * 4, result.getResumedDataOffset());
+        assertFalse(result.isBoundaryPageWritten());
+        assertFalse(result.isRestarted());
+        assertFalse(writer.hasPendingJob(ti.tagUid));
+        assertTagContent(tag, data);
+    }
+
+    @Test
+    public void resume_boundaryPageWrittenWithoutAck_isNotWrittenAgain() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        ResumableTagWriter writer = new ResumableTagWriter();
+        byte[] data = data(40, 0x55);
+        tag.setTagLostAfterFrames(4);
+        ResumableTagWriter.WriteResult result = writer.write(session, ti, START_PAGE, data, null, null);
+        assertEquals(16, result.getCursor().getDataOffset());
+
+        // the tag wrote page 9 but left the field before the ACK
+        nextTap(tag);
+        tag.setPage(START_PAGE + 4, Arrays.copyOfRange(data, 16, 20));
+        tag.resetStatistics();
+        result = writer.resume(session, ti, null, null);
+        assertTrue(result.getCursor().isComplete());
+        assertTrue(result.isBoundaryPageWritten());
+        assertFalse(result.isRestarted());
+        // one READ for the boundary check and the WRITE of the 5 remaining pages
+        assertEquals(1 + 5, tag.getFrameCount());
+        assertTagContent(tag, data);
+    }
+
+    @Test
+    public void resume_lastAcknowledgedPageChanged_restartsTheJob() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        ResumableTagWriter writer = new ResumableTagWriter();
+        byte[] data = data(101, 1);
+        tag.setTagLostAfterFrames(3);
+        writer.write(session, ti, START_PAGE, data, null, null);
+
+        // someone else wrote the last acknowledged page (page 7) between the taps
+        nextTap(tag);
+        tag.setPage(START_PAGE + 2, new byte[]{9, 9, 9, 9});
+        ResumableTagWriter.WriteResult result = writer.resume(session, ti, null, null);
+        assertTrue(result.getCursor().isComplete());
+        assertTrue(result.isRestarted());
+        assertEquals(0, result.getResumedDataOffset());
+        assertTagContent(tag, data);
+    }
+
+    @Test
+    public void saveAndLoad_keepsThePendingJob() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        ResumableTagWriter writer = new ResumableTagWriter();
+        byte[] data = data(101, 1);
+        tag.setTagLostAfterFrames(6);
+        writer.write(session, ti, START_PAGE, data, null, null);
+        File file = temporaryFolder.newFile("write_jobs.properties");
+        writer.save(file);
+
+        ResumableTagWriter loadedWriter = new ResumableTagWriter();
+        loadedWriter.load(file);
+        assertTrue(loadedWriter.hasPendingJob(ti.tagUid));
+        nextTap(tag);
+        ResumableTagWriter.WriteResult result = loadedWriter.resume(session, ti, null, null);
+        assertTrue(result.getCursor().isComplete());
+        assertEquals(6 * 4, result.getResumedDataOffset());
+        assertTagContent(tag, data);
+    }
+
+    private static byte[] data(int length, int firstValue) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (firstValue + i);
+        }
+        return data;
+    }
+
+    private static TagInformation connect(TagSimulator tag, TagSession session) throws IOException {
+        tag.connect();
+        TagInformation ti = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(),
+                tag.getMaxTransceiveLength(), new String[]{"NfcA"});
+        assertTrue(ti.identifyTagOnGetVersion(session.getVersion()));
+        tag.resetStatistics();
+        return ti;
+    }
+
+    private static void nextTap(TagSimulator tag) throws IOException {
+        tag.placeInField();
+        tag.connect();
+        tag.setTagLostAfterFrames(-1);
+    }
+
+    private static void assertTagContent(TagSimulator tag, byte[] data) {
+        // the last page is filled up with 0x00h
+        int length = (data.length + 3) / 4 * 4;
+        byte[] memory = tag.getMemory();
+        assertArrayEquals(Arrays.copyOf(data, length), Arrays.copyOfRange(memory, START_PAGE * 4, START_PAGE * 4 + length));
+    }
+}
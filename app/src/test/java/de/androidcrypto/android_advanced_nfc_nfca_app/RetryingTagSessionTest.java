@@ -0,0 +1,87 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Sends WRITE and INCR_CNT commands through a RetryingTagSession to a simulated tag with an RF
+ * glitch, a lost response must not lead to a second write or a second increase of the counter.
+ */
+public class RetryingTagSessionTest {
+
+    private static final byte[] PAGE_DATA = new byte[]{(byte) 0x11, (byte) 0x22, (byte) 0x33, (byte) 0x44};
+
+    @Test
+    public void writePage_responseLost_isNotRepeated() throws IOException {
+        TagSimulator tag = connect(TagSimulator.TagType.NTAG213);
+        RetryingTagSession retryingSession = new RetryingTagSession(new TagSession(tag), policy());
+        // the tag writes the page but the ACK gets lost
+        tag.setGlitchAfterFrames(0, true);
+        assertEquals(CommandStatus.ACK, retryingSession.writePage(4, PAGE_DATA, 0));
+        assertArrayEquals(PAGE_DATA, tag.getPage(4));
+        assertEquals(1, tag.getEepromWriteCount());
+        assertEquals(1, retryingSession.getMetrics().getRecoveredCommands());
+    }
+
+    @Test
+    public void writePage_commandLost_isRepeated() throws IOException {
+        TagSimulator tag = connect(TagSimulator.TagType.NTAG213);
+        RetryingTagSession retryingSession = new RetryingTagSession(new TagSession(tag), policy());
+        // the WRITE does not reach the tag, the page is read and then written again
+        tag.setGlitchAfterFrames(0, false);
+        assertEquals(CommandStatus.ACK, retryingSession.writePage(4, PAGE_DATA, 0));
+        assertArrayEquals(PAGE_DATA, tag.getPage(4));
+        assertEquals(1, tag.getEepromWriteCount());
+        assertEquals(1, retryingSession.getMetrics().getRetries());
+    }
+
+    @Test
+    public void increaseCounter_responseLost_increasesOnce() throws IOException {
+        TagSimulator tag = connect(TagSimulator.TagType.MF0UL21);
+        tag.setCounter(0, 10);
+        RetryingTagSession retryingSession = new RetryingTagSession(new TagSession(tag), policy());
+        // frame 0 is the READ_CNT before the INCR_CNT, the response of the INCR_CNT gets lost
+        tag.setGlitchAfterFrames(1, true);
+        assertEquals(CommandStatus.ACK, retryingSession.increaseCounter(0));
+        assertEquals(11, tag.getCounter(0));
+        assertEquals(1, retryingSession.getMetrics().getRecoveredCommands());
+    }
+
+    @Test
+    public void increaseCounter_commandLost_isRepeated() throws IOException {
+        TagSimulator tag = connect(TagSimulator.TagType.MF0UL21);
+        tag.setCounter(0, 10);
+        RetryingTagSession retryingSession = new RetryingTagSession(new TagSession(tag), policy());
+        tag.setGlitchAfterFrames(1, false);
+        assertEquals(CommandStatus.ACK, retryingSession.increaseCounter(0));
+        assertEquals(11, tag.getCounter(0));
+    }
+
+    @Test
+    public void increaseCounter_withoutRetries_isNotRepeated() throws IOException {
+        TagSimulator tag = connect(TagSimulator.TagType.MF0UL21);
+        tag.setCounter(0, 10);
+        RetryingTagSession retryingSession = new RetryingTagSession(new TagSession(tag),
+                policy().setMaxRetries(CommandType.INCR_CNT, 0));
+        // no READ_CNT is sent before, the INCR_CNT is frame 0
+        tag.setGlitchAfterFrames(0, true);
+        assertEquals(CommandStatus.IO_EXCEPTION, retryingSession.increaseCounter(0));
+        assertEquals(11, tag.getCounter(0));
+        assertEquals(1, tag.getFrameCount());
+    }
+
+    private static RetryPolicy policy() {
+        return new RetryPolicy().setBackoff(0, 0);
+    }
+
+    private static TagSimulator connect(TagSimulator.TagType tagType) throws IOException {
+        TagSimulator tag = new TagSimulator(tagType);
+        tag.connect();
+        tag.resetStatistics();
+        return tag;
+    }
+}
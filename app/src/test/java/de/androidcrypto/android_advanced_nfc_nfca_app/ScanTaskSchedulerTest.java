@@ -0,0 +1,101 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs tasks that note their id in the order they are run: the dependencies come first, then the
+ * priority, and a task that does not fit into the time budget is skipped while a cheaper task
+ * still runs.
+ */
+public class ScanTaskSchedulerTest {
+
+    private final List<String> runOrder = new ArrayList<>();
+
+    @Test
+    public void run_dependenciesBeforePriority() {
+        ScanTaskScheduler scheduler = new ScanTaskScheduler()
+                .add(task("write", true).setPriority(10).dependsOn("identify"))
+                .add(task("verify", true).setPriority(90).dependsOn("identify", "write"))
+                .add(task("read", true).setPriority(50).dependsOn("identify"))
+                .add(task("identify", true).setPriority(1));
+        assertEquals(4, scheduler.run(tagInformation(), 0, null));
+        assertEquals(Arrays.asList("identify", "read", "write", "verify"), runOrder);
+    }
+
+    @Test
+    public void run_failedDependency_skipsTheDependentTasks() {
+        List<ScanTask> skippedTasks = new ArrayList<>();
+        ScanTaskScheduler scheduler = new ScanTaskScheduler()
+                .add(task("identify", false))
+                .add(task("read", true).dependsOn("identify"))
+                .add(task("verify", true).dependsOn("read"))
+                .add(task("disabled", true).setEnabled(false))
+                .add(task("other", true));
+        assertEquals(1, scheduler.run(tagInformation(), 0, skippedTasks::add));
+        assertEquals(Arrays.asList("identify", "other"), runOrder);
+        assertEquals(ScanTask.State.FAILED, scheduler.getTask("identify").getState());
+        assertEquals(ScanTask.State.DEPENDENCY_FAILED, scheduler.getTask("read").getState());
+        assertEquals(ScanTask.State.DEPENDENCY_FAILED, scheduler.getTask("verify").getState());
+        assertEquals(ScanTask.State.DISABLED, scheduler.getTask("disabled").getState());
+        assertEquals(3, skippedTasks.size());
+    }
+
+    @Test
+    public void run_preconditionNotMet_isSkipped() {
+        ScanTaskScheduler scheduler = new ScanTaskScheduler()
+                .add(task("fastRead", true).setPrecondition(ti -> ti.tagHasFastReadCommand, "no FAST_READ"))
+                .add(task("read", true));
+        assertEquals(1, scheduler.run(tagInformation(), 0, null));
+        assertEquals(Arrays.asList("read"), runOrder);
+        assertEquals(ScanTask.State.PRECONDITION_NOT_MET, scheduler.getTask("fastRead").getState());
+    }
+
+    @Test
+    public void run_budgetExceeded_cheaperTaskStillRuns() {
+        ScanTaskScheduler scheduler = new ScanTaskScheduler()
+                .add(task("fullRead", true).setPriority(90).setRfCost((ti, timingModel) -> 500_000))
+                .add(task("signature", true).setPriority(80).setRfCost((ti, timingModel) -> 5_000));
+        assertEquals(1, scheduler.run(tagInformation(), 100_000, null));
+        assertEquals(Arrays.asList("signature"), runOrder);
+        assertEquals(ScanTask.State.DEADLINE_EXCEEDED, scheduler.getTask("fullRead").getState());
+        assertEquals(500_000, scheduler.getTask("fullRead").getEstimatedMicros());
+        assertEquals(ScanTask.State.COMPLETED, scheduler.getTask("signature").getState());
+    }
+
+    @Test
+    public void run_cyclicDependencies_areSkipped() {
+        ScanTaskScheduler scheduler = new ScanTaskScheduler()
+                .add(task("a", true).dependsOn("b"))
+                .add(task("b", true).dependsOn("a"))
+                .add(task("c", true));
+        assertEquals(1, scheduler.run(tagInformation(), 0, null));
+        assertEquals(ScanTask.State.DEPENDENCY_FAILED, scheduler.getTask("a").getState());
+        assertEquals(ScanTask.State.DEPENDENCY_FAILED, scheduler.getTask("b").getState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void run_unknownDependency_throws() {
+        new ScanTaskScheduler()
+                .add(task("read", true).dependsOn("identify"))
+                .run(tagInformation(), 0, null);
+    }
+
+    private ScanTask task(String id, boolean success) {
+        return new ScanTask(id, id, () -> {
+            runOrder.add(id);
+            return success;
+        });
+    }
+
+    private static TagInformation tagInformation() {
+        // not identified, the tag has no FAST_READ command
+        return new TagInformation(new byte[7], hexStringToByteArray("4400"), (byte) 0x00, 253, new String[]{"NfcA"});
+    }
+}
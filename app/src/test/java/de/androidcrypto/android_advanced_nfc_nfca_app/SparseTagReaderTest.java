@@ -0,0 +1,82 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Reads simulated tags with SparseTagReader, the readable pages are checked against the memory of
+ * the simulated tag.
+ */
+public class SparseTagReaderTest {
+
+    private static final String KEY = FastReadChunkPlanner.key("test device", "NTAG216");
+
+    @Test
+    public void readSparse_tooLargeChunk_keepsAllPages() throws IOException {
+        // the reader device can't receive more than 64 bytes, the tag is not protected
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        tag.setMaxResponseLength(64, false);
+        TagInformation ti = connect(tag);
+        SparseTagImage image = SparseTagReader.readSparse(new TagSession(tag), ti);
+        assertTrue(image.isComplete());
+        // the PWD and PACK pages behind the configuration pages are read as 0x00h
+        assertPagesEqual(tag, image, 0, ti.configurationStartPage + 1);
+    }
+
+    @Test
+    public void readSparse_withPlanner_learnsTheChunkSize() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        tag.setMaxResponseLength(64, false);
+        TagInformation ti = connect(tag);
+        FastReadChunkPlanner planner = new FastReadChunkPlanner();
+        tag.resetStatistics();
+        SparseTagImage image = SparseTagReader.readSparse(new TagSession(tag), ti, planner, KEY);
+        assertTrue(image.isComplete());
+        int firstReadFrames = tag.getFrameCount();
+        // 16 pages are 64 bytes, a larger chunk does not work
+        int learnedPages = planner.getLearnedChunkPages(KEY);
+        assertTrue("learned " + learnedPages, (learnedPages > 0) && (learnedPages <= 16));
+        tag.resetStatistics();
+        image = SparseTagReader.readSparse(new TagSession(tag), ti, planner, KEY);
+        assertTrue(image.isComplete());
+        assertTrue(tag.getFrameCount() < firstReadFrames);
+    }
+
+    @Test
+    public void readSparse_protectedPages_areInvalid() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        tag.setAuth0(100);
+        tag.setReadAndWriteProtection(true);
+        tag.setMaxResponseLength(64, false);
+        TagInformation ti = connect(tag);
+        SparseTagImage image = SparseTagReader.readSparse(new TagSession(tag), ti);
+        assertEquals(100, image.getValidPageCount());
+        assertPagesEqual(tag, image, 0, 99);
+        assertFalse(image.isPageValid(100));
+        assertEquals(100, image.nextInvalidPage(0));
+    }
+
+    private static TagInformation connect(TagSimulator tag) throws IOException {
+        tag.connect();
+        TagInformation ti = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(),
+                tag.getMaxTransceiveLength(), new String[]{"NfcA"});
+        assertTrue(ti.identifyTagOnGetVersion(new TagSession(tag).getVersion()));
+        return ti;
+    }
+
+    private static void assertPagesEqual(TagSimulator tag, SparseTagImage image, int firstPage, int lastPage) {
+        byte[] memory = tag.getMemory();
+        byte[] page = new byte[4];
+        for (int pageNumber = firstPage; pageNumber <= lastPage; pageNumber++) {
+            assertTrue("page " + pageNumber, image.copyPage(pageNumber, page, 0));
+            for (int i = 0; i < 4; i++) {
+                assertEquals("page " + pageNumber, memory[pageNumber * 4 + i], page[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Identifies tags by their Get Version data and by ATQA and SAK with the profiles of the
+ * TagProfileRegistry. The expected results are the results of the identification that was coded
+ * in TagInformation before the profiles were moved to 'tag_profiles.properties'. Responses that
+ * are not 7, 8, 28 or 29 bytes long are rejected since the Get Version data is read by the
+ * VersionDataView.
+ * The features are the flags FAST_READ, AUTHENTICATION, DES_AUTHENTICATION, PASSWORD,
+ * PAGE_LOCK_BYTES, OTP_AREA, NTAG21x, Ultralight EV1 and library capable (1 = set).
+ */
+public class TagInformationTest {
+
+    private static final String[][] GET_VERSION_VECTORS = {
+            {"0004040201000F03", "true NTAG_21x / NTAG213 memory 144 pages 4-39 end 44 config 41 counter 1 features 110111101"},
+            {"0004040201001103", "true NTAG_21x / NTAG215 memory 504 pages 4-129 end 134 config 131 counter 1 features 110111101"},
+            {"0004040201001303", "true NTAG_21x / NTAG216 memory 888 pages 4-225 end 230 config 227 counter 1 features 110111101"},
+            {"0004040201000E03", "true NTAG_21x / NTAG21x Unknown memory 0 pages 0-0 end 0 config 0 counter 1 features 110111001"},
+            {"0004030101000B03", "true MIFARE_Ultralight / MF0UL11 memory 48 pages 4-15 end 19 config 16 counter 3 features 110111011"},
+            {"0004030101000E03", "true MIFARE_Ultralight / MF0UL21 memory 128 pages 4-35 end 40 config 37 counter 3 features 110111011"},
+            {"0004030101001003", "true MIFARE_Ultralight / MF0ULx Unknown memory 0 pages 0-0 end 0 config 0 counter 3 features 110111001"},
+            // DESFire, 28 bytes and 29 bytes with the status byte of the third frame
+            {"0401010100160504010101041605046D759AA47780B90C224D703722", "true MIFARE_DESFire / DESFire EV1 2K memory 2048 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"04010112001605040101020116050004464BDAD37580CF5B9665003521", "true MIFARE_DESFire / DESFire EV2 2K memory 2048 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"040101330018050401013300180500046D759AA47780B90C224D703722", "true MIFARE_DESFire / DESFire EV3 4K memory 4096 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            // the memory was 8196 bytes before, this was a typo
+            {"04010133001A050401013300180500046D759AA47780B90C224D703722", "true MIFARE_DESFire / DESFire EV3 8K memory 8192 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"04010133001C050401013300180500046D759AA47780B90C224D703722", "true MIFARE_DESFire / DESFire EV3 16K memory 16384 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"04010133001E050401013300180500046D759AA47780B90C224D703722", "true MIFARE_DESFire / DESFire EV3 32K memory 32768 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"040101330020050401013300180500046D759AA47780B90C224D703722", "true MIFARE_DESFire / DESFire EV3 unknown memory memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"040101070016050401010104160500046D759AA47780B90C224D703722", "true MIFARE_DESFire / DESFire EVx (unknown) 2K memory 2048 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0004080101000F03", "true DESFire light / DESFire light 640 bytes memory 640 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0004050101000F03", "false Unknown1 / Unknown2 memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            // 7 bytes without the fixed header
+            {"04040201000F03", "true NTAG_21x / NTAG213 memory 144 pages 4-39 end 44 config 41 counter 1 features 110111101"},
+            // malformed responses: only 7, 8, 28 and 29 bytes are accepted
+            {"0004040201001303AA", "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0401013300180504010133001805", "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            // 26 and 27 bytes: no complete production date
+            {"0401013300180504010133001805046D759AA47780B90C224D70", "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0401013300180504010133001805046D759AA47780B90C224D7037", "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            // 30 bytes: a trailing byte behind the production date
+            {"040101330018050401013300180500046D759AA47780B90C224D70372201", "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0004040201", "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"00", "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"", "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"}
+    };
+
+    private static final String[][] ATQA_SAK_VECTORS = {
+            {"4400", "00", "true MIFARE_Ultralight / Ultralight C memory 144 pages 4-39 end 47 config 42 counter 1 features 011011001"},
+            {"4403", "20", "true Assumed NTAG424 or DESFire light / Assumed NTAG424 or DESFire light memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0400", "08", "true Assumed MIFARE Classic / Assumed MIFARE Classic EV1 2K memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0400", "20", "true Assumed Credit Card / Assumed Credit Card memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0800", "20", "true Assumed German Girocard / Assumed German Girocard memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"0044", "00", "false UNKNOWN TAG / UNKNOWN TAG memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"},
+            {"4400", "08", "false UNKNOWN TAG / UNKNOWN TAG memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000"}
+    };
+
+    @Test
+    public void identifyTagOnGetVersion_sameResultsAsBefore() {
+        for (String[] vector : GET_VERSION_VECTORS) {
+            TagInformation ti = new TagInformation(new byte[7], hexStringToByteArray("4400"), (byte) 0x00, 253, new String[]{"NfcA"});
+            boolean identified = ti.identifyTagOnGetVersion(hexStringToByteArray(vector[0]));
+            assertEquals(vector[0], vector[1], describe(identified, ti));
+        }
+    }
+
+    @Test
+    public void identifyTagOnAtqaSak_sameResultsAsBefore() {
+        for (String[] vector : ATQA_SAK_VECTORS) {
+            TagInformation ti = new TagInformation(new byte[7], hexStringToByteArray(vector[0]), hexStringToByteArray(vector[1])[0], 253, new String[]{"NfcA"});
+            boolean identified = ti.identifyTagOnAtqaSak();
+            assertEquals(vector[0] + ":" + vector[1], vector[2], describe(identified, ti));
+        }
+    }
+
+    @Test
+    public void identifyTagOnCapabilityContainer_onlyUniqueSizes() {
+        // NTAG215, the size 3E is not used by other products
+        assertEquals("true NTAG_21x / NTAG215 memory 504 pages 4-129 end 134 config 131 counter 1 features 110111101",
+                identifyOnCapabilityContainer("3E"));
+        // NTAG213 / Ultralight C (12), NTAG216 / NTAG I2C 1k (6D) and NTAG210 / MF0UL11 (06) need the Get Version command
+        for (String size : new String[]{"12", "6D", "06", "10"}) {
+            assertEquals(size, "false unknown / unknown memory 0 pages 0-0 end 0 config 0 counter 0 features 000000000",
+                    identifyOnCapabilityContainer(size));
+        }
+    }
+
+    private static String identifyOnCapabilityContainer(String capabilityContainerSize) {
+        TagInformation ti = new TagInformation(new byte[7], hexStringToByteArray("4400"), (byte) 0x00, 253, new String[]{"NfcA"});
+        byte[] pagesData = hexStringToByteArray("04A1B2C3D4E5F6A7B848000000000000");
+        pagesData[12] = (byte) 0xE1;
+        pagesData[13] = (byte) 0x10;
+        pagesData[14] = hexStringToByteArray(capabilityContainerSize)[0];
+        boolean identified = ti.identifyTagOnCapabilityContainer(pagesData, 0);
+        return describe(identified, ti);
+    }
+
+    private static String describe(boolean identified, TagInformation ti) {
+        return identified + " " + ti.tagMajorName + " / " + ti.tagMinorName + " memory " + ti.userMemory
+                + " pages " + ti.userMemoryStartPage + "-" + ti.userMemoryEndPage + " end " + ti.tagMemoryEndPage
+                + " config " + ti.configurationStartPage + " counter " + ti.numberOfCounter + " features "
+                + flag(ti.tagHasFastReadCommand) + flag(ti.tagHasAuthentication) + flag(ti.tagHasDesAuthenticationSecurity)
+                + flag(ti.tagHasPasswordSecurity) + flag(ti.tagHasPageLockBytes) + flag(ti.tagHasOtpArea)
+                + flag(ti.isTag_NTAG21x) + flag(ti.isTag_MIFARE_ULTRALIGHT_EV1) + flag(ti.isTag_NfcA_Library_Capable);
+    }
+
+    private static String flag(boolean value) {
+        return value ? "1" : "0";
+    }
+}
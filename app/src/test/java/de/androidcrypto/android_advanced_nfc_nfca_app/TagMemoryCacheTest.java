@@ -0,0 +1,120 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Validates cached tags on a simulated NTAG213 with one command: READ_CNT if the NFC counter is
+ * enabled, otherwise a READ of the fingerprint pages. The cache keeps the least recently used order
+ * when it is saved and loaded.
+ */
+public class TagMemoryCacheTest {
+
+    private static final int FINGERPRINT_PAGE = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void validate_counterUnchanged_isValid() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        tag.setNfcCounterEnabled(true);
+        tag.setCounter(TagMemoryCache.NFC_COUNTER_NUMBER, 5);
+        TagSession session = connect(tag);
+        TagMemoryCache cache = new TagMemoryCache();
+        TagMemoryCache.CachedTag entry = cachedTag(tag, 5);
+
+        assertTrue(cache.validate(session, entry));
+        assertEquals(1, tag.getFrameCount());
+        tag.setCounter(TagMemoryCache.NFC_COUNTER_NUMBER, 6);
+        assertFalse(cache.validate(session, entry));
+    }
+
+    @Test
+    public void validate_noCounter_comparesTheFingerprint() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        tag.setPage(FINGERPRINT_PAGE, new byte[]{1, 2, 3, 4});
+        TagSession session = connect(tag);
+        TagMemoryCache cache = new TagMemoryCache();
+        TagMemoryCache.CachedTag entry = cachedTag(tag, TagMemoryCache.NO_COUNTER);
+
+        assertTrue(cache.validate(session, entry));
+        assertEquals(1, tag.getFrameCount());
+        tag.setPage(FINGERPRINT_PAGE + 3, new byte[]{9, 9, 9, 9});
+        assertFalse(cache.validate(session, entry));
+    }
+
+    @Test
+    public void validate_counterDisabledByTheCache_comparesTheFingerprint() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        tag.setNfcCounterEnabled(true);
+        TagSession session = connect(tag);
+        TagMemoryCache cache = new TagMemoryCache();
+        cache.setUseCounter(false);
+        // a write without a READ does not change the counter but the fingerprint
+        TagMemoryCache.CachedTag entry = cachedTag(tag, 0);
+        tag.setPage(FINGERPRINT_PAGE, new byte[]{9, 9, 9, 9});
+
+        assertFalse(cache.validate(session, entry));
+    }
+
+    @Test
+    public void setPages_updatesTheContentAndFillsTheLastPage() {
+        TagMemoryCache.CachedTag entry = new TagMemoryCache.CachedTag(uid(1), null, null,
+                new byte[]{7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7}, TagMemoryCache.NO_COUNTER, 0);
+        entry.setPages(1, new byte[]{1, 2, 3, 4, 5, 6}, 0, 6);
+        assertArrayEquals(new byte[]{7, 7, 7, 7, 1, 2, 3, 4, 5, 6, 0, 0}, entry.getContent());
+        // outside of the content, nothing is changed
+        entry.setPages(2, new byte[8], 0, 8);
+        assertArrayEquals(new byte[]{7, 7, 7, 7, 1, 2, 3, 4, 5, 6, 0, 0}, entry.getContent());
+    }
+
+    @Test
+    public void saveAndLoad_keepsTheEntriesAndTheOrder() throws IOException {
+        File file = folder.newFile("cache.properties");
+        TagMemoryCache cache = new TagMemoryCache(2);
+        cache.put(new TagMemoryCache.CachedTag(uid(1), new byte[]{0, 4, 4, 2, 1, 0, 0x0F, 3}, null, new byte[]{1, 2, 3, 4}, 17, 4));
+        cache.put(new TagMemoryCache.CachedTag(uid(2), null, new byte[32], new byte[]{5, 6, 7, 8}, TagMemoryCache.NO_COUNTER, 4));
+        // the first tag is now the most recently used one
+        assertNotNull(cache.get(uid(1)));
+        cache.save(file);
+
+        TagMemoryCache loaded = new TagMemoryCache(2);
+        loaded.load(file);
+        assertEquals(2, loaded.size());
+        TagMemoryCache.CachedTag entry = loaded.get(uid(1));
+        assertArrayEquals(new byte[]{0, 4, 4, 2, 1, 0, 0x0F, 3}, entry.getVersionData());
+        assertNull(entry.getSignature());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, entry.getContent());
+        assertEquals(17, entry.getCounterValue());
+        // the least recently used entry is removed first
+        loaded.put(new TagMemoryCache.CachedTag(uid(3), null, null, new byte[4], TagMemoryCache.NO_COUNTER, 4));
+        assertNull(loaded.get(uid(2)));
+        assertNotNull(loaded.get(uid(1)));
+    }
+
+    private static TagMemoryCache.CachedTag cachedTag(TagSimulator tag, int counterValue) {
+        return new TagMemoryCache.CachedTag(tag.getUid(), null, null, tag.getMemory(), counterValue, FINGERPRINT_PAGE);
+    }
+
+    private static TagSession connect(TagSimulator tag) throws IOException {
+        tag.connect();
+        tag.resetStatistics();
+        return new TagSession(tag);
+    }
+
+    private static byte[] uid(int serialNumber) {
+        return new byte[]{(byte) 0x04, (byte) 0x01, (byte) 0x02, (byte) 0x03, (byte) 0x04, (byte) 0x05, (byte) serialNumber};
+    }
+}
@@ -0,0 +1,82 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Checks the table based hex conversion of Utils against the output of the former implementation
+ * with String.format and Integer.toString.
+ */
+public class UtilsTest {
+
+    @Test
+    public void byteToHex_sameOutputAsBefore() {
+        for (int i = 0; i < 256; i++) {
+            byte value = (byte) i;
+            assertEquals(String.format("%02X", value), Utils.byteToHex(value));
+        }
+    }
+
+    @Test
+    public void bytesToHexNpe_sameOutputAsBefore() {
+        byte[] allValues = new byte[256];
+        for (int i = 0; i < allValues.length; i++) {
+            allValues[i] = (byte) i;
+        }
+        assertEquals(formerBytesToHex(allValues), Utils.bytesToHexNpe(allValues));
+        byte[] randomValues = new byte[1000];
+        new Random(42).nextBytes(randomValues);
+        assertEquals(formerBytesToHex(randomValues), Utils.bytesToHexNpe(randomValues));
+        assertEquals("", Utils.bytesToHexNpe(new byte[0]));
+        assertEquals("", Utils.bytesToHexNpe(null));
+    }
+
+    @Test
+    public void hexStringToByteArray_upperAndLowerCase() {
+        byte[] expected = new byte[]{(byte) 0x00, (byte) 0x04, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF, (byte) 0xFF};
+        assertArrayEquals(expected, Utils.hexStringToByteArray("0004ABCDEFFF"));
+        assertArrayEquals(expected, Utils.hexStringToByteArray("0004abcdefff"));
+        assertArrayEquals(new byte[0], Utils.hexStringToByteArray(""));
+        byte[] randomValues = new byte[1000];
+        new Random(42).nextBytes(randomValues);
+        assertArrayEquals(randomValues, Utils.hexStringToByteArray(Utils.bytesToHexNpe(randomValues)));
+    }
+
+    @Test
+    public void hexStringToByteArray_oddLength_throws() {
+        assertInvalid("0");
+        assertInvalid("00040");
+    }
+
+    @Test
+    public void hexStringToByteArray_invalidCharacter_throws() {
+        assertInvalid("0G");
+        assertInvalid("G0");
+        assertInvalid("0x04");
+        assertInvalid("00 04");
+        assertInvalid("-1");
+        // arabic-indic digits, Character.digit accepted them before
+        assertInvalid("\u0661\u0662");
+    }
+
+    private static void assertInvalid(String hex) {
+        try {
+            Utils.hexStringToByteArray(hex);
+            fail("no IllegalArgumentException for '" + hex + "'");
+        } catch (IllegalArgumentException expected) {
+            // the string is not a valid hex string
+        }
+    }
+
+    private static String formerBytesToHex(byte[] bytes) {
+        StringBuffer result = new StringBuffer();
+        for (byte b : bytes)
+            result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        return result.toString().toUpperCase();
+    }
+}
@@ -0,0 +1,96 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Reads the fields of each accepted form of the Get Version response (7, 8, 28 and 29 bytes),
+ * any other length is rejected.
+ */
+public class VersionDataViewTest {
+
+    private static final String DESFIRE_HARDWARE = "04010133001A05";
+    private static final String DESFIRE_SOFTWARE = "04010133001805";
+    private static final String DESFIRE_UID = "046D759AA47780";
+    private static final String DESFIRE_BATCH_NUMBER = "B90C224D70";
+    private static final String DESFIRE_PRODUCTION_DATE = "3722";
+
+    @Test
+    public void wrap_7Bytes_hardwareDataOnly() {
+        VersionDataView view = new VersionDataView();
+        assertTrue(view.wrap(hexStringToByteArray("04040201001303")));
+        assertNtag216Hardware(view);
+        assertFalse(view.hasSoftwareData());
+        assertFalse(view.copyUidInto(new byte[7], 0));
+        assertEquals(-1, view.getProductionWeek());
+    }
+
+    @Test
+    public void wrap_8Bytes_skipsTheHeader() {
+        VersionDataView view = new VersionDataView();
+        assertTrue(view.wrap(hexStringToByteArray("0004040201001303")));
+        assertNtag216Hardware(view);
+        assertFalse(view.hasSoftwareData());
+        assertEquals(-1, view.getSoftwareType());
+        assertFalse(view.copyBatchNumberInto(new byte[5], 0));
+    }
+
+    @Test
+    public void wrap_28Bytes_desfire() {
+        VersionDataView view = new VersionDataView();
+        assertTrue(view.wrap(hexStringToByteArray(DESFIRE_HARDWARE + DESFIRE_SOFTWARE + DESFIRE_UID
+                + DESFIRE_BATCH_NUMBER + DESFIRE_PRODUCTION_DATE)));
+        assertDesfire(view);
+    }
+
+    @Test
+    public void wrap_29Bytes_desfireWithStatusByte() {
+        VersionDataView view = new VersionDataView();
+        assertTrue(view.wrap(hexStringToByteArray(DESFIRE_HARDWARE + DESFIRE_SOFTWARE + "00" + DESFIRE_UID
+                + DESFIRE_BATCH_NUMBER + DESFIRE_PRODUCTION_DATE)));
+        assertDesfire(view);
+    }
+
+    @Test
+    public void wrap_otherLengths_areRejected() {
+        VersionDataView view = new VersionDataView();
+        for (int length : new int[]{0, 1, 6, 9, 25, 26, 27, 30, 64}) {
+            assertFalse(String.valueOf(length), view.wrap(new byte[length]));
+            assertFalse(view.isValid());
+            assertEquals(-1, view.getHardwareType());
+        }
+        assertFalse(view.wrap(null));
+    }
+
+    private static void assertNtag216Hardware(VersionDataView view) {
+        assertTrue(view.isValid());
+        assertEquals(0x04, view.getHardwareVendorId());
+        assertEquals(0x04, view.getHardwareType());
+        assertEquals(0x02, view.getHardwareSubtype());
+        assertEquals(0x01, view.getHardwareVersionMajor());
+        assertEquals(0x00, view.getHardwareVersionMinor());
+        assertEquals(0x13, view.getHardwareStorageSizeRaw());
+        assertEquals(0x03, view.getHardwareProtocol());
+    }
+
+    private static void assertDesfire(VersionDataView view) {
+        assertTrue(view.isValid());
+        assertTrue(view.hasSoftwareData());
+        assertEquals(0x1A, view.getHardwareStorageSizeRaw());
+        assertEquals(0x18, view.getSoftwareStorageSizeRaw());
+        assertEquals(0x33, view.getSoftwareVersionMajor());
+        byte[] uid = new byte[VersionDataView.UID_LENGTH];
+        assertTrue(view.copyUidInto(uid, 0));
+        assertArrayEquals(hexStringToByteArray(DESFIRE_UID), uid);
+        byte[] batchNumber = new byte[VersionDataView.BATCH_NUMBER_LENGTH];
+        assertTrue(view.copyBatchNumberInto(batchNumber, 0));
+        assertArrayEquals(hexStringToByteArray(DESFIRE_BATCH_NUMBER), batchNumber);
+        assertEquals(0x37, view.getProductionWeek());
+        assertEquals(0x22, view.getProductionYear());
+    }
+}
@@ -0,0 +1,109 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Verifies written pages on a simulated tag: neighbouring pages and small gaps are read with one
+ * command, a mismatching page is reported and a failed read of a range with gaps is repeated for
+ * the written pages only.
+ */
+public class WriteVerifierTest {
+
+    @Test
+    public void verify_smallGap_isReadWithOneCommand() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        WriteVerifier verifier = new WriteVerifier();
+        writePages(tag, verifier, 4, 5, 6, 9);
+
+        assertArrayEquals(new int[0], verifier.verify(session, ti));
+        assertEquals(1, verifier.getFrameCount());
+        assertEquals(1, tag.getFrameCount());
+    }
+
+    @Test
+    public void verify_largeGap_isReadWithTwoCommands() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        WriteVerifier verifier = new WriteVerifier();
+        writePages(tag, verifier, 4, 5, 5 + WriteVerifier.MAX_GAP_PAGES + 2);
+
+        assertArrayEquals(new int[0], verifier.verify(session, ti));
+        assertEquals(2, verifier.getFrameCount());
+    }
+
+    @Test
+    public void verify_changedPage_isMismatching() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        WriteVerifier verifier = new WriteVerifier();
+        writePages(tag, verifier, 4, 5, 6, 7);
+        tag.setPage(6, new byte[]{9, 9, 9, 9});
+
+        assertArrayEquals(new int[]{6}, verifier.verify(session, ti));
+        assertEquals(1, verifier.getFrameCount());
+    }
+
+    @Test
+    public void verify_failedReadWithGaps_readsTheWrittenPagesOnly() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG213);
+        TagSession session = new TagSession(tag);
+        TagInformation ti = connect(tag, session);
+        WriteVerifier verifier = new WriteVerifier();
+        writePages(tag, verifier, 4, 6);
+        tag.setGlitchAfterFrames(0, false);
+
+        assertArrayEquals(new int[0], verifier.verify(session, ti));
+        // the failed FAST_READ of pages 4 to 6, then one FAST_READ for each written page
+        assertEquals(3, verifier.getFrameCount());
+    }
+
+    @Test
+    public void verify_withoutFastRead_readsFourPagesPerCommand() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.ULTRALIGHT_C);
+        TagSession session = new TagSession(tag);
+        tag.connect();
+        // not identified, the tag has no FAST_READ command
+        TagInformation ti = new TagInformation(tag.getUid(), hexStringToByteArray("4400"), (byte) 0x00, 253, new String[]{"NfcA"});
+        WriteVerifier verifier = new WriteVerifier();
+        verifier.addWrittenPages(4, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18}, 0, 18);
+        for (int pageNumber : verifier.getWrittenPages()) {
+            tag.setPage(pageNumber, new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+        }
+        tag.setPage(8, new byte[]{17, 18, 0, 0});
+
+        // pages 4 to 7 are not written, page 8 is filled up with 0x00h
+        assertArrayEquals(new int[]{4, 5, 6, 7}, verifier.verify(session, ti));
+        assertEquals(2, verifier.getFrameCount());
+    }
+
+    /**
+     * Writes a page with the page number as content to the tag and notes it in the verifier.
+     */
+    private static void writePages(TagSimulator tag, WriteVerifier verifier, int... pageNumbers) {
+        for (int pageNumber : pageNumbers) {
+            byte[] pageData = new byte[]{(byte) pageNumber, (byte) pageNumber, (byte) pageNumber, (byte) pageNumber};
+            tag.setPage(pageNumber, pageData);
+            verifier.addWrittenPage(pageNumber, pageData, 0);
+        }
+    }
+
+    private static TagInformation connect(TagSimulator tag, TagSession session) throws IOException {
+        tag.connect();
+        TagInformation ti = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(),
+                tag.getMaxTransceiveLength(), new String[]{"NfcA"});
+        assertTrue(ti.identifyTagOnGetVersion(session.getVersion()));
+        tag.resetStatistics();
+        return ti;
+    }
+}
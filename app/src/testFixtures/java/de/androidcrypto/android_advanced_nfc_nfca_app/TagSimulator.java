@@ -0,0 +1,835 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.bytesToHexNpe;
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class is a software NFC tag that answers the commands sent by NfcACommands in the same way
+ * as a real NTAG213/215/216, MIFARE Ultralight EV1 (MF0UL11/MF0UL21) or MIFARE Ultralight C tag.
+ * It implements the NfcATransceiver interface, so all commands can run on a plain Java VM without
+ * any NFC hardware, e.g. for benchmarks or to compare different read and write strategies.
+ * <p>
+ * Supported commands:
+ * 0x30 READ, 0x3A FAST_READ, 0xA2 WRITE, 0x60 GET_VERSION, 0x39 READ_CNT, 0xA5 INCR_CNT,
+ * 0x3C READ_SIG, 0x1B PWD_AUTH and 0xAF (more data, DESFire only).
+ * <p>
+ * The memory layout and the configuration pages follow the data sheets in the 'docs' folder,
+ * including the AUTH0 and ACCESS (PROT bit) protection. As on a real tag a NAK response brings
+ * the tag in HALT state, so all following commands fail with an IOException until the tag is
+ * reconnected. Not modelled: the dynamic lock bytes, the 3DES authentication of the Ultralight C
+ * and the originality signature (the signature is a fixed pattern derived from the UID).
+ * <p>
+ * Each frame is charged with the time given by the TagTimingModel, so after a session the
+ * simulated time on air can be read with getElapsedMicros().
+ */
+public class TagSimulator implements NfcATransceiver {
+
+    public enum Family {NTAG21x, ULTRALIGHT_EV1, ULTRALIGHT_C, DESFIRE}
+
+    public enum TagType {
+        // family, last page, user memory start + end page, configuration start page, Get Version data, CC size byte
+        NTAG213(Family.NTAG21x, 44, 4, 39, 41, "0004040201000F03", 0x12),
+        NTAG215(Family.NTAG21x, 134, 4, 129, 131, "0004040201001103", 0x3E),
+        NTAG216(Family.NTAG21x, 230, 4, 225, 227, "0004040201001303", 0x6D),
+        MF0UL11(Family.ULTRALIGHT_EV1, 19, 4, 15, 16, "0004030101000B03", 0x06),
+        MF0UL21(Family.ULTRALIGHT_EV1, 40, 4, 35, 37, "0004030101000E03", 0x10),
+        // the Ultralight C has no Get Version command, the configuration start page is AUTH0
+        ULTRALIGHT_C(Family.ULTRALIGHT_C, 47, 4, 39, 42, null, 0x12),
+        // a DESFire EV1 2K is just answering the Get Version command (with 'more data' frames)
+        DESFIRE_EV1_2K(Family.DESFIRE, 0, 0, 0, 0, "04010101001605" + "04010101041605", 0x00);
+
+        private final Family family;
+        private final int lastPage;
+        private final int userMemoryStartPage;
+        private final int userMemoryEndPage;
+        private final int configurationStartPage;
+        private final String versionData;
+        private final byte ccSize;
+
+        TagType(Family family, int lastPage, int userMemoryStartPage, int userMemoryEndPage,
+                int configurationStartPage, String versionData, int ccSize) {
+            this.family = family;
+            this.lastPage = lastPage;
+            this.userMemoryStartPage = userMemoryStartPage;
+            this.userMemoryEndPage = userMemoryEndPage;
+            this.configurationStartPage = configurationStartPage;
+            this.versionData = versionData;
+            this.ccSize = (byte) ccSize;
+        }
+
+        public Family getFamily() {
+            return family;
+        }
+
+        public int getLastPage() {
+            return lastPage;
+        }
+
+        public int getUserMemoryStartPage() {
+            return userMemoryStartPage;
+        }
+
+        public int getUserMemoryEndPage() {
+            return userMemoryEndPage;
+        }
+
+        public int getConfigurationStartPage() {
+            return configurationStartPage;
+        }
+    }
+
+    // commands
+    private static final byte CMD_READ = (byte) 0x30;
+    private static final byte CMD_FAST_READ = (byte) 0x3A;
+    private static final byte CMD_WRITE = (byte) 0xA2;
+    private static final byte CMD_GET_VERSION = (byte) 0x60;
+    private static final byte CMD_READ_CNT = (byte) 0x39;
+    private static final byte CMD_INCR_CNT = (byte) 0xA5;
+    private static final byte CMD_READ_SIG = (byte) 0x3C;
+    private static final byte CMD_PWD_AUTH = (byte) 0x1B;
+    private static final byte CMD_MORE_DATA = (byte) 0xAF;
+    // DESFire status codes
+    private static final byte DESFIRE_OPERATION_OK = (byte) 0x00;
+    private static final byte DESFIRE_ILLEGAL_COMMAND_CODE = (byte) 0x1C;
+
+    private static final int BYTES_PER_PAGE = 4;
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final int MAX_COUNTER_VALUE = 0xFFFFFF;
+    public static final int DEFAULT_MAX_TRANSCEIVE_LENGTH = 253;
+    public static final int DEFAULT_TIMEOUT = 618; // milliseconds
+
+    private final TagType tagType;
+    private final byte[] uid;
+    private final byte[] memory;
+    private final int[] counters = new int[3];
+    private final byte[] signature;
+    private TagTimingModel timingModel;
+    private int maxTransceiveLength = DEFAULT_MAX_TRANSCEIVE_LENGTH;
+    private int maxResponseLength = DEFAULT_MAX_TRANSCEIVE_LENGTH;
+    private boolean truncateLongResponses = false;
+    private int timeout = DEFAULT_TIMEOUT;
+
+    // session state
+    private boolean connected = false;
+    private boolean inField = true;
+    private int tagLostAfterFrames = -1; // -1 = the tag stays in the field
+    private int glitchAfterFrames = -1; // -1 = no glitch
+    private boolean glitchLosesResponse = false;
+    private boolean halted = false;
+    private boolean authenticated = false;
+    private boolean nfcCounterIncremented = false;
+    private int moreDataStep = 0;
+
+    // statistics
+    private long elapsedMicros = 0;
+    private int frameCount = 0;
+    private int eepromWriteCount = 0;
+    private int reconnectCount = 0;
+    private long bytesSent = 0;
+    private long bytesReceived = 0;
+
+    public TagSimulator(TagType tagType) {
+        this(tagType, hexStringToByteArray("04A1B2C3D4E5F6"));
+    }
+
+    public TagSimulator(TagType tagType, byte[] uid7Byte) {
+        if ((uid7Byte == null) || (uid7Byte.length != 7)) {
+            throw new IllegalArgumentException("the UID needs to be exactly 7 bytes long");
+        }
+        this.tagType = tagType;
+        this.uid = uid7Byte.clone();
+        this.memory = new byte[(tagType.lastPage + 1) * BYTES_PER_PAGE];
+        this.signature = new byte[SIGNATURE_LENGTH];
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            signature[i] = (byte) (uid[i % 7] * 31 + i);
+        }
+        this.timingModel = TagTimingModel.defaultModel();
+        initializeMemory();
+    }
+
+    /**
+     * Brings the memory in the state of a tag as it is delivered by the manufacturer (NTAG21x tags
+     * are delivered with a Capability Container for NDEF messages).
+     */
+    private void initializeMemory() {
+        Arrays.fill(memory, (byte) 0x00);
+        Arrays.fill(counters, 0);
+        if (tagType.family == Family.DESFIRE) return;
+        // page 0: UID0..UID2 + BCC0, page 1: UID3..UID6, page 2: BCC1, internal, lock bytes
+        memory[0] = uid[0];
+        memory[1] = uid[1];
+        memory[2] = uid[2];
+        memory[3] = (byte) (0x88 ^ uid[0] ^ uid[1] ^ uid[2]);
+        System.arraycopy(uid, 3, memory, 4, 4);
+        memory[8] = (byte) (uid[3] ^ uid[4] ^ uid[5] ^ uid[6]);
+        memory[9] = (byte) 0x48;
+        int cfg = tagType.configurationStartPage * BYTES_PER_PAGE;
+        if (tagType.family == Family.NTAG21x) {
+            // Capability Container
+            memory[12] = (byte) 0xE1;
+            memory[13] = (byte) 0x10;
+            memory[14] = tagType.ccSize;
+            memory[15] = (byte) 0x00;
+            // empty NDEF message in the first user memory page
+            memory[16] = (byte) 0x03;
+            memory[17] = (byte) 0x00;
+            memory[18] = (byte) 0xFE;
+            memory[cfg] = (byte) 0x04; // MIRROR
+            memory[cfg + 3] = (byte) 0xFF; // AUTH0
+        } else if (tagType.family == Family.ULTRALIGHT_EV1) {
+            memory[cfg + 3] = (byte) 0xFF; // AUTH0
+            memory[cfg + 5] = (byte) 0x05; // VCTID
+        } else if (tagType.family == Family.ULTRALIGHT_C) {
+            memory[cfg] = (byte) 0x30; // AUTH0, no page is protected
+        }
+        if ((tagType.family == Family.NTAG21x) || (tagType.family == Family.ULTRALIGHT_EV1)) {
+            // the default password is FFFFFFFFh
+            Arrays.fill(memory, cfg + 8, cfg + 12, (byte) 0xFF);
+        }
+    }
+
+    /*
+        NfcATransceiver interface
+     */
+
+    @Override
+    public byte[] transceive(byte[] data) throws IOException {
+        if (!connected) {
+            throw new IOException("Tag is not connected");
+        }
+        if (data == null || data.length == 0) {
+            throw new IOException("Transceive failed");
+        }
+        if (data.length > maxTransceiveLength) {
+            throw new IOException("Transceive length exceeds supported maximum");
+        }
+        frameCount++;
+        bytesSent += data.length;
+        if (tagLostAfterFrames == 0) {
+            inField = false;
+            tagLostAfterFrames = -1;
+        } else if (tagLostAfterFrames > 0) {
+            tagLostAfterFrames--;
+        }
+        if (!inField) {
+            elapsedMicros += timingModel.noResponseFrameMicros(data.length);
+            throw new IOException("Tag was lost.");
+        }
+        if (halted) {
+            // after a NAK the tag is in HALT state and does not answer any command
+            elapsedMicros += timingModel.noResponseFrameMicros(data.length);
+            throw new IOException("Transceive failed");
+        }
+        boolean glitch = false;
+        if (glitchAfterFrames == 0) {
+            glitch = true;
+            glitchAfterFrames = -1;
+        } else if (glitchAfterFrames > 0) {
+            glitchAfterFrames--;
+        }
+        if ((glitch) && (!glitchLosesResponse)) {
+            // the command does not reach the tag
+            elapsedMicros += timingModel.noResponseFrameMicros(data.length);
+            throw new IOException("Transceive failed");
+        }
+        byte[] response;
+        if (tagType.family == Family.DESFIRE) {
+            response = processDesfireCommand(data);
+        } else {
+            response = processCommand(data);
+        }
+        if (glitch) {
+            // the command was executed by the tag but the response gets lost
+            throw new IOException("Transceive failed");
+        }
+        if (response.length > maxResponseLength) {
+            // the tag did send the response but the reader device can't handle it
+            if (!truncateLongResponses) {
+                throw new IOException("Transceive failed");
+            }
+            response = Arrays.copyOf(response, maxResponseLength);
+        }
+        bytesReceived += response.length;
+        return response;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public int getMaxTransceiveLength() {
+        return maxTransceiveLength;
+    }
+
+    @Override
+    public int getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (!inField) {
+            throw new IOException("Tag was lost.");
+        }
+        connected = true;
+        halted = false;
+        authenticated = false;
+        nfcCounterIncremented = false;
+        moreDataStep = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        connected = false;
+    }
+
+    @Override
+    public void reconnect() throws IOException {
+        close();
+        elapsedMicros += timingModel.getReactivationMicros();
+        reconnectCount++;
+        connect();
+    }
+
+    /*
+        command processing
+     */
+
+    private byte[] processCommand(byte[] cmd) {
+        switch (cmd[0]) {
+            case CMD_READ:
+                return read(cmd);
+            case CMD_FAST_READ:
+                return fastRead(cmd);
+            case CMD_WRITE:
+                return write(cmd);
+            case CMD_GET_VERSION:
+                return getVersion(cmd);
+            case CMD_READ_CNT:
+                return readCounter(cmd);
+            case CMD_INCR_CNT:
+                return increaseCounter(cmd);
+            case CMD_READ_SIG:
+                return readSignature(cmd);
+            case CMD_PWD_AUTH:
+                return passwordAuthentication(cmd);
+            default:
+                return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+    }
+
+    private byte[] read(byte[] cmd) {
+        int lastReadablePage = getLastReadablePage();
+        if (cmd.length != 2) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        int page = cmd[1] & 0xff;
+        if (page > lastReadablePage) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        for (int i = 0; i < 4; i++) {
+            // a READ beyond the last page rolls over to page 0
+            int readPage = (page + i) % (lastReadablePage + 1);
+            if (isReadProtected(readPage)) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+        // the counter is increased before the response is built, so the mirror shows the new value
+        incrementNfcCounterOnFirstRead();
+        byte[] response = new byte[4 * BYTES_PER_PAGE];
+        for (int i = 0; i < 4; i++) {
+            copyPage((page + i) % (lastReadablePage + 1), response, i * BYTES_PER_PAGE);
+        }
+        elapsedMicros += timingModel.dataFrameMicros(cmd.length, response.length);
+        return response;
+    }
+
+    private byte[] fastRead(byte[] cmd) {
+        if (tagType.family == Family.ULTRALIGHT_C) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        if (cmd.length != 3) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        int startPage = cmd[1] & 0xff;
+        int endPage = cmd[2] & 0xff;
+        if ((startPage > endPage) || (endPage > tagType.lastPage)) {
+            return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+        for (int page = startPage; page <= endPage; page++) {
+            if (isReadProtected(page)) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+        incrementNfcCounterOnFirstRead();
+        byte[] response = new byte[(endPage - startPage + 1) * BYTES_PER_PAGE];
+        for (int page = startPage; page <= endPage; page++) {
+            copyPage(page, response, (page - startPage) * BYTES_PER_PAGE);
+        }
+        elapsedMicros += timingModel.dataFrameMicros(cmd.length, response.length);
+        return response;
+    }
+
+    private byte[] write(byte[] cmd) {
+        if (cmd.length != 6) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        int page = cmd[1] & 0xff;
+        // pages 0 and 1 hold the UID and are read-only
+        if ((page < 2) || (page > tagType.lastPage)) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        if (isWriteProtected(page) || isPageLocked(page)) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        int offset = page * BYTES_PER_PAGE;
+        if (page == 2) {
+            // only the lock bytes are writable and bits can only get set
+            memory[offset + 2] |= cmd[4];
+            memory[offset + 3] |= cmd[5];
+        } else if (page == 3) {
+            // One Time Programmable area, bits can only get set
+            for (int i = 0; i < BYTES_PER_PAGE; i++) {
+                memory[offset + i] |= cmd[2 + i];
+            }
+        } else {
+            System.arraycopy(cmd, 2, memory, offset, BYTES_PER_PAGE);
+        }
+        eepromWriteCount++;
+        return ack(cmd.length, true);
+    }
+
+    private byte[] getVersion(byte[] cmd) {
+        if ((tagType.versionData == null) || (cmd.length != 1)) {
+            return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+        byte[] response = hexStringToByteArray(tagType.versionData);
+        elapsedMicros += timingModel.dataFrameMicros(cmd.length, response.length);
+        return response;
+    }
+
+    private byte[] readCounter(byte[] cmd) {
+        if (cmd.length != 2) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        int counterNumber = cmd[1] & 0xff;
+        if (tagType.family == Family.NTAG21x) {
+            // the NTAG21x has one NFC counter (address 2) that needs to get enabled in ACCESS byte
+            if ((counterNumber != 2) || (!isNfcCounterEnabled())) {
+                return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+            }
+            if (isNfcCounterPasswordProtected() && !authenticated) {
+                return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+            }
+        } else if (tagType.family == Family.ULTRALIGHT_EV1) {
+            if (counterNumber > 2) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        } else {
+            return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+        int value = counters[counterNumber];
+        byte[] response = new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16)};
+        elapsedMicros += timingModel.dataFrameMicros(cmd.length, response.length);
+        return response;
+    }
+
+    private byte[] increaseCounter(byte[] cmd) {
+        if ((tagType.family != Family.ULTRALIGHT_EV1) || (cmd.length != 6)) {
+            return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+        int counterNumber = cmd[1] & 0xff;
+        if (counterNumber > 2) return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        int increment = (cmd[2] & 0xff) | ((cmd[3] & 0xff) << 8) | ((cmd[4] & 0xff) << 16);
+        if (counters[counterNumber] + increment > MAX_COUNTER_VALUE) {
+            return nak(NfcACommands.NAK_INVALID_AUTHENTICATION_COUNTER_OVERFLOW, cmd.length);
+        }
+        counters[counterNumber] += increment;
+        eepromWriteCount++;
+        return ack(cmd.length, true);
+    }
+
+    private byte[] readSignature(byte[] cmd) {
+        if ((!hasPasswordProtection()) || (cmd.length != 2)) {
+            return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+        byte[] response = signature.clone();
+        elapsedMicros += timingModel.dataFrameMicros(cmd.length, response.length);
+        return response;
+    }
+
+    private byte[] passwordAuthentication(byte[] cmd) {
+        if ((!hasPasswordProtection()) || (cmd.length != 5)) {
+            return nak(NfcACommands.NAK_INVALID_ARGUMENT, cmd.length);
+        }
+        int pwdOffset = getPasswordPage() * BYTES_PER_PAGE;
+        for (int i = 0; i < BYTES_PER_PAGE; i++) {
+            if (memory[pwdOffset + i] != cmd[1 + i]) {
+                return nak(NfcACommands.NAK_INVALID_AUTHENTICATION_COUNTER_OVERFLOW, cmd.length);
+            }
+        }
+        authenticated = true;
+        int packOffset = pwdOffset + BYTES_PER_PAGE;
+        byte[] response = new byte[]{memory[packOffset], memory[packOffset + 1]};
+        elapsedMicros += timingModel.dataFrameMicros(cmd.length, response.length);
+        return response;
+    }
+
+    private byte[] processDesfireCommand(byte[] cmd) {
+        // the version data is sent in 3 frames, each of them but the last is starting with 'AF'
+        byte[] versionData = hexStringToByteArray(tagType.versionData);
+        byte[] response;
+        if (cmd[0] == CMD_GET_VERSION) {
+            response = new byte[8];
+            response[0] = CMD_MORE_DATA;
+            System.arraycopy(versionData, 0, response, 1, 7);
+            moreDataStep = 1;
+        } else if ((cmd[0] == CMD_MORE_DATA) && (moreDataStep == 1)) {
+            response = new byte[8];
+            response[0] = CMD_MORE_DATA;
+            System.arraycopy(versionData, 7, response, 1, 7);
+            moreDataStep = 2;
+        } else if ((cmd[0] == CMD_MORE_DATA) && (moreDataStep == 2)) {
+            // UID, batch number, production week and year
+            response = new byte[15];
+            response[0] = DESFIRE_OPERATION_OK;
+            System.arraycopy(uid, 0, response, 1, 7);
+            for (int i = 0; i < 5; i++) {
+                response[8 + i] = uid[i + 2];
+            }
+            response[13] = (byte) 0x44; // week
+            response[14] = (byte) 0x21; // year
+            moreDataStep = 0;
+        } else {
+            response = new byte[]{DESFIRE_ILLEGAL_COMMAND_CODE};
+            moreDataStep = 0;
+        }
+        elapsedMicros += timingModel.dataFrameMicros(cmd.length, response.length);
+        return response;
+    }
+
+    private byte[] ack(int commandLength, boolean eepromWrite) {
+        elapsedMicros += timingModel.ackFrameMicros(commandLength, eepromWrite);
+        return new byte[]{NfcACommands.ACK};
+    }
+
+    private byte[] nak(byte nakCode, int commandLength) {
+        elapsedMicros += timingModel.ackFrameMicros(commandLength, false);
+        // after a NAK the tag falls back to HALT state
+        halted = true;
+        return new byte[]{nakCode};
+    }
+
+    /*
+        memory and access conditions
+     */
+
+    private void copyPage(int page, byte[] dest, int destOffset) {
+        if (hasPasswordProtection() && ((page == getPasswordPage()) || (page == getPasswordPage() + 1))) {
+            // PWD and PACK are always read as 00h
+            Arrays.fill(dest, destOffset, destOffset + BYTES_PER_PAGE, (byte) 0x00);
+        } else {
+            System.arraycopy(memory, page * BYTES_PER_PAGE, dest, destOffset, BYTES_PER_PAGE);
+            if (tagType.family == Family.NTAG21x) {
+                applyAsciiMirror(page, dest, destOffset);
+            }
+        }
+    }
+
+    /**
+     * Replaces the bytes of the page that are covered by the ASCII mirror of an NTAG21x: the UID
+     * as 14 hex characters, the NFC counter as 6 hex characters (MSB first), with both mirrors
+     * the UID and the counter are separated by an 'x'.
+     */
+    private void applyAsciiMirror(int page, byte[] dest, int destOffset) {
+        int cfg = tagType.configurationStartPage * BYTES_PER_PAGE;
+        byte mirror = memory[cfg];
+        int mirrorPage = memory[cfg + 2] & 0xff;
+        boolean uidMirror = Utils.testBit(mirror, 6);
+        boolean counterMirror = Utils.testBit(mirror, 7) && isNfcCounterEnabled();
+        if ((!uidMirror && !counterMirror) || (mirrorPage < tagType.userMemoryStartPage)) return;
+        StringBuilder sb = new StringBuilder();
+        if (uidMirror) sb.append(bytesToHexNpe(uid));
+        if (uidMirror && counterMirror) sb.append('x');
+        if (counterMirror) sb.append(String.format("%06X", counters[2]));
+        byte[] mirrorData = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        int mirrorStart = mirrorPage * BYTES_PER_PAGE + ((mirror >> 4) & 0x03);
+        for (int i = 0; i < BYTES_PER_PAGE; i++) {
+            int mirrorIndex = page * BYTES_PER_PAGE + i - mirrorStart;
+            if ((mirrorIndex >= 0) && (mirrorIndex < mirrorData.length)) {
+                dest[destOffset + i] = mirrorData[mirrorIndex];
+            }
+        }
+    }
+
+    private int getLastReadablePage() {
+        if (tagType.family == Family.ULTRALIGHT_C) {
+            // the 3DES key in pages 44..47 can't get read
+            return tagType.configurationStartPage + 1;
+        }
+        return tagType.lastPage;
+    }
+
+    private boolean hasPasswordProtection() {
+        return (tagType.family == Family.NTAG21x) || (tagType.family == Family.ULTRALIGHT_EV1);
+    }
+
+    private int getPasswordPage() {
+        return tagType.configurationStartPage + 2;
+    }
+
+    private int getAuth0() {
+        if (tagType.family == Family.ULTRALIGHT_C) {
+            return memory[tagType.configurationStartPage * BYTES_PER_PAGE] & 0xff;
+        }
+        return memory[tagType.configurationStartPage * BYTES_PER_PAGE + 3] & 0xff;
+    }
+
+    private byte getAccess() {
+        return memory[(tagType.configurationStartPage + 1) * BYTES_PER_PAGE];
+    }
+
+    private boolean isReadProtected(int page) {
+        if (authenticated || (page < getAuth0())) return false;
+        if (tagType.family == Family.ULTRALIGHT_C) {
+            // AUTH1 bit 0 = 0: read and write access is restricted
+            return (getAccess() & 0x01) == 0;
+        }
+        // ACCESS bit 7 = PROT: 1 = read and write access is protected
+        return (getAccess() & 0x80) != 0;
+    }
+
+    private boolean isWriteProtected(int page) {
+        return !authenticated && (page >= getAuth0());
+    }
+
+    private boolean isPageLocked(int page) {
+        // the static lock bytes in page 2 (bytes 2 + 3) lock the pages 3..15
+        if ((page >= 3) && (page <= 7)) {
+            return Utils.testBit(memory[10], page);
+        } else if ((page >= 8) && (page <= 15)) {
+            return Utils.testBit(memory[11], page - 8);
+        }
+        return false;
+    }
+
+    private boolean isNfcCounterEnabled() {
+        return Utils.testBit(getAccess(), 4);
+    }
+
+    private boolean isNfcCounterPasswordProtected() {
+        return Utils.testBit(getAccess(), 3);
+    }
+
+    private void incrementNfcCounterOnFirstRead() {
+        // the NFC counter of an NTAG21x is increased with the first READ or FAST_READ after activation
+        if ((tagType.family == Family.NTAG21x) && isNfcCounterEnabled() && !nfcCounterIncremented) {
+            if (counters[2] < MAX_COUNTER_VALUE) counters[2]++;
+            nfcCounterIncremented = true;
+        }
+    }
+
+    /*
+        direct access to the tag, e.g. to prepare a test setup (no time is charged)
+     */
+
+    public byte[] getPage(int pageNumber) {
+        return Arrays.copyOfRange(memory, pageNumber * BYTES_PER_PAGE, (pageNumber + 1) * BYTES_PER_PAGE);
+    }
+
+    public void setPage(int pageNumber, byte[] pageData4Byte) {
+        System.arraycopy(pageData4Byte, 0, memory, pageNumber * BYTES_PER_PAGE, BYTES_PER_PAGE);
+    }
+
+    public byte[] getMemory() {
+        return memory.clone();
+    }
+
+    /**
+     * Sets the first page that is protected by the password (NTAG21x, Ultralight EV1) or the
+     * 3DES authentication (Ultralight C).
+     *
+     * @param pageNumber
+     */
+    public void setAuth0(int pageNumber) {
+        if (tagType.family == Family.ULTRALIGHT_C) {
+            memory[tagType.configurationStartPage * BYTES_PER_PAGE] = (byte) pageNumber;
+        } else {
+            memory[tagType.configurationStartPage * BYTES_PER_PAGE + 3] = (byte) pageNumber;
+        }
+    }
+
+    /**
+     * @param readAndWrite true: read and write access is protected, false: write access only
+     */
+    public void setReadAndWriteProtection(boolean readAndWrite) {
+        int offset = (tagType.configurationStartPage + 1) * BYTES_PER_PAGE;
+        if (tagType.family == Family.ULTRALIGHT_C) {
+            memory[offset] = readAndWrite ? Utils.unsetBitInByte(memory[offset], 0) : Utils.setBitInByte(memory[offset], 0);
+        } else {
+            memory[offset] = readAndWrite ? Utils.setBitInByte(memory[offset], 7) : Utils.unsetBitInByte(memory[offset], 7);
+        }
+    }
+
+    public void setNfcCounterEnabled(boolean enabled) {
+        int offset = (tagType.configurationStartPage + 1) * BYTES_PER_PAGE;
+        memory[offset] = enabled ? Utils.setBitInByte(memory[offset], 4) : Utils.unsetBitInByte(memory[offset], 4);
+    }
+
+    /**
+     * @param passwordProtected true: the READ_CNT command needs a password authentication
+     */
+    public void setNfcCounterPasswordProtected(boolean passwordProtected) {
+        int offset = (tagType.configurationStartPage + 1) * BYTES_PER_PAGE;
+        memory[offset] = passwordProtected ? Utils.setBitInByte(memory[offset], 3) : Utils.unsetBitInByte(memory[offset], 3);
+    }
+
+    /**
+     * Sets the ASCII mirror of an NTAG21x (MIRROR byte and MIRROR_PAGE), see ConfigurationPages.
+     *
+     * @param mirrorUid
+     * @param mirrorNfcCounter
+     * @param mirrorPage
+     * @param mirrorByte       0..3
+     */
+    public void setAsciiMirror(boolean mirrorUid, boolean mirrorNfcCounter, int mirrorPage, int mirrorByte) {
+        int offset = tagType.configurationStartPage * BYTES_PER_PAGE;
+        int mirror = memory[offset] & 0x0f;
+        if (mirrorUid) mirror |= 0x40;
+        if (mirrorNfcCounter) mirror |= 0x80;
+        mirror |= (mirrorByte & 0x03) << 4;
+        memory[offset] = (byte) mirror;
+        memory[offset + 2] = (byte) mirrorPage;
+    }
+
+    public void setPassword(byte[] password4Byte, byte[] pack2Byte) {
+        int offset = getPasswordPage() * BYTES_PER_PAGE;
+        System.arraycopy(password4Byte, 0, memory, offset, 4);
+        System.arraycopy(pack2Byte, 0, memory, offset + 4, 2);
+    }
+
+    public void setCounter(int counterNumber, int value) {
+        counters[counterNumber] = value;
+    }
+
+    public int getCounter(int counterNumber) {
+        return counters[counterNumber];
+    }
+
+    /**
+     * Simulates that the tag is removed from the reader field after the given number of frames.
+     * All following frames fail with a 'Tag was lost' IOException.
+     *
+     * @param frames number of frames that are still answered, 0 = the next frame fails
+     */
+    public void setTagLostAfterFrames(int frames) {
+        this.tagLostAfterFrames = frames;
+    }
+
+    /**
+     * Simulates a transient RF glitch: the frame after the given number of frames fails with an
+     * IOException, the tag stays in the field and answers the following frames.
+     *
+     * @param frames       number of frames that are still answered, 0 = the next frame fails
+     * @param responseLost false: the command does not reach the tag, true: the command is
+     *                     executed by the tag (e.g. a page is written) but the response gets lost
+     */
+    public void setGlitchAfterFrames(int frames, boolean responseLost) {
+        this.glitchAfterFrames = frames;
+        this.glitchLosesResponse = responseLost;
+    }
+
+    public void removeFromField() {
+        inField = false;
+        tagLostAfterFrames = -1;
+    }
+
+    /**
+     * Brings the tag back into the reader field (a new tap), the tag needs to get connected again.
+     */
+    public void placeInField() {
+        inField = true;
+        connected = false;
+    }
+
+    public boolean isInField() {
+        return inField;
+    }
+
+    public void setMaxTransceiveLength(int maxTransceiveLength) {
+        this.maxTransceiveLength = maxTransceiveLength;
+        this.maxResponseLength = maxTransceiveLength;
+    }
+
+    /**
+     * Simulates a reader device that can't receive responses longer than maxResponseLength bytes,
+     * even if it reports a larger maxTransceiveLength. Longer responses are either truncated or
+     * the transceive fails with an IOException.
+     *
+     * @param maxResponseLength
+     * @param truncate          true: return the first maxResponseLength bytes, false: IOException
+     */
+    public void setMaxResponseLength(int maxResponseLength, boolean truncate) {
+        this.maxResponseLength = maxResponseLength;
+        this.truncateLongResponses = truncate;
+    }
+
+    public void setTimingModel(TagTimingModel timingModel) {
+        this.timingModel = timingModel;
+    }
+
+    public TagTimingModel getTimingModel() {
+        return timingModel;
+    }
+
+    public TagType getTagType() {
+        return tagType;
+    }
+
+    public byte[] getUid() {
+        return uid.clone();
+    }
+
+    public byte[] getAtqa() {
+        if (tagType.family == Family.DESFIRE) {
+            return new byte[]{(byte) 0x44, (byte) 0x03};
+        }
+        return new byte[]{(byte) 0x44, (byte) 0x00};
+    }
+
+    public byte getSak() {
+        if (tagType.family == Family.DESFIRE) {
+            return (byte) 0x20;
+        }
+        return (byte) 0x00;
+    }
+
+    /*
+        statistics
+     */
+
+    public void resetStatistics() {
+        elapsedMicros = 0;
+        frameCount = 0;
+        eepromWriteCount = 0;
+        reconnectCount = 0;
+        bytesSent = 0;
+        bytesReceived = 0;
+    }
+
+    /**
+     * @return the simulated time on air since the last resetStatistics() in microseconds
+     */
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public int getEepromWriteCount() {
+        return eepromWriteCount;
+    }
+
+    public int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+}
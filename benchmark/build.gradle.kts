@@ -0,0 +1,39 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+// The benchmarks run on a plain Java VM without any NFC hardware. The command layer, the parsers
+// and the tag simulator are taken directly from the app sources, the classes that need the Android
+// framework are excluded and android.util.Log is replaced by a stub in src/main/java. The tag
+// simulator is taken from the test fixtures of the app, the tag profiles from the app resources.
+sourceSets {
+    main {
+        resources {
+            srcDir("../app/src/main/resources")
+        }
+        java {
+            srcDir("../app/src/main/java")
+            srcDir("../app/src/testFixtures/java")
+            exclude(
+                "**/MainActivity.java",
+                "**/AndroidNfcATransceiver.java"
+            )
+        }
+    }
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // the gc profiler reports the allocation rate (gc.alloc.rate.norm = bytes per operation)
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,92 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the bytes allocated by the command layer during a full read-modify-write cycle of an
+ * NTAG216: the complete memory is read with FAST_READ commands, the user data pages are changed
+ * and written back with the WRITE command. The bytes allocated inside of transceive (the response
+ * arrays and the simulator) are counted separately, so commandLayerBytes should stay at 0.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AllocationBenchmark {
+
+    private static final int FIRST_WRITE_PAGE = 5;
+    private static final int LAST_WRITE_PAGE = 14;
+
+    private AllocationCountingTransceiver transceiver;
+    private TagSession session;
+    private int maxTransceiveLength;
+    private int lastPage;
+    private byte[] fullTagBuffer;
+
+    /**
+     * The allocated bytes, reported as events per second like the RfTimeCounters. Dividing by
+     * the ops/s gives the bytes of one cycle.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class AllocationCounters {
+        public long commandLayerBytes;
+        public long platformBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commandLayerBytes = 0;
+            platformBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        transceiver = new AllocationCountingTransceiver(tag);
+        transceiver.connect();
+        session = new TagSession(transceiver);
+        maxTransceiveLength = transceiver.getMaxTransceiveLength();
+        lastPage = tag.getTagType().getLastPage();
+        fullTagBuffer = new byte[(lastPage + 1) * 4];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        transceiver.close();
+    }
+
+    @Benchmark
+    public CommandStatus readModifyWrite(AllocationCounters counters) {
+        long platformBytesStart = transceiver.getPlatformBytes();
+        long start = AllocationCountingTransceiver.allocatedBytes();
+
+        CommandStatus status = CommandStatus.ACK;
+        int pagesRead = session.readPagesInto(maxTransceiveLength, 0, lastPage, fullTagBuffer, 0);
+        if (pagesRead == lastPage + 1) {
+            for (int page = FIRST_WRITE_PAGE; (page <= LAST_WRITE_PAGE) && (status.isSuccess()); page++) {
+                fullTagBuffer[page * 4]++;
+                status = session.writePage(page, fullTagBuffer, page * 4);
+            }
+        } else {
+            status = CommandStatus.UNEXPECTED_RESPONSE;
+        }
+
+        long allocated = AllocationCountingTransceiver.allocatedBytes() - start - transceiver.getMeasurementBytes();
+        long platformBytes = transceiver.getPlatformBytes() - platformBytesStart;
+        counters.platformBytes += platformBytes;
+        counters.commandLayerBytes += allocated - platformBytes;
+        return status;
+    }
+}
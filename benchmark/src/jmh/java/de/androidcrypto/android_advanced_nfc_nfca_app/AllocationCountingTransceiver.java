@@ -0,0 +1,109 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Wraps a TagSimulator and counts the bytes that are allocated inside of transceive, that are the
+ * response arrays and the work of the simulator (on a device: the platform NfcA class). The
+ * AllocationBenchmark subtracts them from the allocations of a complete operation, the remaining
+ * bytes are allocated by the command layer.
+ * <p>
+ * The bytes are taken from the allocation counter of the current thread, the few bytes needed by
+ * the counter itself are measured once and subtracted.
+ */
+public class AllocationCountingTransceiver implements NfcATransceiver {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final TagSimulator tag;
+    private final long measurementBytes;
+    private long platformBytes;
+
+    public AllocationCountingTransceiver(TagSimulator tag) {
+        this.tag = tag;
+        this.measurementBytes = calibrate();
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread so far
+     */
+    public static long allocatedBytes() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long calibrate() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long start = allocatedBytes();
+            long end = allocatedBytes();
+            min = Math.min(min, end - start);
+        }
+        return min;
+    }
+
+    /**
+     * @return the bytes allocated by one call of allocatedBytes()
+     */
+    public long getMeasurementBytes() {
+        return measurementBytes;
+    }
+
+    /**
+     * @return the bytes allocated inside of transceive, including the counting itself
+     */
+    public long getPlatformBytes() {
+        return platformBytes;
+    }
+
+    public TagSimulator getTag() {
+        return tag;
+    }
+
+    @Override
+    public byte[] transceive(byte[] data) throws IOException {
+        long start = allocatedBytes();
+        try {
+            return tag.transceive(data);
+        } finally {
+            // the measured span includes one call of allocatedBytes, the other one is added
+            platformBytes += allocatedBytes() - start + measurementBytes;
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return tag.isConnected();
+    }
+
+    @Override
+    public int getMaxTransceiveLength() {
+        return tag.getMaxTransceiveLength();
+    }
+
+    @Override
+    public int getTimeout() {
+        return tag.getTimeout();
+    }
+
+    @Override
+    public void setTimeout(int timeout) {
+        tag.setTimeout(timeout);
+    }
+
+    @Override
+    public void connect() throws IOException {
+        tag.connect();
+    }
+
+    @Override
+    public void close() throws IOException {
+        tag.close();
+    }
+
+    @Override
+    public void reconnect() throws IOException {
+        tag.reconnect();
+    }
+}
@@ -0,0 +1,170 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the commands of NfcACommands against a simulated tag. The ops/s show the CPU costs
+ * of the command layer, the RfTimeCounters show the simulated time on air.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CommandLayerBenchmark {
+
+    @Param({"NTAG213", "NTAG215", "NTAG216", "MF0UL21"})
+    public String tagType;
+
+    private TagSimulator tag;
+    private TagSession session;
+    private int maxTransceiveLength;
+    private int lastPage;
+    private byte[] bulkData;
+    private byte[] fullTagBuffer;
+    private FastReadChunkPlanner fastReadChunkPlanner;
+    private TagInformation tagInformation;
+    private RetryingTagSession retryingSession;
+    private TagMemoryCache tagMemoryCache;
+    private byte[] pageBuffer = new byte[16];
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tag = new TagSimulator(TagSimulator.TagType.valueOf(tagType));
+        tag.connect();
+        session = new TagSession(tag);
+        retryingSession = new RetryingTagSession(session, new RetryPolicy().setBackoff(0, 0));
+        maxTransceiveLength = tag.getMaxTransceiveLength();
+        lastPage = tag.getTagType().getLastPage();
+        fullTagBuffer = new byte[(lastPage + 1) * 4];
+        fastReadChunkPlanner = new FastReadChunkPlanner();
+        tagInformation = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(), maxTransceiveLength, new String[]{"NfcA"});
+        tagInformation.userMemoryStartPage = tag.getTagType().getUserMemoryStartPage();
+        tagInformation.userMemoryEndPage = tag.getTagType().getUserMemoryEndPage();
+        tagInformation.tagHasFastReadCommand = true;
+        tagInformation.userMemory = (tagInformation.userMemoryEndPage - tagInformation.userMemoryStartPage + 1) * 4;
+        // the cache holds the current content, the NFC counter is not enabled so a READ of the
+        // first user pages is used for the validation
+        byte[] content = new byte[(lastPage + 1) * 4];
+        session.readPagesInto(maxTransceiveLength, 0, lastPage, content, 0);
+        tagMemoryCache = new TagMemoryCache();
+        tagMemoryCache.put(new TagMemoryCache.CachedTag(tag.getUid(), session.getVersion(), session.readSignature(),
+                content, TagMemoryCache.NO_COUNTER, tagInformation.userMemoryStartPage));
+        tag.resetStatistics();
+        // the maximum length that is accepted by writeBulkData
+        bulkData = "AndroidCrypto NFC NfcA Tutorial Benchmar".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tag.close();
+    }
+
+    @Benchmark
+    public byte[] readFullTag(RfTimeCounters counters) {
+        byte[] content = NfcACommands.readFullTag(tag, maxTransceiveLength, lastPage);
+        counters.record(tag);
+        return content;
+    }
+
+    @Benchmark
+    public int readFullTagInto(RfTimeCounters counters) {
+        int pagesRead = NfcACommands.readPagesInto(tag, maxTransceiveLength, 0, lastPage, fullTagBuffer, 0);
+        counters.record(tag);
+        return pagesRead;
+    }
+
+    @Benchmark
+    public int readFullTagAdaptive(RfTimeCounters counters) {
+        int pagesRead = fastReadChunkPlanner.readPagesInto(session, tagType, maxTransceiveLength, 0, lastPage, fullTagBuffer, 0);
+        counters.record(tag);
+        return pagesRead;
+    }
+
+    @Benchmark
+    public boolean writeBulkData(RfTimeCounters counters) {
+        boolean success = NfcACommands.writeBulkData(tag, 5, bulkData);
+        counters.record(tag);
+        return success;
+    }
+
+    @Benchmark
+    public WriteCursor writeStreaming(RfTimeCounters counters) {
+        WriteCursor cursor = StreamingTagWriter.write(session, tagInformation, 5, bulkData, null);
+        counters.record(tag);
+        return cursor;
+    }
+
+    @Benchmark
+    public DiffTagWriter.Result writeDiffUnchanged(RfTimeCounters counters) {
+        // after the first invocation the tag holds the data, so all pages are skipped
+        DiffTagWriter.Result result = DiffTagWriter.writeDiff(session, tagInformation, 5, bulkData);
+        counters.record(tag);
+        return result;
+    }
+
+    @Benchmark
+    public CommandStatus readPageWithGlitch(RfTimeCounters counters) {
+        // each READ fails once, the retrying session reconnects and repeats it
+        tag.setGlitchAfterFrames(0, false);
+        CommandStatus status = retryingSession.readPageInto(4, pageBuffer, 0);
+        counters.record(tag);
+        return status;
+    }
+
+    @Benchmark
+    public boolean retapCachedTag(RfTimeCounters counters) {
+        // compare with readFullTag + getVersion: a known tag is validated with one READ
+        boolean valid = tagMemoryCache.validate(session, tagMemoryCache.get(tag.getUid()));
+        counters.record(tag);
+        return valid;
+    }
+
+    @Benchmark
+    public IdentificationPath identifyByGetVersion(RfTimeCounters counters) {
+        // the READ of page 00 is sent by the app anyway, followed by the Get Version command
+        TagInformation ti = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(), maxTransceiveLength, null);
+        session.readPageInto(0, pageBuffer, 0);
+        ti.identifyTagOnGetVersion(session.getVersion());
+        counters.record(tag);
+        return ti.getIdentificationPath();
+    }
+
+    @Benchmark
+    public IdentificationPath identifyByCapabilityContainer(RfTimeCounters counters) {
+        // NTAG215 and NTAG216 are identified by the READ of page 00, NTAG213 (same size as an
+        // Ultralight C) and the unformatted MF0UL21 need the Get Version command
+        TagInformation ti = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(), maxTransceiveLength, null);
+        session.readPageInto(0, pageBuffer, 0);
+        if (!ti.identifyTagOnCapabilityContainer(pageBuffer, 0)) {
+            ti.identifyTagOnGetVersion(session.getVersion());
+        }
+        counters.record(tag);
+        return ti.getIdentificationPath();
+    }
+
+    @Benchmark
+    public byte[] readPage(RfTimeCounters counters) {
+        byte[] content = NfcACommands.readPage(tag, 4);
+        counters.record(tag);
+        return content;
+    }
+
+    @Benchmark
+    public byte[] getVersion(RfTimeCounters counters) {
+        byte[] versionData = NfcACommands.getVersion(tag);
+        counters.record(tag);
+        return versionData;
+    }
+}
@@ -0,0 +1,101 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one TagSession with its own simulated NTAG216 per thread. Each session holds its own
+ * last error, so the throughput should scale with the number of cores.
+ * <p>
+ * The TagLost benchmarks compare the failure path of the byte[] methods (message strings are
+ * built and logged on each failure) with the status methods (the message is built lazily).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(Threads.MAX)
+public class ParallelSessionBenchmark {
+
+    private TagSimulator tag;
+    private TagSession session;
+    private byte[] fullTagBuffer;
+    private byte[] pageBuffer = new byte[16];
+    private int maxTransceiveLength;
+    private int lastPage;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        tag.connect();
+        session = new TagSession(tag);
+        maxTransceiveLength = tag.getMaxTransceiveLength();
+        lastPage = tag.getTagType().getLastPage();
+        fullTagBuffer = new byte[(lastPage + 1) * 4];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tag.close();
+    }
+
+    @Benchmark
+    public int readFullTagInto() {
+        return session.readPagesInto(maxTransceiveLength, 0, lastPage, fullTagBuffer, 0);
+    }
+
+    @Benchmark
+    public TagError readPageOutOfRange() {
+        // the NAK is answered by the simulator, the error is kept in the session
+        byte[] response = session.readPage(255);
+        if ((response == null) || (response.length != 16)) {
+            session.reconnect();
+        }
+        return session.getLastError();
+    }
+
+    @Benchmark
+    public CommandStatus readPageIntoOutOfRange() {
+        // same as readPageOutOfRange, the status method does not build a message
+        CommandStatus status = session.readPageInto(255, pageBuffer, 0);
+        if (status.needsReconnect()) {
+            session.reconnect();
+        }
+        return status;
+    }
+
+    @State(Scope.Thread)
+    public static class LostTag {
+        TagSession session;
+        byte[] pageBuffer = new byte[16];
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            TagSimulator tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+            tag.connect();
+            // the tag stays connected but every frame fails with 'Tag was lost'
+            tag.removeFromField();
+            session = new TagSession(tag);
+        }
+    }
+
+    @Benchmark
+    public byte[] readPageTagLost(LostTag lostTag) {
+        return lostTag.session.readPage(4);
+    }
+
+    @Benchmark
+    public CommandStatus readPageIntoTagLost(LostTag lostTag) {
+        return lostTag.session.readPageInto(4, lostTag.pageBuffer, 0);
+    }
+}
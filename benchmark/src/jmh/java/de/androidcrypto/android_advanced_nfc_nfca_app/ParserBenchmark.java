@@ -0,0 +1,94 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import static de.androidcrypto.android_advanced_nfc_nfca_app.Utils.hexStringToByteArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parsing of the tag responses that runs on every tap: the Get Version data, the
+ * tag identification and the configuration pages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+
+    // Get Version data of an NTAG216 and of a DESFire EV1 2K (including the status byte)
+    private static final byte[] NTAG216_VERSION_DATA = hexStringToByteArray("0004040201001303");
+    private static final byte[] DESFIRE_VERSION_DATA = hexStringToByteArray("040101010016050401010104160500046D759AA47780B90C224D703722");
+    private static final byte[] TAG_UID = hexStringToByteArray("04A1B2C3D4E5F6");
+    private static final byte[] ATQA = hexStringToByteArray("4400");
+    private static final String[] TECHNOLOGIES = new String[]{"android.nfc.tech.NfcA", "android.nfc.tech.MifareUltralight", "android.nfc.tech.Ndef"};
+    // configuration pages of an NTAG21x with fabric settings
+    private static final byte[] CONFIGURATION_PAGES = hexStringToByteArray("04000000FF000000");
+
+    private ConfigurationPages configurationPages;
+    private final VersionDataView versionDataView = new VersionDataView();
+
+    @Setup
+    public void setup() {
+        configurationPages = new ConfigurationPages(ConfigurationPages.TagType.NTAG21x, CONFIGURATION_PAGES.clone());
+    }
+
+    @Benchmark
+    public VersionInfo versionInfo8Bytes() throws IOException {
+        return new VersionInfo(NTAG216_VERSION_DATA);
+    }
+
+    @Benchmark
+    public VersionInfo versionInfoDesfire() throws IOException {
+        return new VersionInfo(DESFIRE_VERSION_DATA);
+    }
+
+    // the flyweight view reads the same fields in place, nothing is allocated
+    @Benchmark
+    public int versionDataView8Bytes() {
+        versionDataView.wrap(NTAG216_VERSION_DATA);
+        return versionDataView.getHardwareType() + versionDataView.getHardwareStorageSizeRaw();
+    }
+
+    @Benchmark
+    public int versionDataViewDesfire() {
+        versionDataView.wrap(DESFIRE_VERSION_DATA);
+        return versionDataView.getHardwareVersionMajor() + versionDataView.getSoftwareVersionMajor()
+                + versionDataView.getProductionYear();
+    }
+
+    @Benchmark
+    public TagInformation identifyTagOnGetVersion() {
+        TagInformation ti = new TagInformation(TAG_UID, ATQA, (byte) 0x00, 253, TECHNOLOGIES);
+        ti.identifyTagOnGetVersion(NTAG216_VERSION_DATA);
+        return ti;
+    }
+
+    @Benchmark
+    public TagInformation identifyTagOnAtqaSak() {
+        TagInformation ti = new TagInformation(TAG_UID, ATQA, (byte) 0x00, 253, TECHNOLOGIES);
+        ti.identifyTagOnAtqaSak();
+        return ti;
+    }
+
+    @Benchmark
+    public byte[] configurationPagesBuild() {
+        ConfigurationPages cp = new ConfigurationPages(ConfigurationPages.TagType.NTAG21x, CONFIGURATION_PAGES.clone());
+        cp.setAuthProtectionPage(4);
+        cp.setAuthProtectionReadWrite();
+        cp.enableNfcReadCounter();
+        cp.setAsciiMirroring(true, true, 16, 0);
+        return cp.getConfigurationPages01();
+    }
+
+    @Benchmark
+    public String configurationPagesDump() {
+        return configurationPages.dump();
+    }
+}
@@ -0,0 +1,112 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the QuickScan against simulated tags, each invocation is a new tap of the tag. The
+ * RfTimeCounters show the frames per scan (frames / ops) for each tag type:
+ * - an unknown tag is identified by the Capability Container or the Get Version command
+ * - a known tag is identified by the IdentificationCache without any frame
+ * - a cached NTAG21x with a password protected READ_CNT gets the counter from the ASCII mirror
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QuickScanBenchmark {
+
+    @Param({"NTAG213", "NTAG215", "NTAG216", "MF0UL21"})
+    public String tagType;
+
+    private TagSimulator tag;
+    private TagSession session;
+    private TagSimulator mirroredTag;
+    private TagSession mirroredSession;
+    private QuickScan coldQuickScan;
+    private QuickScan knownTagQuickScan;
+    private QuickScan cachedTagQuickScan;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        TagSimulator.TagType type = TagSimulator.TagType.valueOf(tagType);
+        tag = new TagSimulator(type);
+        tag.setNfcCounterEnabled(true);
+        tag.connect();
+        session = new TagSession(tag);
+        coldQuickScan = new QuickScan(null, null);
+        IdentificationCache identificationCache = new IdentificationCache().setRevalidationInterval(0);
+        identificationCache.confirm(tag.getUid(), tag.getAtqa(), tag.getSak(), session.getVersion());
+        knownTagQuickScan = new QuickScan(identificationCache, null);
+
+        // the counter is mirrored behind the UID into page 10, READ_CNT needs the password
+        mirroredTag = new TagSimulator(type);
+        mirroredTag.setNfcCounterEnabled(true);
+        if (type.getFamily() == TagSimulator.Family.NTAG21x) {
+            mirroredTag.setNfcCounterPasswordProtected(true);
+            mirroredTag.setAsciiMirror(true, true, 10, 0);
+        }
+        mirroredTag.connect();
+        mirroredSession = new TagSession(mirroredTag);
+        int lastPage = type.getLastPage();
+        byte[] content = new byte[(lastPage + 1) * 4];
+        mirroredSession.readPagesInto(mirroredTag.getMaxTransceiveLength(), 0, lastPage, content, 0);
+        TagMemoryCache tagMemoryCache = new TagMemoryCache();
+        tagMemoryCache.put(new TagMemoryCache.CachedTag(mirroredTag.getUid(), mirroredSession.getVersion(), null,
+                content, TagMemoryCache.NO_COUNTER, type.getUserMemoryStartPage()));
+        cachedTagQuickScan = new QuickScan(null, tagMemoryCache);
+    }
+
+    @Setup(Level.Invocation)
+    public void tap() throws IOException {
+        // a new tap: the tag is activated again, the statistics start at 0
+        tag.close();
+        tag.connect();
+        tag.resetStatistics();
+        mirroredTag.close();
+        mirroredTag.connect();
+        mirroredTag.resetStatistics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tag.close();
+        mirroredTag.close();
+    }
+
+    @Benchmark
+    public QuickScan.Result quickScanUnknownTag(RfTimeCounters counters) {
+        QuickScan.Result result = coldQuickScan.scan(session, newTagInformation(tag), System.nanoTime());
+        counters.record(tag);
+        return result;
+    }
+
+    @Benchmark
+    public QuickScan.Result quickScanKnownTag(RfTimeCounters counters) {
+        QuickScan.Result result = knownTagQuickScan.scan(session, newTagInformation(tag), System.nanoTime());
+        counters.record(tag);
+        return result;
+    }
+
+    @Benchmark
+    public QuickScan.Result quickScanCachedTagWithCounterMirror(RfTimeCounters counters) {
+        QuickScan.Result result = cachedTagQuickScan.scan(mirroredSession, newTagInformation(mirroredTag), System.nanoTime());
+        counters.record(mirroredTag);
+        return result;
+    }
+
+    private TagInformation newTagInformation(TagSimulator simulator) {
+        return new TagInformation(simulator.getUid(), simulator.getAtqa(), simulator.getSak(),
+                simulator.getMaxTransceiveLength(), new String[]{"NfcA"});
+    }
+}
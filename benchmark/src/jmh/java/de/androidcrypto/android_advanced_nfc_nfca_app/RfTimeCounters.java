@@ -0,0 +1,37 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results that are taken from the TagSimulator: the simulated time on air and
+ * the number of frames. JMH reports them as events per second next to the ops/s of the benchmark,
+ * so dividing by the ops/s gives the simulated time and the frames of one operation.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class RfTimeCounters {
+
+    public long simulatedMicros;
+    public long frames;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        simulatedMicros = 0;
+        frames = 0;
+    }
+
+    /**
+     * Adds the statistics of the tag to the counters and resets the statistics of the tag.
+     *
+     * @param tag
+     */
+    public void record(TagSimulator tag) {
+        simulatedMicros += tag.getElapsedMicros();
+        frames += tag.getFrameCount();
+        tag.resetStatistics();
+    }
+}
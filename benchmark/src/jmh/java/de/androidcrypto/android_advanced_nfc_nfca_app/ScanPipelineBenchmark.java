@@ -0,0 +1,107 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time a scan of a simulated NTAG216 keeps the reader thread busy: with the report
+ * rendered on the reader thread and with the rendering on the render stage of the ScanPipeline.
+ * The pipeline is drained after each invocation (outside of the measured time), so the queue
+ * does not fill up over the iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScanPipelineBenchmark {
+
+    private TagSimulator tag;
+    private TagSession session;
+    private TagInformation tagInformation;
+    private int maxTransceiveLength;
+    private int lastPage;
+    private byte[] fullTagBuffer;
+    private ScanPipeline scanPipeline;
+    private ScanReportTextRenderer textRenderer;
+    private StringBuilder sink;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tag = new TagSimulator(TagSimulator.TagType.NTAG216);
+        tag.connect();
+        session = new TagSession(tag);
+        maxTransceiveLength = tag.getMaxTransceiveLength();
+        lastPage = tag.getTagType().getLastPage();
+        fullTagBuffer = new byte[(lastPage + 1) * 4];
+        tagInformation = new TagInformation(tag.getUid(), tag.getAtqa(), tag.getSak(), maxTransceiveLength, new String[]{"NfcA"});
+        tagInformation.identifyTagOnGetVersion(session.getVersion());
+        scanPipeline = new ScanPipeline();
+        textRenderer = new ScanReportTextRenderer();
+        textRenderer.setHexDumpRenderer(new HexDumpRenderer(tagInformation));
+        sink = new StringBuilder(64 * 1024);
+    }
+
+    @TearDown(Level.Invocation)
+    public void drainPipeline() {
+        scanPipeline.awaitIdle(10000);
+        sink.setLength(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        scanPipeline.shutdown();
+        tag.close();
+    }
+
+    @Benchmark
+    public ScanReport scanRenderedOnReaderThread() {
+        return scan(new ScanReport().addListener(createSinkListener()));
+    }
+
+    @Benchmark
+    public ScanReport scanRenderedOnPipeline() {
+        return scan(new ScanReport().addListener(scanPipeline.onRenderStage(createSinkListener())));
+    }
+
+    private ScanReport scan(ScanReport report) {
+        report.section("Tag");
+        report.bytes("UID", tag.getUid());
+        byte[] versionData = session.getVersion();
+        report.section("GET VERSION data");
+        report.versionData("Get Version data", versionData);
+        report.section("FastRead pages from page 00-end");
+        int pagesRead = session.readPagesInto(maxTransceiveLength, 0, lastPage, fullTagBuffer, 0);
+        report.row("Pages read", pagesRead);
+        report.pages("Full tag content (page | hex | ASCII | region):", fullTagBuffer, 0, fullTagBuffer.length, 0);
+        report.configurationPages("Configuration pages", fullTagBuffer, tagInformation.configurationStartPage * 4,
+                ConfigurationPages.TagType.NTAG21x);
+        report.complete();
+        return report;
+    }
+
+    private ScanReport.Listener createSinkListener() {
+        return new ScanReport.Listener() {
+            @Override
+            public void onReportStarted(ScanReport report) {
+            }
+
+            @Override
+            public void onSectionCompleted(ScanReport report, ScanReport.Section section) {
+                textRenderer.renderSection(section, sink);
+            }
+
+            @Override
+            public void onReportCompleted(ScanReport report) {
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package de.androidcrypto.android_advanced_nfc_nfca_app;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the hex and concatenation helpers in Utils and the HexDumpRenderer. The sizes are a
+ * READ response (16 bytes) and the full memory of an NTAG216 (924 bytes).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UtilsBenchmark {
+
+    @Param({"16", "924"})
+    public int size;
+
+    private byte[] data;
+    private byte[] chunk;
+    private String hexString;
+    private HexDumpRenderer hexDumpRenderer;
+    private StringBuilder dump;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        data = new byte[size];
+        random.nextBytes(data);
+        chunk = new byte[16];
+        random.nextBytes(chunk);
+        hexString = Utils.bytesToHexNpe(data);
+        TagInformation ti = new TagInformation(new byte[7], new byte[2], (byte) 0x00, 253, null);
+        ti.tagMemoryEndPage = size / 4 - 1;
+        ti.userMemoryStartPage = 4;
+        ti.userMemoryEndPage = ti.tagMemoryEndPage - 5;
+        ti.configurationStartPage = ti.tagMemoryEndPage - 3;
+        hexDumpRenderer = new HexDumpRenderer(ti);
+        dump = new StringBuilder();
+    }
+
+    @Benchmark
+    public String bytesToHexNpe() {
+        return Utils.bytesToHexNpe(data);
+    }
+
+    @Benchmark
+    public byte[] hexStringToByteArray() {
+        return Utils.hexStringToByteArray(hexString);
+    }
+
+    @Benchmark
+    public String printData() {
+        return Utils.printData("data", data);
+    }
+
+    @Benchmark
+    public int hexDump() {
+        // the builder is reused like the Writer of an export job
+        dump.setLength(0);
+        hexDumpRenderer.renderPages(dump, data, 0, data.length, 0);
+        return dump.length();
+    }
+
+    @Benchmark
+    public byte[] concatenateByteArrays() {
+        return Utils.concatenateByteArrays(data, chunk);
+    }
+}
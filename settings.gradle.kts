@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Android_Advanced_NFC_NfcA_App"
 include(":app")
+include(":benchmark")